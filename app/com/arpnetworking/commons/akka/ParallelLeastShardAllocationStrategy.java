@@ -23,7 +23,6 @@ import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import scala.collection.JavaConversions;
@@ -32,17 +31,22 @@ import scala.concurrent.Future;
 
 import java.io.Serializable;
 import java.time.ZonedDateTime;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of the least shard allocation strategy that seeks to parallelize shard rebalancing.
  *
+ * Regions are balanced on the summed weight of their shards. By default every shard weighs 1, which balances on shard
+ * count; a weight function fed by load telemetry lets expensive shards count for more.
+ *
  * @author Brandon Arp (brandon dot arp at inscopemetrics dot com)
  */
 public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator.AbstractShardAllocationStrategy {
@@ -58,9 +62,26 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
             final int maxParallel,
             final int rebalanceThreshold,
             final Optional<ActorSelection> notify) {
+        this(maxParallel, rebalanceThreshold, notify, shardId -> 1);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param maxParallel number of allocations to start in parallel
+     * @param rebalanceThreshold difference in summed shard weight required to cause a rebalance
+     * @param notify the {@link akka.actor.ActorSelection} selection to notify of changes
+     * @param shardWeight the weight of a shard, by shard id; must be positive
+     */
+    public ParallelLeastShardAllocationStrategy(
+            final int maxParallel,
+            final int rebalanceThreshold,
+            final Optional<ActorSelection> notify,
+            final ToDoubleFunction<String> shardWeight) {
         _maxParallel = maxParallel;
         _rebalanceThreshold = rebalanceThreshold;
         _notify = notify;
+        _shardWeight = shardWeight;
     }
 
     @Override
@@ -73,12 +94,11 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
             return Futures.successful(_pendingRebalances.get(shardId));
         }
 
-        // Otherwise default to giving it to the shard with the least amount of shards
+        // Otherwise default to giving it to the region with the least total shard weight
         return Futures.successful(currentShardAllocations
                 .entrySet()
                 .stream()
-                .sorted(Comparator.comparingInt(e -> e.getValue().size()))
-                .findFirst()
+                .min(Comparator.comparingDouble(e -> totalWeight(JavaConversions.seqAsJavaList(e.getValue()))))
                 .get()
                 .getKey());
     }
@@ -91,9 +111,10 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
         _pendingRebalances.keySet().retainAll(rebalanceInProgress);
 
         // Build a friendly set of current allocations
-        // Sort the set by "effective shards after rebalance"
-        final TreeSet<RegionShardAllocations> allocations =
-                new TreeSet<>(Comparator.comparingInt(RegionShardAllocations::getEffectiveShardCount));
+        // Sort the set by "effective weight after rebalance" (ties broken by region, since the set must not drop any)
+        final TreeSet<RegionShardAllocations> allocations = new TreeSet<>(
+                Comparator.comparingDouble(RegionShardAllocations::getEffectiveWeight)
+                        .thenComparing(RegionShardAllocations::getRegion));
 
         for (final Map.Entry<ActorRef, IndexedSeq<String>> entry : currentShardAllocations.entrySet()) {
             allocations.add(
@@ -103,7 +124,7 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
                             JavaConversions.setAsJavaSet(entry.getValue().<String>toSet())
                                     .stream()
                                     .filter(e -> !rebalanceInProgress.contains(e))
-                                    .collect(Collectors.toSet())));
+                                    .collect(Collectors.toMap(Function.identity(), _shardWeight::applyAsDouble))));
         }
 
         final Set<String> toRebalance = Sets.newHashSet();
@@ -123,23 +144,33 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
             }
 
             // Make sure that the difference is enough to warrant a rebalance
-            if (mostShards.getEffectiveShardCount() - leastShards.getEffectiveShardCount() < _rebalanceThreshold) {
+            final double difference = mostShards.getEffectiveWeight() - leastShards.getEffectiveWeight();
+            if (difference < _rebalanceThreshold) {
                 LOGGER.debug()
-                        .setMessage("Not rebalancing any (more) shards, shard region with most shards already balanced with least")
-                        .addData("most", mostShards.getEffectiveShardCount())
-                        .addData("least", leastShards.getEffectiveShardCount())
+                        .setMessage("Not rebalancing any (more) shards, shard region with most weight already balanced with least")
+                        .addData("most", mostShards.getEffectiveWeight())
+                        .addData("least", leastShards.getEffectiveWeight())
                         .addData("rebalanceThreshold", _rebalanceThreshold)
                         .log();
                 break;
             }
 
-            final String rebalanceShard = Iterables.get(mostShards.getShards(), 0);
+            // Move the heaviest shard that still narrows the gap; anything at least as heavy as the gap would widen it again
+            final Optional<String> rebalanceShard = mostShards.getHeaviestShardLighterThan(difference);
+            if (!rebalanceShard.isPresent()) {
+                LOGGER.debug()
+                        .setMessage("Not rebalancing any (more) shards, no shard is light enough to narrow the gap")
+                        .addData("most", mostShards.getEffectiveWeight())
+                        .addData("least", leastShards.getEffectiveWeight())
+                        .log();
+                break;
+            }
 
             // Now we take a shard from mostShards and give it to leastShards
-            mostShards.removeShard(rebalanceShard);
-            leastShards.incrementIncoming();
-            toRebalance.add(rebalanceShard);
-            _pendingRebalances.put(rebalanceShard, leastShards.getRegion());
+            final double rebalanceWeight = mostShards.removeShard(rebalanceShard.get());
+            leastShards.addIncoming(rebalanceWeight);
+            toRebalance.add(rebalanceShard.get());
+            _pendingRebalances.put(rebalanceShard.get(), leastShards.getRegion());
 
             // Put them back in the list with their new counts
             allocations.add(mostShards);
@@ -167,11 +198,16 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
         return Futures.successful(toRebalance);
     }
 
+    private double totalWeight(final Collection<String> shards) {
+        return shards.stream().mapToDouble(_shardWeight::applyAsDouble).sum();
+    }
+
     private Map<String, ActorRef> _pendingRebalances = Maps.newHashMap();
 
     private final int _maxParallel;
     private final int _rebalanceThreshold;
     private final Optional<ActorSelection> _notify;
+    private final ToDoubleFunction<String> _shardWeight;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ParallelLeastShardAllocationStrategy.class);
 
@@ -223,34 +259,42 @@ public final class ParallelLeastShardAllocationStrategy extends ShardCoordinator
     }
 
     private static final class RegionShardAllocations {
-        private RegionShardAllocations(final ActorRef region, final Set<String> shards) {
+        private RegionShardAllocations(final ActorRef region, final Map<String, Double> shardWeights) {
             _region = region;
-            _shards = Sets.newHashSet(shards);
+            _shardWeights = Maps.newHashMap(shardWeights);
+            _weight = shardWeights.values().stream().mapToDouble(Double::doubleValue).sum();
         }
 
         public ActorRef getRegion() {
             return _region;
         }
 
-        public Set<String> getShards() {
-            return Collections.unmodifiableSet(_shards);
+        public double getEffectiveWeight() {
+            return _weight + _incomingWeight;
         }
 
-        public int getEffectiveShardCount() {
-            return _shards.size() + _incomingShardsCount;
+        public Optional<String> getHeaviestShardLighterThan(final double weight) {
+            return _shardWeights.entrySet()
+                    .stream()
+                    .filter(e -> e.getValue() < weight)
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey);
         }
 
-        public void removeShard(final String shard) {
-            _shards.remove(shard);
+        public double removeShard(final String shard) {
+            final double weight = _shardWeights.remove(shard);
+            _weight -= weight;
+            return weight;
         }
 
-        public void incrementIncoming() {
-            _incomingShardsCount++;
+        public void addIncoming(final double weight) {
+            _incomingWeight += weight;
         }
 
-        private int _incomingShardsCount = 0;
+        private double _incomingWeight = 0;
+        private double _weight;
 
         private final ActorRef _region;
-        private final Set<String> _shards;
+        private final Map<String, Double> _shardWeights;
     }
 }
@@ -21,6 +21,8 @@ import models.internal.MetricsSoftwareState;
 import models.internal.Organization;
 import models.internal.QueryResult;
 
+import java.util.Collection;
+
 /**
  * Interface for repository of hosts available for metrics. The repository is
  * designed around the host name as the primary key.
@@ -48,6 +50,18 @@ public interface HostRepository extends AutoCloseable {
      */
     void addOrUpdateHost(Host host, Organization organization);
 
+    /**
+     * Add new hosts or update existing hosts in the repository. Implementations
+     * write the hosts in as few round trips as the backend allows; callers
+     * synchronizing many hosts should prefer this over repeated calls to
+     * <code>addOrUpdateHost</code>. If the same hostname appears more than once
+     * the last occurrence wins.
+     *
+     * @param hosts The hosts to add to the repository.
+     * @param organization The organization owning the hosts.
+     */
+    void addOrUpdateHosts(Collection<Host> hosts, Organization organization);
+
     /**
      * Remove the host by hostname from the repository.
      *
@@ -15,36 +15,62 @@
  */
 package com.arpnetworking.metrics.portal.hosts.impl;
 
-import com.arpnetworking.metrics.portal.alerts.impl.CassandraAlertRepository;
 import com.arpnetworking.metrics.portal.hosts.HostRepository;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.MappingManager;
-import com.datastax.driver.mapping.Result;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import models.internal.Host;
 import models.internal.HostQuery;
 import models.internal.MetricsSoftwareState;
 import models.internal.Organization;
 import models.internal.QueryResult;
+import models.internal.impl.DefaultHost;
 import models.internal.impl.DefaultHostQuery;
 import models.internal.impl.DefaultQueryResult;
 
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 /**
  * Implementation of {@link HostRepository} for Cassandra database.
  *
+ * Queries read hosts in name order from the narrowest of the {@code hosts} table and its by-cluster and
+ * by-metrics-software-state views, one driver page at a time, and stop as soon as the requested page is filled. Where
+ * a query resumes where the previous page left off, it picks up from the driver paging state recorded by that page
+ * instead of reading past the offset again; otherwise it reads (and discards) the matches before the offset.
+ *
+ * Host counts are kept in counter tables, so totals need no scan; except that the total of a partial hostname query,
+ * which can't be counted without one, is only reported as far as the returned page (plus one if there are more
+ * matches). The counters are only approximate: a host write and its counter update are separate statements, so
+ * concurrent writers to the same host, or a driver retry of a counter update, can make them drift. They are therefore
+ * only ever reported as totals, never used to decide which rows a page contains.
+ *
  * @author Brandon Arp (brandon dot arp at smartsheet dot com)
  */
 public class CassandraHostRepository implements HostRepository {
@@ -65,14 +91,14 @@ public class CassandraHostRepository implements HostRepository {
     @Override
     public void open() {
         assertIsOpen(false);
-        LOGGER.debug().setMessage("Opening alert repository").log();
+        LOGGER.debug().setMessage("Opening host repository").log();
         _isOpen.set(true);
     }
 
     @Override
     public void close() {
         assertIsOpen();
-        LOGGER.debug().setMessage("Closing alert repository").log();
+        LOGGER.debug().setMessage("Closing host repository").log();
         _isOpen.set(false);
         _cassandraSession.close();
     }
@@ -86,46 +112,73 @@ public class CassandraHostRepository implements HostRepository {
                 .addData("organization", organization)
                 .log();
 
-        final models.cassandra.Host cassHost = new models.cassandra.Host();
-        cassHost.setOrganization(organization.getId());
-        cassHost.setCluster(host.getCluster().orElse(null));
-        cassHost.setMetricsSoftwareState(host.getMetricsSoftwareState().name());
-        cassHost.setName(host.getHostname());
-
+        final models.cassandra.Host cassHost = toCassandra(host, organization);
         final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
+        final Optional<models.cassandra.Host> existing = Optional.ofNullable(mapper.get(organization.getId(), host.getHostname()));
         mapper.save(cassHost);
+        updateCounts(organization.getId(), existing.filter(e -> Boolean.TRUE.equals(e.getCounted())), Optional.of(cassHost));
     }
 
     @Override
-    public void deleteHost(final String hostname, final Organization organization) {
+    public void addOrUpdateHosts(final Collection<Host> hosts, final Organization organization) {
         assertIsOpen();
         LOGGER.debug()
-                .setMessage("Deleting host")
-                .addData("hostname", hostname)
+                .setMessage("Upserting hosts")
+                .addData("hosts", hosts.size())
                 .addData("organization", organization)
                 .log();
-        final Optional<Host> alert = get(hostname, organization);
-        if (alert.isPresent()) {
-            final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
-            mapper.delete(organization, hostname);
+
+        // The last occurrence of a hostname wins, as it would with addOrUpdateHost
+        final Map<String, models.cassandra.Host> cassHosts = Maps.newLinkedHashMap();
+        for (final Host host : hosts) {
+            cassHosts.put(host.getHostname(), toCassandra(host, organization));
         }
+
+        // All of an organization's hosts share a partition, so each chunk is read with one query and written with one
+        // unlogged batch; chunks keep the batches under the coordinator's batch size limits.
+        final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
+        final CountDeltas deltas = new CountDeltas();
+        for (final List<String> names : Iterables.partition(cassHosts.keySet(), WRITE_BATCH_SIZE)) {
+            final Map<String, models.cassandra.Host> existing = Maps.newHashMap();
+            for (final Row row : _cassandraSession.execute(prepare(
+                    "SELECT name, cluster, metrics_software_state, counted FROM portal.hosts WHERE organization = ? AND name IN ?")
+                    .bind(organization.getId(), names))) {
+                if (row.getBool("counted")) {
+                    final models.cassandra.Host before = new models.cassandra.Host();
+                    before.setName(row.getString("name"));
+                    before.setCluster(row.getString("cluster"));
+                    before.setMetricsSoftwareState(row.getString("metrics_software_state"));
+                    existing.put(before.getName(), before);
+                }
+            }
+
+            final BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+            for (final String name : names) {
+                final models.cassandra.Host after = cassHosts.get(name);
+                batch.add(mapper.saveQuery(after));
+                deltas.change(Optional.ofNullable(existing.get(name)), Optional.of(after));
+            }
+            _cassandraSession.execute(batch);
+        }
+        deltas.apply(organization.getId());
     }
 
-    private Optional<Host> get(final String hostname, final Organization organization) {
+    @Override
+    public void deleteHost(final String hostname, final Organization organization) {
         assertIsOpen();
         LOGGER.debug()
-                .setMessage("Getting host")
+                .setMessage("Deleting host")
                 .addData("hostname", hostname)
                 .addData("organization", organization)
                 .log();
         final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
-        final models.cassandra.Host cassandraHost = mapper.get(organization, hostname);
-
-        if (cassandraHost == null) {
-            return Optional.empty();
+        final models.cassandra.Host existing = mapper.get(organization.getId(), hostname);
+        if (existing != null) {
+            mapper.delete(organization.getId(), hostname);
+            if (Boolean.TRUE.equals(existing.getCounted())) {
+                updateCounts(organization.getId(), Optional.of(existing), Optional.empty());
+            }
         }
-
-        return Optional.of(cassandraHost.toInternal());
     }
 
     @Override
@@ -145,76 +198,172 @@ public class CassandraHostRepository implements HostRepository {
                 .setMessage("Querying")
                 .addData("query", query)
                 .log();
-        final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
-        final models.cassandra.Host.HostQueries accessor = mapper.getManager().createAccessor(models.cassandra.Host.HostQueries.class);
-        final Result<models.cassandra.Host> result = accessor.getHostsForOrganization(query.getOrganization().getId());
-        final Spliterator<models.cassandra.Host> allAlerts = result.spliterator();
-        final int start = query.getOffset().orElse(0);
-
-        Stream<models.cassandra.Host> hostStream = StreamSupport.stream(allAlerts, false);
-
-        if (query.getPartialHostname().isPresent()) {
-            hostStream = hostStream
-                    .filter(host -> {
-                        final String partialHost = query.getPartialHostname().get().toLowerCase(Locale.ENGLISH);
-                        return host.getName().toLowerCase(Locale.ENGLISH).contains(partialHost);
-                    });
-        }
-
-        if (query.getCluster().isPresent()) {
-            hostStream = hostStream
-                    .filter(host -> {
-                        final String cluster = query.getCluster().get().toLowerCase(Locale.ENGLISH);
-                        return host.getCluster().toLowerCase(Locale.ENGLISH).equals(cluster);
-                    });
-        }
-
-        if (query.getMetricsSoftwareState().isPresent()) {
-            hostStream = hostStream
-                    .filter(host -> {
-                        final String cluster = query.getCluster().get().toLowerCase(Locale.ENGLISH);
-                        return host.getCluster().toLowerCase(Locale.ENGLISH).equals(cluster);
-                    });
-        }
-
-        final Comparator<Host> sort;
-        if (query.getSortBy().isPresent()) {
-            final HostQuery.Field field = query.getSortBy().get();
-            if (field == HostQuery.Field.HOSTNAME) {
-                sort = Comparator.comparing(Host::getHostname);
-            } else if (field.equals(HostQuery.Field.METRICS_SOFTWARE_STATE)) {
-                sort = Comparator.comparing(Host::getMetricsSoftwareState);
-            } else {
-                throw new RuntimeException("Sort field not supported: " + field);
+        final UUID organization = query.getOrganization().getId();
+        if (query.getSortBy().isPresent()
+                && !HostQuery.Field.HOSTNAME.equals(query.getSortBy().get())
+                && !HostQuery.Field.METRICS_SOFTWARE_STATE.equals(query.getSortBy().get())) {
+            throw new UnsupportedOperationException("Sort field not supported: " + query.getSortBy().get());
+        }
+        final List<Segment> segments = planSegments(query);
+        final Optional<String> partialHostname = query.getPartialHostname().map(name -> name.toLowerCase(Locale.ENGLISH));
+        final Predicate<Row> matches = row ->
+                partialHostname.map(name -> row.getString("name").toLowerCase(Locale.ENGLISH).contains(name)).orElse(true)
+                        && query.getCluster().map(cluster -> cluster.equals(row.getString("cluster"))).orElse(true)
+                        && query.getMetricsSoftwareState()
+                                .map(state -> state.name().equals(row.getString("metrics_software_state")))
+                                .orElse(true);
+
+        // Without a partial hostname, every segment's number of matches is (approximately) known from the counters
+        final Optional<long[]> segmentCounts = partialHostname.isPresent()
+                ? Optional.empty()
+                : Optional.of(segments.stream()
+                        .mapToLong(segment -> countHosts(organization, query.getCluster(), segment.getState()))
+                        .toArray());
+
+        final int offset = query.getOffset().orElse(0);
+        final int limit = query.getLimit();
+        final int fetchSize = Math.max(MIN_FETCH_SIZE, Math.min(limit + 1, MAX_FETCH_SIZE));
+        final Optional<Cursor> resumeFrom = Optional.ofNullable(_cursors.getIfPresent(new CursorKey(query, offset)));
+
+        int segmentIndex = resumeFrom.map(Cursor::getSegment).orElse(0);
+        PagingState pagingState = resumeFrom.flatMap(Cursor::getPagingState).orElse(null);
+        int rowsToSkip = resumeFrom.map(Cursor::getRow).orElse(0);
+        long matchesToSkip = resumeFrom.isPresent() ? 0 : offset;
+
+        final List<Host> page = Lists.newArrayListWithCapacity(Math.min(limit, fetchSize));
+        Optional<Cursor> next = Optional.empty();
+        scan:
+        while (segmentIndex < segments.size()) {
+            final Statement statement = segments.get(segmentIndex).bind().setFetchSize(fetchSize);
+            if (pagingState != null) {
+                statement.setPagingState(pagingState);
+            }
+            final ResultSet resultSet = _cassandraSession.execute(statement);
+            final int available = resultSet.getAvailableWithoutFetching();
+            for (int i = 0; i < available; ++i) {
+                final Row row = resultSet.one();
+                if (i < rowsToSkip || !matches.test(row)) {
+                    continue;
+                }
+                if (matchesToSkip > 0) {
+                    --matchesToSkip;
+                    continue;
+                }
+                if (page.size() == limit) {
+                    next = Optional.of(new Cursor(segmentIndex, Optional.ofNullable(pagingState), i));
+                    break scan;
+                }
+                page.add(toInternal(row));
+            }
+            // A cursor recorded by a query with a larger fetch size can point past the end of this (smaller) driver page;
+            // the rest of the rows to skip are at the start of the next one.
+            rowsToSkip = Math.max(0, rowsToSkip - available);
+            pagingState = resultSet.getExecutionInfo().getPagingState();
+            if (pagingState == null) {
+                ++segmentIndex;
+                rowsToSkip = 0;
             }
-        } else {
-            sort = Comparator.comparing(Host::getHostname);
         }
+        next.ifPresent(cursor -> _cursors.put(new CursorKey(query, offset + page.size()), cursor));
 
-        final List<Host> hosts = hostStream
-                .map(models.cassandra.Host::toInternal)
-                .sorted(sort)
-                .collect(Collectors.toList());
-        final List<Host> paginated = hosts.stream().skip(start).limit(query.getLimit()).collect(Collectors.toList());
-        return new DefaultQueryResult<>(paginated, hosts.size());
+        final long total = segmentCounts.isPresent()
+                ? Arrays.stream(segmentCounts.get()).sum()
+                : offset + page.size() + (next.isPresent() ? 1 : 0);
+        return new DefaultQueryResult<>(page, total);
     }
 
     @Override
     public long getHostCount(final Organization organization) {
-        final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
-        final models.cassandra.Host.HostQueries accessor = mapper.getManager().createAccessor(models.cassandra.Host.HostQueries.class);
-        final Result<models.cassandra.Host> result = accessor.getHostsForOrganization(organization.getId());
-        return StreamSupport.stream(result.spliterator(), false).count();
+        assertIsOpen();
+        return countHosts(organization.getId(), Optional.empty(), Optional.empty());
     }
 
     @Override
     public long getHostCount(final MetricsSoftwareState metricsSoftwareState, final Organization organization) {
-        final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
-        final models.cassandra.Host.HostQueries accessor = mapper.getManager().createAccessor(models.cassandra.Host.HostQueries.class);
-        final Result<models.cassandra.Host> result = accessor.getHostsForOrganization(organization.getId());
-        return StreamSupport.stream(result.spliterator(), false)
-                .filter(host -> metricsSoftwareState.name().equals(host.getMetricsSoftwareState()))
-                .count();
+        assertIsOpen();
+        return countHosts(organization.getId(), Optional.empty(), Optional.of(metricsSoftwareState));
+    }
+
+    // Each segment reads one partition in name order; a query reads its segments in turn.
+    private List<Segment> planSegments(final HostQuery query) {
+        final UUID organization = query.getOrganization().getId();
+        final boolean sortByState = query.getSortBy().map(HostQuery.Field.METRICS_SOFTWARE_STATE::equals).orElse(false);
+        if (query.getCluster().isPresent() && !sortByState) {
+            return ImmutableList.of(new Segment(
+                    prepare("SELECT name, cluster, metrics_software_state FROM portal.hosts_by_cluster "
+                            + "WHERE organization = ? AND cluster = ?"),
+                    query.getMetricsSoftwareState(),
+                    organization,
+                    query.getCluster().get()));
+        }
+        if (query.getMetricsSoftwareState().isPresent() || sortByState) {
+            final List<MetricsSoftwareState> states = query.getMetricsSoftwareState()
+                    .map(ImmutableList::of)
+                    .orElseGet(() -> ImmutableList.copyOf(MetricsSoftwareState.values()));
+            final PreparedStatement byState = prepare(
+                    "SELECT name, cluster, metrics_software_state FROM portal.hosts_by_metrics_software_state "
+                            + "WHERE organization = ? AND metrics_software_state = ?");
+            final ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+            for (final MetricsSoftwareState state : states) {
+                segments.add(new Segment(byState, Optional.of(state), organization, state.name()));
+            }
+            return segments.build();
+        }
+        return ImmutableList.of(new Segment(
+                prepare("SELECT name, cluster, metrics_software_state FROM portal.hosts WHERE organization = ?"),
+                Optional.empty(),
+                organization));
+    }
+
+    private long countHosts(final UUID organization, final Optional<String> cluster, final Optional<MetricsSoftwareState> state) {
+        final ResultSet counts;
+        if (cluster.isPresent()) {
+            counts = _cassandraSession.execute(prepare(
+                    "SELECT metrics_software_state, hosts FROM portal.host_counts WHERE organization = ? AND cluster = ?")
+                    .bind(organization, cluster.get()));
+        } else {
+            counts = _cassandraSession.execute(prepare(
+                    "SELECT metrics_software_state, hosts FROM portal.host_state_counts WHERE organization = ?")
+                    .bind(organization));
+        }
+        long count = 0;
+        for (final Row row : counts) {
+            if (!state.isPresent() || state.get().name().equals(row.getString("metrics_software_state"))) {
+                count += row.getLong("hosts");
+            }
+        }
+        return count;
+    }
+
+    private void updateCounts(
+            final UUID organization,
+            final Optional<models.cassandra.Host> before,
+            final Optional<models.cassandra.Host> after) {
+        final CountDeltas deltas = new CountDeltas();
+        deltas.change(before, after);
+        deltas.apply(organization);
+    }
+
+    private PreparedStatement prepare(final String cql) {
+        return _statements.computeIfAbsent(cql, _cassandraSession::prepare);
+    }
+
+    private static models.cassandra.Host toCassandra(final Host host, final Organization organization) {
+        final models.cassandra.Host cassHost = new models.cassandra.Host();
+        cassHost.setOrganization(organization.getId());
+        cassHost.setCluster(host.getCluster().orElse(null));
+        cassHost.setMetricsSoftwareState(host.getMetricsSoftwareState().name());
+        cassHost.setName(host.getHostname());
+        cassHost.setCounted(true);
+        return cassHost;
+    }
+
+    private static Host toInternal(final Row row) {
+        return new DefaultHost.Builder()
+                .setHostname(row.getString("name"))
+                .setCluster(row.getString("cluster"))
+                .setMetricsSoftwareState(MetricsSoftwareState.valueOf(row.getString("metrics_software_state")))
+                .build();
     }
 
     private void assertIsOpen() {
@@ -223,13 +372,162 @@ public class CassandraHostRepository implements HostRepository {
 
     private void assertIsOpen(final boolean expectedState) {
         if (_isOpen.get() != expectedState) {
-            throw new IllegalStateException(String.format("Alert repository is not %s", expectedState ? "open" : "closed"));
+            throw new IllegalStateException(String.format("Host repository is not %s", expectedState ? "open" : "closed"));
         }
     }
 
     private final Session _cassandraSession;
     private final MappingManager _mappingManager;
     private final AtomicBoolean _isOpen = new AtomicBoolean(false);
+    private final ConcurrentMap<String, PreparedStatement> _statements = Maps.newConcurrentMap();
+    private final Cache<CursorKey, Cursor> _cursors = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CURSORS)
+            .expireAfterWrite(CURSOR_TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CassandraHostRepository.class);
+    private static final int MIN_FETCH_SIZE = 100;
+    private static final int MAX_FETCH_SIZE = 5000;
+    private static final int MAX_CURSORS = 10000;
+    private static final long CURSOR_TTL_MINUTES = 5;
+    private static final int WRITE_BATCH_SIZE = 100;
+
+    /**
+     * Net changes to the host counters, accumulated so that any number of host writes cost one counter batch.
+     */
+    private final class CountDeltas {
+
+        void change(final Optional<models.cassandra.Host> before, final Optional<models.cassandra.Host> after) {
+            final boolean unchanged = before.isPresent()
+                    && after.isPresent()
+                    && Objects.equals(before.get().getCluster(), after.get().getCluster())
+                    && Objects.equals(before.get().getMetricsSoftwareState(), after.get().getMetricsSoftwareState());
+            if (unchanged) {
+                return;
+            }
+            before.ifPresent(host -> add(host, -1));
+            after.ifPresent(host -> add(host, 1));
+        }
+
+        void apply(final UUID organization) {
+            final BatchStatement batch = new BatchStatement(BatchStatement.Type.COUNTER);
+            for (final Map.Entry<List<String>, Long> entry : _byClusterAndState.entrySet()) {
+                if (entry.getValue() != 0) {
+                    batch.add(prepare(
+                            "UPDATE portal.host_counts SET hosts = hosts + ? "
+                                    + "WHERE organization = ? AND cluster = ? AND metrics_software_state = ?")
+                            .bind(entry.getValue(), organization, entry.getKey().get(0), entry.getKey().get(1)));
+                }
+            }
+            for (final Map.Entry<String, Long> entry : _byState.entrySet()) {
+                if (entry.getValue() != 0) {
+                    batch.add(prepare(
+                            "UPDATE portal.host_state_counts SET hosts = hosts + ? WHERE organization = ? AND metrics_software_state = ?")
+                            .bind(entry.getValue(), organization, entry.getKey()));
+                }
+            }
+            if (batch.size() > 0) {
+                _cassandraSession.execute(batch);
+            }
+        }
+
+        private void add(final models.cassandra.Host host, final long delta) {
+            _byClusterAndState.merge(
+                    Arrays.asList(Optional.ofNullable(host.getCluster()).orElse(""), host.getMetricsSoftwareState()),
+                    delta,
+                    Long::sum);
+            _byState.merge(host.getMetricsSoftwareState(), delta, Long::sum);
+        }
+
+        private final Map<List<String>, Long> _byClusterAndState = Maps.newHashMap();
+        private final Map<String, Long> _byState = Maps.newHashMap();
+    }
+
+    private static final class Segment {
+        private final PreparedStatement _statement;
+        private final Optional<MetricsSoftwareState> _state;
+        private final Object[] _values;
+
+        Segment(final PreparedStatement statement, final Optional<MetricsSoftwareState> state, final Object... values) {
+            _statement = statement;
+            _state = state;
+            _values = values;
+        }
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(CassandraAlertRepository.class);
+        Statement bind() {
+            return _statement.bind(_values);
+        }
+
+        // The state of the hosts this segment's matches are counted under, if only one
+        Optional<MetricsSoftwareState> getState() {
+            return _state;
+        }
+    }
+
+    /**
+     * Where a page left off: the segment, the driver page within it, and the row within that page.
+     */
+    private static final class Cursor {
+        private final int _segment;
+        private final Optional<PagingState> _pagingState;
+        private final int _row;
+
+        Cursor(final int segment, final Optional<PagingState> pagingState, final int row) {
+            _segment = segment;
+            _pagingState = pagingState;
+            _row = row;
+        }
+
+        int getSegment() {
+            return _segment;
+        }
+
+        Optional<PagingState> getPagingState() {
+            return _pagingState;
+        }
+
+        int getRow() {
+            return _row;
+        }
+    }
+
+    private static final class CursorKey {
+        private final UUID _organization;
+        private final Optional<String> _partialHostname;
+        private final Optional<String> _cluster;
+        private final Optional<MetricsSoftwareState> _metricsSoftwareState;
+        private final Optional<HostQuery.Field> _sortBy;
+        private final int _offset;
+
+        CursorKey(final HostQuery query, final int offset) {
+            _organization = query.getOrganization().getId();
+            _partialHostname = query.getPartialHostname();
+            _cluster = query.getCluster();
+            _metricsSoftwareState = query.getMetricsSoftwareState();
+            _sortBy = query.getSortBy();
+            _offset = offset;
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final CursorKey that = (CursorKey) o;
+            return _offset == that._offset
+                    && Objects.equals(_organization, that._organization)
+                    && Objects.equals(_partialHostname, that._partialHostname)
+                    && Objects.equals(_cluster, that._cluster)
+                    && Objects.equals(_metricsSoftwareState, that._metricsSoftwareState)
+                    && Objects.equals(_sortBy, that._sortBy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_organization, _partialHostname, _cluster, _metricsSoftwareState, _sortBy, _offset);
+        }
+    }
 }
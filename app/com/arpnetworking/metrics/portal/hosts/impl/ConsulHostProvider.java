@@ -28,15 +28,20 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.typesafe.config.Config;
 import models.internal.MetricsSoftwareState;
+import models.internal.Organization;
 import models.internal.impl.DefaultHost;
 import play.libs.ws.WSClient;
 
 import java.net.URI;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
- * Host provider that uses the Consul API to get host data.
+ * Host provider that uses the Consul API to get host data. Each listing writes
+ * only the hosts added or changed since the previous listing, and deletes the
+ * hosts Consul no longer reports, within the limits of {@link HostSynchronizer}
+ * (configured by <code>maxDeleteFraction</code>).
  *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
@@ -56,7 +61,7 @@ public final class ConsulHostProvider extends AbstractActor {
             final OrganizationRepository organizationRepository,
             final WSClient wsClient,
             @Assisted final Config configuration) {
-        _hostRepository = hostRepository;
+        _hostSynchronizer = new HostSynchronizer(hostRepository, HostSynchronizer.getMaxDeleteFraction(configuration));
         _organizationRepository = organizationRepository;
         _targetOrganizationId = UUID.fromString(configuration.getString("targetOrganizationId"));
         getContext().system().scheduler().schedule(
@@ -81,19 +86,29 @@ public final class ConsulHostProvider extends AbstractActor {
         return receiveBuilder()
                 .matchEquals(TICK, tick -> {
                     LOGGER.info()
-                            .setMessage("Searching for added/updated hosts")
+                            .setMessage("Searching for added/updated/deleted hosts")
                             .addData("actor", self())
                             .log();
                     PatternsCS.pipe(_client.getHostList(), context().dispatcher()).to(self(), self());
                 })
                 .matchUnchecked(List.class, (List<ConsulClient.Host> hostList) -> {
-                    for (final ConsulClient.Host host : hostList) {
-                        final models.internal.Host dh = new DefaultHost.Builder()
-                                .setHostname(host.getNode())
-                                .setMetricsSoftwareState(MetricsSoftwareState.UNKNOWN)
-                                .build();
-                        _hostRepository.addOrUpdateHost(dh, _organizationRepository.get(_targetOrganizationId));
-                    }
+                    final List<models.internal.Host> hosts = hostList.stream()
+                            .map(host -> new DefaultHost.Builder()
+                                    .setHostname(host.getNode())
+                                    .setMetricsSoftwareState(MetricsSoftwareState.UNKNOWN)
+                                    .build())
+                            .collect(Collectors.toList());
+                    final Organization organization = _organizationRepository.get(_targetOrganizationId);
+                    _hostSynchronizer.beginSnapshot(organization);
+                    final int hostsWritten = _hostSynchronizer.update(organization, hosts);
+                    final int hostsDeleted = _hostSynchronizer.endSnapshot(organization);
+                    LOGGER.info()
+                            .setMessage("Completed search for hosts")
+                            .addData("actor", self())
+                            .addData("total", hosts.size())
+                            .addData("written", hostsWritten)
+                            .addData("deleted", hostsDeleted)
+                            .log();
                 })
                 .match(Status.Failure.class, failure -> {
                     LOGGER.warn()
@@ -105,7 +120,7 @@ public final class ConsulHostProvider extends AbstractActor {
                 .build();
     }
 
-    private final HostRepository _hostRepository;
+    private final HostSynchronizer _hostSynchronizer;
     private final OrganizationRepository _organizationRepository;
     private final UUID _targetOrganizationId;
     private final ConsulClient _client;
@@ -19,6 +19,8 @@ import com.arpnetworking.metrics.portal.hosts.HostRepository;
 import com.arpnetworking.play.configuration.ConfigurationHelper;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.typesafe.config.Config;
@@ -39,15 +41,21 @@ import models.internal.impl.DefaultQueryResult;
 import play.Environment;
 import play.db.ebean.EbeanDynamicEvolutions;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import javax.persistence.PersistenceException;
 
 /**
  * Implementation of <code>HostRepository</code> using SQL database.
@@ -136,6 +144,42 @@ public class DatabaseHostRepository implements HostRepository {
         }
     }
 
+    @Override
+    public void addOrUpdateHosts(final Collection<Host> hosts, final Organization organization) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Adding or updating hosts")
+                .addData("hosts", hosts.size())
+                .addData("organization", organization)
+                .log();
+        if (hosts.isEmpty()) {
+            return;
+        }
+
+        // A hostname may only be written once per statement; the last occurrence wins as it would with addOrUpdateHost.
+        final Map<String, Host> uniqueHosts = Maps.newLinkedHashMap();
+        for (final Host host : hosts) {
+            uniqueHosts.put(host.getHostname(), host);
+        }
+
+        final Transaction transaction = Ebean.beginTransaction();
+        try {
+            final long organizationId = models.ebean.Organization.findByOrganization(organization).getId();
+            for (final List<Host> batch : Iterables.partition(uniqueHosts.values(), HOST_BATCH_SIZE)) {
+                _hostQueryGenerator.upsertHosts(batch, organizationId, transaction);
+            }
+            transaction.commit();
+
+            LOGGER.info()
+                    .setMessage("Upserted hosts")
+                    .addData("hosts", uniqueHosts.size())
+                    .addData("organization", organization)
+                    .log();
+        } finally {
+            transaction.end();
+        }
+    }
+
     @Override
     public void deleteHost(final String hostname, final Organization organization) {
         assertIsOpen();
@@ -249,6 +293,7 @@ public class DatabaseHostRepository implements HostRepository {
     private final HostQueryGenerator _hostQueryGenerator;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseHostRepository.class);
+    private static final int HOST_BATCH_SIZE = 500;
 
     /**
      * Inteface for database query generation.
@@ -270,6 +315,15 @@ public class DatabaseHostRepository implements HostRepository {
          * @param host The <code>Host</code> model instance to save.
          */
         void saveHost(models.ebean.Host host);
+
+        /**
+         * Insert or update a batch of hosts. This needs to be executed in a transaction.
+         *
+         * @param hosts The hosts to save, with at most one host per hostname.
+         * @param organizationId The id (primary key) of the organization owning the hosts.
+         * @param transaction The transaction to write in.
+         */
+        void upsertHosts(Collection<Host> hosts, long organizationId, Transaction transaction);
     }
 
     /**
@@ -307,6 +361,55 @@ public class DatabaseHostRepository implements HostRepository {
         public void saveHost(final models.ebean.Host host) {
             Ebean.save(host);
         }
+
+        @Override
+        public void upsertHosts(final Collection<Host> hosts, final long organizationId, final Transaction transaction) {
+            // Without a portable upsert, update everything in one batch and then insert whatever was missing.
+            final Timestamp now = new Timestamp(System.currentTimeMillis());
+            final List<Host> missing = Lists.newArrayList();
+            final Connection connection = transaction.getConnection();
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE portal.hosts SET cluster = ?, metrics_software_state = ?, version = version + 1, updated_at = ? "
+                            + "WHERE organization = ? AND name = ?")) {
+                for (final Host host : hosts) {
+                    update.setString(1, host.getCluster().orElse(null));
+                    update.setString(2, host.getMetricsSoftwareState().toString());
+                    update.setTimestamp(3, now);
+                    update.setLong(4, organizationId);
+                    update.setString(5, host.getHostname());
+                    update.addBatch();
+                }
+                final int[] updated = update.executeBatch();
+                int i = 0;
+                for (final Host host : hosts) {
+                    if (updated[i++] == 0) {
+                        missing.add(host);
+                    }
+                }
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to update hosts", e);
+            }
+
+            if (missing.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO portal.hosts (name, cluster, metrics_software_state, organization, version, created_at, updated_at) "
+                            + "VALUES (?, ?, ?, ?, 1, ?, ?)")) {
+                for (final Host host : missing) {
+                    insert.setString(1, host.getHostname());
+                    insert.setString(2, host.getCluster().orElse(null));
+                    insert.setString(3, host.getMetricsSoftwareState().toString());
+                    insert.setLong(4, organizationId);
+                    insert.setTimestamp(5, now);
+                    insert.setTimestamp(6, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to insert hosts", e);
+            }
+        }
     }
 
     /**
@@ -395,13 +498,7 @@ public class DatabaseHostRepository implements HostRepository {
 
         @Override
         public void saveHost(final models.ebean.Host host) {
-            final String hostname = host.getName();
-            final String labels = hostname.replace('.', ' ');
-            final String words = labels.replace('-', ' ');
-            final String alnum = tokenize(labels)
-                    .stream()
-                    .reduce((s1, s2) -> s1 + " " + s2)
-                    .orElse("");
+            final List<String> terms = nameIndexTerms(host.getName());
 
             Ebean.save(host);
             Ebean.createSqlUpdate(
@@ -412,13 +509,58 @@ public class DatabaseHostRepository implements HostRepository {
                             + "|| setweight(to_tsvector('simple', coalesce(:alnum,'')), 'D')"
                             + "WHERE id = :id")
                     .setParameter("id", host.getId())
-                    .setParameter("hostname", hostname)
-                    .setParameter("labels", labels)
-                    .setParameter("words", words)
-                    .setParameter("alnum", alnum)
+                    .setParameter("hostname", terms.get(0))
+                    .setParameter("labels", terms.get(1))
+                    .setParameter("words", terms.get(2))
+                    .setParameter("alnum", terms.get(3))
                     .execute();
         }
 
+        @Override
+        public void upsertHosts(final Collection<Host> hosts, final long organizationId, final Transaction transaction) {
+            // One multi-row statement per batch which also computes the name index, instead of a lookup, a save and
+            // an index update per host.
+            final String row = "(?, ?, ?, ?, "
+                    + "setweight(to_tsvector('simple', coalesce(?,'')), 'A')"
+                    + "|| setweight(to_tsvector('simple', coalesce(?,'')), 'B')"
+                    + "|| setweight(to_tsvector('simple', coalesce(?,'')), 'C')"
+                    + "|| setweight(to_tsvector('simple', coalesce(?,'')), 'D'))";
+            final String sql = "INSERT INTO portal.hosts (name, cluster, metrics_software_state, organization, name_idx_col) "
+                    + "VALUES " + String.join(", ", Collections.nCopies(hosts.size(), row)) + " "
+                    + "ON CONFLICT (organization, name) DO UPDATE SET "
+                    + "cluster = EXCLUDED.cluster, "
+                    + "metrics_software_state = EXCLUDED.metrics_software_state, "
+                    + "name_idx_col = EXCLUDED.name_idx_col, "
+                    + "version = hosts.version + 1, "
+                    + "updated_at = now()";
+            try (PreparedStatement upsert = transaction.getConnection().prepareStatement(sql)) {
+                int index = 1;
+                for (final Host host : hosts) {
+                    upsert.setString(index++, host.getHostname());
+                    upsert.setString(index++, host.getCluster().orElse(null));
+                    upsert.setString(index++, host.getMetricsSoftwareState().toString());
+                    upsert.setLong(index++, organizationId);
+                    for (final String term : nameIndexTerms(host.getHostname())) {
+                        upsert.setString(index++, term);
+                    }
+                }
+                upsert.executeUpdate();
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to upsert hosts", e);
+            }
+        }
+
+        private static List<String> nameIndexTerms(final String hostname) {
+            // The hostname, its labels, its words and its alphanumeric tokens; weighted A through D respectively
+            final String labels = hostname.replace('.', ' ');
+            final String words = labels.replace('-', ' ');
+            final String alnum = tokenize(labels)
+                    .stream()
+                    .reduce((s1, s2) -> s1 + " " + s2)
+                    .orElse("");
+            return Arrays.asList(hostname, labels, words, alnum);
+        }
+
         // NOTE: Package private for testing
         /* package private */ static List<String> tokenize(final String word) {
             final List<String> tokens = new ArrayList<>();
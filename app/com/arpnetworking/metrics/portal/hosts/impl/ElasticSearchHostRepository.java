@@ -24,6 +24,7 @@ import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.typesafe.config.Config;
@@ -37,6 +38,8 @@ import models.internal.impl.DefaultHostQuery;
 import models.internal.impl.DefaultQueryResult;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
 import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.count.CountResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
@@ -59,6 +62,7 @@ import org.elasticsearch.search.sort.SortOrder;
 import play.Environment;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -176,21 +180,7 @@ public final class ElasticSearchHostRepository implements HostRepository {
                 .addData("organization", organization)
                 .log();
 
-        final String hostJson;
-        try {
-            hostJson = OBJECT_MAPPER.writeValueAsString(host);
-        } catch (final JsonProcessingException e) {
-            throw new RuntimeException(String.format("Unable to serialize host; host=%s", host), e);
-        }
-
-        final IndexRequest indexRequest = new IndexRequest(INDEX, TYPE, host.getHostname())
-                .source(hostJson);
-
-        final UpdateRequest updateRequest = new UpdateRequest(INDEX, TYPE, host.getHostname())
-                .doc(hostJson)
-                .upsert(indexRequest);
-
-        final UpdateResponse response = _client.update(updateRequest).actionGet();
+        final UpdateResponse response = _client.update(createUpsertRequest(host)).actionGet();
         LOGGER.info()
                 .setMessage("Upserted host")
                 .addData("host", host)
@@ -199,6 +189,37 @@ public final class ElasticSearchHostRepository implements HostRepository {
                 .log();
     }
 
+    @Override
+    public void addOrUpdateHosts(final Collection<Host> hosts, final Organization organization) {
+        //TODO(barp): Support organizational separation in ElasticSearch [?]
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Adding or updating hosts")
+                .addData("hosts", hosts.size())
+                .addData("organization", organization)
+                .log();
+        if (hosts.isEmpty()) {
+            return;
+        }
+
+        // Bulk requests are applied in order, so the last occurrence of a hostname wins as with addOrUpdateHost
+        for (final List<Host> batch : Iterables.partition(hosts, BULK_SIZE)) {
+            final BulkRequestBuilder bulkRequest = _client.prepareBulk();
+            for (final Host host : batch) {
+                bulkRequest.add(createUpsertRequest(host));
+            }
+            final BulkResponse response = bulkRequest.execute().actionGet();
+            if (response.hasFailures()) {
+                throw new RuntimeException(String.format("Unable to upsert hosts; failures=%s", response.buildFailureMessage()));
+            }
+        }
+        LOGGER.info()
+                .setMessage("Upserted hosts")
+                .addData("hosts", hosts.size())
+                .addData("organization", organization)
+                .log();
+    }
+
     @Override
     public void deleteHost(final String hostname, final Organization organization) {
         //TODO(barp): Support organizational separation in ElasticSearch [?]
@@ -330,6 +351,22 @@ public final class ElasticSearchHostRepository implements HostRepository {
         return toLogValue().toString();
     }
 
+    private UpdateRequest createUpsertRequest(final Host host) {
+        final String hostJson;
+        try {
+            hostJson = OBJECT_MAPPER.writeValueAsString(host);
+        } catch (final JsonProcessingException e) {
+            throw new RuntimeException(String.format("Unable to serialize host; host=%s", host), e);
+        }
+
+        final IndexRequest indexRequest = new IndexRequest(INDEX, TYPE, host.getHostname())
+                .source(hostJson);
+
+        return new UpdateRequest(INDEX, TYPE, host.getHostname())
+                .doc(hostJson)
+                .upsert(indexRequest);
+    }
+
     private String mapField(final HostQuery.Field field) {
         switch (field) {
             case HOSTNAME:
@@ -410,6 +447,7 @@ public final class ElasticSearchHostRepository implements HostRepository {
     private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getInstance();
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchHostRepository.class);
     private static final int MAX_EXPANSIONS = 10000;
+    private static final int BULK_SIZE = 1000;
 }
 
 
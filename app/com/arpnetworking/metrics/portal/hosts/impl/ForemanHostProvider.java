@@ -16,7 +16,6 @@
 package com.arpnetworking.metrics.portal.hosts.impl;
 
 import akka.actor.AbstractActor;
-import akka.actor.Status;
 import akka.pattern.PatternsCS;
 import com.arpnetworking.metrics.portal.hosts.HostRepository;
 import com.arpnetworking.metrics.portal.organizations.OrganizationRepository;
@@ -28,15 +27,29 @@ import com.google.inject.assistedinject.Assisted;
 import com.typesafe.config.Config;
 import models.internal.Host;
 import models.internal.MetricsSoftwareState;
+import models.internal.Organization;
 import models.internal.impl.DefaultHost;
 import play.libs.ws.WSClient;
 
 import java.net.URI;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
- * Host provider that uses the Foreman API to get host data.
+ * Host provider that uses the Foreman API to get host data. Each search writes
+ * only the hosts added or changed since the previous search, and deletes the
+ * hosts Foreman no longer reports once every page has been read. Pages are
+ * offsets into a listing that can change while it is read, so a search only
+ * counts as complete (and deletes anything) if it saw as many distinct hosts
+ * as the first page's total; see {@link HostSynchronizer} for the further
+ * guards on deletes, configured by <code>maxDeleteFraction</code>.
+ *
+ * The first page of a search gives the total number of hosts, after which the
+ * remaining pages are requested concurrently, at most
+ * <code>maxConcurrentRequests</code> (default 8) at a time, and each page is
+ * written as it arrives. Pages hold <code>perPage</code> (default 250) hosts.
  *
  * @author Brandon Arp (brandon dot arp at smartsheet dot com)
  */
@@ -56,9 +69,13 @@ public final class ForemanHostProvider extends AbstractActor {
             final OrganizationRepository organizationRepository,
             final WSClient wsClient,
             @Assisted final Config configuration) {
-        _hostRepository = hostRepository;
+        _hostSynchronizer = new HostSynchronizer(hostRepository, HostSynchronizer.getMaxDeleteFraction(configuration));
         _organizationRepository = organizationRepository;
         _targetOrganizationId = UUID.fromString(configuration.getString("targetOrganizationId"));
+        _perPage = configuration.hasPath("perPage") ? configuration.getInt("perPage") : DEFAULT_PER_PAGE;
+        _maxConcurrentRequests = configuration.hasPath("maxConcurrentRequests")
+                ? configuration.getInt("maxConcurrentRequests")
+                : DEFAULT_MAX_CONCURRENT_REQUESTS;
         getContext().system().scheduler().schedule(
                 ConfigurationHelper.getFiniteDuration(configuration, "initialDelay"),
                 ConfigurationHelper.getFiniteDuration(configuration, "interval"),
@@ -79,47 +96,202 @@ public final class ForemanHostProvider extends AbstractActor {
     public Receive createReceive() {
         return receiveBuilder()
                 .matchEquals(TICK, m -> {
+                    if (_syncInProgress) {
+                        LOGGER.info()
+                                .setMessage("Skipping search for hosts; previous search still in progress")
+                                .addData("actor", self())
+                                .log();
+                        return;
+                    }
                     LOGGER.info()
-                            .setMessage("Searching for added/updated hosts")
+                            .setMessage("Searching for added/updated/deleted hosts")
                             .addData("actor", self())
                             .log();
-                    PatternsCS.pipe(_client.getHostPage(1), context().dispatcher()).to(self(), self());
+                    ++_sync;
+                    _syncInProgress = true;
+                    _syncStart = System.nanoTime();
+                    _hostsWritten = 0;
+                    _syncTotal = 0;
+                    _pagesOutstanding = 0;
+                    _syncPerPage = _perPage;
+                    _nextPage = 1;
+                    _lastPage = 1;
+                    _hostSynchronizer.beginSnapshot(_organizationRepository.get(_targetOrganizationId));
+                    requestPage(_nextPage++);
                 })
-                .match(ForemanClient.HostPageResponse.class, response -> {
-                    final List<ForemanClient.ForemanHost> results = response.getResults();
-                    for (final ForemanClient.ForemanHost host : results) {
-                        final Host dh = new DefaultHost.Builder()
-                                .setHostname(host.getName())
-                                .setMetricsSoftwareState(MetricsSoftwareState.UNKNOWN)
-                                .build();
-                        _hostRepository.addOrUpdateHost(dh, _organizationRepository.get(_targetOrganizationId));
+                .match(HostPage.class, message -> {
+                    if (!isCurrent(message.getSync())) {
+                        return;
+                    }
+                    --_pagesOutstanding;
+                    final ForemanClient.HostPageResponse response = message.getResponse();
+                    if (!write(response)) {
+                        return;
                     }
 
-                    if (response.getTotal() > response.getPage() * response.getPerPage()) {
-                        PatternsCS
-                                .pipe(
-                                        _client.getHostPage(
-                                                response.getPage() + 1,
-                                                response.getPerPage()),
-                                        context().dispatcher())
-                                .to(self(), self());
+                    if (response.getPage() == 1) {
+                        // Size the search by the first page; Foreman may serve fewer hosts per page than requested
+                        if (response.getPerPage() > 0) {
+                            _syncPerPage = response.getPerPage();
+                        }
+                        _syncTotal = response.getTotal();
+                        _lastPage = Math.max(1, (response.getTotal() + _syncPerPage - 1) / _syncPerPage);
+                    }
+                    while (_nextPage <= _lastPage && _pagesOutstanding < _maxConcurrentRequests) {
+                        requestPage(_nextPage++);
+                    }
+                    if (_pagesOutstanding == 0 && _nextPage > _lastPage) {
+                        completeSync();
                     }
                 })
-                .match(Status.Failure.class, failure -> {
+                .match(HostPageFailure.class, message -> {
+                    if (!isCurrent(message.getSync())) {
+                        return;
+                    }
+                    // Without every page the snapshot is incomplete, so nothing can be deleted until the next one
                     LOGGER.warn()
-                            .setMessage("Failure processing Foreman response")
+                            .setMessage("Failure processing Foreman response; abandoning search")
                             .addData("actor", self())
-                            .setThrowable(failure.cause())
+                            .addData("page", message.getPage())
+                            .setThrowable(message.getCause())
                             .log();
+                    _syncInProgress = false;
                 })
                 .build();
     }
 
-    private final HostRepository _hostRepository;
+    private void requestPage(final int page) {
+        final int sync = _sync;
+        ++_pagesOutstanding;
+        PatternsCS.pipe(
+                _client.getHostPage(page, _syncPerPage)
+                        .<Object>thenApply(response -> new HostPage(sync, response))
+                        .exceptionally(failure -> new HostPageFailure(sync, page, failure)),
+                context().dispatcher())
+                .to(self(), self());
+    }
+
+    private boolean isCurrent(final int sync) {
+        // Pages still in flight when a search is abandoned must not be counted towards the next search
+        return _syncInProgress && sync == _sync;
+    }
+
+    private boolean write(final ForemanClient.HostPageResponse response) {
+        final List<Host> hosts = response.getResults()
+                .stream()
+                .map(host -> new DefaultHost.Builder()
+                        .setHostname(host.getName())
+                        .setMetricsSoftwareState(MetricsSoftwareState.UNKNOWN)
+                        .build())
+                .collect(Collectors.toList());
+        try {
+            _hostsWritten += _hostSynchronizer.update(_organizationRepository.get(_targetOrganizationId), hosts);
+            return true;
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            LOGGER.warn()
+                    .setMessage("Failed to write hosts; abandoning search")
+                    .addData("actor", self())
+                    .addData("page", response.getPage())
+                    .setThrowable(e)
+                    .log();
+            _syncInProgress = false;
+            return false;
+        }
+    }
+
+    private void completeSync() {
+        final Organization organization = _organizationRepository.get(_targetOrganizationId);
+        final int hostsSeen = _hostSynchronizer.getSnapshotSize(organization);
+        final int hostsDeleted;
+        if (hostsSeen == _syncTotal) {
+            hostsDeleted = _hostSynchronizer.endSnapshot(organization);
+        } else {
+            // Hosts were added or removed while paging, shifting others between pages; some may have been missed
+            LOGGER.info()
+                    .setMessage("Hosts seen do not match total; not deleting hosts this search")
+                    .addData("actor", self())
+                    .addData("total", _syncTotal)
+                    .addData("seen", hostsSeen)
+                    .log();
+            hostsDeleted = 0;
+        }
+        _syncInProgress = false;
+        LOGGER.info()
+                .setMessage("Completed search for hosts")
+                .addData("actor", self())
+                .addData("total", _syncTotal)
+                .addData("seen", hostsSeen)
+                .addData("pages", _lastPage)
+                .addData("written", _hostsWritten)
+                .addData("deleted", hostsDeleted)
+                .addData("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _syncStart))
+                .log();
+    }
+
+    private final HostSynchronizer _hostSynchronizer;
     private final OrganizationRepository _organizationRepository;
     private final UUID _targetOrganizationId;
     private final ForemanClient _client;
+    private final int _perPage;
+    private final int _maxConcurrentRequests;
+    private int _sync = 0;
+    private boolean _syncInProgress = false;
+    private long _syncStart;
+    private int _syncPerPage;
+    private int _nextPage;
+    private int _lastPage;
+    private int _pagesOutstanding;
+    private int _hostsWritten;
+    private int _syncTotal;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ForemanHostProvider.class);
     private static final String TICK = "tick";
+    private static final int DEFAULT_PER_PAGE = 250;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+
+    private static final class HostPage {
+
+        HostPage(final int sync, final ForemanClient.HostPageResponse response) {
+            _sync = sync;
+            _response = response;
+        }
+
+        int getSync() {
+            return _sync;
+        }
+
+        ForemanClient.HostPageResponse getResponse() {
+            return _response;
+        }
+
+        private final int _sync;
+        private final ForemanClient.HostPageResponse _response;
+    }
+
+    private static final class HostPageFailure {
+
+        HostPageFailure(final int sync, final int page, final Throwable cause) {
+            _sync = sync;
+            _page = page;
+            _cause = cause;
+        }
+
+        int getSync() {
+            return _sync;
+        }
+
+        int getPage() {
+            return _page;
+        }
+
+        Throwable getCause() {
+            return _cause;
+        }
+
+        private final int _sync;
+        private final int _page;
+        private final Throwable _cause;
+    }
 }
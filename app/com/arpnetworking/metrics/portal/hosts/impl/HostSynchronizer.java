@@ -0,0 +1,224 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.hosts.impl;
+
+import com.arpnetworking.metrics.portal.hosts.HostRepository;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.typesafe.config.Config;
+import models.internal.Host;
+import models.internal.Organization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Writes snapshots of a provider's hosts to a <code>HostRepository</code>,
+ * keeping a fingerprint of the cluster and metrics software state of each host
+ * it wrote, per organization. Hosts whose fingerprint is unchanged are not
+ * written again, and hosts missing from complete snapshots are deleted, so the
+ * repository sees only the provider's actual churn.
+ *
+ * Deletes are guarded against providers that under-report: a host is only
+ * deleted once it is missing from two consecutive snapshots, so a host that a
+ * paging provider misses once (e.g. because the listing shifted between page
+ * requests) is not deleted and re-added; and a snapshot that would delete more
+ * than a configured fraction of the hosts deletes none of them, so an empty or
+ * truncated listing can't wipe out the organization.
+ *
+ * Only hosts previously written by the same synchronizer are ever deleted;
+ * hosts written into the same organization by other providers are never
+ * touched. A synchronizer starts without fingerprints, so its first snapshot
+ * writes every host.
+ *
+ * This class is not thread safe; it is meant to be confined to a provider
+ * actor.
+ *
+ * @author agent (agent at local)
+ */
+/* package private */ final class HostSynchronizer {
+
+    /**
+     * Package private constructor.
+     *
+     * @param hostRepository The repository to write hosts to.
+     * @param maxDeleteFraction The largest fraction of its hosts that one snapshot may delete.
+     */
+    /* package private */ HostSynchronizer(final HostRepository hostRepository, final double maxDeleteFraction) {
+        _hostRepository = hostRepository;
+        _maxDeleteFraction = maxDeleteFraction;
+    }
+
+    /**
+     * Read the largest fraction of hosts that one snapshot may delete from a
+     * host provider's configuration.
+     *
+     * @param configuration The host provider configuration.
+     * @return The value of <code>maxDeleteFraction</code>, if set, or the default.
+     */
+    /* package private */ static double getMaxDeleteFraction(final Config configuration) {
+        return configuration.hasPath("maxDeleteFraction")
+                ? configuration.getDouble("maxDeleteFraction")
+                : DEFAULT_MAX_DELETE_FRACTION;
+    }
+
+    /**
+     * Start a new snapshot of an organization's hosts, abandoning any snapshot
+     * in progress.
+     *
+     * @param organization The organization.
+     */
+    public void beginSnapshot(final Organization organization) {
+        getFingerprints(organization)._seen.clear();
+    }
+
+    /**
+     * Add hosts to the current snapshot, writing those which were added or
+     * changed since they were last written. If the write fails the hosts are
+     * forgotten, so that the next snapshot writes them again.
+     *
+     * @param organization The organization.
+     * @param hosts The hosts reported by the provider.
+     * @return The number of hosts written.
+     */
+    public int update(final Organization organization, final Collection<Host> hosts) {
+        final OrganizationFingerprints fingerprints = getFingerprints(organization);
+        final List<Host> changed = Lists.newArrayList();
+        for (final Host host : hosts) {
+            fingerprints._seen.add(host.getHostname());
+            final long fingerprint = fingerprint(host);
+            final Long previous = fingerprints._byHostname.put(host.getHostname(), fingerprint);
+            if (previous == null || previous != fingerprint) {
+                changed.add(host);
+            }
+        }
+        if (changed.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            _hostRepository.addOrUpdateHosts(changed, organization);
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            fingerprints._byHostname.keySet().removeAll(changed.stream().map(Host::getHostname).collect(Collectors.toList()));
+            throw e;
+        }
+        return changed.size();
+    }
+
+    /**
+     * The number of distinct hosts in the current snapshot so far.
+     *
+     * @param organization The organization.
+     * @return The number of hosts.
+     */
+    public int getSnapshotSize(final Organization organization) {
+        return getFingerprints(organization)._seen.size();
+    }
+
+    /**
+     * Complete the current snapshot, deleting the hosts that were written
+     * before but are missing from both it and the previous complete snapshot.
+     * Only call this for a complete snapshot; hosts missing from a partial one
+     * would count as removed. Hosts which fail to delete are retried by the
+     * next snapshot.
+     *
+     * @param organization The organization.
+     * @return The number of hosts deleted.
+     */
+    public int endSnapshot(final Organization organization) {
+        final OrganizationFingerprints fingerprints = getFingerprints(organization);
+        final Set<String> missing = fingerprints._byHostname.keySet()
+                .stream()
+                .filter(hostname -> !fingerprints._seen.contains(hostname))
+                .collect(Collectors.toSet());
+        final List<String> removed = missing.stream()
+                .filter(fingerprints._missing::contains)
+                .collect(Collectors.toList());
+        fingerprints._missing.clear();
+        fingerprints._missing.addAll(missing);
+        fingerprints._seen.clear();
+
+        if (removed.size() > _maxDeleteFraction * fingerprints._byHostname.size()) {
+            LOGGER.warn()
+                    .setMessage("Refusing to delete hosts; too many are missing from the snapshot")
+                    .addData("organization", organization)
+                    .addData("missing", removed.size())
+                    .addData("hosts", fingerprints._byHostname.size())
+                    .addData("maxDeleteFraction", _maxDeleteFraction)
+                    .log();
+            return 0;
+        }
+
+        int deleted = 0;
+        for (final String hostname : removed) {
+            try {
+                _hostRepository.deleteHost(hostname, organization);
+                fingerprints._byHostname.remove(hostname);
+                fingerprints._missing.remove(hostname);
+                ++deleted;
+                // CHECKSTYLE.OFF: IllegalCatchCheck
+            } catch (final RuntimeException e) {
+                // CHECKSTYLE.ON: IllegalCatchCheck
+                LOGGER.warn()
+                        .setMessage("Failed to delete host")
+                        .addData("hostname", hostname)
+                        .addData("organization", organization)
+                        .setThrowable(e)
+                        .log();
+            }
+        }
+        return deleted;
+    }
+
+    private OrganizationFingerprints getFingerprints(final Organization organization) {
+        return _organizations.computeIfAbsent(organization.getId(), k -> new OrganizationFingerprints());
+    }
+
+    private static long fingerprint(final Host host) {
+        return HASH_FUNCTION.newHasher()
+                .putBoolean(host.getCluster().isPresent())
+                .putString(host.getCluster().orElse(""), StandardCharsets.UTF_8)
+                .putString(host.getMetricsSoftwareState().name(), StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+    }
+
+    private final HostRepository _hostRepository;
+    private final double _maxDeleteFraction;
+    private final Map<UUID, OrganizationFingerprints> _organizations = Maps.newHashMap();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostSynchronizer.class);
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final double DEFAULT_MAX_DELETE_FRACTION = 0.5;
+
+    private static final class OrganizationFingerprints {
+        private final Map<String, Long> _byHostname = Maps.newHashMap();
+        private final Set<String> _seen = Sets.newHashSet();
+        private final Set<String> _missing = Sets.newHashSet();
+    }
+}
@@ -20,10 +20,13 @@ import com.arpnetworking.metrics.portal.hosts.HostRepository;
 import com.arpnetworking.steno.LogValueMapFactory;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import models.internal.Host;
 import models.internal.HostQuery;
 import models.internal.MetricsSoftwareState;
@@ -32,19 +35,36 @@ import models.internal.QueryResult;
 import models.internal.impl.DefaultHostQuery;
 import models.internal.impl.DefaultQueryResult;
 
-import java.io.Serializable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
- * Implementation of <code>HostRepository</code> using a <code>Map</code>. This
+ * Implementation of <code>HostRepository</code> using in-memory indexes. This
  * is <b>not</b> intended for production usage.
  *
+ * Each organization's hosts are indexed by lowercase name (sorted, for prefix
+ * lookups and name ordering), by name trigram (for substring matching), by
+ * cluster and by metrics software state. Every index is kept in name order, so
+ * a query walks its most selective index once, counting matches and collecting
+ * its page as it goes, without sorting.
+ *
  * @author Ville Koskela (ville dot koskela at inscopemetrics dot com)
  */
 public final class LocalHostRepository implements HostRepository {
@@ -77,8 +97,18 @@ public final class LocalHostRepository implements HostRepository {
                 .addData("host", host)
                 .addData("organization", organization)
                 .log();
-        final Map<String, Host> orgMap = getOrganizationMap(organization);
-        orgMap.put(host.getHostname(), host);
+        getOrganizationHosts(organization).put(host);
+    }
+
+    @Override
+    public void addOrUpdateHosts(final Collection<Host> hosts, final Organization organization) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Adding or updating hosts")
+                .addData("hosts", hosts.size())
+                .addData("organization", organization)
+                .log();
+        getOrganizationHosts(organization).putAll(hosts);
     }
 
     @Override
@@ -89,8 +119,7 @@ public final class LocalHostRepository implements HostRepository {
                 .addData("hostname", hostname)
                 .addData("organization", organization)
                 .log();
-        final Map<String, Host> orgMap = getOrganizationMap(organization);
-        orgMap.remove(hostname);
+        getOrganizationHosts(organization).remove(hostname);
     }
 
     @Override
@@ -110,51 +139,7 @@ public final class LocalHostRepository implements HostRepository {
                 .setMessage("Querying")
                 .addData("query", query)
                 .log();
-        final Organization organization = query.getOrganization();
-
-        // Find all matching hosts
-        final List<Host> hosts = Lists.newLinkedList();
-        for (final Map.Entry<String, Host> entry : getOrganizationMap(organization).entrySet()) {
-            boolean matches = true;
-            if (query.getPartialHostname().isPresent()) {
-                final String queryName = query.getPartialHostname().get().toLowerCase(Locale.getDefault());
-                final String hostName = entry.getKey().toLowerCase(Locale.getDefault());
-                if (!hostName.equals(queryName) && !hostName.startsWith(queryName) && !hostName.contains(queryName)) {
-                    matches = false;
-                }
-            }
-            if (query.getMetricsSoftwareState().isPresent()) {
-                final MetricsSoftwareState metricsSoftwareState = entry.getValue().getMetricsSoftwareState();
-                if (!query.getMetricsSoftwareState().get().equals(metricsSoftwareState)) {
-                    matches = false;
-                }
-            }
-            if (query.getCluster().isPresent() && entry.getValue().getCluster().isPresent()) {
-                final String cluster = entry.getValue().getCluster().get();
-                if (!query.getCluster().get().equals(cluster)) {
-                    matches = false;
-                }
-            }
-            if (matches) {
-                hosts.add(entry.getValue());
-            }
-        }
-
-        // Apply sorting
-        Collections.sort(hosts, new HostComparator(query));
-
-        // Apply pagination
-        final long total = hosts.size();
-        if (query.getOffset().isPresent()) {
-            for (long i = 0; i < query.getOffset().get() && !hosts.isEmpty(); ++i) {
-                hosts.remove(0);
-            }
-        }
-        while (hosts.size() > query.getLimit() && !hosts.isEmpty()) {
-            hosts.remove(hosts.size() - 1);
-        }
-
-        return new DefaultQueryResult<>(hosts, total);
+        return getOrganizationHosts(query.getOrganization()).query(query);
     }
 
     @Override
@@ -164,7 +149,7 @@ public final class LocalHostRepository implements HostRepository {
                 .setMessage("Getting host count")
                 .addData("organization", organization)
                 .log();
-        return getOrganizationMap(organization).size();
+        return getOrganizationHosts(organization).size();
     }
 
     @Override
@@ -175,13 +160,7 @@ public final class LocalHostRepository implements HostRepository {
                 .addData("organization", organization)
                 .addData("state", metricsSoftwareState)
                 .log();
-        long count = 0;
-        for (final Host host : getOrganizationMap(organization).values()) {
-            if (!metricsSoftwareState.equals(host.getMetricsSoftwareState())) {
-                ++count;
-            }
-        }
-        return count;
+        return getOrganizationHosts(organization).size(metricsSoftwareState);
     }
 
     /**
@@ -193,7 +172,7 @@ public final class LocalHostRepository implements HostRepository {
     public Object toLogValue() {
         return LogValueMapFactory.builder(this)
                 .put("isOpen", _isOpen)
-                .put("temporaryStorage", _temporaryStorage)
+                .put("organizations", _temporaryStorage.size())
                 .build();
     }
 
@@ -212,68 +191,237 @@ public final class LocalHostRepository implements HostRepository {
         }
     }
 
-    private Map<String, Host> getOrganizationMap(final Organization organization) {
-        return _temporaryStorage.computeIfAbsent(organization.getId(), v -> Maps.newConcurrentMap());
+    private OrganizationHosts getOrganizationHosts(final Organization organization) {
+        return _temporaryStorage.computeIfAbsent(organization.getId(), v -> new OrganizationHosts());
     }
 
     private final AtomicBoolean _isOpen = new AtomicBoolean(false);
-    private final Map<UUID, Map<String, Host>> _temporaryStorage = Maps.newConcurrentMap();
+    private final Map<UUID, OrganizationHosts> _temporaryStorage = Maps.newConcurrentMap();
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LocalHostRepository.class);
+    private static final int TRIGRAM_LENGTH = 3;
 
-    @SuppressFBWarnings("SE_BAD_FIELD")
-    private static class HostComparator implements Comparator<Host>, Serializable {
+    /**
+     * The hosts of one organization and their indexes.
+     */
+    private static final class OrganizationHosts {
 
-        HostComparator(final HostQuery query) {
-            _query = query;
+        void put(final Host host) {
+            final IndexedHost indexed = new IndexedHost(host);
+            _lock.writeLock().lock();
+            try {
+                putLocked(indexed);
+            } finally {
+                _lock.writeLock().unlock();
+            }
         }
 
-        @Override
-        public int compare(final Host h1, final Host h2) {
-            if (_query.getSortBy().isPresent()) {
-                if (HostQuery.Field.HOSTNAME.equals(_query.getSortBy().get())) {
-                    return String.CASE_INSENSITIVE_ORDER.compare(h1.getHostname(), h2.getHostname());
-                } else if (HostQuery.Field.METRICS_SOFTWARE_STATE.equals(_query.getSortBy().get())) {
-                    return h1.getMetricsSoftwareState().compareTo(h2.getMetricsSoftwareState());
-                } else {
+        void putAll(final Collection<Host> hosts) {
+            // Compute the index keys before taking the lock so that readers are only blocked for the index updates.
+            final List<IndexedHost> indexed = hosts.stream().map(IndexedHost::new).collect(Collectors.toList());
+            _lock.writeLock().lock();
+            try {
+                indexed.forEach(this::putLocked);
+            } finally {
+                _lock.writeLock().unlock();
+            }
+        }
+
+        void remove(final String hostname) {
+            _lock.writeLock().lock();
+            try {
+                removeLocked(hostname);
+            } finally {
+                _lock.writeLock().unlock();
+            }
+        }
+
+        long size() {
+            _lock.readLock().lock();
+            try {
+                return _byHostname.size();
+            } finally {
+                _lock.readLock().unlock();
+            }
+        }
+
+        long size(final MetricsSoftwareState state) {
+            _lock.readLock().lock();
+            try {
+                return _byState.getOrDefault(state, Collections.emptyNavigableSet()).size();
+            } finally {
+                _lock.readLock().unlock();
+            }
+        }
+
+        QueryResult<Host> query(final HostQuery query) {
+            final Optional<String> partialName = query.getPartialHostname()
+                    .map(name -> name.toLowerCase(Locale.getDefault()))
+                    .filter(name -> !name.isEmpty());
+            final boolean unfiltered = !partialName.isPresent()
+                    && !query.getCluster().isPresent()
+                    && !query.getMetricsSoftwareState().isPresent();
+            final Predicate<IndexedHost> matches = host ->
+                    partialName.map(host._lowerName::contains).orElse(true)
+                            && query.getCluster().map(cluster -> host._cluster.map(cluster::equals).orElse(false)).orElse(true)
+                            && query.getMetricsSoftwareState().map(state -> state == host._state).orElse(true);
+            final int offset = query.getOffset().orElse(0);
+            final int limit = query.getLimit();
+
+            _lock.readLock().lock();
+            try {
+                final List<Host> page = Lists.newArrayListWithCapacity(Math.min(limit, _byHostname.size()));
+                long total = 0;
+                for (final IndexedHost host : getCandidatesInOrder(query, partialName)) {
+                    if (matches.test(host)) {
+                        if (total >= offset && page.size() < limit) {
+                            page.add(host._host);
+                        }
+                        ++total;
+                        if (unfiltered && page.size() == limit) {
+                            // Every host matches, so there is no need to walk the rest to count them
+                            total = _byHostname.size();
+                            break;
+                        }
+                    }
+                }
+                return new DefaultQueryResult<>(page, total);
+            } finally {
+                _lock.readLock().unlock();
+            }
+        }
+
+        // Returns a superset of the matching hosts, in the order the query wants them.
+        private Iterable<IndexedHost> getCandidatesInOrder(final HostQuery query, final Optional<String> partialName) {
+            if (query.getSortBy().isPresent()) {
+                if (HostQuery.Field.METRICS_SOFTWARE_STATE.equals(query.getSortBy().get())) {
+                    // The state indexes are each in name order, so walking them in state order sorts by state then name
+                    final Collection<MetricsSoftwareState> states = query.getMetricsSoftwareState()
+                            .map(ImmutableSet::of)
+                            .orElseGet(() -> ImmutableSet.copyOf(MetricsSoftwareState.values()));
+                    return Iterables.concat(states.stream()
+                            .map(state -> _byState.getOrDefault(state, Collections.emptyNavigableSet()))
+                            .collect(Collectors.toList()));
+                } else if (!HostQuery.Field.HOSTNAME.equals(query.getSortBy().get())) {
                     LOGGER.warn()
                             .setMessage("Unsupported sort by field")
-                            .addData("field", _query.getSortBy().get())
+                            .addData("field", query.getSortBy().get())
                             .log();
                 }
-            } else {
-                double s1 = 0.0;
-                double s2 = 0.0;
-                if (_query.getPartialHostname().isPresent()) {
-                    // All comparisons are case-insentive
-                    final String q = _query.getPartialHostname().get().toLowerCase(Locale.getDefault());
-                    final String n1 = h1.getHostname().toLowerCase(Locale.getDefault());
-                    final String n2 = h2.getHostname().toLowerCase(Locale.getDefault());
-
-                    // Compute score
-                    if (n1.equals(q)) {
-                        s1 = 1.0;
-                    } else if (n1.startsWith(q)) {
-                        s1 = (1000000 - _query.getPartialHostname().get().length()) / 1000000.0;
-                    } else if (n1.contains(q)) {
-                        s1 = (1000 - _query.getPartialHostname().get().length()) / 1000000.0;
-                    }
-                    if (n2.equals(q)) {
-                        s2 = 1.0;
-                    } else if (n2.startsWith(q)) {
-                        s2 = (1000000 - _query.getPartialHostname().get().length()) / 1000000.0;
-                    } else if (n2.contains(q)) {
-                        s2 = (1000 - _query.getPartialHostname().get().length()) / 1000000.0;
-                    }
+                return getMostSelectiveIndex(query, partialName);
+            }
+            if (!partialName.isPresent()) {
+                return getMostSelectiveIndex(query, partialName);
+            }
+            // Rank by relevance: an exact match, then prefix matches, then any other substring matches; each in name
+            // order. The exact match sorts first among the prefix matches, because its key ends where theirs continue.
+            final String name = partialName.get();
+            return Iterables.concat(
+                    _byName.subMap(name, true, name + Character.MAX_VALUE, false).values(),
+                    Iterables.filter(getMostSelectiveIndex(query, partialName), host -> !host._lowerName.startsWith(name)));
+        }
+
+        // Returns the smallest index that contains every matching host, in name order.
+        private Collection<IndexedHost> getMostSelectiveIndex(final HostQuery query, final Optional<String> partialName) {
+            Collection<IndexedHost> candidates = _byName.values();
+            if (partialName.isPresent() && partialName.get().length() >= TRIGRAM_LENGTH) {
+                for (final String trigram : trigrams(partialName.get())) {
+                    candidates = smaller(candidates, _byTrigram.getOrDefault(trigram, Collections.emptyNavigableSet()));
                 }
+            }
+            if (query.getCluster().isPresent()) {
+                candidates = smaller(candidates, _byCluster.getOrDefault(query.getCluster().get(), Collections.emptyNavigableSet()));
+            }
+            if (query.getMetricsSoftwareState().isPresent()) {
+                candidates = smaller(
+                        candidates,
+                        _byState.getOrDefault(query.getMetricsSoftwareState().get(), Collections.emptyNavigableSet()));
+            }
+            return candidates;
+        }
+
+        private void putLocked(final IndexedHost indexed) {
+            removeLocked(indexed._hostname);
+            _byHostname.put(indexed._hostname, indexed);
+            _byName.put(indexed._sortKey, indexed);
+            for (final String trigram : indexed._trigrams) {
+                _byTrigram.computeIfAbsent(trigram, NEW_INDEX_SET).add(indexed);
+            }
+            indexed._cluster.ifPresent(cluster -> _byCluster.computeIfAbsent(cluster, NEW_INDEX_SET).add(indexed));
+            _byState.computeIfAbsent(indexed._state, NEW_INDEX_SET).add(indexed);
+        }
+
+        private void removeLocked(final String hostname) {
+            final IndexedHost existing = _byHostname.remove(hostname);
+            if (existing == null) {
+                return;
+            }
+            _byName.remove(existing._sortKey);
+            for (final String trigram : existing._trigrams) {
+                removeFromIndex(_byTrigram, trigram, existing);
+            }
+            existing._cluster.ifPresent(cluster -> removeFromIndex(_byCluster, cluster, existing));
+            removeFromIndex(_byState, existing._state, existing);
+        }
 
-                return Double.compare(s1, s2);
+        private static <K> void removeFromIndex(
+                final Map<K, NavigableSet<IndexedHost>> index,
+                final K key,
+                final IndexedHost host) {
+            final NavigableSet<IndexedHost> hosts = index.get(key);
+            if (hosts != null) {
+                hosts.remove(host);
+                if (hosts.isEmpty()) {
+                    index.remove(key);
+                }
             }
-            return 0;
         }
 
-        private final HostQuery _query;
+        private static Collection<IndexedHost> smaller(final Collection<IndexedHost> a, final Collection<IndexedHost> b) {
+            return b.size() < a.size() ? b : a;
+        }
+
+        private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+        private final Map<String, IndexedHost> _byHostname = Maps.newHashMap();
+        private final NavigableMap<String, IndexedHost> _byName = new TreeMap<>();
+        private final Map<String, NavigableSet<IndexedHost>> _byTrigram = Maps.newHashMap();
+        private final Map<String, NavigableSet<IndexedHost>> _byCluster = Maps.newHashMap();
+        private final Map<MetricsSoftwareState, NavigableSet<IndexedHost>> _byState = new EnumMap<>(MetricsSoftwareState.class);
+
+        private static final Function<Object, NavigableSet<IndexedHost>> NEW_INDEX_SET =
+                key -> Sets.newTreeSet(Comparator.comparing((IndexedHost host) -> host._sortKey));
+    }
+
+    private static Set<String> trigrams(final String lowerName) {
+        final Set<String> trigrams = Sets.newHashSet();
+        for (int i = 0; i + TRIGRAM_LENGTH <= lowerName.length(); ++i) {
+            trigrams.add(lowerName.substring(i, i + TRIGRAM_LENGTH));
+        }
+        return trigrams;
+    }
+
+    /**
+     * A host with its index keys computed once, when it is added.
+     */
+    private static final class IndexedHost {
+
+        IndexedHost(final Host host) {
+            _host = host;
+            _hostname = host.getHostname();
+            _lowerName = _hostname.toLowerCase(Locale.getDefault());
+            // Hosts whose names differ only in case are both kept, in a stable order
+            _sortKey = _lowerName + '\0' + _hostname;
+            _trigrams = ImmutableList.copyOf(trigrams(_lowerName));
+            _cluster = host.getCluster();
+            _state = host.getMetricsSoftwareState();
+        }
 
-        private static final long serialVersionUID = 1L;
+        private final Host _host;
+        private final String _hostname;
+        private final String _lowerName;
+        private final String _sortKey;
+        private final List<String> _trigrams;
+        private final Optional<String> _cluster;
+        private final MetricsSoftwareState _state;
     }
 }
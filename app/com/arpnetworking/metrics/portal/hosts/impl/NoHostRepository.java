@@ -29,6 +29,7 @@ import models.internal.QueryResult;
 import models.internal.impl.DefaultHostQuery;
 import models.internal.impl.DefaultQueryResult;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -71,6 +72,16 @@ public final class NoHostRepository implements HostRepository {
                 .log();
     }
 
+    @Override
+    public void addOrUpdateHosts(final Collection<Host> hosts, final Organization organization) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Adding or updating hosts")
+                .addData("hosts", hosts.size())
+                .addData("organization", organization)
+                .log();
+    }
+
     @Override
     public void deleteHost(final String hostname, final Organization organization) {
         assertIsOpen();
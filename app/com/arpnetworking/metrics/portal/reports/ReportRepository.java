@@ -22,10 +22,15 @@ import models.internal.Organization;
 import models.internal.QueryResult;
 import models.internal.impl.DefaultQueryResult;
 import models.internal.impl.DefaultReportQuery;
+import models.internal.impl.ReportExecutionRecord;
+import models.internal.impl.ReportExecutionRollup;
 import models.internal.reports.Report;
 import models.internal.scheduling.Job;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -62,6 +67,65 @@ public interface ReportRepository extends JobRepository<Report.Result> {
      */
     QueryResult<Report> query(ReportQuery query);
 
+    /**
+     * Delete the records of all report executions, in every organization, that were scheduled before a cutoff.
+     *
+     * Implementations may also use this to do any other upkeep of their execution records, such as preparing storage
+     * for upcoming executions.
+     *
+     * @param cutoff Executions scheduled before this are deleted.
+     * @return The number of executions deleted.
+     */
+    long expireExecutions(Instant cutoff);
+
+    /**
+     * Get the digests of every {@link ResultStore} result that is still referenced by an execution, in every
+     * organization. Anything else in the store can be collected once it is old enough not to belong to an execution
+     * that is still being recorded.
+     *
+     * @return The referenced digests.
+     */
+    Set<String> getResultDigests();
+
+    /**
+     * Get a page of the execution history of a report, most recently scheduled first.
+     *
+     * Pages are keyed by scheduled time rather than by offset: to get the next page, pass the scheduled time of the
+     * last execution of this one as {@code before}.
+     *
+     * @param reportId The report.
+     * @param organization The {@code Organization} which owns the report.
+     * @param before Only executions scheduled strictly before this are returned. Empty to start from the latest.
+     * @param limit The maximum number of executions to return.
+     * @return The executions.
+     */
+    List<ReportExecutionRecord> getExecutions(UUID reportId, Organization organization, Optional<Instant> before, int limit);
+
+    /**
+     * Get daily statistics of the executions of a report.
+     *
+     * A skipped range is attributed to the day of its first run, and counts once for each run it skipped.
+     *
+     * @param reportId The report.
+     * @param organization The {@code Organization} which owns the report.
+     * @param from Only executions scheduled at or after this are included.
+     * @param until Only executions scheduled before this are included.
+     * @return One rollup per day that had any executions, in chronological order.
+     */
+    List<ReportExecutionRollup> getExecutionRollups(UUID reportId, Organization organization, Instant from, Instant until);
+
+    /**
+     * Get daily statistics of the executions of every report of an organization.
+     *
+     * A skipped range is attributed to the day of its first run, and counts once for each run it skipped.
+     *
+     * @param organization The {@code Organization} whose reports to include.
+     * @param from Only executions scheduled at or after this are included.
+     * @param until Only executions scheduled before this are included.
+     * @return One rollup per day that had any executions, in chronological order.
+     */
+    List<ReportExecutionRollup> getExecutionRollups(Organization organization, Instant from, Instant until);
+
     // CHECKSTYLE.OFF: JavadocMethodCheck - doc should be inherited from JobRepository
     default QueryResult<Job<Report.Result>> query(final JobQuery<Report.Result> query) {
         final ReportQuery reportQuery = new DefaultReportQuery(this, query);
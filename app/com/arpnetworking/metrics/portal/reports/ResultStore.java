@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports;
+
+import models.internal.impl.StoredReportResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Content-addressed storage for the (potentially large) output of report executions.
+ *
+ * Content is identified by its SHA-256 digest, so storing identical content twice stores it once. Content is kept until
+ * it is collected, which the report execution retention job does once the executions referencing it have expired.
+ *
+ * @author agent (agent at local)
+ */
+public interface ResultStore {
+
+    /**
+     * Store some content. The stream is consumed, but not closed.
+     *
+     * @param content The content to store.
+     * @return A reference to the stored content.
+     * @throws IOException If the content could not be read or stored.
+     */
+    StoredReportResult put(InputStream content) throws IOException;
+
+    /**
+     * Read some previously-stored content. The content is streamed from the store rather than loaded into memory.
+     *
+     * @param digest The digest of the content, as returned by {@link #put}.
+     * @return A stream of the content, which the caller must close; or empty if no such content is stored.
+     * @throws IOException If the content could not be opened.
+     */
+    Optional<InputStream> open(String digest) throws IOException;
+
+    /**
+     * Check whether some content is stored.
+     *
+     * @param digest The digest of the content, as returned by {@link #put}.
+     * @return Whether the content is stored.
+     */
+    boolean contains(String digest);
+
+    /**
+     * Delete the content that is no longer referenced.
+     *
+     * Content that was stored, or stored again, at or after {@code storedBefore} is kept even if it is not referenced,
+     * since the execution referencing it may not have been recorded yet.
+     *
+     * @param referenced The digests of the content to keep.
+     * @param storedBefore Unreferenced content stored before this is deleted.
+     * @return The number of contents deleted.
+     * @throws IOException If the store could not be read or content could not be deleted.
+     */
+    long collect(Set<String> referenced, Instant storedBefore) throws IOException;
+}
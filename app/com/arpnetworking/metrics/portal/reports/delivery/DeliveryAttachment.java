@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.google.common.base.MoreObjects;
+import models.internal.impl.HtmlReportFormat;
+import models.internal.impl.PdfReportFormat;
+import models.internal.impl.StoredReportResult;
+import models.internal.reports.ReportFormat;
+
+import java.util.Objects;
+
+/**
+ * One output of a report run attached to a delivery, by reference to its content in the
+ * {@link com.arpnetworking.metrics.portal.reports.ResultStore}.
+ *
+ * @author agent (agent at local)
+ */
+public final class DeliveryAttachment {
+
+    private final Type _type;
+    private final StoredReportResult _content;
+
+    /**
+     * Public constructor.
+     *
+     * @param type The type of the attachment.
+     * @param content The stored content of the attachment.
+     */
+    public DeliveryAttachment(final Type type, final StoredReportResult content) {
+        _type = type;
+        _content = content;
+    }
+
+    /**
+     * Create the attachment of an output.
+     *
+     * @param format The format of the output.
+     * @param content The stored content of the output.
+     * @return The attachment.
+     */
+    public static DeliveryAttachment of(final ReportFormat format, final StoredReportResult content) {
+        return new DeliveryAttachment(format.accept(FORMAT_TYPE), content);
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    public StoredReportResult getContent() {
+        return _content;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final DeliveryAttachment that = (DeliveryAttachment) o;
+        return _type == that._type && Objects.equals(_content, that._content);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_type, _content);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", _type)
+                .add("content", _content)
+                .toString();
+    }
+
+    private static final ReportFormat.Visitor<Type> FORMAT_TYPE = new ReportFormat.Visitor<Type>() {
+        @Override
+        public Type visit(final PdfReportFormat format) {
+            return Type.PDF;
+        }
+
+        @Override
+        public Type visit(final HtmlReportFormat format) {
+            return Type.HTML;
+        }
+    };
+
+    /**
+     * The type of an attachment, which determines how it is presented to the recipient.
+     */
+    public enum Type {
+        /**
+         * A rendered HTML page.
+         */
+        HTML("text/html; charset=utf-8", "report.html"),
+        /**
+         * A rendered PDF document.
+         */
+        PDF("application/pdf", "report.pdf");
+
+        private final String _contentType;
+        private final String _fileName;
+
+        Type(final String contentType, final String fileName) {
+            _contentType = contentType;
+            _fileName = fileName;
+        }
+
+        public String getContentType() {
+            return _contentType;
+        }
+
+        public String getFileName() {
+            return _fileName;
+        }
+    }
+}
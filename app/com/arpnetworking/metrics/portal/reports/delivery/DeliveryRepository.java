@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persists the delivery of each report run to each of its recipients, so that deliveries survive restarts and are
+ * retried on their own, apart from the run that requested them.
+ *
+ * A delivery is pending until it is sent or fails for good. Senders claim pending deliveries that are due; a claim
+ * lasts until it is resolved or runs out, after which the delivery is due again. A delivery whose sender crashed is
+ * therefore sent again, so delivery is at least once.
+ *
+ * @author agent (agent at local)
+ */
+public interface DeliveryRepository {
+
+    /**
+     * Open the repository.
+     */
+    void open();
+
+    /**
+     * Close the repository.
+     */
+    void close();
+
+    /**
+     * Record the deliveries of a run, due immediately. Deliveries that are already recorded, e.g. because the run was
+     * executed again, are left as they are, so that recipients are not sent the same run twice.
+     *
+     * @param deliveries The deliveries to record.
+     */
+    void addDeliveries(List<ReportDelivery> deliveries);
+
+    /**
+     * Claim pending deliveries that are due, oldest first. Each claim counts as an attempt.
+     *
+     * @param now The current time.
+     * @param claimUntil When the claim runs out, if it has not been resolved by then.
+     * @param limit The maximum number of deliveries to claim.
+     * @return The claimed deliveries, with their attempts counting this one.
+     */
+    List<ReportDelivery> claimDueDeliveries(Instant now, Instant claimUntil, int limit);
+
+    /**
+     * Record that a claimed delivery was sent. Ignored if the claim has since run out and been taken over.
+     *
+     * @param delivery The delivery, as claimed.
+     * @param completedAt When the delivery was sent.
+     */
+    void deliverySucceeded(ReportDelivery delivery, Instant completedAt);
+
+    /**
+     * Record that a claimed delivery failed for good. Ignored if the claim has since run out and been taken over.
+     *
+     * @param delivery The delivery, as claimed.
+     * @param completedAt When the delivery failed.
+     * @param error The reason it failed.
+     */
+    void deliveryFailed(ReportDelivery delivery, Instant completedAt, Throwable error);
+
+    /**
+     * Release the claim on a delivery that failed transiently, to be retried later. Ignored if the claim has since run
+     * out and been taken over.
+     *
+     * @param delivery The delivery, as claimed.
+     * @param nextAttemptAt When the delivery is next due.
+     * @param error The reason this attempt failed.
+     */
+    void deliveryRetrying(ReportDelivery delivery, Instant nextAttemptAt, Throwable error);
+
+    /**
+     * Get the digests of the {@link com.arpnetworking.metrics.portal.reports.ResultStore} content attached to pending
+     * deliveries, which must be kept until they are sent.
+     *
+     * @return The referenced digests.
+     */
+    Set<String> getAttachmentDigests();
+
+    /**
+     * Delete the records of completed deliveries of runs that were scheduled before a cutoff. Pending deliveries are
+     * kept however old they are.
+     *
+     * @param cutoff Completed deliveries of runs scheduled before this are deleted.
+     * @return The number of deliveries deleted.
+     */
+    long expireDeliveries(Instant cutoff);
+}
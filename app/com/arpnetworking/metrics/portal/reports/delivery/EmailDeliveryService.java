@@ -0,0 +1,378 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.arpnetworking.metrics.Units;
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.render.RenderedOutput;
+import com.arpnetworking.metrics.portal.reports.render.RenderedReport;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.Config;
+import models.internal.impl.StoredReportResult;
+import models.internal.reports.Recipient;
+import models.internal.reports.ReportFormat;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Delivers rendered reports by email, in the background.
+ *
+ * Each recipient of a run gets one message carrying all of the outputs it subscribed to. A run's outputs are stored in
+ * the {@link ResultStore} and one delivery per recipient is recorded in the {@link DeliveryRepository}; from then on
+ * the deliveries are independent of the run and of each other. The service polls for deliveries that are due, claims
+ * them, and queues them for a fixed number of senders, each of which holds its own connection to the relay open for as
+ * long as there is mail to send: a sender takes up to a batch of queued messages at a time and sends them back to back
+ * over its connection, pipelining each message's envelope if the relay allows it.
+ *
+ * The outcome of each delivery is recorded in the repository. A message that fails transiently is due again after an
+ * exponential backoff, up to a maximum number of attempts; one that is rejected permanently fails on its own, without
+ * affecting the run or the other recipients. Deliveries that are queued when the service closes, or that a crashed
+ * node had claimed, are picked up again once their claims run out, so a message may occasionally be sent twice.
+ *
+ * @author agent (agent at local)
+ */
+public final class EmailDeliveryService {
+
+    private final String _host;
+    private final int _port;
+    private final String _localName;
+    private final Duration _timeout;
+    private final String _from;
+    private final int _connections;
+    private final int _batchSize;
+    private final Duration _idleTimeout;
+    private final int _maxAttempts;
+    private final Duration _initialBackoff;
+    private final Duration _claimTimeout;
+    private final ResultStore _store;
+    private final DeliveryRepository _repository;
+    private final Clock _clock;
+    private final PeriodicMetrics _periodicMetrics;
+    private final BlockingQueue<ReportDelivery> _queue = new LinkedBlockingQueue<>();
+    private final ExecutorService _senders;
+    private final ScheduledExecutorService _scheduler;
+    private volatile boolean _closed = false;
+
+    /**
+     * Public constructor.
+     *
+     * @param config The delivery configuration (the {@code email} section of the application configuration).
+     * @param store The store to keep the outputs being delivered in.
+     * @param repository The repository to record deliveries and their outcomes in.
+     * @param clock The clock used to schedule retries and measure throughput.
+     * @param periodicMetrics The {@link PeriodicMetrics} to record throughput and queue depth to.
+     */
+    public EmailDeliveryService(
+            final Config config,
+            final ResultStore store,
+            final DeliveryRepository repository,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics) {
+        _host = config.getString("smtp.host");
+        _port = config.getInt("smtp.port");
+        _localName = config.getString("smtp.localName");
+        _timeout = config.getDuration("smtp.timeout");
+        _from = config.getString("from");
+        _connections = config.getInt("connections");
+        _batchSize = config.getInt("batchSize");
+        _idleTimeout = config.getDuration("idleTimeout");
+        _maxAttempts = config.getInt("maxAttempts");
+        _initialBackoff = config.getDuration("initialBackoff");
+        _claimTimeout = config.getDuration("claimTimeout");
+        _store = store;
+        _repository = repository;
+        _clock = clock;
+        _periodicMetrics = periodicMetrics;
+
+        if (_connections < 1) {
+            throw new IllegalArgumentException("connections must be positive; got " + _connections);
+        }
+        _scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("email-delivery-scheduler-%d").setDaemon(true).build());
+        _senders = Executors.newFixedThreadPool(
+                _connections,
+                new ThreadFactoryBuilder().setNameFormat("email-delivery-sender-%d").setDaemon(true).build());
+        for (int i = 0; i < _connections; ++i) {
+            _senders.execute(this::runSender);
+        }
+        final long pollIntervalMillis = config.getDuration("pollInterval", TimeUnit.MILLISECONDS);
+        _scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Store a rendered report's outputs and record its delivery to each of its recipients. The messages are sent later,
+     * in the background.
+     *
+     * @param report The rendered report.
+     * @return Completes once the outputs are stored and the deliveries recorded; or exceptionally, if either failed.
+     */
+    public CompletionStage<Void> deliver(final RenderedReport report) {
+        try {
+            return CompletableFuture.runAsync(() -> record(report), _scheduler);
+        } catch (final RejectedExecutionException e) {
+            final CompletableFuture<Void> closed = new CompletableFuture<>();
+            closed.completeExceptionally(new IllegalStateException("email delivery is closed", e));
+            return closed;
+        }
+    }
+
+    /**
+     * Stop delivering. Deliveries already being recorded are finished; queued deliveries are left to be claimed again
+     * once their claims run out.
+     */
+    public void close() {
+        _closed = true;
+        _senders.shutdownNow();
+        _scheduler.shutdown();
+        try {
+            if (!_scheduler.awaitTermination(_timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn().setMessage("Timed out recording report deliveries at shutdown").log();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _queue.clear();
+    }
+
+    private void record(final RenderedReport report) {
+        final String subject = report.getReport().getName();
+        final Map<ReportFormat, DeliveryAttachment> attachments = Maps.newHashMap();
+        final List<ReportDelivery> deliveries = new ArrayList<>();
+        for (final Map.Entry<Recipient, Collection<RenderedOutput>> entry : report.getOutputsByRecipient().asMap().entrySet()) {
+            final ImmutableList.Builder<DeliveryAttachment> recipientAttachments = ImmutableList.builder();
+            for (final RenderedOutput output : entry.getValue()) {
+                recipientAttachments.add(attachments.computeIfAbsent(output.getFormat(), format -> store(output)));
+            }
+            deliveries.add(new ReportDelivery(
+                    report.getReport().getId(),
+                    report.getScheduled(),
+                    entry.getKey().getAddress(),
+                    subject,
+                    recipientAttachments.build(),
+                    0));
+        }
+        _repository.addDeliveries(deliveries);
+        // Don't wait for the next poll to start sending
+        poll();
+    }
+
+    private DeliveryAttachment store(final RenderedOutput output) {
+        final Optional<StoredReportResult> stored = output.getStored();
+        if (stored.isPresent()) {
+            return DeliveryAttachment.of(output.getFormat(), stored.get());
+        }
+        try (InputStream content = output.openStream()) {
+            return DeliveryAttachment.of(output.getFormat(), _store.put(content));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void poll() {
+        final int room = _connections * _batchSize - _queue.size();
+        if (_closed || room <= 0) {
+            return;
+        }
+        try {
+            final Instant now = _clock.instant();
+            _queue.addAll(_repository.claimDueDeliveries(now, now.plus(_claimTimeout), room));
+            _periodicMetrics.recordGauge(QUEUE_DEPTH_METRIC, _queue.size());
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            LOGGER.warn()
+                    .setMessage("Failed to claim report deliveries")
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private void runSender() {
+        SmtpConnection connection = null;
+        try {
+            while (!_closed) {
+                final ReportDelivery first = _queue.poll(_idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Nothing to send for a while; don't hold the relay's connection open
+                    connection = close(connection);
+                    continue;
+                }
+                final List<ReportDelivery> batch = new ArrayList<>(_batchSize);
+                batch.add(first);
+                _queue.drainTo(batch, _batchSize - 1);
+                _periodicMetrics.recordGauge(QUEUE_DEPTH_METRIC, _queue.size());
+                connection = send(connection, batch);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Nullable
+    private SmtpConnection send(@Nullable final SmtpConnection initialConnection, final List<ReportDelivery> batch) {
+        SmtpConnection connection = initialConnection;
+        final Instant startedAt = _clock.instant();
+        int sent = 0;
+        for (final ReportDelivery delivery : batch) {
+            try {
+                final Optional<DeliveryAttachment> missing = delivery.getAttachments()
+                        .stream()
+                        .filter(attachment -> !_store.contains(attachment.getContent().getDigest()))
+                        .findFirst();
+                if (missing.isPresent()) {
+                    fail(delivery, new FileNotFoundException("Attachment is no longer stored: " + missing.get()));
+                    continue;
+                }
+                if (connection == null || !connection.isUsable()) {
+                    close(connection);
+                    connection = SmtpConnection.open(_host, _port, _localName, _timeout);
+                    _periodicMetrics.recordCounter(CONNECTIONS_OPENED_METRIC, 1);
+                }
+                connection.send(new EmailMessage(
+                        _from,
+                        delivery.getRecipient(),
+                        delivery.getSubject(),
+                        _clock.instant(),
+                        delivery.getAttachments(),
+                        _store));
+                sent++;
+                resolve(delivery, () -> _repository.deliverySucceeded(delivery, _clock.instant()));
+            } catch (final SmtpException e) {
+                if (e.isTransient()) {
+                    retry(delivery, e);
+                } else {
+                    fail(delivery, e);
+                }
+            } catch (final IOException e) {
+                connection = close(connection);
+                retry(delivery, e);
+                // CHECKSTYLE.OFF: IllegalCatchCheck
+            } catch (final RuntimeException e) {
+                // CHECKSTYLE.ON: IllegalCatchCheck
+                fail(delivery, e);
+            }
+        }
+
+        final long elapsedNanos = Math.max(1, ChronoUnit.NANOS.between(startedAt, _clock.instant()));
+        _periodicMetrics.recordCounter(MESSAGES_SENT_METRIC, sent);
+        _periodicMetrics.recordTimer(BATCH_TIME_METRIC, elapsedNanos, Optional.of(Units.NANOSECOND));
+        _periodicMetrics.recordGauge(MESSAGES_PER_SECOND_METRIC, sent * (double) NANOS_PER_SECOND / elapsedNanos);
+        return connection;
+    }
+
+    private void retry(final ReportDelivery delivery, final Exception error) {
+        if (delivery.getAttempts() >= _maxAttempts) {
+            fail(delivery, error);
+            return;
+        }
+        final Duration backoff = _initialBackoff.multipliedBy(1L << Math.min(delivery.getAttempts() - 1, MAX_BACKOFF_DOUBLINGS));
+        LOGGER.debug()
+                .setMessage("email delivery failed; will retry")
+                .addData("to", delivery.getRecipient())
+                .addData("attempt", delivery.getAttempts())
+                .addData("backoff", backoff)
+                .setThrowable(error)
+                .log();
+        _periodicMetrics.recordCounter(RETRIES_METRIC, 1);
+        resolve(delivery, () -> _repository.deliveryRetrying(delivery, _clock.instant().plus(backoff), error));
+    }
+
+    private void fail(final ReportDelivery delivery, final Exception error) {
+        LOGGER.warn()
+                .setMessage("email delivery failed")
+                .addData("to", delivery.getRecipient())
+                .addData("subject", delivery.getSubject())
+                .addData("attempt", delivery.getAttempts())
+                .setThrowable(error)
+                .log();
+        _periodicMetrics.recordCounter(FAILURES_METRIC, 1);
+        resolve(delivery, () -> _repository.deliveryFailed(delivery, _clock.instant(), error));
+    }
+
+    private void resolve(final ReportDelivery delivery, final Runnable update) {
+        try {
+            update.run();
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            // The delivery stays claimed until the claim runs out, and is then attempted again.
+            LOGGER.error()
+                    .setMessage("Failed to record outcome of email delivery")
+                    .addData("delivery", delivery)
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    @Nullable
+    private static SmtpConnection close(@Nullable final SmtpConnection connection) {
+        if (connection != null) {
+            connection.close();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("host", _host)
+                .add("port", _port)
+                .add("queued", _queue.size())
+                .add("closed", _closed)
+                .toString();
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmailDeliveryService.class);
+    private static final String QUEUE_DEPTH_METRIC = "email_delivery/queue_depth";
+    private static final String MESSAGES_SENT_METRIC = "email_delivery/messages_sent";
+    private static final String MESSAGES_PER_SECOND_METRIC = "email_delivery/messages_per_second";
+    private static final String BATCH_TIME_METRIC = "email_delivery/batch_time";
+    private static final String CONNECTIONS_OPENED_METRIC = "email_delivery/connections_opened";
+    private static final String RETRIES_METRIC = "email_delivery/retries";
+    private static final String FAILURES_METRIC = "email_delivery/failures";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_BACKOFF_DOUBLINGS = 16;
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * One email to one recipient, carrying every output of a report run that the recipient subscribed to.
+ *
+ * The attachments are streamed from the {@link ResultStore}, a chunk at a time, so that sending the same outputs to
+ * many recipients never copies them whole.
+ *
+ * @author agent (agent at local)
+ */
+public final class EmailMessage {
+
+    private final String _from;
+    private final String _to;
+    private final String _subject;
+    private final Instant _date;
+    private final ImmutableList<DeliveryAttachment> _attachments;
+    private final ResultStore _store;
+
+    /**
+     * Public constructor.
+     *
+     * @param from The sender's address.
+     * @param to The recipient's address.
+     * @param subject The subject.
+     * @param date The date of the message.
+     * @param attachments The outputs to attach.
+     * @param store The store holding the content of the attachments.
+     */
+    public EmailMessage(
+            final String from,
+            final String to,
+            final String subject,
+            final Instant date,
+            final ImmutableList<DeliveryAttachment> attachments,
+            final ResultStore store) {
+        _from = from;
+        _to = to;
+        _subject = subject;
+        _date = date;
+        _attachments = attachments;
+        _store = store;
+    }
+
+    public String getFrom() {
+        return _from;
+    }
+
+    public String getTo() {
+        return _to;
+    }
+
+    public String getSubject() {
+        return _subject;
+    }
+
+    public ImmutableList<DeliveryAttachment> getAttachments() {
+        return _attachments;
+    }
+
+    /**
+     * Write the message as MIME, with CRLF line endings. No line of the output starts with a period, so it may be sent
+     * as SMTP {@code DATA} without dot-stuffing.
+     *
+     * @param output The stream to write to.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void writeTo(final OutputStream output) throws IOException {
+        final String boundary = "=_" + UUID.randomUUID();
+        writeLine(output, "From: <" + _from + ">");
+        writeLine(output, "To: <" + _to + ">");
+        writeLine(output, "Subject: " + encodeHeader(_subject));
+        writeLine(output, "Date: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(_date.atOffset(ZoneOffset.UTC)));
+        writeLine(output, "MIME-Version: 1.0");
+        writeLine(output, "Content-Type: multipart/mixed; boundary=\"" + boundary + "\"");
+        writeLine(output, "");
+        for (final DeliveryAttachment attachment : _attachments) {
+            final String digest = attachment.getContent().getDigest();
+            writeLine(output, "--" + boundary);
+            writeLine(output, "Content-Type: " + attachment.getType().getContentType());
+            writeLine(output, "Content-Transfer-Encoding: base64");
+            writeLine(output, "Content-Disposition: attachment; filename=\"" + attachment.getType().getFileName() + "\"");
+            writeLine(output, "");
+            try (InputStream content = _store.open(digest)
+                    .orElseThrow(() -> new FileNotFoundException("Attachment is no longer stored: " + digest))) {
+                writeBase64(output, content);
+            }
+        }
+        writeLine(output, "--" + boundary + "--");
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("from", _from)
+                .add("to", _to)
+                .add("subject", _subject)
+                .add("date", _date)
+                .add("attachments", _attachments)
+                .toString();
+    }
+
+    private static void writeBase64(final OutputStream output, final InputStream content) throws IOException {
+        final byte[] chunk = new byte[BASE64_CHUNK_SIZE];
+        int length;
+        while ((length = ByteStreams.read(content, chunk, 0, chunk.length)) > 0) {
+            final byte[] encoded = length == chunk.length
+                    ? BASE64.encode(chunk)
+                    : BASE64.encode(Arrays.copyOf(chunk, length));
+            output.write(encoded);
+            output.write(CRLF);
+        }
+    }
+
+    private static String encodeHeader(final String value) {
+        return "=?UTF-8?B?" + Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8)) + "?=";
+    }
+
+    private static void writeLine(final OutputStream output, final String line) throws IOException {
+        output.write(line.getBytes(StandardCharsets.US_ASCII));
+        output.write(CRLF);
+    }
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final Base64.Encoder BASE64 = Base64.getMimeEncoder();
+    // A whole number of 76-character lines: 57 bytes encode to exactly one line
+    private static final int BASE64_CHUNK_SIZE = 57 * 256;
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * The delivery of one run of a report to one recipient, as recorded by a {@link DeliveryRepository}.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportDelivery {
+
+    private final UUID _reportId;
+    private final Instant _scheduled;
+    private final String _recipient;
+    private final String _subject;
+    private final ImmutableList<DeliveryAttachment> _attachments;
+    private final int _attempts;
+
+    /**
+     * Public constructor.
+     *
+     * @param reportId The id of the report.
+     * @param scheduled The run of the report.
+     * @param recipient The recipient's address.
+     * @param subject The subject of the message.
+     * @param attachments The outputs the recipient subscribed to.
+     * @param attempts The number of attempts made to deliver, including any in progress.
+     */
+    public ReportDelivery(
+            final UUID reportId,
+            final Instant scheduled,
+            final String recipient,
+            final String subject,
+            final ImmutableList<DeliveryAttachment> attachments,
+            final int attempts) {
+        _reportId = reportId;
+        _scheduled = scheduled;
+        _recipient = recipient;
+        _subject = subject;
+        _attachments = attachments;
+        _attempts = attempts;
+    }
+
+    public UUID getReportId() {
+        return _reportId;
+    }
+
+    public Instant getScheduled() {
+        return _scheduled;
+    }
+
+    public String getRecipient() {
+        return _recipient;
+    }
+
+    public String getSubject() {
+        return _subject;
+    }
+
+    public ImmutableList<DeliveryAttachment> getAttachments() {
+        return _attachments;
+    }
+
+    public int getAttempts() {
+        return _attempts;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("reportId", _reportId)
+                .add("scheduled", _scheduled)
+                .add("recipient", _recipient)
+                .add("subject", _subject)
+                .add("attachments", _attachments)
+                .add("attempts", _attempts)
+                .toString();
+    }
+}
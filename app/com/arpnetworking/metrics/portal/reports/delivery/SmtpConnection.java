@@ -0,0 +1,256 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A connection to an SMTP relay, over which any number of messages may be sent one after another.
+ *
+ * If the relay advertises {@code PIPELINING} (RFC 2920), the envelope of each message ({@code MAIL}, {@code RCPT} and
+ * {@code DATA}) is sent in a single write, so that each message costs two round trips to the relay rather than four.
+ *
+ * Not thread safe.
+ *
+ * @author agent (agent at local)
+ */
+public final class SmtpConnection implements AutoCloseable {
+
+    private final Socket _socket;
+    private final BufferedReader _reader;
+    private final OutputStream _output;
+    private final boolean _pipelining;
+    private boolean _broken = false;
+
+    /**
+     * Connect to a relay and greet it.
+     *
+     * @param host The relay's host.
+     * @param port The relay's port.
+     * @param localName The name to greet the relay with.
+     * @param timeout The time limit on connecting and on each reply.
+     * @return The open connection.
+     * @throws IOException If the connection cannot be established.
+     */
+    public static SmtpConnection open(final String host, final int port, final String localName, final Duration timeout)
+            throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), (int) timeout.toMillis());
+            socket.setSoTimeout((int) timeout.toMillis());
+            return new SmtpConnection(socket, localName);
+        } catch (final IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private SmtpConnection(final Socket socket, final String localName) throws IOException {
+        _socket = socket;
+        _reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        _output = new BufferedOutputStream(socket.getOutputStream());
+        expect(readReply(), 220);
+
+        writeCommand("EHLO " + localName);
+        _output.flush();
+        final Reply ehlo = readReply();
+        if (ehlo._code == 250) {
+            _pipelining = ehlo._lines.stream().anyMatch(line -> line.trim().equalsIgnoreCase("PIPELINING"));
+        } else {
+            writeCommand("HELO " + localName);
+            _output.flush();
+            expect(readReply(), 250);
+            _pipelining = false;
+        }
+    }
+
+    /**
+     * Send a message.
+     *
+     * A rejected message leaves the connection usable for further messages; an {@link IOException} does not.
+     *
+     * @param message The message.
+     * @throws SmtpException If the relay rejected the message.
+     * @throws IOException If the connection failed.
+     */
+    public void send(final EmailMessage message) throws SmtpException, IOException {
+        try {
+            final List<String> envelope = ImmutableList.of(
+                    "MAIL FROM:<" + message.getFrom() + ">",
+                    "RCPT TO:<" + message.getTo() + ">",
+                    "DATA");
+            Reply rejection = null;
+            Reply data = null;
+            if (_pipelining) {
+                for (final String command : envelope) {
+                    writeCommand(command);
+                }
+                _output.flush();
+                // Every pipelined command gets a reply, even once an earlier one has failed
+                for (int i = 0; i < envelope.size(); ++i) {
+                    final Reply reply = readReply();
+                    if (i == envelope.size() - 1) {
+                        data = reply;
+                    } else if (reply._code != 250 && reply._code != 251 && rejection == null) {
+                        rejection = reply;
+                    }
+                }
+            } else {
+                for (int i = 0; i < envelope.size() && rejection == null; ++i) {
+                    writeCommand(envelope.get(i));
+                    _output.flush();
+                    final Reply reply = readReply();
+                    if (i == envelope.size() - 1) {
+                        data = reply;
+                    } else if (reply._code != 250 && reply._code != 251) {
+                        rejection = reply;
+                    }
+                }
+            }
+
+            if (data != null && data._code == 354) {
+                if (rejection == null) {
+                    message.writeTo(_output);
+                }
+                // A relay that accepted DATA despite rejecting the envelope gets an empty message, which it must refuse
+                writeCommand(".");
+                _output.flush();
+                final Reply sent = readReply();
+                if (rejection == null && sent._code != 250) {
+                    rejection = sent;
+                }
+            } else if (rejection == null) {
+                rejection = data;
+            }
+
+            if (rejection != null) {
+                writeCommand("RSET");
+                _output.flush();
+                readReply();
+                throw new SmtpException(rejection._code, rejection.getText());
+            }
+        } catch (final IOException e) {
+            _broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the connection may still be used to send messages.
+     *
+     * @return False once the connection failed or was closed.
+     */
+    public boolean isUsable() {
+        return !_broken && !_socket.isClosed();
+    }
+
+    public boolean isPipelining() {
+        return _pipelining;
+    }
+
+    /**
+     * Say goodbye to the relay and close the connection.
+     */
+    @Override
+    public void close() {
+        try {
+            if (isUsable()) {
+                writeCommand("QUIT");
+                _output.flush();
+                readReply();
+            }
+        } catch (final IOException e) {
+            // The connection is being discarded anyway
+        } finally {
+            try {
+                _socket.close();
+            } catch (final IOException e) {
+                // Nothing more can be done
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("remote", _socket.getRemoteSocketAddress())
+                .add("pipelining", _pipelining)
+                .add("usable", isUsable())
+                .toString();
+    }
+
+    private void writeCommand(final String command) throws IOException {
+        _output.write(command.getBytes(StandardCharsets.US_ASCII));
+        _output.write('\r');
+        _output.write('\n');
+    }
+
+    private Reply readReply() throws IOException {
+        final ImmutableList.Builder<String> lines = ImmutableList.builder();
+        while (true) {
+            final String line = _reader.readLine();
+            if (line == null) {
+                throw new EOFException("Connection closed by relay");
+            }
+            if (line.length() < 3) {
+                throw new IOException("Malformed reply: " + line);
+            }
+            final int code;
+            try {
+                code = Integer.parseInt(line.substring(0, 3));
+            } catch (final NumberFormatException e) {
+                throw new IOException("Malformed reply: " + line, e);
+            }
+            lines.add(line.length() > 4 ? line.substring(4) : "");
+            if (line.length() == 3 || line.charAt(3) != '-') {
+                return new Reply(code, lines.build());
+            }
+        }
+    }
+
+    private static void expect(final Reply reply, final int code) throws IOException {
+        if (reply._code != code) {
+            throw new IOException("Unexpected reply from relay: " + reply._code + " " + reply.getText());
+        }
+    }
+
+    private static final class Reply {
+        private final int _code;
+        private final ImmutableList<String> _lines;
+
+        Reply(final int code, final ImmutableList<String> lines) {
+            _code = code;
+            _lines = lines;
+        }
+
+        String getText() {
+            return String.join(" ", _lines);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+/**
+ * A mail relay rejected a message.
+ *
+ * @author agent (agent at local)
+ */
+public final class SmtpException extends Exception {
+
+    private final int _code;
+
+    /**
+     * Public constructor.
+     *
+     * @param code The reply code the relay rejected the message with.
+     * @param message The text of the reply.
+     */
+    public SmtpException(final int code, final String message) {
+        super(code + " " + message);
+        _code = code;
+    }
+
+    public int getCode() {
+        return _code;
+    }
+
+    /**
+     * Whether the rejection is transient (a 4yz reply), so that the message may be retried.
+     *
+     * @return True if and only if the message may be retried.
+     */
+    public boolean isTransient() {
+        return _code >= 400 && _code < 500;
+    }
+
+    private static final long serialVersionUID = 1L;
+}
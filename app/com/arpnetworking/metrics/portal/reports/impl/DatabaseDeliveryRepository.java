@@ -0,0 +1,295 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryAttachment;
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryRepository;
+import com.arpnetworking.metrics.portal.reports.delivery.ReportDelivery;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import io.ebean.Ebean;
+import io.ebean.Transaction;
+import models.internal.impl.StoredReportResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.persistence.PersistenceException;
+
+/**
+ * A {@link DeliveryRepository} in {@code portal.report_deliveries}.
+ *
+ * Claims are fenced by the number of attempts: every claim increments it, and a claim is only resolved if the count is
+ * still the one it was claimed with.
+ *
+ * @author agent (agent at local)
+ */
+public final class DatabaseDeliveryRepository implements DeliveryRepository {
+
+    private final AtomicBoolean _isOpen = new AtomicBoolean(false);
+
+    @Override
+    public void open() {
+        assertIsOpen(false);
+        LOGGER.debug().setMessage("Opening DatabaseDeliveryRepository").log();
+        _isOpen.set(true);
+    }
+
+    @Override
+    public void close() {
+        assertIsOpen();
+        LOGGER.debug().setMessage("Closing DatabaseDeliveryRepository").log();
+        _isOpen.set(false);
+    }
+
+    @Override
+    public void addDeliveries(final List<ReportDelivery> deliveries) {
+        assertIsOpen();
+        final Timestamp now = Timestamp.from(Instant.now());
+        for (final ReportDelivery delivery : deliveries) {
+            // One transaction each, so that losing the race to record one delivery doesn't abort the others.
+            try (Transaction transaction = Ebean.beginTransaction();
+                 PreparedStatement insert = transaction.getConnection().prepareStatement(
+                         "INSERT INTO portal.report_deliveries "
+                                 + "(report_id, scheduled, recipient, subject, attachments, state, attempts, next_attempt_at) "
+                                 + "SELECT CAST(? AS UUID), CAST(? AS TIMESTAMP), ?, ?, ?, ?, 0, CAST(? AS TIMESTAMP) WHERE NOT EXISTS "
+                                 + "(SELECT 1 FROM portal.report_deliveries WHERE report_id = ? AND scheduled = ? AND recipient = ?)")) {
+                insert.setObject(1, delivery.getReportId());
+                insert.setTimestamp(2, Timestamp.from(delivery.getScheduled()));
+                insert.setString(3, delivery.getRecipient());
+                insert.setString(4, delivery.getSubject());
+                insert.setString(5, encodeAttachments(delivery.getAttachments()));
+                insert.setString(6, State.PENDING.name());
+                insert.setTimestamp(7, now);
+                insert.setObject(8, delivery.getReportId());
+                insert.setTimestamp(9, Timestamp.from(delivery.getScheduled()));
+                insert.setString(10, delivery.getRecipient());
+                insert.executeUpdate();
+                transaction.commit();
+            } catch (final SQLException e) {
+                if (!DatabaseReportRepository.isUniqueViolation(e)) {
+                    throw new PersistenceException("Failed to record report delivery", e);
+                }
+                LOGGER.debug()
+                        .setMessage("Lost race to record report delivery")
+                        .addData("delivery", delivery)
+                        .log();
+            }
+        }
+    }
+
+    @Override
+    public List<ReportDelivery> claimDueDeliveries(final Instant now, final Instant claimUntil, final int limit) {
+        assertIsOpen();
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            final Connection connection = transaction.getConnection();
+            final List<ReportDelivery> due = Lists.newArrayList();
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT report_id, scheduled, recipient, subject, attachments, attempts FROM portal.report_deliveries "
+                            + "WHERE state = ? AND next_attempt_at <= ? ORDER BY next_attempt_at LIMIT ?")) {
+                select.setString(1, State.PENDING.name());
+                select.setTimestamp(2, Timestamp.from(now));
+                select.setInt(3, limit);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        due.add(new ReportDelivery(
+                                (UUID) resultSet.getObject("report_id"),
+                                resultSet.getTimestamp("scheduled").toInstant(),
+                                resultSet.getString("recipient"),
+                                resultSet.getString("subject"),
+                                decodeAttachments(resultSet.getString("attachments")),
+                                resultSet.getInt("attempts")));
+                    }
+                }
+            }
+
+            final List<ReportDelivery> claimed = Lists.newArrayListWithCapacity(due.size());
+            try (PreparedStatement claim = connection.prepareStatement(
+                    "UPDATE portal.report_deliveries SET attempts = attempts + 1, next_attempt_at = ? "
+                            + "WHERE report_id = ? AND scheduled = ? AND recipient = ? AND state = ? AND attempts = ?")) {
+                for (final ReportDelivery delivery : due) {
+                    claim.setTimestamp(1, Timestamp.from(claimUntil));
+                    setKey(claim, 2, delivery);
+                    claim.setString(5, State.PENDING.name());
+                    claim.setInt(6, delivery.getAttempts());
+                    // Someone else may have claimed (or resolved) it since we looked.
+                    if (claim.executeUpdate() > 0) {
+                        claimed.add(new ReportDelivery(
+                                delivery.getReportId(),
+                                delivery.getScheduled(),
+                                delivery.getRecipient(),
+                                delivery.getSubject(),
+                                delivery.getAttachments(),
+                                delivery.getAttempts() + 1));
+                    }
+                }
+            }
+            transaction.commit();
+            return claimed;
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to claim report deliveries", e);
+        }
+    }
+
+    @Override
+    public void deliverySucceeded(final ReportDelivery delivery, final Instant completedAt) {
+        assertIsOpen();
+        resolve(delivery, "state = ?, completed_at = ?, error = NULL", (update, index) -> {
+            update.setString(index, State.SENT.name());
+            update.setTimestamp(index + 1, Timestamp.from(completedAt));
+            return index + 2;
+        });
+    }
+
+    @Override
+    public void deliveryFailed(final ReportDelivery delivery, final Instant completedAt, final Throwable error) {
+        assertIsOpen();
+        resolve(delivery, "state = ?, completed_at = ?, error = ?", (update, index) -> {
+            update.setString(index, State.FAILED.name());
+            update.setTimestamp(index + 1, Timestamp.from(completedAt));
+            update.setString(index + 2, error.toString());
+            return index + 3;
+        });
+    }
+
+    @Override
+    public void deliveryRetrying(final ReportDelivery delivery, final Instant nextAttemptAt, final Throwable error) {
+        assertIsOpen();
+        resolve(delivery, "next_attempt_at = ?, error = ?", (update, index) -> {
+            update.setTimestamp(index, Timestamp.from(nextAttemptAt));
+            update.setString(index + 1, error.toString());
+            return index + 2;
+        });
+    }
+
+    @Override
+    public Set<String> getAttachmentDigests() {
+        assertIsOpen();
+        return Ebean.createSqlQuery("SELECT attachments FROM portal.report_deliveries WHERE state = :state")
+                .setParameter("state", State.PENDING.name())
+                .findList()
+                .stream()
+                .flatMap(row -> decodeAttachments(row.getString("attachments")).stream())
+                .map(attachment -> attachment.getContent().getDigest())
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    @Override
+    public long expireDeliveries(final Instant cutoff) {
+        assertIsOpen();
+        try (Transaction transaction = Ebean.beginTransaction();
+             PreparedStatement delete = transaction.getConnection().prepareStatement(
+                     "DELETE FROM portal.report_deliveries WHERE state <> ? AND scheduled < ?")) {
+            delete.setString(1, State.PENDING.name());
+            delete.setTimestamp(2, Timestamp.from(cutoff));
+            final long deleted = delete.executeUpdate();
+            transaction.commit();
+            LOGGER.info()
+                    .setMessage("Expired report deliveries")
+                    .addData("cutoff", cutoff)
+                    .addData("deleted", deleted)
+                    .log();
+            return deleted;
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to expire report deliveries", e);
+        }
+    }
+
+    private void resolve(final ReportDelivery delivery, final String assignments, final ParameterSetter setter) {
+        try (Transaction transaction = Ebean.beginTransaction();
+             PreparedStatement update = transaction.getConnection().prepareStatement(
+                     "UPDATE portal.report_deliveries SET " + assignments
+                             + " WHERE report_id = ? AND scheduled = ? AND recipient = ? AND state = ? AND attempts = ?")) {
+            final int index = setter.set(update, 1);
+            setKey(update, index, delivery);
+            update.setString(index + 3, State.PENDING.name());
+            update.setInt(index + 4, delivery.getAttempts());
+            if (update.executeUpdate() == 0) {
+                LOGGER.warn()
+                        .setMessage("Report delivery claim was lost before it was resolved")
+                        .addData("delivery", delivery)
+                        .log();
+            }
+            transaction.commit();
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to update report delivery", e);
+        }
+    }
+
+    private static void setKey(final PreparedStatement statement, final int index, final ReportDelivery delivery) throws SQLException {
+        statement.setObject(index, delivery.getReportId());
+        statement.setTimestamp(index + 1, Timestamp.from(delivery.getScheduled()));
+        statement.setString(index + 2, delivery.getRecipient());
+    }
+
+    private static String encodeAttachments(final List<DeliveryAttachment> attachments) {
+        return attachments.stream()
+                .map(attachment -> String.join(
+                        ":",
+                        attachment.getType().name(),
+                        attachment.getContent().getDigest(),
+                        Long.toString(attachment.getContent().getSize())))
+                .collect(Collectors.joining(","));
+    }
+
+    private static ImmutableList<DeliveryAttachment> decodeAttachments(final String attachments) {
+        return Splitter.on(',').omitEmptyStrings().splitToList(attachments)
+                .stream()
+                .map(attachment -> {
+                    final List<String> parts = Splitter.on(':').splitToList(attachment);
+                    return new DeliveryAttachment(
+                            DeliveryAttachment.Type.valueOf(parts.get(0)),
+                            new StoredReportResult(parts.get(1), Long.parseLong(parts.get(2))));
+                })
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private void assertIsOpen() {
+        assertIsOpen(true);
+    }
+
+    private void assertIsOpen(final boolean expectedState) {
+        if (_isOpen.get() != expectedState) {
+            throw new IllegalStateException(String.format("DatabaseDeliveryRepository is not %s", expectedState ? "open" : "closed"));
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseDeliveryRepository.class);
+
+    private enum State {
+        PENDING,
+        SENT,
+        FAILED
+    }
+
+    // Sets the parameters of an update's assignments, starting at index, and returns the index of the next parameter.
+    @FunctionalInterface
+    private interface ParameterSetter {
+        int set(PreparedStatement statement, int index) throws SQLException;
+    }
+}
@@ -15,20 +15,30 @@
  */
 package com.arpnetworking.metrics.portal.reports.impl;
 
+import com.arpnetworking.commons.jackson.databind.ObjectMapperFactory;
 import com.arpnetworking.metrics.portal.reports.ReportQuery;
 import com.arpnetworking.metrics.portal.reports.ReportRepository;
+import com.arpnetworking.metrics.portal.scheduling.AsyncJobStateRepository;
 import com.arpnetworking.metrics.portal.scheduling.JobQuery;
 import com.arpnetworking.metrics.portal.scheduling.Schedule;
 import com.arpnetworking.metrics.portal.scheduling.impl.OneOffSchedule;
 import com.arpnetworking.metrics.portal.scheduling.impl.PeriodicSchedule;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
-import io.ebean.DuplicateKeyException;
+import com.google.common.collect.Lists;
+import com.typesafe.config.Config;
 import io.ebean.Ebean;
+import io.ebean.FetchConfig;
 import io.ebean.PagedList;
 import io.ebean.Query;
+import io.ebean.SqlQuery;
+import io.ebean.SqlRow;
 import io.ebean.Transaction;
 import models.ebean.PeriodicReportSchedule;
 import models.ebean.ReportExecution;
@@ -41,22 +51,45 @@ import models.internal.impl.DefaultJobQuery;
 import models.internal.impl.DefaultQueryResult;
 import models.internal.impl.HtmlReportFormat;
 import models.internal.impl.PdfReportFormat;
+import models.internal.impl.ReportExecutionRecord;
+import models.internal.impl.ReportExecutionRollup;
 import models.internal.reports.Recipient;
 import models.internal.reports.Report;
 import models.internal.reports.ReportFormat;
 import models.internal.reports.ReportSource;
 import models.internal.scheduling.Job;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.persistence.DiscriminatorValue;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.PersistenceException;
 
@@ -65,9 +98,10 @@ import javax.persistence.PersistenceException;
  *
  * @author Christian Briones (cbriones at dropbox dot com)
  */
-public final class DatabaseReportRepository implements ReportRepository {
+public final class DatabaseReportRepository implements ReportRepository, AsyncJobStateRepository<Report.Result> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseReportRepository.class);
+    private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getInstance();
     private static final ReportFormat.Visitor<models.ebean.ReportFormat> INTERNAL_TO_BEAN_FORMAT_VISITOR =
             new ReportFormat.Visitor<models.ebean.ReportFormat>() {
                 @Override
@@ -83,27 +117,50 @@ public final class DatabaseReportRepository implements ReportRepository {
                     return new models.ebean.HtmlReportFormat();
                 }
             };
+    private static final Duration DEFAULT_EXECUTION_FLUSH_INTERVAL = Duration.ofMillis(10);
+    private static final int DEFAULT_EXECUTION_MAX_BATCH_SIZE = 500;
+    private static final Duration EXECUTION_PARTITION_LOOKAHEAD = Duration.ofDays(90);
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
     private AtomicBoolean _isOpen = new AtomicBoolean(false);
     private final ReportQueryGenerator _reportQueryGenerator;
+    private final ReportExecutionWriteBuffer _executionWriteBuffer;
 
     /**
      * Public constructor.
      *
      * @param queryGenerator An instance of {@code ReportQueryGenerator} to use with this repository.
      */
-    @Inject
     public DatabaseReportRepository(final ReportQueryGenerator queryGenerator) {
+        this(queryGenerator, DEFAULT_EXECUTION_FLUSH_INTERVAL, DEFAULT_EXECUTION_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param queryGenerator An instance of {@code ReportQueryGenerator} to use with this repository.
+     * @param config The application configuration.
+     */
+    @Inject
+    public DatabaseReportRepository(final ReportQueryGenerator queryGenerator, final Config config) {
+        this(
+                queryGenerator,
+                config.getDuration("reportRepository.executionWriteBuffer.flushInterval"),
+                config.getInt("reportRepository.executionWriteBuffer.maxBatchSize"));
+    }
+
+    private DatabaseReportRepository(
+            final ReportQueryGenerator queryGenerator,
+            final Duration executionFlushInterval,
+            final int executionMaxBatchSize) {
         _reportQueryGenerator = queryGenerator;
+        _executionWriteBuffer = new ReportExecutionWriteBuffer(queryGenerator, executionFlushInterval, executionMaxBatchSize);
     }
 
-    private static final Recipient.Visitor<models.ebean.Recipient> INTERNAL_TO_BEAN_RECIPIENT_VISITOR =
+    private static final Recipient.Visitor<models.ebean.Recipient> INTERNAL_TO_NEW_BEAN_RECIPIENT_VISITOR =
             new Recipient.Visitor<models.ebean.Recipient>() {
                 @Override
                 public models.ebean.Recipient visit(final DefaultEmailRecipient recipient) {
-                    final models.ebean.Recipient ebeanRecipient =
-                            models.ebean.Recipient
-                                    .findByRecipient(recipient)
-                                    .orElseGet(() -> models.ebean.Recipient.newEmailRecipient(recipient.getAddress()));
+                    final models.ebean.Recipient ebeanRecipient = models.ebean.Recipient.newEmailRecipient(recipient.getAddress());
                     ebeanRecipient.setUuid(recipient.getId());
                     return ebeanRecipient;
                 }
@@ -113,6 +170,7 @@ public final class DatabaseReportRepository implements ReportRepository {
     public void open() {
         assertIsOpen(false);
         LOGGER.debug().setMessage("Opening DatabaseReportRepository").log();
+        _executionWriteBuffer.start();
         _isOpen.set(true);
     }
 
@@ -121,6 +179,7 @@ public final class DatabaseReportRepository implements ReportRepository {
         assertIsOpen();
         LOGGER.debug().setMessage("Closing DatabaseReportRepository").log();
         _isOpen.set(false);
+        _executionWriteBuffer.stop();
     }
 
     @Override
@@ -131,15 +190,13 @@ public final class DatabaseReportRepository implements ReportRepository {
     @Override
     public Optional<Instant> getLastRun(final UUID reportId, final Organization organization) throws NoSuchElementException {
         assertIsOpen();
-        return Ebean.find(ReportExecution.class)
-                .orderBy()
-                .desc("completed_at")
+        return Ebean.find(models.ebean.Report.class)
+                .select("lastCompletedRun")
                 .where()
-                .eq("report.uuid", reportId)
-                .eq("report.organization.uuid", organization.getId())
-                .in("state", ReportExecution.State.SUCCESS, ReportExecution.State.FAILURE)
+                .eq("uuid", reportId)
+                .eq("organization.uuid", organization.getId())
                 .findOneOrEmpty()
-                .map(ReportExecution::getCompletedAt);
+                .flatMap(report -> Optional.ofNullable(report.getLastCompletedRun()));
     }
 
     @Override
@@ -152,7 +209,12 @@ public final class DatabaseReportRepository implements ReportRepository {
                 .addData("organization.uuid", organization.getId())
                 .log();
 
-        return getBeanReport(identifier, organization).map(models.ebean.Report::toInternal);
+        return findReportsWithAssociations(1)
+                .where()
+                .eq("uuid", identifier)
+                .eq("organization.uuid", organization.getId())
+                .findOneOrEmpty()
+                .map(models.ebean.Report::toInternal);
     }
 
     private Optional<models.ebean.Report> getBeanReport(final UUID reportId, final Organization organization) {
@@ -178,8 +240,10 @@ public final class DatabaseReportRepository implements ReportRepository {
                 .addData("organization.uuid", organization.getId())
                 .log();
         try (Transaction transaction = Ebean.beginTransaction()) {
+            ebeanReport.setRecipients(resolveRecipients(report.getRecipientsByFormat(), transaction));
 
-            addOrUpdateReportSource(ebeanReport.getReportSource());
+            final models.ebean.ReportSource ebeanSource = ebeanReport.getReportSource();
+            ebeanSource.setId(_reportQueryGenerator.upsertReportSource(ebeanSource, transaction));
 
             final Optional<models.ebean.Report> existingReport = getBeanReport(report.getId(), organization);
             final boolean created = !existingReport.isPresent();
@@ -217,35 +281,6 @@ public final class DatabaseReportRepository implements ReportRepository {
         }
     }
 
-    private void addOrUpdateReportSource(final models.ebean.ReportSource source) {
-        final Optional<Long> sourceId =
-                Ebean.find(models.ebean.ReportSource.class)
-                        .select("id")
-                        .where()
-                        .eq("uuid", source.getUuid())
-                        .findOneOrEmpty()
-                        .map(models.ebean.ReportSource::getId);
-        if (sourceId.isPresent()) {
-            source.setId(sourceId.get());
-            Ebean.update(source);
-        } else {
-            Ebean.save(source);
-        }
-    }
-
-    @Override
-    public void jobFailed(final UUID reportId, final Organization organization, final Instant scheduled, final Throwable error) {
-        assertIsOpen();
-        updateExecutionState(
-                reportId,
-                organization,
-                scheduled,
-                ReportExecution.State.FAILURE,
-                null,
-                error
-        );
-    }
-
     @Override
     public JobQuery<Report.Result> createQuery(final Organization organization) {
         assertIsOpen();
@@ -279,99 +314,265 @@ public final class DatabaseReportRepository implements ReportRepository {
 
     @Override
     public void jobStarted(final UUID reportId, final Organization organization, final Instant scheduled) {
-        assertIsOpen();
-        updateExecutionState(
-                reportId,
-                organization,
-                scheduled,
-                ReportExecution.State.STARTED,
-                null,
-                null
-        );
+        awaitDurable(jobStartedAsync(reportId, organization, scheduled));
     }
 
     @Override
     public void jobSucceeded(final UUID reportId, final Organization organization, final Instant scheduled, final Report.Result result) {
-        assertIsOpen();
-        updateExecutionState(
-                reportId,
-                organization,
-                scheduled,
-                ReportExecution.State.SUCCESS,
-                result,
-                null
-        );
+        awaitDurable(jobSucceededAsync(reportId, organization, scheduled, result));
+    }
+
+    @Override
+    public void jobFailed(final UUID reportId, final Organization organization, final Instant scheduled, final Throwable error) {
+        awaitDurable(jobFailedAsync(reportId, organization, scheduled, error));
+    }
+
+    @Override
+    public CompletionStage<Void> jobStartedAsync(final UUID reportId, final Organization organization, final Instant scheduled) {
+        return updateExecutionState(reportId, organization, scheduled, ReportExecution.State.STARTED, null, null);
+    }
+
+    @Override
+    public CompletionStage<Void> jobSucceededAsync(
+            final UUID reportId,
+            final Organization organization,
+            final Instant scheduled,
+            final Report.Result result
+    ) {
+        return updateExecutionState(reportId, organization, scheduled, ReportExecution.State.SUCCESS, result, null);
     }
 
-    private void updateExecutionState(
+    @Override
+    public CompletionStage<Void> jobFailedAsync(
             final UUID reportId,
             final Organization organization,
             final Instant scheduled,
-            final ReportExecution.State state,
-            @Nullable final Report.Result result,
-            @Nullable final Throwable error
+            final Throwable error
     ) {
+        return updateExecutionState(reportId, organization, scheduled, ReportExecution.State.FAILURE, null, error);
+    }
+
+    @Override
+    public void jobsSkipped(
+            final UUID reportId,
+            final Organization organization,
+            final Instant from,
+            final Instant until,
+            final long count) {
+        assertIsOpen();
         LOGGER.debug()
-                .setMessage("Updating report executions")
+                .setMessage("Recording skipped report executions")
                 .addData("report.uuid", reportId)
-                .addData("scheduled", scheduled)
-                .addData("state", state)
+                .addData("from", from)
+                .addData("until", until)
+                .addData("count", count)
                 .log();
+        if (count == 0) {
+            return;
+        }
         try (Transaction transaction = Ebean.beginTransaction()) {
-            final Optional<models.ebean.Report> report = getBeanReport(reportId, organization);
-            if (!report.isPresent()) {
+            final models.ebean.Report report = getBeanReport(reportId, organization).orElseThrow(() -> {
                 final String message = String.format(
                         "Could not find report with uuid=%s, organization.uuid=%s",
-                        reportId.toString(),
-                        organization.getId()
-                );
-                throw new EntityNotFoundException(message);
+                        reportId,
+                        organization.getId());
+                return new EntityNotFoundException(message);
+            });
+            // The whole range is recorded as one execution, at the first skipped run. That run may already have a row: a
+            // lease whose holder never got to start it can be taken over, but anything with a state is left alone.
+            final Connection connection = transaction.getConnection();
+            final int recorded;
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE portal.report_executions SET state = ?, skipped_until = ?, skipped_count = ?, "
+                            + "lease_holder = NULL, lease_expires_at = NULL "
+                            + "WHERE report_id = ? AND scheduled = ? AND state IS NULL "
+                            + "AND (lease_expires_at IS NULL OR lease_expires_at < ?)")) {
+                update.setString(1, ReportExecution.State.SKIPPED.name());
+                update.setTimestamp(2, Timestamp.from(until));
+                update.setLong(3, count);
+                update.setLong(4, report.getId());
+                update.setTimestamp(5, Timestamp.from(from));
+                update.setTimestamp(6, Timestamp.from(Instant.now()));
+                if (update.executeUpdate() > 0) {
+                    recorded = 1;
+                } else {
+                    recorded = insertSkippedExecution(connection, report.getId(), from, until, count);
+                }
             }
-
-            final ReportExecution execution = new ReportExecution();
-            execution.setError(error);
-            execution.setReport(report.get());
-            execution.setResult(result);
-            execution.setScheduled(scheduled);
-            execution.setState(state);
-
-            switch (state) {
-                case STARTED:
-                    execution.setStartedAt(Instant.now());
-                    execution.setCompletedAt(null);
-                    break;
-                case FAILURE:
-                case SUCCESS:
-                    execution.setCompletedAt(Instant.now());
-                    break;
-                default:
-                    throw new AssertionError("unreachable branch");
+            if (recorded == 0) {
+                LOGGER.warn()
+                        .setMessage("Not recording skipped report executions; the first skipped run already has an execution")
+                        .addData("report.uuid", reportId)
+                        .addData("from", from)
+                        .addData("count", count)
+                        .log();
+                return;
             }
+            transaction.commit();
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final SQLException | RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            LOGGER.error()
+                    .setMessage("Failed to record skipped report executions")
+                    .addData("report.uuid", reportId)
+                    .addData("organization.uuid", organization.getId())
+                    .addData("from", from)
+                    .addData("count", count)
+                    .setThrowable(e)
+                    .log();
+            throw new PersistenceException("Failed to record skipped report executions", e);
+        }
+    }
 
-            try {
-                Ebean.save(execution);
-            } catch (final DuplicateKeyException ignore) {
-                Ebean.update(execution);
+    private static int insertSkippedExecution(
+            final Connection connection,
+            final long reportId,
+            final Instant from,
+            final Instant until,
+            final long count) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO portal.report_executions (report_id, scheduled, state, skipped_until, skipped_count) "
+                        // Parameters in a bare select list have no type to infer on PostgreSQL, so the timestamps are cast.
+                        + "SELECT ?, CAST(? AS TIMESTAMP), ?, CAST(? AS TIMESTAMP), ? WHERE NOT EXISTS "
+                        + "(SELECT 1 FROM portal.report_executions WHERE report_id = ? AND scheduled = ?)")) {
+            insert.setLong(1, reportId);
+            insert.setTimestamp(2, Timestamp.from(from));
+            insert.setString(3, ReportExecution.State.SKIPPED.name());
+            insert.setTimestamp(4, Timestamp.from(until));
+            insert.setLong(5, count);
+            insert.setLong(6, reportId);
+            insert.setTimestamp(7, Timestamp.from(from));
+            return insert.executeUpdate();
+        } catch (final SQLException e) {
+            if (isUniqueViolation(e)) {
+                // Someone else created the execution since we looked.
+                return 0;
             }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a statement failed only because it would have duplicated a unique key.
+     *
+     * @param e The failure.
+     * @return Whether the failure is a unique constraint violation.
+     */
+    /* package private */ static boolean isUniqueViolation(final SQLException e) {
+        return UNIQUE_VIOLATION_SQL_STATE.equals(e.getSQLState());
+    }
 
+    @Override
+    public boolean tryLeaseExecution(
+            final UUID reportId,
+            final Organization organization,
+            final Instant scheduled,
+            final String holder,
+            final Duration duration) {
+        assertIsOpen();
+        final Instant now = Instant.now();
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            final models.ebean.Report report = getBeanReport(reportId, organization).orElseThrow(() -> {
+                final String message = String.format(
+                        "Could not find report with uuid=%s, organization.uuid=%s",
+                        reportId,
+                        organization.getId());
+                return new EntityNotFoundException(message);
+            });
+            final boolean leased = _reportQueryGenerator.tryLeaseExecution(
+                    report.getId(),
+                    scheduled,
+                    holder,
+                    now,
+                    now.plus(duration),
+                    transaction);
+            if (leased) {
+                transaction.commit();
+            }
             LOGGER.debug()
-                    .setMessage("Updated report execution")
+                    .setMessage("Leased report execution")
                     .addData("report.uuid", reportId)
                     .addData("scheduled", scheduled)
-                    .addData("state", state)
+                    .addData("holder", holder)
+                    .addData("leased", leased)
                     .log();
-            transaction.commit();
+            return leased;
             // CHECKSTYLE.OFF: IllegalCatchCheck
         } catch (final RuntimeException e) {
             // CHECKSTYLE.ON: IllegalCatchCheck
             LOGGER.error()
-                    .setMessage("Failed to update report executions")
+                    .setMessage("Failed to lease report execution")
                     .addData("report.uuid", reportId)
+                    .addData("organization.uuid", organization.getId())
                     .addData("scheduled", scheduled)
-                    .addData("state", state)
                     .setThrowable(e)
                     .log();
-            throw new PersistenceException("Failed to update report executions", e);
+            throw new PersistenceException("Failed to lease report execution", e);
+        }
+    }
+
+    @Override
+    public long expireExecutions(final Instant cutoff) {
+        assertIsOpen();
+        final Instant now = Instant.now();
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            _reportQueryGenerator.createExecutionPartitions(now, now.plus(EXECUTION_PARTITION_LOOKAHEAD), transaction);
+            final long deleted = _reportQueryGenerator.deleteExecutionsBefore(cutoff, transaction);
+            transaction.commit();
+            LOGGER.info()
+                    .setMessage("Expired report executions")
+                    .addData("cutoff", cutoff)
+                    .addData("deleted", deleted)
+                    .log();
+            return deleted;
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            LOGGER.error()
+                    .setMessage("Failed to expire report executions")
+                    .addData("cutoff", cutoff)
+                    .setThrowable(e)
+                    .log();
+            throw new PersistenceException("Failed to expire report executions", e);
+        }
+    }
+
+    @Override
+    public Set<String> getResultDigests() {
+        assertIsOpen();
+        return Ebean.createSqlQuery("SELECT DISTINCT result_digest FROM portal.report_executions WHERE result_digest IS NOT NULL")
+                .findList()
+                .stream()
+                .map(row -> row.getString("result_digest"))
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    private CompletionStage<Void> updateExecutionState(
+            final UUID reportId,
+            final Organization organization,
+            final Instant scheduled,
+            final ReportExecution.State state,
+            @Nullable final Report.Result result,
+            @Nullable final Throwable error
+    ) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Updating report executions")
+                .addData("report.uuid", reportId)
+                .addData("scheduled", scheduled)
+                .addData("state", state)
+                .log();
+        return _executionWriteBuffer.enqueue(reportId, organization, scheduled, state, result, error);
+    }
+
+    private static void awaitDurable(final CompletionStage<Void> write) {
+        try {
+            write.toCompletableFuture().join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PersistenceException("Failed to update report executions", e.getCause());
         }
     }
 
@@ -385,6 +586,62 @@ public final class DatabaseReportRepository implements ReportRepository {
                 .findOneOrEmpty();
     }
 
+    @Override
+    public List<ReportExecutionRecord> getExecutions(
+            final UUID reportId,
+            final Organization organization,
+            final Optional<Instant> before,
+            final int limit) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Getting report executions")
+                .addData("report.uuid", reportId)
+                .addData("organization.uuid", organization.getId())
+                .addData("before", before)
+                .addData("limit", limit)
+                .log();
+        // Keyset pagination on scheduled walks the (report_id, scheduled) primary key, however deep the page.
+        final SqlQuery query = Ebean.createSqlQuery(
+                "SELECT e.scheduled, e.state, e.started_at, e.completed_at"
+                        + " FROM portal.report_executions e"
+                        + " JOIN portal.reports r ON r.id = e.report_id"
+                        + " JOIN portal.organizations o ON o.id = r.organization_id"
+                        + " WHERE r.uuid = :report AND o.uuid = :organization"
+                        // A row without a state is only a lease on a run that hasn't started.
+                        + " AND e.state IS NOT NULL"
+                        + (before.isPresent() ? " AND e.scheduled < :before" : "")
+                        + " ORDER BY e.scheduled DESC")
+                .setParameter("report", reportId)
+                .setParameter("organization", organization.getId())
+                .setMaxRows(limit);
+        before.ifPresent(instant -> query.setParameter("before", Timestamp.from(instant)));
+        return query.findList()
+                .stream()
+                .map(row -> new ReportExecutionRecord(
+                        reportId,
+                        row.getTimestamp("scheduled").toInstant(),
+                        row.getString("state"),
+                        Optional.ofNullable(row.getTimestamp("started_at")).map(Timestamp::toInstant),
+                        Optional.ofNullable(row.getTimestamp("completed_at")).map(Timestamp::toInstant)))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    @Override
+    public List<ReportExecutionRollup> getExecutionRollups(
+            final UUID reportId,
+            final Organization organization,
+            final Instant from,
+            final Instant until) {
+        assertIsOpen();
+        return _reportQueryGenerator.computeExecutionRollups(Optional.of(reportId), organization.getId(), from, until);
+    }
+
+    @Override
+    public List<ReportExecutionRollup> getExecutionRollups(final Organization organization, final Instant from, final Instant until) {
+        assertIsOpen();
+        return _reportQueryGenerator.computeExecutionRollups(Optional.empty(), organization.getId(), from, until);
+    }
+
     private models.ebean.Report internalModelToBean(final Report internalReport) {
         final ReportSchedule schedule = internalModelToBean(internalReport.getSchedule());
         final models.ebean.ReportSource source = internalModelToBean(internalReport.getSource());
@@ -394,7 +651,6 @@ public final class DatabaseReportRepository implements ReportRepository {
         beanReport.setName(internalReport.getName());
         beanReport.setSchedule(schedule);
         beanReport.setReportSource(source);
-        beanReport.setRecipients(internalModelToBean(internalReport.getRecipientsByFormat()));
         return beanReport;
     }
 
@@ -408,12 +664,14 @@ public final class DatabaseReportRepository implements ReportRepository {
             beanPeriodic.setOffset(internalPeriodic.getOffset());
             beanPeriodic.setPeriod(beanPeriod);
             beanPeriodic.setZone(internalPeriodic.getZone());
+            beanPeriodic.setCatchUpPolicy(internalPeriodic.getCatchUpPolicy());
             return beanPeriodic;
         } else if (internalSchedule instanceof OneOffSchedule) {
             final OneOffSchedule internalOneOff = (OneOffSchedule) internalSchedule;
             final ReportSchedule beanOneOff = new ReportSchedule();
             beanOneOff.setRunAt(internalOneOff.getRunAtAndAfter());
             beanOneOff.setRunUntil(internalOneOff.getRunUntil().orElse(null));
+            beanOneOff.setCatchUpPolicy(internalOneOff.getCatchUpPolicy());
             return beanOneOff;
         }
         throw new IllegalArgumentException("Unsupported internal model: " + internalSchedule.getClass());
@@ -434,16 +692,39 @@ public final class DatabaseReportRepository implements ReportRepository {
         throw new IllegalArgumentException("Unsupported internal model: " + reportSource.getClass());
     }
 
-    private ImmutableSetMultimap<models.ebean.ReportFormat, models.ebean.Recipient> internalModelToBean(
-            final Map<ReportFormat, Collection<Recipient>> recipients
+    private ImmutableSetMultimap<models.ebean.ReportFormat, models.ebean.Recipient> resolveRecipients(
+            final Map<ReportFormat, Collection<Recipient>> recipients,
+            final Transaction transaction
     ) {
+        // Look up every recipient in one query and insert whichever are missing in one batch, rather than a round trip
+        // per recipient.
+        final List<Recipient> allRecipients = recipients.values()
+                .stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+        final Map<UUID, models.ebean.Recipient> beanRecipients = new HashMap<>(models.ebean.Recipient.findByRecipients(allRecipients));
+        final List<models.ebean.Recipient> missing = Lists.newArrayList();
+        for (final Recipient recipient : allRecipients) {
+            if (!beanRecipients.containsKey(recipient.getId())) {
+                final models.ebean.Recipient beanRecipient = INTERNAL_TO_NEW_BEAN_RECIPIENT_VISITOR.visit(recipient);
+                beanRecipients.put(recipient.getId(), beanRecipient);
+                missing.add(beanRecipient);
+            }
+        }
+        if (!missing.isEmpty()) {
+            transaction.setBatchMode(true);
+            transaction.setBatchSize(missing.size());
+            Ebean.saveAll(missing);
+            transaction.flush();
+            transaction.setBatchMode(false);
+        }
+
         final ImmutableSetMultimap.Builder<models.ebean.ReportFormat, models.ebean.Recipient> multimapBuilder =
                 ImmutableSetMultimap.builder();
-
         for (final Map.Entry<ReportFormat, Collection<Recipient>> entry : recipients.entrySet()) {
             final models.ebean.ReportFormat beanFormat = INTERNAL_TO_BEAN_FORMAT_VISITOR.visit(entry.getKey());
             for (final Recipient recipient : entry.getValue()) {
-                multimapBuilder.put(beanFormat, INTERNAL_TO_BEAN_RECIPIENT_VISITOR.visit(recipient));
+                multimapBuilder.put(beanFormat, beanRecipients.get(recipient.getId()));
             }
         }
         return multimapBuilder.build();
@@ -459,6 +740,42 @@ public final class DatabaseReportRepository implements ReportRepository {
         }
     }
 
+    private static Optional<String> toJson(@Nullable final Object value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(OBJECT_MAPPER.writeValueAsString(value));
+        } catch (final JsonProcessingException e) {
+            throw new PersistenceException("Failed to serialize report execution", e);
+        }
+    }
+
+    private static void setExecutionParameters(
+            final PreparedStatement statement,
+            final ReportExecution execution,
+            final int firstIndex
+    ) throws SQLException {
+        int index = firstIndex;
+        statement.setString(index++, execution.getState().name());
+        statement.setTimestamp(index++, Optional.ofNullable(execution.getStartedAt()).map(Timestamp::from).orElse(null));
+        statement.setTimestamp(index++, Optional.ofNullable(execution.getCompletedAt()).map(Timestamp::from).orElse(null));
+        if (execution.getResultDigest() == null) {
+            statement.setString(index++, toJson(execution.getResult()).orElse(null));
+            statement.setString(index++, null);
+            statement.setNull(index++, Types.BIGINT);
+        } else {
+            // Stored results are referenced by digest rather than serialized.
+            statement.setString(index++, null);
+            statement.setString(index++, execution.getResultDigest());
+            statement.setLong(index++, execution.getResultSize());
+        }
+        statement.setString(
+                index,
+                toJson(Optional.ofNullable(execution.getError()).map(error -> ImmutableMap.of("exception", error)).orElse(null))
+                        .orElse(null));
+    }
+
     /**
      * A generator for a database query given a {@link JobQuery}.
      */
@@ -466,10 +783,76 @@ public final class DatabaseReportRepository implements ReportRepository {
         /**
          * Translate the {@code JobQuery} to an ebean {@link Query}.
          *
+         * The reports must be fetched along with their sources, schedules and recipients, in a number of queries that
+         * doesn't grow with the size of the page.
+         *
          * @param query The repository agnostic {@code ReportQuery}.
          * @return The database specific {@code PagedList} query result.
          */
         PagedList<models.ebean.Report> createReportQuery(ReportQuery query);
+
+        /**
+         * Insert or update a report source, by its uuid. This needs to be executed in a transaction.
+         *
+         * @param source The source to write.
+         * @param transaction The transaction to write in.
+         * @return The database id of the source.
+         */
+        long upsertReportSource(models.ebean.ReportSource source, Transaction transaction);
+
+        /**
+         * Insert or update a batch of executions. This needs to be executed in a transaction.
+         *
+         * An execution without a start time leaves any existing {@code started_at} intact. A completed execution releases
+         * its lease, so that nobody waits out the lease of a run that is already over.
+         *
+         * @param executions The executions to write, with at most one execution per (report, scheduled).
+         * @param transaction The transaction to write in.
+         */
+        void upsertExecutions(Collection<ReportExecution> executions, Transaction transaction);
+
+        /**
+         * Take or extend the lease on an execution, creating the execution if needed. This needs to be executed in a
+         * transaction, which should be rolled back if the lease was not granted.
+         *
+         * @param reportId The database id of the report.
+         * @param scheduled The time the execution is scheduled for.
+         * @param holder The would-be holder of the lease.
+         * @param now The current time; leases that expired before this are up for grabs.
+         * @param expiresAt When the lease should expire, if granted.
+         * @param transaction The transaction to write in.
+         * @return Whether {@code holder} now holds the lease. Never true for a completed execution.
+         */
+        boolean tryLeaseExecution(long reportId, Instant scheduled, String holder, Instant now, Instant expiresAt, Transaction transaction);
+
+        /**
+         * Make sure that executions scheduled in a range of time can be stored. This needs to be executed in a transaction.
+         *
+         * @param from The start of the range.
+         * @param until The end of the range.
+         * @param transaction The transaction to write in.
+         */
+        void createExecutionPartitions(Instant from, Instant until, Transaction transaction);
+
+        /**
+         * Delete all executions scheduled before a cutoff. This needs to be executed in a transaction.
+         *
+         * @param cutoff Executions scheduled before this are deleted.
+         * @param transaction The transaction to write in.
+         * @return The number of executions deleted.
+         */
+        long deleteExecutionsBefore(Instant cutoff, Transaction transaction);
+
+        /**
+         * Compute daily statistics of the executions in a window of scheduled time.
+         *
+         * @param reportId The report to include; empty to include every report of the organization.
+         * @param organizationId The uuid of the organization.
+         * @param from Only executions scheduled at or after this are included.
+         * @param until Only executions scheduled before this are included.
+         * @return One rollup per day that had any executions, in chronological order.
+         */
+        List<ReportExecutionRollup> computeExecutionRollups(Optional<UUID> reportId, UUID organizationId, Instant from, Instant until);
     }
 
     /**
@@ -484,15 +867,503 @@ public final class DatabaseReportRepository implements ReportRepository {
 
         @Override
         public PagedList<models.ebean.Report> createReportQuery(final ReportQuery query) {
-            final int offset = query.getOffset().orElse(0);
-            final int limit = query.getLimit();
+            return createPagedReportQuery(query);
+        }
+
+        @Override
+        public long upsertReportSource(final models.ebean.ReportSource source, final Transaction transaction) {
+            return saveReportSource(source);
+        }
+
+        @Override
+        public void upsertExecutions(final Collection<ReportExecution> executions, final Transaction transaction) {
+            // Without a portable upsert, update everything in one batch and then insert whatever was missing.
+            final List<ReportExecution> missing = Lists.newArrayList();
+            final Connection connection = transaction.getConnection();
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE portal.report_executions "
+                            + "SET state = ?, started_at = COALESCE(?, started_at), completed_at = ?, result = ?, "
+                            + "result_digest = ?, result_size = ?, error = ?, "
+                            + "lease_holder = CASE WHEN ? THEN NULL ELSE lease_holder END, "
+                            + "lease_expires_at = CASE WHEN ? THEN NULL ELSE lease_expires_at END "
+                            + "WHERE report_id = ? AND scheduled = ?")) {
+                for (final ReportExecution execution : executions) {
+                    setExecutionParameters(update, execution, 1);
+                    update.setBoolean(8, execution.getCompletedAt() != null);
+                    update.setBoolean(9, execution.getCompletedAt() != null);
+                    update.setLong(10, execution.getReport().getId());
+                    update.setTimestamp(11, Timestamp.from(execution.getScheduled()));
+                    update.addBatch();
+                }
+                final int[] updated = update.executeBatch();
+                int i = 0;
+                for (final ReportExecution execution : executions) {
+                    if (updated[i++] == 0) {
+                        missing.add(execution);
+                    }
+                }
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to update report executions", e);
+            }
+
+            if (missing.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO portal.report_executions "
+                            + "(report_id, scheduled, state, started_at, completed_at, result, result_digest, result_size, error) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (final ReportExecution execution : missing) {
+                    insert.setLong(1, execution.getReport().getId());
+                    insert.setTimestamp(2, Timestamp.from(execution.getScheduled()));
+                    setExecutionParameters(insert, execution, 3);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to insert report executions", e);
+            }
+        }
+
+        @Override
+        public boolean tryLeaseExecution(
+                final long reportId,
+                final Instant scheduled,
+                final String holder,
+                final Instant now,
+                final Instant expiresAt,
+                final Transaction transaction) {
+            final Connection connection = transaction.getConnection();
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE portal.report_executions SET lease_holder = ?, lease_expires_at = ? "
+                            + "WHERE report_id = ? AND scheduled = ? "
+                            + "AND completed_at IS NULL "
+                            + "AND (lease_holder IS NULL OR lease_holder = ? OR lease_expires_at < ?)")) {
+                update.setString(1, holder);
+                update.setTimestamp(2, Timestamp.from(expiresAt));
+                update.setLong(3, reportId);
+                update.setTimestamp(4, Timestamp.from(scheduled));
+                update.setString(5, holder);
+                update.setTimestamp(6, Timestamp.from(now));
+                if (update.executeUpdate() > 0) {
+                    return true;
+                }
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to lease report execution", e);
+            }
+
+            // Either someone else holds the lease, or there's no execution yet. If the latter, whoever inserts it first wins;
+            // everyone else fails on the primary key.
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO portal.report_executions (report_id, scheduled, lease_holder, lease_expires_at) VALUES (?, ?, ?, ?)")) {
+                insert.setLong(1, reportId);
+                insert.setTimestamp(2, Timestamp.from(scheduled));
+                insert.setString(3, holder);
+                insert.setTimestamp(4, Timestamp.from(expiresAt));
+                return insert.executeUpdate() > 0;
+            } catch (final SQLException e) {
+                if (!isUniqueViolation(e)) {
+                    throw new PersistenceException("Failed to lease report execution", e);
+                }
+                // The execution already exists (and someone else holds its lease, or it completed), or a concurrent insert
+                // beat us to it.
+                LOGGER.debug()
+                        .setMessage("Lost race to create leased report execution")
+                        .addData("reportId", reportId)
+                        .addData("scheduled", scheduled)
+                        .setThrowable(e)
+                        .log();
+                return false;
+            }
+        }
+
+        @Override
+        public void createExecutionPartitions(final Instant from, final Instant until, final Transaction transaction) {
+            // Executions are not partitioned.
+        }
+
+        @Override
+        public long deleteExecutionsBefore(final Instant cutoff, final Transaction transaction) {
+            try (PreparedStatement delete = transaction.getConnection().prepareStatement(
+                    "DELETE FROM portal.report_executions WHERE scheduled < ?")) {
+                delete.setTimestamp(1, Timestamp.from(cutoff));
+                return delete.executeUpdate();
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to delete report executions", e);
+            }
+        }
+
+        @Override
+        public List<ReportExecutionRollup> computeExecutionRollups(
+                final Optional<UUID> reportId,
+                final UUID organizationId,
+                final Instant from,
+                final Instant until) {
+            // Not every database can compute percentiles, so this aggregates the (narrow) rows of the window in memory.
+            final Map<Instant, List<SqlRow>> rowsByDay = createExecutionWindowQuery(
+                    "SELECT e.scheduled, e.state, e.started_at, e.completed_at, e.skipped_count",
+                    "",
+                    reportId,
+                    organizationId,
+                    from,
+                    until)
+                    .findList()
+                    .stream()
+                    .collect(Collectors.groupingBy(
+                            row -> row.getTimestamp("scheduled").toInstant().truncatedTo(ChronoUnit.DAYS),
+                            TreeMap::new,
+                            Collectors.toList()));
+            final ImmutableList.Builder<ReportExecutionRollup> rollups = ImmutableList.builder();
+            for (final Map.Entry<Instant, List<SqlRow>> day : rowsByDay.entrySet()) {
+                final double[] durations = day.getValue()
+                        .stream()
+                        .filter(row -> row.getTimestamp("started_at") != null && row.getTimestamp("completed_at") != null)
+                        .mapToDouble(row -> Duration.between(
+                                row.getTimestamp("started_at").toInstant(),
+                                row.getTimestamp("completed_at").toInstant()).toMillis() / 1000.0)
+                        .sorted()
+                        .toArray();
+                final long skipped = day.getValue()
+                        .stream()
+                        .filter(row -> ReportExecution.State.SKIPPED.name().equals(row.getString("state")))
+                        .mapToLong(DatabaseReportRepository::getSkippedCount)
+                        .sum();
+                rollups.add(new ReportExecutionRollup(
+                        day.getKey(),
+                        day.getValue().size() - countInState(day.getValue(), ReportExecution.State.SKIPPED) + skipped,
+                        countInState(day.getValue(), ReportExecution.State.SUCCESS),
+                        countInState(day.getValue(), ReportExecution.State.FAILURE),
+                        skipped,
+                        percentile(durations, 0.5),
+                        percentile(durations, 0.95)));
+            }
+            return rollups.build();
+        }
+
+        private static long countInState(final List<SqlRow> rows, final ReportExecution.State state) {
+            return rows.stream().filter(row -> state.name().equals(row.getString("state"))).count();
+        }
+
+        // Interpolates between the closest ranks, like PostgreSQL's percentile_cont.
+        private static Optional<Duration> percentile(final double[] sortedSeconds, final double fraction) {
+            if (sortedSeconds.length == 0) {
+                return Optional.empty();
+            }
+            final double rank = fraction * (sortedSeconds.length - 1);
+            final int lower = (int) Math.floor(rank);
+            final int upper = (int) Math.ceil(rank);
+            return Optional.of(secondsToDuration(sortedSeconds[lower] + (rank - lower) * (sortedSeconds[upper] - sortedSeconds[lower])));
+        }
+    }
+
+    /**
+     * Postgresql specific queries for reports, using native upserts.
+     *
+     * Executions are range-partitioned by month of {@code scheduled}, so expiring them drops whole partitions. This needs
+     * PostgreSQL 11 or later (see the V17 migration). Creating or dropping a partition takes an {@code ACCESS EXCLUSIVE}
+     * lock on {@code report_executions} until the expiring transaction commits, blocking every read and write of executions
+     * in the meantime; the lock wait is bounded by {@code PARTITION_LOCK_TIMEOUT} so that a long-running reader fails the
+     * expiry (which is retried next period) rather than queueing everyone else behind it.
+     */
+    public static final class PostgresqlQueryGenerator implements ReportQueryGenerator {
+
+        /**
+         * Default constructor.
+         */
+        public PostgresqlQueryGenerator() {}
+
+        @Override
+        public PagedList<models.ebean.Report> createReportQuery(final ReportQuery query) {
+            return createPagedReportQuery(query);
+        }
+
+        @Override
+        public long upsertReportSource(final models.ebean.ReportSource source, final Transaction transaction) {
+            final DiscriminatorValue discriminator = source.getClass().getAnnotation(DiscriminatorValue.class);
+            if (!(source instanceof models.ebean.ChromeScreenshotReportSource) || discriminator == null) {
+                return saveReportSource(source);
+            }
+            final models.ebean.ChromeScreenshotReportSource chromeSource = (models.ebean.ChromeScreenshotReportSource) source;
+            try (PreparedStatement upsert = transaction.getConnection().prepareStatement(
+                    "INSERT INTO portal.report_sources "
+                            + "(uuid, type, url, title, ignore_certificate_errors, triggering_event_name) "
+                            + "VALUES (?, ?, ?, ?, CASE WHEN ? THEN B'1' ELSE B'0' END, ?) "
+                            + "ON CONFLICT (uuid) DO UPDATE SET "
+                            + "version = report_sources.version + 1, "
+                            + "type = EXCLUDED.type, "
+                            + "url = EXCLUDED.url, "
+                            + "title = EXCLUDED.title, "
+                            + "ignore_certificate_errors = EXCLUDED.ignore_certificate_errors, "
+                            + "triggering_event_name = EXCLUDED.triggering_event_name, "
+                            + "deleted = B'0', "
+                            + "updated_at = now() "
+                            + "RETURNING id")) {
+                upsert.setObject(1, chromeSource.getUuid());
+                upsert.setString(2, discriminator.value());
+                upsert.setString(3, chromeSource.getUri().toString());
+                upsert.setString(4, chromeSource.getTitle());
+                upsert.setBoolean(5, chromeSource.isIgnoreCertificateErrors());
+                upsert.setString(6, chromeSource.getTriggeringEventName());
+                try (ResultSet resultSet = upsert.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to upsert report source", e);
+            }
+        }
+
+        @Override
+        public void upsertExecutions(final Collection<ReportExecution> executions, final Transaction transaction) {
+            try (PreparedStatement upsert = transaction.getConnection().prepareStatement(
+                    "INSERT INTO portal.report_executions "
+                            + "(report_id, scheduled, state, started_at, completed_at, result, result_digest, result_size, error) "
+                            + "VALUES (?, ?, ?, ?, ?, CAST(? AS JSONB), ?, ?, CAST(? AS JSONB)) "
+                            + "ON CONFLICT (report_id, scheduled) DO UPDATE SET "
+                            + "state = EXCLUDED.state, "
+                            + "started_at = COALESCE(EXCLUDED.started_at, report_executions.started_at), "
+                            + "completed_at = EXCLUDED.completed_at, "
+                            + "result = EXCLUDED.result, "
+                            + "result_digest = EXCLUDED.result_digest, "
+                            + "result_size = EXCLUDED.result_size, "
+                            + "error = EXCLUDED.error, "
+                            + "lease_holder = CASE WHEN EXCLUDED.completed_at IS NULL THEN report_executions.lease_holder END, "
+                            + "lease_expires_at = CASE WHEN EXCLUDED.completed_at IS NULL THEN report_executions.lease_expires_at END")) {
+                for (final ReportExecution execution : executions) {
+                    upsert.setLong(1, execution.getReport().getId());
+                    upsert.setTimestamp(2, Timestamp.from(execution.getScheduled()));
+                    setExecutionParameters(upsert, execution, 3);
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to upsert report executions", e);
+            }
+        }
+
+        @Override
+        public boolean tryLeaseExecution(
+                final long reportId,
+                final Instant scheduled,
+                final String holder,
+                final Instant now,
+                final Instant expiresAt,
+                final Transaction transaction) {
+            try (PreparedStatement upsert = transaction.getConnection().prepareStatement(
+                    "INSERT INTO portal.report_executions (report_id, scheduled, lease_holder, lease_expires_at) "
+                            + "VALUES (?, ?, ?, ?) "
+                            + "ON CONFLICT (report_id, scheduled) DO UPDATE SET "
+                            + "lease_holder = EXCLUDED.lease_holder, "
+                            + "lease_expires_at = EXCLUDED.lease_expires_at "
+                            + "WHERE report_executions.completed_at IS NULL "
+                            + "AND (report_executions.lease_holder IS NULL "
+                            + "OR report_executions.lease_holder = EXCLUDED.lease_holder "
+                            + "OR report_executions.lease_expires_at < ?)")) {
+                upsert.setLong(1, reportId);
+                upsert.setTimestamp(2, Timestamp.from(scheduled));
+                upsert.setString(3, holder);
+                upsert.setTimestamp(4, Timestamp.from(expiresAt));
+                upsert.setTimestamp(5, Timestamp.from(now));
+                return upsert.executeUpdate() > 0;
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to lease report execution", e);
+            }
+        }
+
+        @Override
+        public void createExecutionPartitions(final Instant from, final Instant until, final Transaction transaction) {
+            final YearMonth last = YearMonth.from(until.atOffset(ZoneOffset.UTC));
+            try (Statement statement = transaction.getConnection().createStatement()) {
+                limitLockWait(statement);
+                for (YearMonth month = YearMonth.from(from.atOffset(ZoneOffset.UTC)); !month.isAfter(last); month = month.plusMonths(1)) {
+                    statement.execute(String.format(
+                            "CREATE TABLE IF NOT EXISTS portal.%s PARTITION OF portal.report_executions "
+                                    + "FOR VALUES FROM ('%s') TO ('%s')",
+                            partitionName(month),
+                            month.atDay(1).atStartOfDay(),
+                            month.plusMonths(1).atDay(1).atStartOfDay()));
+                }
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to create report execution partitions", e);
+            }
+        }
+
+        @Override
+        public long deleteExecutionsBefore(final Instant cutoff, final Transaction transaction) {
+            final Connection connection = transaction.getConnection();
+            final YearMonth cutoffMonth = YearMonth.from(cutoff.atOffset(ZoneOffset.UTC));
+            long deleted = 0;
+            try (Statement statement = connection.createStatement()) {
+                // Months that ended before the cutoff are dropped wholesale, which is far cheaper than deleting (and later
+                // vacuuming) their rows.
+                final List<String> expired = Lists.newArrayList();
+                try (ResultSet partitions = statement.executeQuery(
+                        "SELECT child.relname FROM pg_inherits "
+                                + "JOIN pg_class parent ON pg_inherits.inhparent = parent.oid "
+                                + "JOIN pg_class child ON pg_inherits.inhrelid = child.oid "
+                                + "JOIN pg_namespace ns ON parent.relnamespace = ns.oid "
+                                + "WHERE ns.nspname = 'portal' AND parent.relname = 'report_executions'")) {
+                    while (partitions.next()) {
+                        final String partition = partitions.getString(1);
+                        final Matcher matcher = PARTITION_NAME_PATTERN.matcher(partition);
+                        if (matcher.matches()) {
+                            final YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                            if (month.isBefore(cutoffMonth)) {
+                                expired.add(partition);
+                            }
+                        }
+                    }
+                }
+                if (!expired.isEmpty()) {
+                    limitLockWait(statement);
+                }
+                for (final String partition : expired) {
+                    try (ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM portal." + partition)) {
+                        count.next();
+                        deleted += count.getLong(1);
+                    }
+                    statement.execute("DROP TABLE portal." + partition);
+                }
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to drop report execution partitions", e);
+            }
 
-            return Ebean.find(models.ebean.Report.class)
-                    .where()
-                    .eq("organization.uuid", query.getOrganization().getId())
-                    .setFirstRow(offset)
-                    .setMaxRows(limit)
-                    .findPagedList();
+            // Whatever is left is in the cutoff's own month, or in the default partition.
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM portal.report_executions WHERE scheduled < ?")) {
+                delete.setTimestamp(1, Timestamp.from(cutoff));
+                deleted += delete.executeUpdate();
+            } catch (final SQLException e) {
+                throw new PersistenceException("Failed to delete report executions", e);
+            }
+            return deleted;
         }
+
+        @Override
+        public List<ReportExecutionRollup> computeExecutionRollups(
+                final Optional<UUID> reportId,
+                final UUID organizationId,
+                final Instant from,
+                final Instant until) {
+            return createExecutionWindowQuery(
+                    "SELECT date_trunc('day', e.scheduled) AS day, "
+                            + "SUM(CASE WHEN e.state = 'SKIPPED' THEN COALESCE(e.skipped_count, 1) ELSE 1 END) AS total, "
+                            + "COUNT(*) FILTER (WHERE e.state = 'SUCCESS') AS succeeded, "
+                            + "COUNT(*) FILTER (WHERE e.state = 'FAILURE') AS failed, "
+                            + "COALESCE(SUM(COALESCE(e.skipped_count, 1)) FILTER (WHERE e.state = 'SKIPPED'), 0) AS skipped, "
+                            + "percentile_cont(0.5) WITHIN GROUP (ORDER BY EXTRACT(EPOCH FROM e.completed_at - e.started_at)) AS p50, "
+                            + "percentile_cont(0.95) WITHIN GROUP (ORDER BY EXTRACT(EPOCH FROM e.completed_at - e.started_at)) AS p95",
+                    " GROUP BY 1 ORDER BY 1",
+                    reportId,
+                    organizationId,
+                    from,
+                    until)
+                    .findList()
+                    .stream()
+                    .map(row -> new ReportExecutionRollup(
+                            row.getTimestamp("day").toInstant(),
+                            row.getLong("total"),
+                            row.getLong("succeeded"),
+                            row.getLong("failed"),
+                            row.getLong("skipped"),
+                            Optional.ofNullable(row.getDouble("p50")).map(DatabaseReportRepository::secondsToDuration),
+                            Optional.ofNullable(row.getDouble("p95")).map(DatabaseReportRepository::secondsToDuration)))
+                    .collect(ImmutableList.toImmutableList());
+        }
+
+        private static void limitLockWait(final Statement statement) throws SQLException {
+            statement.execute("SET LOCAL lock_timeout = '" + PARTITION_LOCK_TIMEOUT + "'");
+        }
+
+        private static String partitionName(final YearMonth month) {
+            return String.format("report_executions_%04d_%02d", month.getYear(), month.getMonthValue());
+        }
+
+        private static final String PARTITION_LOCK_TIMEOUT = "10s";
+        private static final Pattern PARTITION_NAME_PATTERN = Pattern.compile("report_executions_(\\d{4})_(\\d{2})");
+    }
+
+    /**
+     * Find reports along with everything {@link models.ebean.Report#toInternal()} reads, so that converting them
+     * doesn't lazy-load each association of each report separately.
+     *
+     * The source and schedule are joined. The recipient associations, with their recipients and formats, are loaded by
+     * a secondary query per {@code batchSize} reports (a to-many join can't be paged).
+     *
+     * @param batchSize The number of reports to load the recipients of at once.
+     * @return The query.
+     */
+    private static Query<models.ebean.Report> findReportsWithAssociations(final int batchSize) {
+        return Ebean.find(models.ebean.Report.class)
+                .fetch("reportSource")
+                .fetch("schedule")
+                .fetch("recipientAssocs", new FetchConfig().query(batchSize))
+                .fetch("recipientAssocs.recipient")
+                .fetch("recipientAssocs.format");
+    }
+
+    private static SqlQuery createExecutionWindowQuery(
+            final String select,
+            final String suffix,
+            final Optional<UUID> reportId,
+            final UUID organizationId,
+            final Instant from,
+            final Instant until) {
+        // The window on scheduled lets PostgreSQL skip every partition outside of it.
+        final SqlQuery query = Ebean.createSqlQuery(
+                select
+                        + " FROM portal.report_executions e"
+                        + " JOIN portal.reports r ON r.id = e.report_id"
+                        + " JOIN portal.organizations o ON o.id = r.organization_id"
+                        + " WHERE o.uuid = :organization"
+                        + (reportId.isPresent() ? " AND r.uuid = :report" : "")
+                        + " AND e.scheduled >= :from AND e.scheduled < :until"
+                        // A row without a state is only a lease on a run that hasn't started.
+                        + " AND e.state IS NOT NULL"
+                        + suffix)
+                .setParameter("organization", organizationId)
+                .setParameter("from", Timestamp.from(from))
+                .setParameter("until", Timestamp.from(until));
+        reportId.ifPresent(id -> query.setParameter("report", id));
+        return query;
+    }
+
+    // A skipped row stands for the whole range of runs it skipped.
+    private static long getSkippedCount(final SqlRow row) {
+        final Long skippedCount = row.getLong("skipped_count");
+        return skippedCount == null ? 1 : skippedCount;
+    }
+
+    private static Duration secondsToDuration(final double seconds) {
+        return Duration.ofNanos(Math.round(seconds * 1e9));
+    }
+
+    private static long saveReportSource(final models.ebean.ReportSource source) {
+        final Optional<Long> sourceId =
+                Ebean.find(models.ebean.ReportSource.class)
+                        .select("id")
+                        .where()
+                        .eq("uuid", source.getUuid())
+                        .findOneOrEmpty()
+                        .map(models.ebean.ReportSource::getId);
+        if (sourceId.isPresent()) {
+            source.setId(sourceId.get());
+            Ebean.update(source);
+        } else {
+            Ebean.save(source);
+        }
+        return source.getId();
+    }
+
+    private static PagedList<models.ebean.Report> createPagedReportQuery(final ReportQuery query) {
+        final int offset = query.getOffset().orElse(0);
+        final int limit = query.getLimit();
+
+        // Load the recipients of the whole page at once
+        return findReportsWithAssociations(Math.max(1, limit))
+                .where()
+                .eq("organization.uuid", query.getOrganization().getId())
+                .setFirstRow(offset)
+                .setMaxRows(limit)
+                .findPagedList();
     }
 }
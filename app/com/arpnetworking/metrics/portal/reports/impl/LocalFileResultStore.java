@@ -0,0 +1,257 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import models.internal.impl.StoredReportResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link ResultStore} on the local filesystem.
+ *
+ * Content is split into fixed-size chunks, each stored once under its own digest, so that identical content (and
+ * content that shares whole chunks) is stored only once. A small manifest, stored under the digest of the whole
+ * content, lists the content's chunks; reads stream through the chunks one at a time.
+ *
+ * Files are written to a temporary location and then renamed into place, so readers never see partial content and
+ * concurrent writers of the same content don't interfere with each other.
+ *
+ * Collection is a mark and sweep: manifests that are neither referenced nor recently stored are deleted, and then so
+ * are the chunks that no remaining manifest lists. Storing content that already exists refreshes the modification
+ * time of its manifest and chunks, which is what protects it from a concurrent collection. A store that refreshes a
+ * file in the instant between collection checking its modification time and deleting it is not guarded against; the
+ * content would then have to be stored again.
+ *
+ * @author agent (agent at local)
+ */
+public final class LocalFileResultStore implements ResultStore {
+
+    private final Path _root;
+    private final int _chunkSize;
+
+    /**
+     * Guice constructor.
+     *
+     * @param config The application configuration.
+     */
+    @Inject
+    public LocalFileResultStore(final Config config) {
+        this(
+                Paths.get(config.getString("resultStore.directory")),
+                Math.toIntExact(config.getBytes("resultStore.chunkSize")));
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param root The directory to store content in. Created if it doesn't exist.
+     * @param chunkSize The size of the chunks content is split into, in bytes.
+     */
+    public LocalFileResultStore(final Path root, final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive; got " + chunkSize);
+        }
+        _root = root;
+        _chunkSize = chunkSize;
+    }
+
+    @Override
+    public StoredReportResult put(final InputStream content) throws IOException {
+        final Hasher contentHasher = Hashing.sha256().newHasher();
+        final List<String> chunkDigests = Lists.newArrayList();
+        final byte[] buffer = new byte[_chunkSize];
+        long size = 0;
+        int length;
+        while ((length = ByteStreams.read(content, buffer, 0, _chunkSize)) > 0) {
+            contentHasher.putBytes(buffer, 0, length);
+            chunkDigests.add(putChunk(buffer, length));
+            size += length;
+        }
+
+        final String digest = contentHasher.hash().toString();
+        final Path manifest = manifestPath(digest);
+        if (!refresh(manifest)) {
+            final byte[] manifestContent = String.join("\n", chunkDigests).getBytes(StandardCharsets.UTF_8);
+            writeAtomically(manifest, manifestContent, manifestContent.length);
+        }
+        return new StoredReportResult(digest, size);
+    }
+
+    @Override
+    public Optional<InputStream> open(final String digest) throws IOException {
+        if (!contains(digest)) {
+            return Optional.empty();
+        }
+        final Iterator<String> chunkDigests = readChunkDigests(manifestPath(digest)).iterator();
+        // Open each chunk only once the previous one has been read.
+        return Optional.of(new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return chunkDigests.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(chunkPath(chunkDigests.next()));
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }));
+    }
+
+    @Override
+    public boolean contains(final String digest) {
+        return DIGEST_PATTERN.matcher(digest).matches() && Files.exists(manifestPath(digest));
+    }
+
+    @Override
+    public long collect(final Set<String> referenced, final Instant storedBefore) throws IOException {
+        // Mark: the chunks of every manifest that is kept, including those stored since storedBefore.
+        final Set<String> liveChunks = Sets.newHashSet();
+        long deleted = 0;
+        for (final Path file : listFiles(MANIFESTS_DIRECTORY)) {
+            final String name = file.getFileName().toString();
+            final boolean isManifest = DIGEST_PATTERN.matcher(name).matches();
+            if (isManifest && (referenced.contains(name) || !isStoredBefore(file, storedBefore))) {
+                liveChunks.addAll(readChunkDigests(file));
+            } else if (isStoredBefore(file, storedBefore) && Files.deleteIfExists(file) && isManifest) {
+                ++deleted;
+            }
+        }
+        // Sweep: chunks (and abandoned temporary files) that nothing kept lists.
+        for (final Path chunk : listFiles(CHUNKS_DIRECTORY)) {
+            if (!liveChunks.contains(chunk.getFileName().toString()) && isStoredBefore(chunk, storedBefore)) {
+                Files.deleteIfExists(chunk);
+            }
+        }
+        return deleted;
+    }
+
+    private String putChunk(final byte[] buffer, final int length) throws IOException {
+        final String digest = Hashing.sha256().hashBytes(buffer, 0, length).toString();
+        final Path chunk = chunkPath(digest);
+        if (!refresh(chunk)) {
+            writeAtomically(chunk, buffer, length);
+        }
+        return digest;
+    }
+
+    /**
+     * Mark an existing file as recently stored, so that it isn't collected.
+     *
+     * @return Whether the file exists.
+     */
+    private boolean refresh(final Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (final NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private void writeAtomically(final Path target, final byte[] buffer, final int length) throws IOException {
+        Files.createDirectories(target.getParent());
+        final Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                output.write(buffer, 0, length);
+            }
+            // Content-addressed, so if someone else got here first they wrote exactly the same bytes.
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private List<String> readChunkDigests(final Path manifest) throws IOException {
+        return Files.readAllLines(manifest, StandardCharsets.UTF_8)
+                .stream()
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private List<Path> listFiles(final String directory) throws IOException {
+        final Path root = _root.resolve(directory);
+        if (!Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isStoredBefore(final Path file, final Instant storedBefore) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(storedBefore);
+        } catch (final NoSuchFileException e) {
+            // Already gone, e.g. a temporary file that has since been renamed into place.
+            return false;
+        }
+    }
+
+    private Path chunkPath(final String digest) {
+        return _root.resolve(CHUNKS_DIRECTORY).resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private Path manifestPath(final String digest) {
+        return _root.resolve(MANIFESTS_DIRECTORY).resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("root", _root)
+                .add("chunkSize", _chunkSize)
+                .toString();
+    }
+
+    private static final String CHUNKS_DIRECTORY = "chunks";
+    private static final String MANIFESTS_DIRECTORY = "manifests";
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryRepository;
+import com.arpnetworking.metrics.portal.reports.delivery.ReportDelivery;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An empty {@link DeliveryRepository}, which drops every delivery.
+ *
+ * @author agent (agent at local)
+ */
+public final class NoDeliveryRepository implements DeliveryRepository {
+
+    private final AtomicBoolean _isOpen = new AtomicBoolean(false);
+
+    @Override
+    public void open() {
+        assertIsOpen(false);
+        LOGGER.debug().setMessage("Opening NoDeliveryRepository").log();
+        _isOpen.set(true);
+    }
+
+    @Override
+    public void close() {
+        assertIsOpen();
+        LOGGER.debug().setMessage("Closing NoDeliveryRepository").log();
+        _isOpen.set(false);
+    }
+
+    @Override
+    public void addDeliveries(final List<ReportDelivery> deliveries) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Dropping report deliveries")
+                .addData("deliveries", deliveries)
+                .log();
+    }
+
+    @Override
+    public List<ReportDelivery> claimDueDeliveries(final Instant now, final Instant claimUntil, final int limit) {
+        assertIsOpen();
+        return ImmutableList.of();
+    }
+
+    @Override
+    public void deliverySucceeded(final ReportDelivery delivery, final Instant completedAt) {
+        assertIsOpen();
+    }
+
+    @Override
+    public void deliveryFailed(final ReportDelivery delivery, final Instant completedAt, final Throwable error) {
+        assertIsOpen();
+    }
+
+    @Override
+    public void deliveryRetrying(final ReportDelivery delivery, final Instant nextAttemptAt, final Throwable error) {
+        assertIsOpen();
+    }
+
+    @Override
+    public Set<String> getAttachmentDigests() {
+        assertIsOpen();
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public long expireDeliveries(final Instant cutoff) {
+        assertIsOpen();
+        return 0;
+    }
+
+    private void assertIsOpen() {
+        assertIsOpen(true);
+    }
+
+    private void assertIsOpen(final boolean expectedState) {
+        if (_isOpen.get() != expectedState) {
+            throw new IllegalStateException(String.format("NoDeliveryRepository is not %s", expectedState ? "open" : "closed"));
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoDeliveryRepository.class);
+}
@@ -22,16 +22,22 @@ import com.arpnetworking.metrics.portal.scheduling.JobQuery;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import models.internal.Organization;
 import models.internal.QueryResult;
 import models.internal.impl.DefaultJobQuery;
 import models.internal.impl.DefaultQueryResult;
+import models.internal.impl.ReportExecutionRecord;
+import models.internal.impl.ReportExecutionRollup;
 import models.internal.reports.Report;
 import models.internal.scheduling.Job;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
@@ -131,6 +137,99 @@ public final class NoReportRepository implements ReportRepository {
                 .log();
     }
 
+    @Override
+    public long expireExecutions(final Instant cutoff) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Expiring report executions")
+                .addData("cutoff", cutoff)
+                .log();
+        return 0;
+    }
+
+    @Override
+    public Set<String> getResultDigests() {
+        assertIsOpen();
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public boolean tryLeaseExecution(
+            final UUID id,
+            final Organization organization,
+            final Instant scheduled,
+            final String holder,
+            final Duration duration) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Leasing report job execution")
+                .addData("report.uuid", id)
+                .addData("organization", organization)
+                .addData("scheduled", scheduled)
+                .addData("holder", holder)
+                .log();
+        return true;
+    }
+
+    @Override
+    public void jobsSkipped(final UUID id, final Organization organization, final Instant from, final Instant until, final long count) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Report job runs skipped")
+                .addData("report.uuid", id)
+                .addData("organization", organization)
+                .addData("from", from)
+                .addData("until", until)
+                .addData("count", count)
+                .log();
+    }
+
+    @Override
+    public List<ReportExecutionRecord> getExecutions(
+            final UUID id,
+            final Organization organization,
+            final Optional<Instant> before,
+            final int limit) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Getting report executions")
+                .addData("report.uuid", id)
+                .addData("organization", organization)
+                .addData("before", before)
+                .addData("limit", limit)
+                .log();
+        return ImmutableList.of();
+    }
+
+    @Override
+    public List<ReportExecutionRollup> getExecutionRollups(
+            final UUID id,
+            final Organization organization,
+            final Instant from,
+            final Instant until) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Getting report execution rollups")
+                .addData("report.uuid", id)
+                .addData("organization", organization)
+                .addData("from", from)
+                .addData("until", until)
+                .log();
+        return ImmutableList.of();
+    }
+
+    @Override
+    public List<ReportExecutionRollup> getExecutionRollups(final Organization organization, final Instant from, final Instant until) {
+        assertIsOpen();
+        LOGGER.debug()
+                .setMessage("Getting organization report execution rollups")
+                .addData("organization", organization)
+                .addData("from", from)
+                .addData("until", until)
+                .log();
+        return ImmutableList.of();
+    }
+
     @Override
     public JobQuery<Report.Result> createQuery(final Organization organization) {
         assertIsOpen();
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.reports.ReportRepository;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryRepository;
+import com.arpnetworking.metrics.portal.scheduling.Schedule;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Sets;
+import com.google.inject.Injector;
+import models.internal.scheduling.Job;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Periodically deletes the records of old report executions, so that the executions table stays bounded in size.
+ *
+ * Each run expires the executions, and the completed deliveries, of everything scheduled more than the retention period
+ * before the run's own scheduled time. It then collects the {@link ResultStore} content that no remaining execution
+ * or pending delivery references. Content stored within the grace period is kept regardless, since the execution or
+ * delivery it belongs to may not have been recorded yet.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportExecutionRetentionJob implements Job<Long> {
+
+    private final ReportRepository _reportRepository;
+    private final ResultStore _resultStore;
+    private final DeliveryRepository _deliveryRepository;
+    private final Duration _retention;
+    private final Duration _resultGracePeriod;
+    private final Schedule _schedule;
+    private final Executor _executor;
+
+    /**
+     * Public constructor.
+     *
+     * @param reportRepository The repository whose executions to expire.
+     * @param resultStore The store whose unreferenced results to collect.
+     * @param deliveryRepository The repository whose completed deliveries to expire.
+     * @param retention How long to keep executions for.
+     * @param resultGracePeriod How long to keep unreferenced results for after they are stored.
+     * @param schedule When to expire executions.
+     * @param executor The executor to expire executions on; it should be sized for blocking database calls.
+     */
+    public ReportExecutionRetentionJob(
+            final ReportRepository reportRepository,
+            final ResultStore resultStore,
+            final DeliveryRepository deliveryRepository,
+            final Duration retention,
+            final Duration resultGracePeriod,
+            final Schedule schedule,
+            final Executor executor) {
+        _reportRepository = reportRepository;
+        _resultStore = resultStore;
+        _deliveryRepository = deliveryRepository;
+        _retention = retention;
+        _resultGracePeriod = resultGracePeriod;
+        _schedule = schedule;
+        _executor = executor;
+    }
+
+    @Override
+    public UUID getId() {
+        return ID;
+    }
+
+    @Override
+    public String getETag() {
+        return _retention + "/" + _resultGracePeriod + "/" + _schedule.hashCode();
+    }
+
+    @Override
+    public Schedule getSchedule() {
+        return _schedule;
+    }
+
+    public Duration getRetention() {
+        return _retention;
+    }
+
+    @Override
+    public CompletionStage<Long> execute(final Injector injector, final Instant scheduled) {
+        final Instant cutoff = scheduled.minus(_retention);
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    final long expired = _reportRepository.expireExecutions(cutoff);
+                    _deliveryRepository.expireDeliveries(cutoff);
+                    collectResults();
+                    return expired;
+                },
+                _executor);
+    }
+
+    private void collectResults() {
+        // Marking after the expiry is what lets the expired executions' results be collected in the same run.
+        final Instant storedBefore = Instant.now().minus(_resultGracePeriod);
+        try {
+            final long collected = _resultStore.collect(
+                    Sets.union(_reportRepository.getResultDigests(), _deliveryRepository.getAttachmentDigests()),
+                    storedBefore);
+            LOGGER.info()
+                    .setMessage("Collected unreferenced report results")
+                    .addData("storedBefore", storedBefore)
+                    .addData("collected", collected)
+                    .log();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("retention", _retention)
+                .add("resultGracePeriod", _resultGracePeriod)
+                .add("schedule", _schedule)
+                .toString();
+    }
+
+    /**
+     * The id of the (only) retention job.
+     */
+    public static final UUID ID = UUID.nameUUIDFromBytes("report-execution-retention".getBytes(StandardCharsets.UTF_8));
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportExecutionRetentionJob.class);
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.organizations.OrganizationRepository;
+import com.arpnetworking.metrics.portal.reports.ReportRepository;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryRepository;
+import com.arpnetworking.metrics.portal.scheduling.CatchUpPolicy;
+import com.arpnetworking.metrics.portal.scheduling.JobQuery;
+import com.arpnetworking.metrics.portal.scheduling.JobRepository;
+import com.arpnetworking.metrics.portal.scheduling.impl.PeriodicSchedule;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.Config;
+import io.ebean.Ebean;
+import io.ebean.Transaction;
+import models.internal.Organization;
+import models.internal.QueryResult;
+import models.internal.impl.DefaultJobQuery;
+import models.internal.impl.DefaultQueryResult;
+import models.internal.scheduling.Job;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.persistence.PersistenceException;
+
+/**
+ * A {@link JobRepository} holding just the {@link ReportExecutionRetentionJob}, so that execution retention is run by
+ * the same scheduler as the reports themselves.
+ *
+ * Expiring executions is global rather than per-organization, so the job is presented in exactly one organization (the
+ * one with the lowest id) and the coordinator schedules it once for the whole cluster. Its last run and execution lease
+ * are kept in {@code portal.cluster_job_runs}, so that the lease fences executors on different nodes and a restart or
+ * shard handoff does not re-run a period that has already been expired.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportExecutionRetentionJobRepository implements JobRepository<Long> {
+
+    private final AtomicBoolean _isOpen = new AtomicBoolean(false);
+    private final ReportExecutionRetentionJob _job;
+    private final OrganizationRepository _organizationRepository;
+
+    /**
+     * Public constructor, reading the retention periods and schedule from configuration.
+     *
+     * @param reportRepository The repository whose executions to expire.
+     * @param resultStore The store whose unreferenced results to collect.
+     * @param deliveryRepository The repository whose completed deliveries to expire.
+     * @param organizationRepository The organizations, one of which owns the job.
+     * @param config The application configuration.
+     * @param executor The executor to expire executions on; it should be sized for blocking database calls.
+     */
+    public ReportExecutionRetentionJobRepository(
+            final ReportRepository reportRepository,
+            final ResultStore resultStore,
+            final DeliveryRepository deliveryRepository,
+            final OrganizationRepository organizationRepository,
+            final Config config,
+            final Executor executor) {
+        this(
+                new ReportExecutionRetentionJob(
+                        reportRepository,
+                        resultStore,
+                        deliveryRepository,
+                        config.getDuration("reportRepository.executionRetention.retention"),
+                        config.getDuration("reportRepository.executionRetention.resultGracePeriod"),
+                        new PeriodicSchedule.Builder()
+                                .setZone(ZoneOffset.UTC)
+                                .setPeriod(ChronoUnit.valueOf(config.getString("reportRepository.executionRetention.period")))
+                                .setRunAtAndAfter(Instant.EPOCH)
+                                .setCatchUpPolicy(CatchUpPolicy.RUN_LATEST)
+                                .build(),
+                        executor),
+                organizationRepository);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param job The retention job.
+     * @param organizationRepository The organizations, one of which owns the job.
+     */
+    public ReportExecutionRetentionJobRepository(
+            final ReportExecutionRetentionJob job,
+            final OrganizationRepository organizationRepository) {
+        _job = job;
+        _organizationRepository = organizationRepository;
+    }
+
+    @Override
+    public void open() {
+        assertIsOpen(false);
+        LOGGER.debug().setMessage("Opening ReportExecutionRetentionJobRepository").log();
+        _isOpen.set(true);
+    }
+
+    @Override
+    public void close() {
+        assertIsOpen();
+        LOGGER.debug().setMessage("Closing ReportExecutionRetentionJobRepository").log();
+        _isOpen.set(false);
+    }
+
+    @Override
+    public Optional<Job<Long>> getJob(final UUID id, final Organization organization) {
+        assertIsOpen();
+        return _job.getId().equals(id) && isOwner(organization) ? Optional.of(_job) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Instant> getLastRun(final UUID id, final Organization organization) throws NoSuchElementException {
+        assertIsOpen();
+        assertIsJob(id);
+        try (Transaction transaction = Ebean.beginTransaction();
+             PreparedStatement select = transaction.getConnection().prepareStatement(
+                     "SELECT last_run FROM portal.cluster_job_runs WHERE job_id = ?")) {
+            select.setObject(1, id);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.ofNullable(resultSet.getTimestamp(1)).map(Timestamp::toInstant);
+            }
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to read last run of report execution retention", e);
+        }
+    }
+
+    @Override
+    public void jobStarted(final UUID id, final Organization organization, final Instant scheduled) {
+        assertIsOpen();
+        assertIsJob(id);
+    }
+
+    @Override
+    public void jobSucceeded(final UUID id, final Organization organization, final Instant scheduled, final Long result) {
+        assertIsOpen();
+        assertIsJob(id);
+        LOGGER.info()
+                .setMessage("Report execution retention succeeded")
+                .addData("scheduled", scheduled)
+                .addData("deleted", result)
+                .log();
+        recordRun(scheduled);
+    }
+
+    @Override
+    public void jobFailed(final UUID id, final Organization organization, final Instant scheduled, final Throwable error) {
+        assertIsOpen();
+        assertIsJob(id);
+        LOGGER.warn()
+                .setMessage("Report execution retention failed")
+                .addData("scheduled", scheduled)
+                .setThrowable(error)
+                .log();
+        recordRun(scheduled);
+    }
+
+    @Override
+    public void jobsSkipped(final UUID id, final Organization organization, final Instant from, final Instant until, final long count) {
+        assertIsOpen();
+        assertIsJob(id);
+    }
+
+    @Override
+    public boolean tryLeaseExecution(
+            final UUID id,
+            final Organization organization,
+            final Instant scheduled,
+            final String holder,
+            final Duration duration) {
+        assertIsOpen();
+        assertIsJob(id);
+        createRunIfAbsent();
+        final Instant now = Instant.now();
+        // A lease is only granted for a period that has not run yet, so an executor that lost its lease (or is working
+        // from a stale last run) cannot repeat a completed expiry.
+        try (Transaction transaction = Ebean.beginTransaction();
+             PreparedStatement update = transaction.getConnection().prepareStatement(
+                     "UPDATE portal.cluster_job_runs SET lease_scheduled = ?, lease_holder = ?, lease_expires_at = ? "
+                             + "WHERE job_id = ? AND (last_run IS NULL OR last_run < ?) "
+                             + "AND (lease_holder IS NULL OR lease_holder = ? OR lease_expires_at < ?)")) {
+            update.setTimestamp(1, Timestamp.from(scheduled));
+            update.setString(2, holder);
+            update.setTimestamp(3, Timestamp.from(now.plus(duration)));
+            update.setObject(4, id);
+            update.setTimestamp(5, Timestamp.from(scheduled));
+            update.setString(6, holder);
+            update.setTimestamp(7, Timestamp.from(now));
+            final boolean leased = update.executeUpdate() > 0;
+            transaction.commit();
+            LOGGER.debug()
+                    .setMessage("Leased report execution retention")
+                    .addData("scheduled", scheduled)
+                    .addData("holder", holder)
+                    .addData("leased", leased)
+                    .log();
+            return leased;
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to lease report execution retention", e);
+        }
+    }
+
+    @Override
+    public JobQuery<Long> createQuery(final Organization organization) {
+        assertIsOpen();
+        return new DefaultJobQuery<>(this, organization);
+    }
+
+    @Override
+    public QueryResult<Job<Long>> query(final JobQuery<Long> query) {
+        assertIsOpen();
+        if (!isOwner(query.getOrganization())) {
+            return new DefaultQueryResult<>(ImmutableList.of(), 0);
+        }
+        final List<Job<Long>> jobs = query.getOffset().orElse(0) == 0 && query.getLimit() > 0
+                ? ImmutableList.of(_job)
+                : ImmutableList.of();
+        return new DefaultQueryResult<>(jobs, 1);
+    }
+
+    private boolean isOwner(final Organization organization) {
+        return _organizationRepository.query(_organizationRepository.createQuery())
+                .values()
+                .stream()
+                .map(Organization::getId)
+                .min(Comparator.naturalOrder())
+                .map(organization.getId()::equals)
+                .orElse(false);
+    }
+
+    private void createRunIfAbsent() {
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            final Connection connection = transaction.getConnection();
+            try (PreparedStatement select = connection.prepareStatement("SELECT 1 FROM portal.cluster_job_runs WHERE job_id = ?")) {
+                select.setObject(1, _job.getId());
+                try (ResultSet resultSet = select.executeQuery()) {
+                    if (resultSet.next()) {
+                        return;
+                    }
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO portal.cluster_job_runs (job_id) VALUES (?)")) {
+                insert.setObject(1, _job.getId());
+                insert.executeUpdate();
+            }
+            transaction.commit();
+        } catch (final SQLException e) {
+            if (!DatabaseReportRepository.isUniqueViolation(e)) {
+                throw new PersistenceException("Failed to create run of report execution retention", e);
+            }
+            // A concurrent insert beat us to it; the row exists either way.
+            LOGGER.debug()
+                    .setMessage("Lost race to create report execution retention run")
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private void recordRun(final Instant scheduled) {
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            final Connection connection = transaction.getConnection();
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE portal.cluster_job_runs SET last_run = ? WHERE job_id = ? AND (last_run IS NULL OR last_run < ?)")) {
+                update.setTimestamp(1, Timestamp.from(scheduled));
+                update.setObject(2, _job.getId());
+                update.setTimestamp(3, Timestamp.from(scheduled));
+                update.executeUpdate();
+            }
+            try (PreparedStatement release = connection.prepareStatement(
+                    "UPDATE portal.cluster_job_runs SET lease_scheduled = NULL, lease_holder = NULL, lease_expires_at = NULL "
+                            + "WHERE job_id = ? AND lease_scheduled = ?")) {
+                release.setObject(1, _job.getId());
+                release.setTimestamp(2, Timestamp.from(scheduled));
+                release.executeUpdate();
+            }
+            transaction.commit();
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to record run of report execution retention", e);
+        }
+    }
+
+    private void assertIsJob(final UUID id) {
+        if (!_job.getId().equals(id)) {
+            throw new NoSuchElementException(String.format("No job with id: %s", id));
+        }
+    }
+
+    private void assertIsOpen() {
+        assertIsOpen(true);
+    }
+
+    private void assertIsOpen(final boolean expectedState) {
+        if (_isOpen.get() != expectedState) {
+            throw new IllegalStateException(
+                    String.format("ReportExecutionRetentionJobRepository is not %s", expectedState ? "open" : "closed"));
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportExecutionRetentionJobRepository.class);
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.ebean.Ebean;
+import io.ebean.Transaction;
+import models.ebean.ReportExecution;
+import models.internal.Organization;
+import models.internal.reports.Report;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceException;
+
+/**
+ * Write-behind buffer for {@link ReportExecution} state transitions.
+ *
+ * Transitions are coalesced per (report, scheduled) and flushed as a single batched upsert, either every
+ * {@code flushInterval} or as soon as {@code maxBatchSize} executions are pending. Each enqueued transition is
+ * acknowledged once the batch containing it has been committed. Completions also advance the report's denormalized
+ * {@code last_completed_run} in the same transaction.
+ *
+ * If a batch fails to commit, its transitions are queued again, beneath any transition enqueued for the same execution
+ * since, and retried with the next flush. Only once a transition has failed {@code MAX_FLUSH_ATTEMPTS} times is the
+ * failure reported to whoever enqueued it.
+ *
+ * @author agent (agent at local)
+ */
+/* package private */ final class ReportExecutionWriteBuffer {
+
+    private final DatabaseReportRepository.ReportQueryGenerator _queryGenerator;
+    private final Duration _flushInterval;
+    private final int _maxBatchSize;
+    private final Object _lock = new Object();
+    private Map<Key, PendingExecution> _pending = Maps.newLinkedHashMap();
+    @Nullable
+    private ScheduledExecutorService _flusher;
+
+    /**
+     * Constructor.
+     *
+     * @param queryGenerator The generator used to write batches.
+     * @param flushInterval The maximum time a transition waits before being written.
+     * @param maxBatchSize The number of pending executions that triggers an immediate flush.
+     */
+    /* package private */ ReportExecutionWriteBuffer(
+            final DatabaseReportRepository.ReportQueryGenerator queryGenerator,
+            final Duration flushInterval,
+            final int maxBatchSize) {
+        _queryGenerator = queryGenerator;
+        _flushInterval = flushInterval;
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Start periodically flushing.
+     */
+    /* package private */ void start() {
+        synchronized (_lock) {
+            _flusher = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("report-execution-writer-%d")
+                            .setDaemon(true)
+                            .build());
+            _flusher.scheduleWithFixedDelay(this::flush, _flushInterval.toNanos(), _flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stop periodically flushing, after writing anything still pending.
+     */
+    /* package private */ void stop() {
+        final ScheduledExecutorService flusher;
+        synchronized (_lock) {
+            flusher = _flusher;
+            _flusher = null;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(_flushInterval.toMillis() + SHUTDOWN_GRACE_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Enqueue a state transition for an execution.
+     *
+     * @param reportId The uuid of the executed report.
+     * @param organization The organization owning the report.
+     * @param scheduled The time the execution was scheduled for.
+     * @param state The new state of the execution.
+     * @param result The result of the execution, if it succeeded.
+     * @param error The error that caused the execution to fail, if it failed.
+     * @return Completes once the transition has been committed, or exceptionally with a {@link PersistenceException}.
+     */
+    /* package private */ CompletionStage<Void> enqueue(
+            final UUID reportId,
+            final Organization organization,
+            final Instant scheduled,
+            final ReportExecution.State state,
+            @Nullable final Report.Result result,
+            @Nullable final Throwable error) {
+        final Instant now = Instant.now();
+        final PendingExecution transition = new PendingExecution(
+                state,
+                state == ReportExecution.State.STARTED ? now : null,
+                state == ReportExecution.State.STARTED ? null : now,
+                result,
+                error);
+        final boolean flushNow;
+        synchronized (_lock) {
+            _pending.merge(new Key(reportId, organization.getId(), scheduled), transition, PendingExecution::followedBy);
+            flushNow = _pending.size() >= _maxBatchSize && _flusher != null;
+            if (flushNow) {
+                _flusher.execute(this::flush);
+            }
+        }
+        if (!flushNow && isStopped()) {
+            drain();
+        }
+        return transition._acknowledgement;
+    }
+
+    private boolean isStopped() {
+        synchronized (_lock) {
+            return _flusher == null;
+        }
+    }
+
+    /**
+     * Flush until nothing is pending. Failed transitions stay pending until they run out of attempts, so this terminates.
+     */
+    private void drain() {
+        for (int attempt = 0; attempt < MAX_FLUSH_ATTEMPTS; ++attempt) {
+            flush();
+            synchronized (_lock) {
+                if (_pending.isEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write all pending transitions in a single transaction.
+     */
+    /* package private */ void flush() {
+        final Map<Key, PendingExecution> batch;
+        synchronized (_lock) {
+            if (_pending.isEmpty()) {
+                return;
+            }
+            batch = _pending;
+            _pending = Maps.newLinkedHashMap();
+        }
+
+        LOGGER.debug()
+                .setMessage("Flushing report executions")
+                .addData("count", batch.size())
+                .log();
+        try (Transaction transaction = Ebean.beginTransaction()) {
+            final Map<Key, models.ebean.Report> reports = findReports(batch.keySet());
+            final List<ReportExecution> executions = Lists.newArrayListWithCapacity(batch.size());
+            final List<PendingExecution> written = Lists.newArrayListWithCapacity(batch.size());
+            for (final Map.Entry<Key, PendingExecution> entry : batch.entrySet()) {
+                final Key key = entry.getKey();
+                final PendingExecution pending = entry.getValue();
+                final models.ebean.Report report = reports.get(key);
+                if (report == null) {
+                    final String message = String.format(
+                            "Could not find report with uuid=%s, organization.uuid=%s",
+                            key._reportId,
+                            key._organizationId);
+                    pending.fail(new PersistenceException(
+                            "Failed to update report executions",
+                            new EntityNotFoundException(message)));
+                    continue;
+                }
+                executions.add(pending.toExecution(report, key._scheduled));
+                written.add(pending);
+            }
+
+            if (!executions.isEmpty()) {
+                _queryGenerator.upsertExecutions(executions, transaction);
+                updateLastCompletedRuns(executions, transaction);
+            }
+            transaction.commit();
+            written.forEach(PendingExecution::succeed);
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            retryOrFail(batch, e);
+        }
+    }
+
+    private void retryOrFail(final Map<Key, PendingExecution> batch, final RuntimeException error) {
+        final PersistenceException failure = new PersistenceException("Failed to update report executions", error);
+        int retried = 0;
+        synchronized (_lock) {
+            for (final Map.Entry<Key, PendingExecution> entry : batch.entrySet()) {
+                final PendingExecution pending = entry.getValue();
+                if (pending.isAcknowledged()) {
+                    continue;
+                }
+                if (pending._attempts + 1 >= MAX_FLUSH_ATTEMPTS) {
+                    pending.fail(failure);
+                    continue;
+                }
+                // Anything enqueued for the same execution since is later, so it still wins.
+                _pending.merge(entry.getKey(), pending.retried(), (later, failed) -> failed.followedBy(later));
+                ++retried;
+            }
+        }
+        LOGGER.error()
+                .setMessage("Failed to update report executions")
+                .addData("count", batch.size())
+                .addData("retried", retried)
+                .setThrowable(error)
+                .log();
+    }
+
+    private static void updateLastCompletedRuns(final Collection<ReportExecution> executions, final Transaction transaction) {
+        try (PreparedStatement update = transaction.getConnection().prepareStatement(
+                "UPDATE portal.reports SET last_completed_run = ? "
+                        + "WHERE id = ? AND (last_completed_run IS NULL OR last_completed_run < ?)")) {
+            boolean any = false;
+            for (final ReportExecution execution : executions) {
+                if (execution.getCompletedAt() == null) {
+                    continue;
+                }
+                final Timestamp completedAt = Timestamp.from(execution.getCompletedAt());
+                update.setTimestamp(1, completedAt);
+                update.setLong(2, execution.getReport().getId());
+                update.setTimestamp(3, completedAt);
+                update.addBatch();
+                any = true;
+            }
+            if (any) {
+                update.executeBatch();
+            }
+        } catch (final SQLException e) {
+            throw new PersistenceException("Failed to update last completed runs", e);
+        }
+    }
+
+    private static Map<Key, models.ebean.Report> findReports(final Collection<Key> keys) {
+        final List<UUID> reportIds = keys.stream()
+                .map(key -> key._reportId)
+                .distinct()
+                .collect(ImmutableList.toImmutableList());
+        final Map<UUID, models.ebean.Report> reportsByUuid = Ebean.find(models.ebean.Report.class)
+                .select("id, uuid")
+                .fetch("organization", "uuid")
+                .where()
+                .in("uuid", reportIds)
+                .findList()
+                .stream()
+                .collect(ImmutableMap.toImmutableMap(models.ebean.Report::getUuid, Function.identity()));
+
+        final Map<Key, models.ebean.Report> result = Maps.newHashMapWithExpectedSize(keys.size());
+        for (final Key key : keys) {
+            final models.ebean.Report report = reportsByUuid.get(key._reportId);
+            if (report != null && report.getOrganization().getUuid().equals(key._organizationId)) {
+                result.put(key, report);
+            }
+        }
+        return result;
+    }
+
+    private static final Duration SHUTDOWN_GRACE_PERIOD = Duration.ofSeconds(5);
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportExecutionWriteBuffer.class);
+
+    private static final class Key {
+        private final UUID _reportId;
+        private final UUID _organizationId;
+        private final Instant _scheduled;
+
+        Key(final UUID reportId, final UUID organizationId, final Instant scheduled) {
+            _reportId = reportId;
+            _organizationId = organizationId;
+            _scheduled = scheduled;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return _reportId.equals(key._reportId)
+                    && _organizationId.equals(key._organizationId)
+                    && _scheduled.equals(key._scheduled);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_reportId, _organizationId, _scheduled);
+        }
+    }
+
+    /**
+     * The coalesced state of an execution that has not yet been written, along with everyone waiting on it.
+     */
+    private static final class PendingExecution {
+        private final ReportExecution.State _state;
+        @Nullable
+        private final Instant _startedAt;
+        @Nullable
+        private final Instant _completedAt;
+        @Nullable
+        private final Report.Result _result;
+        @Nullable
+        private final Throwable _error;
+        private final CompletableFuture<Void> _acknowledgement;
+        private final int _attempts;
+
+        PendingExecution(
+                final ReportExecution.State state,
+                @Nullable final Instant startedAt,
+                @Nullable final Instant completedAt,
+                @Nullable final Report.Result result,
+                @Nullable final Throwable error) {
+            this(state, startedAt, completedAt, result, error, new CompletableFuture<>(), 0);
+        }
+
+        private PendingExecution(
+                final ReportExecution.State state,
+                @Nullable final Instant startedAt,
+                @Nullable final Instant completedAt,
+                @Nullable final Report.Result result,
+                @Nullable final Throwable error,
+                final CompletableFuture<Void> acknowledgement,
+                final int attempts) {
+            _state = state;
+            _startedAt = startedAt;
+            _completedAt = completedAt;
+            _result = result;
+            _error = error;
+            _acknowledgement = acknowledgement;
+            _attempts = attempts;
+        }
+
+        /**
+         * Coalesce a later transition into this one. The later transition wins, except that a completion never
+         * discards the start time. The coalesced transition keeps this one's failed attempts.
+         *
+         * @param later The later transition.
+         * @return The coalesced transition, which acknowledges both.
+         */
+        PendingExecution followedBy(final PendingExecution later) {
+            final CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+            acknowledgement.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    _acknowledgement.complete(null);
+                    later._acknowledgement.complete(null);
+                } else {
+                    _acknowledgement.completeExceptionally(error);
+                    later._acknowledgement.completeExceptionally(error);
+                }
+            });
+            return new PendingExecution(
+                    later._state,
+                    Optional.ofNullable(later._startedAt).orElse(_startedAt),
+                    later._completedAt,
+                    later._result,
+                    later._error,
+                    acknowledgement,
+                    _attempts);
+        }
+
+        PendingExecution retried() {
+            return new PendingExecution(_state, _startedAt, _completedAt, _result, _error, _acknowledgement, _attempts + 1);
+        }
+
+        boolean isAcknowledged() {
+            return _acknowledgement.isDone();
+        }
+
+        ReportExecution toExecution(final models.ebean.Report report, final Instant scheduled) {
+            final ReportExecution execution = new ReportExecution();
+            execution.setReport(report);
+            execution.setScheduled(scheduled);
+            execution.setState(_state);
+            execution.setStartedAt(_startedAt);
+            execution.setCompletedAt(_completedAt);
+            execution.setResult(_result);
+            execution.setError(_error);
+            return execution;
+        }
+
+        void succeed() {
+            _acknowledgement.complete(null);
+        }
+
+        void fail(final Throwable error) {
+            _acknowledgement.completeExceptionally(error);
+        }
+    }
+}
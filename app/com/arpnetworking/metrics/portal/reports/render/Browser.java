@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A headless browser that reports are rendered in; the pluggable backend of a {@link RenderPool}.
+ *
+ * @author agent (agent at local)
+ */
+public interface Browser {
+
+    /**
+     * Open a new tab. Tabs are long-lived: a {@link RenderPool} reuses each one for many renders.
+     *
+     * @return Completes with the tab, once it is ready to load pages.
+     */
+    CompletionStage<BrowserTab> openTab();
+
+    /**
+     * Shut down the browser, closing any open tabs.
+     */
+    void close();
+}
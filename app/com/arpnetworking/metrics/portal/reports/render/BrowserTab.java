@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import java.net.URI;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A single tab of a {@link Browser}. A tab renders one page at a time.
+ *
+ * @author agent (agent at local)
+ */
+public interface BrowserTab {
+
+    /**
+     * Load a page, and wait for it to signal that it has finished rendering.
+     *
+     * Rather than waiting for some fixed time, the page is considered rendered once it dispatches {@code readyEventName}
+     * on its {@code window}. Implementations must start listening for the event before navigating, so that it can't be
+     * missed.
+     *
+     * @param uri The page to load.
+     * @param ignoreCertificateErrors Whether to load the page even if its TLS certificate is invalid.
+     * @param readyEventName The event that signals that the page has rendered.
+     * @return Completes once the page has dispatched the event.
+     */
+    CompletionStage<Void> load(URI uri, boolean ignoreCertificateErrors, String readyEventName);
+
+    /**
+     * Get the current content of the loaded page, as serialized HTML.
+     *
+     * @return Completes with the page's content.
+     */
+    CompletionStage<String> getContent();
+
+    /**
+     * Replace the tab's page with the given content, e.g. a page previously captured by {@link #getContent()}.
+     *
+     * @param html The content, as serialized HTML.
+     * @return Completes once the content has been laid out.
+     */
+    CompletionStage<Void> setContent(String html);
+
+    /**
+     * Print the current page to a PDF, streaming it to the given channel as it is produced (e.g. page by page), so
+     * that the whole document is never held in memory.
+     *
+     * @param widthInches The width of each page, in inches.
+     * @param heightInches The height of each page, in inches.
+     * @param output The channel to write the PDF to. It is not closed.
+     * @return Completes with the number of bytes written, once the whole PDF has been written.
+     */
+    CompletionStage<Long> printToPdf(float widthInches, float heightInches, WritableByteChannel output);
+
+    /**
+     * Discard the loaded page and any state it left behind (cookies, storage, etc.), so that the tab can be reused.
+     *
+     * @return Completes once the tab is ready to load another page.
+     */
+    CompletionStage<Void> reset();
+
+    /**
+     * Close the tab. It can't be used afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.google.inject.Inject;
+import models.internal.impl.ChromeScreenshotReportSource;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Renders {@link ChromeScreenshotReportSource}s in a {@link RenderPool}.
+ *
+ * @author agent (agent at local)
+ */
+public final class ChromeScreenshotRenderer {
+
+    private final RenderPool _pool;
+
+    /**
+     * Public constructor.
+     *
+     * @param pool The pool to render in.
+     */
+    @Inject
+    public ChromeScreenshotRenderer(final RenderPool pool) {
+        _pool = pool;
+    }
+
+    /**
+     * Render a source: load its page and capture it once the page dispatches the source's triggering event.
+     *
+     * @param source The source to render.
+     * @return Completes with the captured page.
+     */
+    public CompletionStage<RenderedPage> render(final ChromeScreenshotReportSource source) {
+        return _pool.render(tab ->
+                tab.load(source.getUri(), source.ignoresCertificateErrors(), source.getTriggeringEventName())
+                        .thenCompose(ignored -> tab.getContent())
+                        .thenApply(content -> new RenderedPage(source, content)));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.Units;
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import models.internal.impl.ChromeScreenshotReportSource;
+import models.internal.reports.ReportFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Shares renders between reports that display the same source at the same scheduled time.
+ *
+ * Many reports point at the same page on the same schedule and differ only in their recipients. Renders are therefore
+ * cached by the <i>content</i> of their source (not its id), the run they were scheduled for, and, for outputs, the
+ * format. A render is single-flight: concurrent requests for the same key all wait on the first one's render. Entries
+ * are kept only for a short time after they are started, since a run's reports are executed at around the same time;
+ * failed renders are evicted at once so that they can be retried.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderCache {
+
+    private final Clock _clock;
+    private final PeriodicMetrics _periodicMetrics;
+    private final Cache<Key, Entry<RenderedPage>> _pages;
+    private final Cache<Key, Entry<RenderedOutput>> _outputs;
+
+    /**
+     * Public constructor.
+     *
+     * @param ttl How long to keep a render after it was started.
+     * @param clock The clock used to expire entries and to measure render time.
+     * @param periodicMetrics The {@link PeriodicMetrics} to record hit rate and saved render time to.
+     */
+    public RenderCache(final Duration ttl, final Clock clock, final PeriodicMetrics periodicMetrics) {
+        _clock = clock;
+        _periodicMetrics = periodicMetrics;
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+            }
+        };
+        _pages = CacheBuilder.newBuilder().expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS).ticker(ticker).build();
+        _outputs = CacheBuilder.newBuilder().expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS).ticker(ticker).build();
+    }
+
+    /**
+     * Get the rendered page of a source, rendering it only if no render of the same source and run is cached.
+     *
+     * @param sourceHash The content hash of the source; see {@link #hashSource(ChromeScreenshotReportSource)}.
+     * @param scheduled The run being rendered.
+     * @param render Starts a render, on a miss.
+     * @return Completes with the rendered page.
+     */
+    public CompletionStage<RenderedPage> getPage(
+            final String sourceHash,
+            final Instant scheduled,
+            final Supplier<CompletionStage<RenderedPage>> render) {
+        return get(_pages, new Key(sourceHash, scheduled, Optional.empty()), render, "page");
+    }
+
+    /**
+     * Get an output of a source, rendering it only if no render of the same source, run and format is cached.
+     *
+     * @param sourceHash The content hash of the source; see {@link #hashSource(ChromeScreenshotReportSource)}.
+     * @param scheduled The run being rendered.
+     * @param format The format of the output.
+     * @param render Starts a render, on a miss.
+     * @return Completes with the output.
+     */
+    public CompletionStage<RenderedOutput> getOutput(
+            final String sourceHash,
+            final Instant scheduled,
+            final ReportFormat format,
+            final Supplier<CompletionStage<RenderedOutput>> render) {
+        return get(_outputs, new Key(sourceHash, scheduled, Optional.of(format)), render, "output");
+    }
+
+    /**
+     * Hash the content of a source: everything that affects what it renders to, but not its id.
+     *
+     * @param source The source.
+     * @return The hex-encoded hash.
+     */
+    public static String hashSource(final ChromeScreenshotReportSource source) {
+        return Hashing.sha256().newHasher()
+                .putString(ChromeScreenshotReportSource.class.getName(), StandardCharsets.UTF_8)
+                .putChar('\0')
+                .putString(source.getUri().toString(), StandardCharsets.UTF_8)
+                .putChar('\0')
+                .putString(source.getTitle(), StandardCharsets.UTF_8)
+                .putChar('\0')
+                .putString(source.getTriggeringEventName(), StandardCharsets.UTF_8)
+                .putChar('\0')
+                .putBoolean(source.ignoresCertificateErrors())
+                .hash()
+                .toString();
+    }
+
+    private <T> CompletionStage<T> get(
+            final Cache<Key, Entry<T>> cache,
+            final Key key,
+            final Supplier<CompletionStage<T>> render,
+            final String kind) {
+        final Entry<T> created = new Entry<>();
+        final Entry<T> entry;
+        try {
+            entry = cache.get(key, () -> created);
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            // The loader only returns an existing object, so this cannot happen.
+            throw new IllegalStateException(e);
+        }
+
+        final String metricPrefix = "render_cache/" + kind + "/";
+        if (entry != created) {
+            _periodicMetrics.recordCounter(metricPrefix + "hit", 1);
+            return entry._future.thenApply(result -> {
+                _periodicMetrics.recordTimer(
+                        metricPrefix + "saved_render_time",
+                        entry._renderNanos,
+                        Optional.of(Units.NANOSECOND));
+                return result;
+            });
+        }
+
+        _periodicMetrics.recordCounter(metricPrefix + "hit", 0);
+        final Instant startedAt = _clock.instant();
+        CompletionStage<T> rendered;
+        // CHECKSTYLE.OFF: IllegalCatchCheck
+        try {
+            rendered = render.get();
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            final CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            rendered = failed;
+        }
+        rendered.whenComplete((result, error) -> {
+            if (error != null) {
+                cache.asMap().remove(key, entry);
+                entry._future.completeExceptionally(error);
+            } else {
+                entry._renderNanos = Math.max(0, ChronoUnit.NANOS.between(startedAt, _clock.instant()));
+                entry._future.complete(result);
+            }
+        });
+        return entry._future;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("pages", _pages.size())
+                .add("outputs", _outputs.size())
+                .toString();
+    }
+
+    private static final class Key {
+        private final String _sourceHash;
+        private final Instant _scheduled;
+        private final Optional<ReportFormat> _format;
+
+        Key(final String sourceHash, final Instant scheduled, final Optional<ReportFormat> format) {
+            _sourceHash = sourceHash;
+            _scheduled = scheduled;
+            _format = format;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return _sourceHash.equals(that._sourceHash)
+                    && _scheduled.equals(that._scheduled)
+                    && _format.equals(that._format);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_sourceHash, _scheduled, _format);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final CompletableFuture<T> _future = new CompletableFuture<>();
+        private volatile long _renderNanos;
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.Units;
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A bounded pool of long-lived {@link BrowserTab}s that renders are run in.
+ *
+ * Opening a tab is expensive, so tabs are opened lazily (up to the pool size) and then reset and reused across renders.
+ * When every tab is busy, renders queue and are started in the order they were submitted. A render that exceeds its
+ * timeout fails, and its tab is closed rather than reused, since it may be wedged; a fresh tab replaces it on demand.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderPool {
+
+    private final Browser _browser;
+    private final int _size;
+    private final Duration _timeout;
+    private final Clock _clock;
+    private final PeriodicMetrics _periodicMetrics;
+    private final ScheduledExecutorService _timeouts;
+    private final Object _lock = new Object();
+    private final Deque<BrowserTab> _idle = new ArrayDeque<>();
+    private final Queue<CompletableFuture<BrowserTab>> _waiters = new ArrayDeque<>();
+    private int _open = 0;
+    private boolean _closed = false;
+
+    /**
+     * Public constructor.
+     *
+     * @param browser The browser to open tabs in.
+     * @param size The maximum number of tabs open at once, and so of concurrent renders.
+     * @param timeout The default time limit on a single render, excluding time spent queued.
+     * @param clock The clock used to measure queueing and render time.
+     * @param periodicMetrics The {@link PeriodicMetrics} to record queue depth, wait time and render time to.
+     */
+    public RenderPool(
+            final Browser browser,
+            final int size,
+            final Duration timeout,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive; got " + size);
+        }
+        _browser = browser;
+        _size = size;
+        _timeout = timeout;
+        _clock = clock;
+        _periodicMetrics = periodicMetrics;
+        _timeouts = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("render-pool-timeouts-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Run a render in a tab from the pool, with the default timeout.
+     *
+     * @param render Renders in the given tab. It must not use the tab after its returned stage completes.
+     * @param <T> The type of the render's result.
+     * @return Completes with the render's result; or exceptionally, with a {@link TimeoutException} if it timed out.
+     */
+    public <T> CompletionStage<T> render(final Function<BrowserTab, CompletionStage<T>> render) {
+        return render(render, _timeout);
+    }
+
+    /**
+     * Run a render in a tab from the pool.
+     *
+     * @param render Renders in the given tab. It must not use the tab after its returned stage completes.
+     * @param timeout The time limit on the render, excluding time spent queued.
+     * @param <T> The type of the render's result.
+     * @return Completes with the render's result; or exceptionally, with a {@link TimeoutException} if it timed out.
+     */
+    public <T> CompletionStage<T> render(final Function<BrowserTab, CompletionStage<T>> render, final Duration timeout) {
+        final Instant submittedAt = _clock.instant();
+        return acquire().thenCompose(tab -> {
+            _periodicMetrics.recordTimer(
+                    WAIT_TIME_METRIC,
+                    ChronoUnit.NANOS.between(submittedAt, _clock.instant()),
+                    Optional.of(Units.NANOSECOND));
+            return run(tab, render, timeout);
+        });
+    }
+
+    /**
+     * Close the pool: close all idle tabs, and fail all queued renders. Tabs in use are closed once their renders finish.
+     */
+    public void close() {
+        final List<BrowserTab> idle;
+        final List<CompletableFuture<BrowserTab>> waiters;
+        synchronized (_lock) {
+            _closed = true;
+            idle = drain(_idle);
+            waiters = drain(_waiters);
+            _open -= idle.size();
+        }
+        idle.forEach(this::closeQuietly);
+        waiters.forEach(waiter -> waiter.completeExceptionally(new IllegalStateException("render pool is closed")));
+        _timeouts.shutdownNow();
+    }
+
+    private CompletableFuture<BrowserTab> acquire() {
+        final CompletableFuture<BrowserTab> future = new CompletableFuture<>();
+        final BrowserTab idle;
+        final boolean openNew;
+        synchronized (_lock) {
+            if (_closed) {
+                future.completeExceptionally(new IllegalStateException("render pool is closed"));
+                return future;
+            }
+            idle = _idle.pollFirst();
+            openNew = idle == null && _open < _size;
+            if (openNew) {
+                _open++;
+                recordTabsOpen();
+            } else if (idle == null) {
+                _waiters.add(future);
+                recordQueueDepth();
+            }
+        }
+        if (idle != null) {
+            future.complete(idle);
+        } else if (openNew) {
+            openTab(future);
+        }
+        return future;
+    }
+
+    private void openTab(final CompletableFuture<BrowserTab> future) {
+        _browser.openTab().whenComplete((tab, error) -> {
+            if (error == null) {
+                future.complete(tab);
+            } else {
+                LOGGER.warn()
+                        .setMessage("failed to open browser tab")
+                        .setThrowable(error)
+                        .log();
+                future.completeExceptionally(error);
+                replace();
+            }
+        });
+    }
+
+    private <T> CompletionStage<T> run(
+            final BrowserTab tab,
+            final Function<BrowserTab, CompletionStage<T>> render,
+            final Duration timeout) {
+        final Instant startedAt = _clock.instant();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final ScheduledFuture<?> timer = _timeouts.schedule(
+                () -> result.completeExceptionally(new TimeoutException(String.format("render did not finish within %s", timeout))),
+                timeout.toNanos(),
+                TimeUnit.NANOSECONDS);
+        CompletionStage<T> rendered;
+        try {
+            rendered = render.apply(tab);
+            // CHECKSTYLE.OFF: IllegalCatchCheck - a failed render must still return its tab
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            final CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            rendered = failed;
+        }
+        rendered.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        // Start handing the tab back before the caller sees the result.
+        return result.whenComplete((value, error) -> {
+            _periodicMetrics.recordTimer(
+                    RENDER_TIME_METRIC,
+                    ChronoUnit.NANOS.between(startedAt, _clock.instant()),
+                    Optional.of(Units.NANOSECOND));
+            final boolean timedOut = error instanceof TimeoutException;
+            _periodicMetrics.recordCounter(TIMEOUTS_METRIC, timedOut ? 1 : 0);
+            if (timedOut) {
+                discard(tab);
+            } else {
+                recycle(tab);
+            }
+        });
+    }
+
+    private void recycle(final BrowserTab tab) {
+        tab.reset().whenComplete((ignored, error) -> {
+            if (error == null) {
+                release(tab);
+            } else {
+                LOGGER.warn()
+                        .setMessage("failed to reset browser tab; discarding it")
+                        .setThrowable(error)
+                        .log();
+                discard(tab);
+            }
+        });
+    }
+
+    private void release(final BrowserTab tab) {
+        final CompletableFuture<BrowserTab> waiter;
+        final boolean closed;
+        synchronized (_lock) {
+            closed = _closed;
+            waiter = closed ? null : _waiters.poll();
+            if (closed) {
+                _open--;
+            } else if (waiter == null) {
+                // Most recently used first, so that a quiet pool keeps reusing its warmest tabs.
+                _idle.addFirst(tab);
+            }
+            recordQueueDepth();
+        }
+        if (closed) {
+            closeQuietly(tab);
+        } else if (waiter != null) {
+            waiter.complete(tab);
+        }
+    }
+
+    private void discard(final BrowserTab tab) {
+        closeQuietly(tab);
+        replace();
+    }
+
+    private void replace() {
+        final CompletableFuture<BrowserTab> waiter;
+        synchronized (_lock) {
+            waiter = _closed ? null : _waiters.poll();
+            if (waiter == null) {
+                _open--;
+                recordTabsOpen();
+            }
+            recordQueueDepth();
+        }
+        if (waiter != null) {
+            openTab(waiter);
+        }
+    }
+
+    private void closeQuietly(final BrowserTab tab) {
+        try {
+            tab.close();
+            // CHECKSTYLE.OFF: IllegalCatchCheck
+        } catch (final RuntimeException e) {
+            // CHECKSTYLE.ON: IllegalCatchCheck
+            LOGGER.warn()
+                    .setMessage("failed to close browser tab")
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private void recordQueueDepth() {
+        _periodicMetrics.recordGauge(QUEUE_DEPTH_METRIC, _waiters.size());
+    }
+
+    private void recordTabsOpen() {
+        _periodicMetrics.recordGauge(TABS_OPEN_METRIC, _open);
+    }
+
+    private static <E> List<E> drain(final Queue<E> queue) {
+        final List<E> drained = queue.stream().collect(Collectors.toList());
+        queue.clear();
+        return drained;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (_lock) {
+            return MoreObjects.toStringHelper(this)
+                    .add("browser", _browser)
+                    .add("size", _size)
+                    .add("open", _open)
+                    .add("idle", _idle.size())
+                    .add("waiting", _waiters.size())
+                    .add("timeout", _timeout)
+                    .toString();
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderPool.class);
+    private static final String QUEUE_DEPTH_METRIC = "render_pool/queue_depth";
+    private static final String TABS_OPEN_METRIC = "render_pool/tabs_open";
+    private static final String WAIT_TIME_METRIC = "render_pool/wait_time";
+    private static final String RENDER_TIME_METRIC = "render_pool/render_time";
+    private static final String TIMEOUTS_METRIC = "render_pool/timeouts";
+}
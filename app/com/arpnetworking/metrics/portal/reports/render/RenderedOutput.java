@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.google.common.base.MoreObjects;
+import models.internal.impl.StoredReportResult;
+import models.internal.reports.ReportFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * The output of a report in one {@link ReportFormat}.
+ *
+ * The content is rendered once and shared by every recipient of the format. Small outputs are held in memory and each
+ * reader streams the same bytes, rather than a copy; large ones (e.g. PDFs) live in the {@link ResultStore} and are
+ * streamed from there, so that they are never held in memory whole.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderedOutput {
+
+    private final ReportFormat _format;
+    private final long _size;
+    private final ContentSource _content;
+    private final Optional<StoredReportResult> _stored;
+
+    /**
+     * Constructor for an output held in memory.
+     *
+     * @param format The format of the output.
+     * @param content The content. Not copied; must not be modified afterwards.
+     */
+    public RenderedOutput(final ReportFormat format, final byte[] content) {
+        _format = format;
+        _size = content.length;
+        _content = () -> new ByteArrayInputStream(content);
+        _stored = Optional.empty();
+    }
+
+    /**
+     * Constructor for an output in the {@link ResultStore}.
+     *
+     * @param format The format of the output.
+     * @param store The store that holds the content.
+     * @param stored The stored content.
+     */
+    public RenderedOutput(final ReportFormat format, final ResultStore store, final StoredReportResult stored) {
+        _format = format;
+        _size = stored.getSize();
+        _content = () -> store.open(stored.getDigest())
+                .orElseThrow(() -> new FileNotFoundException("Rendered output is no longer stored: " + stored.getDigest()));
+        _stored = Optional.of(stored);
+    }
+
+    public ReportFormat getFormat() {
+        return _format;
+    }
+
+    /**
+     * Open a stream of the content.
+     *
+     * @return A new stream of the content, positioned at its start, which the caller must close.
+     * @throws IOException If the content could not be opened.
+     */
+    public InputStream openStream() throws IOException {
+        return _content.open();
+    }
+
+    public long getSize() {
+        return _size;
+    }
+
+    /**
+     * Get the stored content, if the output is in the {@link ResultStore}.
+     *
+     * @return The stored content; empty if the output is held in memory.
+     */
+    public Optional<StoredReportResult> getStored() {
+        return _stored;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("format", _format)
+                .add("size", _size)
+                .add("stored", _stored)
+                .toString();
+    }
+
+    @FunctionalInterface
+    private interface ContentSource {
+        InputStream open() throws IOException;
+    }
+}
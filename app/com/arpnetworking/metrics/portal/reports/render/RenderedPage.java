@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.google.common.base.MoreObjects;
+import models.internal.reports.ReportSource;
+
+/**
+ * A capture of a {@link ReportSource}'s page, once it has finished rendering.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderedPage {
+
+    private final ReportSource _source;
+    private final String _content;
+
+    /**
+     * Public constructor.
+     *
+     * @param source The source that was rendered.
+     * @param content The rendered page, as serialized HTML.
+     */
+    public RenderedPage(final ReportSource source, final String content) {
+        _source = source;
+        _content = content;
+    }
+
+    public ReportSource getSource() {
+        return _source;
+    }
+
+    public String getContent() {
+        return _content;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("source", _source)
+                .add("contentLength", _content.length())
+                .toString();
+    }
+}
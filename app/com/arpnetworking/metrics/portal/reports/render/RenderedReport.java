@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import models.internal.reports.Recipient;
+import models.internal.reports.Report;
+import models.internal.reports.ReportFormat;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The outputs of one scheduled run of a {@link Report}, one per format.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderedReport {
+
+    private final Report _report;
+    private final Instant _scheduled;
+    private final ImmutableMap<ReportFormat, RenderedOutput> _outputs;
+
+    /**
+     * Public constructor.
+     *
+     * @param report The report that was rendered.
+     * @param scheduled The run that was rendered.
+     * @param outputs The outputs, by format.
+     */
+    public RenderedReport(final Report report, final Instant scheduled, final ImmutableMap<ReportFormat, RenderedOutput> outputs) {
+        _report = report;
+        _scheduled = scheduled;
+        _outputs = outputs;
+    }
+
+    public Report getReport() {
+        return _report;
+    }
+
+    public Instant getScheduled() {
+        return _scheduled;
+    }
+
+    public ImmutableMap<ReportFormat, RenderedOutput> getOutputs() {
+        return _outputs;
+    }
+
+    /**
+     * Get the output each recipient should receive. Recipients of the same format share the same output.
+     *
+     * @return The outputs, by recipient.
+     */
+    public ImmutableListMultimap<Recipient, RenderedOutput> getOutputsByRecipient() {
+        final ImmutableListMultimap.Builder<Recipient, RenderedOutput> outputs = ImmutableListMultimap.builder();
+        for (final Map.Entry<ReportFormat, Collection<Recipient>> entry : _report.getRecipientsByFormat().entrySet()) {
+            final RenderedOutput output = _outputs.get(entry.getKey());
+            for (final Recipient recipient : entry.getValue()) {
+                outputs.put(recipient, output);
+            }
+        }
+        return outputs.build();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("report", _report.getId())
+                .add("scheduled", _scheduled)
+                .add("outputs", _outputs)
+                .toString();
+    }
+}
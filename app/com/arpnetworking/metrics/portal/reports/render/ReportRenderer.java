@@ -0,0 +1,270 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.steno.Logger;
+import com.arpnetworking.steno.LoggerFactory;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import models.internal.impl.ChromeScreenshotReportSource;
+import models.internal.impl.HtmlReportFormat;
+import models.internal.impl.PdfReportFormat;
+import models.internal.impl.StoredReportResult;
+import models.internal.reports.Report;
+import models.internal.reports.ReportFormat;
+import models.internal.reports.ReportSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders every output of one scheduled run of a {@link Report}.
+ *
+ * Loading the report's source is by far the most expensive step, so it is done at most once per run. Every format is
+ * then derived from that single capture: HTML is the capture itself, and each PDF page size is printed from the
+ * captured page, in parallel, each in its own pooled tab. Both the capture and the outputs are shared, through the
+ * {@link RenderCache}, with other reports of the same source and run.
+ *
+ * PDFs are streamed as the browser produces them, to a temporary file and from there into the {@link ResultStore}, so
+ * that the memory a PDF render takes is bounded by the browser's chunk size (and the store's), not the page count.
+ * Storing is blocking I/O, so it runs on a dedicated executor rather than the thread that completed the print.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportRenderer {
+
+    private final ChromeScreenshotRenderer _chromeScreenshotRenderer;
+    private final RenderPool _pool;
+    private final RenderCache _cache;
+    private final ResultStore _resultStore;
+    private final PeriodicMetrics _periodicMetrics;
+    private final Executor _storeExecutor;
+
+    /**
+     * Public constructor.
+     *
+     * @param chromeScreenshotRenderer Renders {@link ChromeScreenshotReportSource}s.
+     * @param pool The pool to print PDFs in.
+     * @param cache The cache to share renders through.
+     * @param resultStore The store to stream PDFs into.
+     * @param periodicMetrics The {@link PeriodicMetrics} to record PDF sizes and buffering to.
+     * @param storeExecutor The executor to run blocking writes to the {@link ResultStore} on.
+     */
+    public ReportRenderer(
+            final ChromeScreenshotRenderer chromeScreenshotRenderer,
+            final RenderPool pool,
+            final RenderCache cache,
+            final ResultStore resultStore,
+            final PeriodicMetrics periodicMetrics,
+            final Executor storeExecutor) {
+        _chromeScreenshotRenderer = chromeScreenshotRenderer;
+        _pool = pool;
+        _cache = cache;
+        _resultStore = resultStore;
+        _periodicMetrics = periodicMetrics;
+        _storeExecutor = storeExecutor;
+    }
+
+    /**
+     * Render a run of a report, in each of its formats.
+     *
+     * @param report The report.
+     * @param scheduled The run.
+     * @return Completes with the outputs.
+     */
+    public CompletionStage<RenderedReport> render(final Report report, final Instant scheduled) {
+        final ReportSource reportSource = report.getSource();
+        if (!(reportSource instanceof ChromeScreenshotReportSource)) {
+            final CompletableFuture<RenderedReport> unsupported = new CompletableFuture<>();
+            unsupported.completeExceptionally(new IllegalArgumentException("Unsupported report source: " + reportSource));
+            return unsupported;
+        }
+        final ChromeScreenshotReportSource source = (ChromeScreenshotReportSource) reportSource;
+        final String sourceHash = RenderCache.hashSource(source);
+        // The page is only needed if some output is not already cached
+        final Supplier<CompletionStage<RenderedPage>> page = Suppliers.memoize(
+                () -> _cache.getPage(sourceHash, scheduled, () -> _chromeScreenshotRenderer.render(source)));
+
+        final ImmutableMap.Builder<ReportFormat, CompletableFuture<RenderedOutput>> pending = ImmutableMap.builder();
+        for (final ReportFormat format : report.getRecipientsByFormat().keySet()) {
+            pending.put(
+                    format,
+                    _cache.getOutput(
+                            sourceHash,
+                            scheduled,
+                            format,
+                            () -> page.get().thenCompose(rendered -> format.accept(new FormatRenderer(rendered))))
+                            .toCompletableFuture());
+        }
+        final ImmutableMap<ReportFormat, CompletableFuture<RenderedOutput>> outputs = pending.build();
+        return CompletableFuture.allOf(outputs.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    final ImmutableMap.Builder<ReportFormat, RenderedOutput> rendered = ImmutableMap.builder();
+                    for (final Map.Entry<ReportFormat, CompletableFuture<RenderedOutput>> entry : outputs.entrySet()) {
+                        rendered.put(entry.getKey(), entry.getValue().join());
+                    }
+                    return new RenderedReport(report, scheduled, rendered.build());
+                });
+    }
+
+    private static CompletionStage<Long> printToFile(final BrowserTab tab, final PdfReportFormat format, final Path file) {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (final IOException e) {
+            final CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        final ChunkTrackingChannel output = new ChunkTrackingChannel(channel);
+        return tab.printToPdf(format.getWidthInches(), format.getHeightInches(), output)
+                .handle((size, error) -> {
+                    try {
+                        channel.close();
+                    } catch (final IOException e) {
+                        if (error == null) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                    if (error != null) {
+                        throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                    }
+                    return output.getLargestChunk();
+                });
+    }
+
+    private RenderedOutput store(final PdfReportFormat format, final Path file, final long largestChunk) {
+        final StoredReportResult stored;
+        try (InputStream content = Files.newInputStream(file)) {
+            stored = _resultStore.put(content);
+        } catch (final IOException e) {
+            throw new CompletionException(e);
+        }
+        _periodicMetrics.recordGauge("report_renderer/pdf/size", stored.getSize());
+        _periodicMetrics.recordGauge("report_renderer/pdf/peak_buffered_bytes", largestChunk);
+        return new RenderedOutput(format, _resultStore, stored);
+    }
+
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            LOGGER.warn()
+                    .setMessage("failed to delete temporary PDF")
+                    .addData("file", file)
+                    .setThrowable(e)
+                    .log();
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportRenderer.class);
+
+    private final class FormatRenderer implements ReportFormat.Visitor<CompletionStage<RenderedOutput>> {
+        private final RenderedPage _page;
+
+        FormatRenderer(final RenderedPage page) {
+            _page = page;
+        }
+
+        @Override
+        public CompletionStage<RenderedOutput> visit(final PdfReportFormat format) {
+            final Path file;
+            try {
+                file = Files.createTempFile("report-", ".pdf");
+            } catch (final IOException e) {
+                final CompletableFuture<RenderedOutput> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+            // A timed out render is abandoned by the pool, but its print may still be writing to the file; so the file is
+            // only deleted once the print's own stage, which closes it, is done too.
+            final AtomicBoolean started = new AtomicBoolean(false);
+            final CompletableFuture<Void> printed = new CompletableFuture<>();
+            final CompletionStage<Long> rendered = _pool.render(tab -> {
+                started.set(true);
+                final CompletionStage<Long> print = CompletableFuture.completedFuture(null)
+                        .thenCompose(ignored -> tab.setContent(_page.getContent()))
+                        .thenCompose(ignored -> printToFile(tab, format, file));
+                print.whenComplete((largestChunk, error) -> printed.complete(null));
+                return print;
+            });
+            return rendered
+                    // Storing is blocking I/O, and needs no tab
+                    .thenApplyAsync(largestChunk -> store(format, file, largestChunk), _storeExecutor)
+                    .whenComplete((output, error) -> {
+                        if (started.get()) {
+                            printed.thenRun(() -> delete(file));
+                        } else {
+                            delete(file);
+                        }
+                    });
+        }
+
+        @Override
+        public CompletionStage<RenderedOutput> visit(final HtmlReportFormat format) {
+            return CompletableFuture.completedFuture(new RenderedOutput(format, _page.getContent().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Passes writes through to a channel, keeping track of the largest: the most PDF the browser held in memory at once.
+     */
+    private static final class ChunkTrackingChannel implements WritableByteChannel {
+        private final WritableByteChannel _channel;
+        private long _largestChunk = 0;
+
+        ChunkTrackingChannel(final WritableByteChannel channel) {
+            _channel = channel;
+        }
+
+        long getLargestChunk() {
+            return _largestChunk;
+        }
+
+        @Override
+        public int write(final ByteBuffer source) throws IOException {
+            _largestChunk = Math.max(_largestChunk, source.remaining());
+            return _channel.write(source);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return _channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            _channel.close();
+        }
+    }
+}
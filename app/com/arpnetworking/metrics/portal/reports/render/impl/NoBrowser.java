@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render.impl;
+
+import com.arpnetworking.metrics.portal.reports.render.Browser;
+import com.arpnetworking.metrics.portal.reports.render.BrowserTab;
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link Browser} for deployments without a rendering backend: every tab fails to open, so every render, and with it
+ * every report run, fails instead of delivering placeholder content.
+ *
+ * @author agent (agent at local)
+ */
+public final class NoBrowser implements Browser {
+
+    @Override
+    public CompletionStage<BrowserTab> openTab() {
+        final CompletableFuture<BrowserTab> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("no browser is configured; set renderer.browser.type"));
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).toString();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render.impl;
+
+import com.arpnetworking.metrics.portal.reports.render.Browser;
+import com.arpnetworking.metrics.portal.reports.render.BrowserTab;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Browser} that doesn't load anything: every page "renders" after a fixed latency, as a trivial HTML document
+ * naming the page. Useful for exercising a {@link com.arpnetworking.metrics.portal.reports.render.RenderPool} without
+ * a real browser.
+ *
+ * @author agent (agent at local)
+ */
+public final class StubBrowser implements Browser {
+
+    private final Duration _latency;
+    private final ScheduledExecutorService _executor;
+    private final AtomicInteger _tabsOpened = new AtomicInteger();
+    private final AtomicInteger _loads = new AtomicInteger();
+    private final AtomicInteger _pdfsPrinted = new AtomicInteger();
+
+    /**
+     * Guice constructor.
+     *
+     * @param config The application configuration.
+     */
+    @Inject
+    public StubBrowser(final Config config) {
+        this(config.getDuration("renderer.stub.latency"));
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param latency How long each page takes to load.
+     */
+    public StubBrowser(final Duration latency) {
+        _latency = latency;
+        _executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("stub-browser-%d").setDaemon(true).build());
+    }
+
+    @Override
+    public CompletionStage<BrowserTab> openTab() {
+        _tabsOpened.incrementAndGet();
+        return CompletableFuture.completedFuture(new StubTab());
+    }
+
+    @Override
+    public void close() {
+        _executor.shutdownNow();
+    }
+
+    /**
+     * The number of tabs opened so far.
+     *
+     * @return The number of tabs.
+     */
+    public int getTabsOpened() {
+        return _tabsOpened.get();
+    }
+
+    /**
+     * The number of pages loaded so far.
+     *
+     * @return The number of pages.
+     */
+    public int getLoads() {
+        return _loads.get();
+    }
+
+    /**
+     * The number of PDFs printed so far.
+     *
+     * @return The number of PDFs.
+     */
+    public int getPdfsPrinted() {
+        return _pdfsPrinted.get();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("latency", _latency)
+                .add("tabsOpened", _tabsOpened)
+                .add("loads", _loads)
+                .add("pdfsPrinted", _pdfsPrinted)
+                .toString();
+    }
+
+    private final class StubTab implements BrowserTab {
+        @Nullable
+        private volatile URI _uri;
+        @Nullable
+        private volatile String _content;
+        private volatile boolean _closed = false;
+
+        @Override
+        public CompletionStage<Void> load(final URI uri, final boolean ignoreCertificateErrors, final String readyEventName) {
+            final CompletableFuture<Void> loaded = new CompletableFuture<>();
+            final Runnable load = () -> {
+                if (_closed) {
+                    loaded.completeExceptionally(new IllegalStateException("tab is closed"));
+                    return;
+                }
+                _loads.incrementAndGet();
+                _uri = uri;
+                _content = null;
+                loaded.complete(null);
+            };
+            if (_latency.isZero()) {
+                load.run();
+            } else {
+                _executor.schedule(load, _latency.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            return loaded;
+        }
+
+        @Override
+        public CompletionStage<String> getContent() {
+            final String content = _content;
+            return CompletableFuture.completedFuture(content != null ? content : String.format("<html><body>%s</body></html>", _uri));
+        }
+
+        @Override
+        public CompletionStage<Void> setContent(final String html) {
+            _content = html;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletionStage<Long> printToPdf(final float widthInches, final float heightInches, final WritableByteChannel output) {
+            _pdfsPrinted.incrementAndGet();
+            // One chunk for the header, then one per "page": the page's content
+            final List<String> chunks = ImmutableList.of(
+                    String.format("%%PDF-stub %sx%s\n", widthInches, heightInches),
+                    getContent().toCompletableFuture().join());
+            long written = 0;
+            try {
+                for (final String chunk : chunks) {
+                    final ByteBuffer buffer = ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        written += output.write(buffer);
+                    }
+                }
+            } catch (final IOException e) {
+                final CompletableFuture<Long> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+            return CompletableFuture.completedFuture(written);
+        }
+
+        @Override
+        public CompletionStage<Void> reset() {
+            _uri = null;
+            _content = null;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void close() {
+            _closed = true;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import com.google.common.base.MoreObjects;
+import models.internal.Organization;
+import models.internal.scheduling.Job;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous view of a {@link JobRepository}.
+ *
+ * Every call is run on the given {@link Executor} (intended to be a dedicated, bounded dispatcher), so that
+ * callers such as {@link JobExecutorActor} never block their own thread on the underlying repository. State
+ * transitions are delegated directly to repositories implementing {@link AsyncJobStateRepository}.
+ *
+ * @param <T> The type of the results computed by the repository's {@link Job}s.
+ *
+ * @author agent (agent at local)
+ */
+public final class AsyncJobRepository<T> {
+
+    private final JobRepository<T> _repository;
+    private final Optional<AsyncJobStateRepository<T>> _stateRepository;
+    private final Executor _executor;
+
+    /**
+     * Public constructor.
+     *
+     * @param repository The (blocking) repository to wrap.
+     * @param executor The executor to run repository calls on.
+     */
+    public AsyncJobRepository(final JobRepository<T> repository, final Executor executor) {
+        _repository = repository;
+        _executor = executor;
+        if (repository instanceof AsyncJobStateRepository) {
+            _stateRepository = Optional.of((AsyncJobStateRepository<T>) repository);
+        } else {
+            _stateRepository = Optional.empty();
+        }
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#getJob}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @return The job, if it exists.
+     */
+    public CompletionStage<Optional<Job<T>>> getJob(final UUID id, final Organization organization) {
+        return CompletableFuture.supplyAsync(() -> _repository.getJob(id, organization), _executor);
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#getLastRun}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @return The last time that the job was executed. Completes exceptionally with {@link NoSuchElementException}
+     *   if no such job exists.
+     */
+    public CompletionStage<Optional<Instant>> getLastRun(final UUID id, final Organization organization) {
+        return CompletableFuture.supplyAsync(() -> _repository.getLastRun(id, organization), _executor);
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#jobStarted}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the job started running for.
+     * @return Completes once the repository has been updated.
+     */
+    public CompletionStage<Void> jobStarted(final UUID id, final Organization organization, final Instant scheduled) {
+        if (_stateRepository.isPresent()) {
+            return _stateRepository.get().jobStartedAsync(id, organization, scheduled);
+        }
+        return CompletableFuture.runAsync(() -> _repository.jobStarted(id, organization, scheduled), _executor);
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#jobSucceeded}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the completed job-run was scheduled for.
+     * @param result The result that the job computed.
+     * @return Completes once the repository has been updated.
+     */
+    public CompletionStage<Void> jobSucceeded(final UUID id, final Organization organization, final Instant scheduled, final T result) {
+        if (_stateRepository.isPresent()) {
+            return _stateRepository.get().jobSucceededAsync(id, organization, scheduled, result);
+        }
+        return CompletableFuture.runAsync(() -> _repository.jobSucceeded(id, organization, scheduled, result), _executor);
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#jobFailed}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the failed job-run was scheduled for.
+     * @param error The exception that caused the job to fail.
+     * @return Completes once the repository has been updated.
+     */
+    public CompletionStage<Void> jobFailed(final UUID id, final Organization organization, final Instant scheduled, final Throwable error) {
+        if (_stateRepository.isPresent()) {
+            return _stateRepository.get().jobFailedAsync(id, organization, scheduled, error);
+        }
+        return CompletableFuture.runAsync(() -> _repository.jobFailed(id, organization, scheduled, error), _executor);
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#jobsSkipped}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @param from The time that the first skipped job-run was scheduled for.
+     * @param until The end (exclusive) of the skipped job-runs.
+     * @param count The number of skipped job-runs.
+     * @return Completes once the repository has been updated.
+     */
+    public CompletionStage<Void> jobsSkipped(
+            final UUID id,
+            final Organization organization,
+            final Instant from,
+            final Instant until,
+            final long count) {
+        return CompletableFuture.runAsync(() -> _repository.jobsSkipped(id, organization, from, until, count), _executor);
+    }
+
+    /**
+     * Asynchronous {@link JobRepository#tryLeaseExecution}.
+     *
+     * @param id The id of the job.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the job-run is scheduled for.
+     * @param holder Identifies the would-be executor.
+     * @param duration How long the lease should last from now.
+     * @return Completes with whether {@code holder} now holds the lease.
+     */
+    public CompletionStage<Boolean> tryLeaseExecution(
+            final UUID id,
+            final Organization organization,
+            final Instant scheduled,
+            final String holder,
+            final Duration duration) {
+        return CompletableFuture.supplyAsync(
+                () -> _repository.tryLeaseExecution(id, organization, scheduled, holder, duration),
+                _executor);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("repository", _repository)
+                .toString();
+    }
+}
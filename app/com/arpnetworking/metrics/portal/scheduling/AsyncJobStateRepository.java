@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import models.internal.Organization;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link JobRepository} that can record job state transitions without blocking the caller.
+ *
+ * {@link AsyncJobRepository} prefers these methods over running the blocking equivalents on its executor,
+ * which lets implementations coalesce and batch writes from many concurrently-executing jobs.
+ *
+ * @param <T> The type of the results computed by the repository's jobs.
+ *
+ * @author agent (agent at local)
+ */
+public interface AsyncJobStateRepository<T> extends JobRepository<T> {
+
+    /**
+     * Asynchronous {@link JobRepository#jobStarted}.
+     *
+     * @param id The UUID of the job that started.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the job started running for.
+     * @return Completes once the transition has been durably recorded.
+     */
+    CompletionStage<Void> jobStartedAsync(UUID id, Organization organization, Instant scheduled);
+
+    /**
+     * Asynchronous {@link JobRepository#jobSucceeded}.
+     *
+     * @param id The UUID of the job that completed.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the completed job-run was scheduled for.
+     * @param result The result that the job computed.
+     * @return Completes once the transition has been durably recorded.
+     */
+    CompletionStage<Void> jobSucceededAsync(UUID id, Organization organization, Instant scheduled, T result);
+
+    /**
+     * Asynchronous {@link JobRepository#jobFailed}.
+     *
+     * @param id The UUID of the job that failed.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the failed job-run was scheduled for.
+     * @param error The exception that caused the job to fail.
+     * @return Completes once the transition has been durably recorded.
+     */
+    CompletionStage<Void> jobFailedAsync(UUID id, Organization organization, Instant scheduled, Throwable error);
+}
@@ -15,7 +15,6 @@
  */
 package com.arpnetworking.metrics.portal.scheduling;
 
-import akka.actor.ActorRef;
 import com.arpnetworking.metrics.incubator.PeriodicMetrics;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
@@ -26,6 +25,7 @@ import models.internal.scheduling.Job;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -37,32 +37,39 @@ import java.util.concurrent.CompletionStage;
  */
 public final class CachedJob<T> implements Job<T> {
     private final JobRef<T> _ref;
-    private final PeriodicMetrics _periodicMetrics;
-    private Job<T> _cached;
-    private Optional<Instant> _lastRun;
+    private final Job<T> _cached;
+    private final Optional<Instant> _lastRun;
 
-    private CachedJob(final JobRef<T> ref, final PeriodicMetrics periodicMetrics) {
+    private CachedJob(final JobRef<T> ref, final Job<T> cached, final Optional<Instant> lastRun) {
         _ref = ref;
-        _periodicMetrics = periodicMetrics;
+        _cached = cached;
+        _lastRun = lastRun;
     }
 
     /**
-     * Factory for creating {@link CachedJob}s.
+     * Asynchronously loads a {@link CachedJob} from the repository.
      *
-     * @param injector The injector to load the referenced {@link JobRepository} through.
+     * @param repository The repository referenced by {@code ref}.
      * @param ref The {@link JobRef} to load.
      * @param periodicMetrics The {@link PeriodicMetrics} instance to log metrics through.
      * @param <T> The type of the result of the referenced {@link Job}.
-     * @return A {@link CachedJob}.
-     * @throws NoSuchJobException If the job can't be loaded from the repository.
+     * @return A {@link CachedJob}. Completes exceptionally with a {@link NoSuchJobException} if the job can't be
+     *   loaded from the repository.
      */
-    public static <T> CachedJob<T> createAndLoad(
-            final Injector injector,
+    public static <T> CompletionStage<CachedJob<T>> load(
+            final AsyncJobRepository<T> repository,
             final JobRef<T> ref,
-            final PeriodicMetrics periodicMetrics) throws NoSuchJobException {
-        final CachedJob<T> result = new CachedJob<>(ref, periodicMetrics);
-        result.reload(injector);
-        return result;
+            final PeriodicMetrics periodicMetrics) {
+        return repository.getJob(ref.getJobId(), ref.getOrganization())
+                .thenCompose(loaded -> {
+                    if (!loaded.isPresent()) {
+                        periodicMetrics.recordCounter("cached_job_reload_success", 0);
+                        throw new CompletionException(new NoSuchJobException(ref.toString()));
+                    }
+                    periodicMetrics.recordCounter("cached_job_reload_success", 1);
+                    return repository.getLastRun(ref.getJobId(), ref.getOrganization())
+                            .thenApply(lastRun -> new CachedJob<>(ref, loaded.get(), lastRun));
+                });
     }
 
     @Override
@@ -87,43 +94,25 @@ public final class CachedJob<T> implements Job<T> {
     }
 
     /**
-     * Unconditionally reloads the cached information from the repository.
+     * Determines whether the cached information is out of date and should be reloaded.
      *
-     * @param injector The Guice injector to load the repository from.
-     * @throws NoSuchJobException If the job can't be loaded from the repository.
-     */
-    public void reload(final Injector injector) throws NoSuchJobException {
-        final Optional<Job<T>> loaded = _ref.get(injector);
-        if (!loaded.isPresent()) {
-            _periodicMetrics.recordCounter("cached_job_reload_success", 0);
-            throw new NoSuchJobException(_ref.toString());
-        }
-        _periodicMetrics.recordCounter("cached_job_reload_success", 1);
-        _cached = loaded.get();
-        _lastRun = _ref.getRepository(injector).getLastRun(_ref.getJobId(), _ref.getOrganization());
-    }
-
-    /**
-     * Reloads the cached information from the repository, iff it's out of date.
-     *
-     * @param injector The Guice injector to load the repository from.
      * @param upToDateETag Checked for equality to the cached job's ETag;
-     *   if equal, the cached version is assumed to be up to date and no reload is performed.
-     * @throws NoSuchJobException If a reload is necessary but the job can't be loaded from the repository.
+     *   if equal, the cached version is assumed to be up to date.
+     * @param periodicMetrics The {@link PeriodicMetrics} instance to log metrics through.
+     * @return Whether a reload is necessary.
      */
-    public void reloadIfOutdated(final Injector injector, final String upToDateETag) throws NoSuchJobException {
+    public boolean isOutdated(final String upToDateETag, final PeriodicMetrics periodicMetrics) {
         final boolean upToDate = _cached.getETag().equals(upToDateETag);
-        _periodicMetrics.recordCounter("cached_job_conditional_reload_necessary", upToDate ? 1 : 0);
-        if (upToDate) {
-            return;
+        periodicMetrics.recordCounter("cached_job_conditional_reload_necessary", upToDate ? 1 : 0);
+        if (!upToDate) {
+            LOGGER.debug()
+                    .setMessage("job is stale; reloading")
+                    .addData("jobRef", _ref)
+                    .addData("oldETag", _cached.getETag())
+                    .addData("newETag", upToDateETag)
+                    .log();
         }
-        LOGGER.debug()
-                .setMessage("job is stale; reloading")
-                .addData("jobRef", _ref)
-                .addData("oldETag", _cached.getETag())
-                .addData("newETag", upToDateETag)
-                .log();
-        reload(injector);
+        return !upToDate;
     }
 
     @Override
@@ -142,8 +131,8 @@ public final class CachedJob<T> implements Job<T> {
     }
 
     @Override
-    public CompletionStage<T> execute(final ActorRef scheduler, final Instant scheduled) {
-        return _cached.execute(scheduler, scheduled);
+    public CompletionStage<T> execute(final Injector injector, final Instant scheduled) {
+        return _cached.execute(injector, scheduled);
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CachedJob.class);
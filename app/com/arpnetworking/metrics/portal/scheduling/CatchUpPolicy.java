@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+/**
+ * What a {@link JobExecutorActor} should do when it finds that several of its job's scheduled runs have already
+ * passed, e.g. after an outage or a shard rebalance.
+ *
+ * @author agent (agent at local)
+ */
+public enum CatchUpPolicy {
+    /**
+     * Execute every missed run, oldest first.
+     */
+    RUN_ALL,
+    /**
+     * Execute only the most recent missed run; the others are dropped.
+     */
+    RUN_LATEST,
+    /**
+     * Execute only the most recent missed run, and record the others with the repository as skipped.
+     */
+    RUN_LATEST_AND_SUMMARIZE,
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import com.arpnetworking.metrics.Units;
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.google.common.base.MoreObjects;
+import models.internal.scheduling.Job;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds how many {@link Job}s may execute at once on this node.
+ *
+ * {@link JobExecutorActor}s acquire a {@link Permit} before executing and release it once the execution completes.
+ * When no permits are available, requests queue in order of scheduled time, then job class, then arrival.
+ *
+ * The governor can also spread out runs that are scheduled for the same instant: each job is deterministically
+ * assigned a start delay of up to its schedule's {@link Schedule#getStartTolerance() start tolerance} (capped by
+ * {@code maxJitter}).
+ *
+ * @author agent (agent at local)
+ */
+public final class JobExecutionGovernor {
+
+    private final int _permits;
+    private final Duration _maxJitter;
+    private final Clock _clock;
+    private final PeriodicMetrics _periodicMetrics;
+    private final Object _lock = new Object();
+    private final PriorityQueue<Waiter> _waiters = new PriorityQueue<>(WAITER_ORDER);
+    private int _available;
+    private long _nextSequenceNumber = 0;
+
+    /**
+     * Public constructor.
+     *
+     * @param permits The maximum number of concurrent executions.
+     * @param maxJitter The maximum start delay assigned to any job. Zero disables jitter.
+     * @param clock The clock used to measure time spent waiting for a permit.
+     * @param periodicMetrics The {@link PeriodicMetrics} to record queue depth and wait time to.
+     */
+    public JobExecutionGovernor(
+            final int permits,
+            final Duration maxJitter,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be positive; got " + permits);
+        }
+        _permits = permits;
+        _available = permits;
+        _maxJitter = maxJitter;
+        _clock = clock;
+        _periodicMetrics = periodicMetrics;
+    }
+
+    /**
+     * The deterministic delay after which a run of the given job should start.
+     *
+     * @param jobId The id of the job.
+     * @param schedule The schedule of the job.
+     * @return The delay; zero if the schedule does not tolerate late starts.
+     */
+    public Duration getJitter(final UUID jobId, final Schedule schedule) {
+        final Duration bound = min(schedule.getStartTolerance(), _maxJitter);
+        if (bound.isZero() || bound.isNegative()) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(Math.floorMod(jobId.getLeastSignificantBits() ^ jobId.getMostSignificantBits(), bound.toMillis()));
+    }
+
+    /**
+     * Requests a permit to execute a job.
+     *
+     * The returned future may be cancelled to withdraw the request. A requester that can no longer use a permit must
+     * either cancel the future or, if it already completed, release the permit.
+     *
+     * @param job The job to execute.
+     * @param scheduled The time the run was scheduled for.
+     * @return Completes with the permit once one is available.
+     */
+    public CompletableFuture<Permit> acquire(final Job<?> job, final Instant scheduled) {
+        final Waiter waiter;
+        synchronized (_lock) {
+            if (_available > 0 && _waiters.isEmpty()) {
+                _available--;
+                recordPermitsInUse();
+                _periodicMetrics.recordTimer(WAIT_TIME_METRIC, 0, Optional.of(Units.NANOSECOND));
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            waiter = new Waiter(scheduled, job.getClass().getName(), _nextSequenceNumber++, _clock.instant());
+            _waiters.add(waiter);
+            _periodicMetrics.recordGauge(QUEUE_DEPTH_METRIC, _waiters.size());
+        }
+        // Withdraw a cancelled request right away, rather than when its turn comes, so the queue depth stays accurate.
+        waiter._future.whenComplete((permit, error) -> {
+            if (waiter._future.isCancelled()) {
+                synchronized (_lock) {
+                    if (_waiters.remove(waiter)) {
+                        _periodicMetrics.recordGauge(QUEUE_DEPTH_METRIC, _waiters.size());
+                    }
+                }
+            }
+        });
+        return waiter._future;
+    }
+
+    private void release() {
+        while (true) {
+            final Waiter next;
+            synchronized (_lock) {
+                next = _waiters.poll();
+                _periodicMetrics.recordGauge(QUEUE_DEPTH_METRIC, _waiters.size());
+                if (next == null) {
+                    _available++;
+                    recordPermitsInUse();
+                    return;
+                }
+            }
+            // Hand the permit straight to the next waiter, unless it has since been cancelled.
+            if (next._future.complete(new Permit())) {
+                _periodicMetrics.recordTimer(
+                        WAIT_TIME_METRIC,
+                        Math.max(0, ChronoUnit.NANOS.between(next._enqueuedAt, _clock.instant())),
+                        Optional.of(Units.NANOSECOND));
+                return;
+            }
+        }
+    }
+
+    private void recordPermitsInUse() {
+        _periodicMetrics.recordGauge("job_execution_governor/permits_in_use", _permits - _available);
+    }
+
+    private static Duration min(final Duration a, final Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (_lock) {
+            return MoreObjects.toStringHelper(this)
+                    .add("permits", _permits)
+                    .add("available", _available)
+                    .add("waiting", _waiters.size())
+                    .add("maxJitter", _maxJitter)
+                    .toString();
+        }
+    }
+
+    private static final String QUEUE_DEPTH_METRIC = "job_execution_governor/queue_depth";
+    private static final String WAIT_TIME_METRIC = "job_execution_governor/wait_time";
+    private static final Comparator<Waiter> WAITER_ORDER = Comparator
+            .comparing((Waiter waiter) -> waiter._scheduled)
+            .thenComparing(waiter -> waiter._jobClass)
+            .thenComparingLong(waiter -> waiter._sequenceNumber);
+
+    /**
+     * The right to execute one job. Releasing it more than once has no further effect.
+     */
+    public final class Permit {
+        private final AtomicBoolean _released = new AtomicBoolean(false);
+
+        private Permit() {}
+
+        /**
+         * Return the permit to the governor.
+         */
+        public void release() {
+            if (_released.compareAndSet(false, true)) {
+                JobExecutionGovernor.this.release();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final Instant _scheduled;
+        private final String _jobClass;
+        private final long _sequenceNumber;
+        private final Instant _enqueuedAt;
+        private final CompletableFuture<Permit> _future = new CompletableFuture<>();
+
+        Waiter(final Instant scheduled, final String jobClass, final long sequenceNumber, final Instant enqueuedAt) {
+            _scheduled = scheduled;
+            _jobClass = jobClass;
+            _sequenceNumber = sequenceNumber;
+            _enqueuedAt = enqueuedAt;
+        }
+    }
+}
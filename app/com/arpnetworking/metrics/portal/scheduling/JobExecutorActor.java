@@ -18,6 +18,7 @@ package com.arpnetworking.metrics.portal.scheduling;
 import akka.actor.AbstractActorWithTimers;
 import akka.actor.PoisonPill;
 import akka.actor.Props;
+import akka.dispatch.Dispatchers;
 import akka.pattern.PatternsCS;
 import com.arpnetworking.commons.builder.OvalBuilder;
 import com.arpnetworking.metrics.Units;
@@ -26,6 +27,7 @@ import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
 import com.google.inject.Injector;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import models.internal.scheduling.Job;
@@ -41,7 +43,14 @@ import java.time.temporal.ChronoUnit;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
 /**
@@ -52,17 +61,20 @@ import javax.annotation.Nullable;
  *     <li>
  *          <p><b>Unininitialized.</b> The actor is completely passive.</p>
  *          <p>It starts out in this state (after instantiation, or after dying and being restarted).</p>
- *          <p>It leaves this state when it receives a {@link Reload} message.</p>
+ *          <p>It leaves this state once the job referenced by a {@link Reload} message has been loaded.</p>
  *     </li>
  *     <li>
  *         <p><b>Initialized.</b> The actor will intermittently wake up to execute / reload its {@link CachedJob}.</p>
- *         <p>It enters this state when it receives a {@link Reload} message.</p>
+ *         <p>It enters this state once the job referenced by a {@link Reload} message has been loaded.</p>
  *         <p>It never leaves this state (except when it dies and is resurrected).</p>
  *         <p>Once the actor is initialized, all subsequent {@link Reload} messages <i>must</i> reference the same {@link JobRef}.
  *            Failure to respect this is considered a severe enough programming error that the actor will kill itself.</p>
  *     </li>
  * </ul>
  *
+ * <p>All {@link JobRepository} interaction happens asynchronously on the {@code job-repository-dispatcher} (if configured),
+ * with the results piped back to the actor as messages, so that a slow repository never blocks the actor's dispatcher.</p>
+ *
  * @param <T> The type of result produced by the {@link Job}s.
  *
  * @author Spencer Pearson (spencerpearson at dropbox dot com)
@@ -72,7 +84,18 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
     private final Injector _injector;
     private final Clock _clock;
     private final PeriodicMetrics _periodicMetrics;
+    private final JobExecutionGovernor _governor;
+    private final Executor _repositoryExecutor;
+    /**
+     * Identifies this incarnation of the actor when leasing executions, so that a previous or concurrent incarnation
+     * (e.g. on the other side of a shard handoff) can't execute the same run.
+     */
+    private final String _leaseHolder = UUID.randomUUID().toString();
     private boolean _currentlyExecuting = false;
+    private boolean _currentlyLoading = false;
+    private Optional<String> _executingMetricPrefix = Optional.empty();
+    private long _executionStartNanos;
+    private Optional<CompletableFuture<JobExecutionGovernor.Permit>> _permit = Optional.empty();
     private Optional<CachedJob<T>> _cachedJob = Optional.empty();
 
     /**
@@ -81,16 +104,36 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
      * @param injector The Guice injector to use to load the {@link JobRepository} referenced by the {@link JobRef}.
      * @param clock The clock the scheduler will use, when it ticks, to determine whether it's time to run the next job(s) yet.
      * @param periodicMetrics The {@link PeriodicMetrics} that this actor will use to log its metrics.
+     * @param governor The node's {@link JobExecutionGovernor}, which bounds concurrent executions.
      * @return A new props to create this actor.
      */
-    public static Props props(final Injector injector, final Clock clock, final PeriodicMetrics periodicMetrics) {
-        return Props.create(JobExecutorActor.class, () -> new JobExecutorActor<>(injector, clock, periodicMetrics));
+    public static Props props(
+            final Injector injector,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics,
+            final JobExecutionGovernor governor) {
+        return Props.create(JobExecutorActor.class, () -> new JobExecutorActor<>(injector, clock, periodicMetrics, governor));
     }
 
-    private JobExecutorActor(final Injector injector, final Clock clock, final PeriodicMetrics periodicMetrics) {
+    private JobExecutorActor(
+            final Injector injector,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics,
+            final JobExecutionGovernor governor) {
         _injector = injector;
         _clock = clock;
         _periodicMetrics = periodicMetrics;
+        _governor = governor;
+        final Dispatchers dispatchers = getContext().getSystem().dispatchers();
+        if (dispatchers.hasDispatcher(REPOSITORY_DISPATCHER_NAME)) {
+            _repositoryExecutor = dispatchers.lookup(REPOSITORY_DISPATCHER_NAME);
+        } else {
+            LOGGER.warn()
+                    .setMessage("repository dispatcher not configured; falling back to actor dispatcher")
+                    .addData("dispatcher", REPOSITORY_DISPATCHER_NAME)
+                    .log();
+            _repositoryExecutor = getContext().dispatcher();
+        }
     }
 
     @Override
@@ -102,6 +145,13 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
                 .log();
     }
 
+    @Override
+    public void postStop() throws Exception {
+        releasePermit();
+        executionEnded();
+        super.postStop();
+    }
+
     private void scheduleTickFor(final Instant wakeUpAt) {
         final FiniteDuration delta = Duration.fromNanos(Math.max(0, ChronoUnit.NANOS.between(_clock.instant(), wakeUpAt)));
         timers().startSingleTimer(EXTRA_TICK_TIMER_NAME, Tick.INSTANCE, delta);
@@ -114,32 +164,107 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
         getSelf().tell(PoisonPill.getInstance(), getSelf());
     }
 
+    private AsyncJobRepository<T> getRepository(final JobRef<T> ref) {
+        return new AsyncJobRepository<>(ref.getRepository(_injector), _repositoryExecutor);
+    }
+
     /**
-     * Initializes the actor with the given JobRef (if uninitialized), or ensure the the given ref equals the one already initialized with.
+     * The metric name prefix for a job, dimensioning it by the job's type.
      *
-     * @param ref The JobRef to initialize with.
-     * @return The {@link CachedJob} the actor is initialized to.
-     *   (Guaranteed to equal {@code _cachedJob.get()}; this return value is purely for the typechecker's sake.)
-     * @throws IllegalStateException If the actor was already initialized with a different JobRef.
-     * @throws NoSuchJobException If the actor attempts to initialize itself but can't load the referenced job.
+     * @param ref The job.
+     * @return The prefix, including the trailing slash.
      */
-    private CachedJob<T> initializeOrEnsureRefMatch(final JobRef<T> ref) throws IllegalStateException, NoSuchJobException {
-        if (!_cachedJob.isPresent()) {
-            LOGGER.info()
-                    .setMessage("initializing")
-                    .addData("ref", ref)
-                    .log();
-            _cachedJob = Optional.of(CachedJob.createAndLoad(_injector, ref, _periodicMetrics));
+    private static String jobMetricPrefix(final JobRef<?> ref) {
+        return "job_executor_job/" + jobTypeMetricName(ref.getRepositoryType().getCanonicalName()) + "/";
+    }
+
+    /**
+     * The job type that metrics are dimensioned by: the simple name of the job's repository, in lower underscore case. This
+     * is all that {@link JobExecutorRegionMetricsCollector} can recover from an executor's entity id, so the executor uses
+     * it too.
+     *
+     * @param repositoryTypeName The canonical name of the job's repository type.
+     * @return The job type.
+     */
+    /* package private */ static String jobTypeMetricName(final String repositoryTypeName) {
+        final String simpleName = repositoryTypeName.substring(repositoryTypeName.lastIndexOf('.') + 1);
+        return CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, simpleName);
+    }
+
+    private void executionBegan(final String metricPrefix) {
+        executionEnded();
+        _executingMetricPrefix = Optional.of(metricPrefix);
+        final int executing = EXECUTIONS_IN_PROGRESS.computeIfAbsent(metricPrefix, prefix -> new AtomicInteger()).incrementAndGet();
+        _periodicMetrics.recordGauge(metricPrefix + "concurrent_executions", executing);
+        _periodicMetrics.recordGauge("job_executor_actor_concurrent_executions", TOTAL_EXECUTIONS_IN_PROGRESS.incrementAndGet());
+    }
+
+    private void executionEnded() {
+        if (!_executingMetricPrefix.isPresent()) {
+            return;
         }
+        final String metricPrefix = _executingMetricPrefix.get();
+        _executingMetricPrefix = Optional.empty();
+        final int executing = EXECUTIONS_IN_PROGRESS.get(metricPrefix).decrementAndGet();
+        _periodicMetrics.recordGauge(metricPrefix + "concurrent_executions", executing);
+        _periodicMetrics.recordGauge("job_executor_actor_concurrent_executions", TOTAL_EXECUTIONS_IN_PROGRESS.decrementAndGet());
+    }
 
-        final JobRef<T> oldRef = _cachedJob.get().getRef();
-        if (!oldRef.equals(ref)) {
-            throw new IllegalStateException(String.format("got JobRef %s, but already initialized with %s", ref, oldRef));
+    /**
+     * Returns (or withdraws the request for) the execution permit, if any.
+     */
+    private void releasePermit() {
+        _permit.ifPresent(request -> {
+            if (!request.cancel(false)) {
+                request.thenAccept(JobExecutionGovernor.Permit::release);
+            }
+        });
+        _permit = Optional.empty();
+    }
+
+    private void recordSinceScheduled(final String metricName, final Instant scheduled) {
+        _periodicMetrics.recordTimer(
+                metricName,
+                Math.max(0, ChronoUnit.NANOS.between(scheduled, _clock.instant())),
+                Optional.of(Units.NANOSECOND));
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
         }
+        return error;
+    }
 
-        return _cachedJob.get();
+    /**
+     * Ensures the given ref equals the one the actor is already initialized with (if any).
+     *
+     * @param ref The JobRef to check.
+     * @throws IllegalStateException If the actor was already initialized with a different JobRef.
+     */
+    private void ensureRefMatch(final JobRef<T> ref) throws IllegalStateException {
+        if (_cachedJob.isPresent()) {
+            final JobRef<T> oldRef = _cachedJob.get().getRef();
+            if (!oldRef.equals(ref)) {
+                throw new IllegalStateException(String.format("got JobRef %s, but already initialized with %s", ref, oldRef));
+            }
+        }
     }
 
+    /**
+     * Asynchronously loads the job and its last run from the repository, and sends the actor a {@link JobLoaded} message.
+     *
+     * @param ref The JobRef to load.
+     * @param afterExecution Whether this load follows the completion of an execution (and should therefore end it).
+     */
+    private void loadAndPipeToSelf(final JobRef<T> ref, final boolean afterExecution) {
+        _currentlyLoading = true;
+        PatternsCS.pipe(
+                CachedJob.load(getRepository(ref), ref, _periodicMetrics)
+                        .handle((cachedJob, error) -> new JobLoaded<>(ref, cachedJob, error, afterExecution)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
 
     private JobRef<T> unsafeJobRefCast(@SuppressWarnings("rawtypes") final JobRef ref) {
         // THIS MAKES ME SO SAD. But there's simply no way to plumb the type information through Akka.
@@ -149,44 +274,183 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
     }
 
     /**
-     * Executes the job, notifying the repository upon start and completion. (Unless an execution is already in progress; then, noop.)
-     * (Well, technically, sends the actor a message upon completion, and <i>that</i> notifies the repository about success/failure.)
+     * Begins executing the job, by requesting an execution permit and then notifying the repository of the start.
+     * (Unless an execution is already in progress; then, noop.)
+     * (Technically, both steps are asynchronous: once the permit is granted, the actor is sent a {@link PermitGranted} message;
+     * once the repository has been notified, it is sent a {@link JobStarted} message, and <i>that</i> runs the job.)
      *
      * @param scheduled The time that the job was scheduled for.
      * @throws ActorNotInitializedException If the actor has never been given a {@link JobRef}, and therefore has nothing to execute.
-     * @throws NoSuchJobException If the repository doesn't recognize the job.
      */
-    private void attemptExecuteAndUpdateRepository(final Instant scheduled) throws ActorNotInitializedException, NoSuchJobException {
+    private void attemptExecuteAndUpdateRepository(final Instant scheduled) throws ActorNotInitializedException {
         if (!_cachedJob.isPresent()) {
             throw new ActorNotInitializedException("unable to execute: executor is not initialized");
         }
 
-        final CachedJob<T> cachedJob = _cachedJob.get();
-
-        final JobRef<T> ref = cachedJob.getRef();
-        final Job<T> job = cachedJob.getJob();
-        final JobRepository<T> repo = ref.getRepository(_injector);
-
         if (_currentlyExecuting) {
             return;
         }
         _currentlyExecuting = true;
 
-        try {
-            repo.jobStarted(ref.getJobId(), ref.getOrganization(), scheduled);
-        } catch (final NoSuchElementException error) {
+        final CompletableFuture<JobExecutionGovernor.Permit> request = _governor.acquire(_cachedJob.get().getJob(), scheduled);
+        _permit = Optional.of(request);
+        PatternsCS.pipe(
+                request.handle((permit, error) -> new PermitGranted(scheduled, error)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
+
+    private void permitGranted(final PermitGranted message) {
+        if (message.getError().isPresent() || !_cachedJob.isPresent()) {
+            // Either the request was withdrawn, or we somehow lost our job while waiting.
+            releasePermit();
             _currentlyExecuting = false;
-            throw new NoSuchJobException("job no longer exists in repository", error);
+            return;
         }
+        final JobRef<T> ref = _cachedJob.get().getRef();
+        final Instant scheduled = message.getScheduled();
+        PatternsCS.pipe(
+                getRepository(ref).tryLeaseExecution(ref.getJobId(), ref.getOrganization(), scheduled, _leaseHolder, LEASE_DURATION)
+                        .handle((leased, error) -> new LeaseResult(scheduled, Boolean.TRUE.equals(leased), error, false)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
+
+    private void leaseResult(final LeaseResult message) {
+        if (message.isRenewal()) {
+            leaseRenewed(message);
+            return;
+        }
+        if (!_cachedJob.isPresent()) {
+            releasePermit();
+            _currentlyExecuting = false;
+            return;
+        }
+        final JobRef<T> ref = _cachedJob.get().getRef();
+        final Instant scheduled = message.getScheduled();
+        if (message.getError().isPresent()) {
+            releasePermit();
+            _currentlyExecuting = false;
+            LOGGER.error()
+                    .setMessage("failed to lease job execution; will retry on next tick")
+                    .addData("ref", ref)
+                    .addData("scheduled", scheduled)
+                    .setThrowable(unwrap(message.getError().get()))
+                    .log();
+            return;
+        }
+        if (!message.isLeased()) {
+            // Someone else (most likely our previous incarnation, on another node) is executing this run. Stay "executing"
+            // until we've given them time to finish and reloaded the job, so that we don't retry with a stale last run.
+            releasePermit();
+            LOGGER.info()
+                    .setMessage("job execution is leased elsewhere; skipping")
+                    .addData("ref", ref)
+                    .addData("scheduled", scheduled)
+                    .log();
+            _periodicMetrics.recordCounter(jobMetricPrefix(ref) + "lease_refused", 1);
+            timers().startSingleTimer(RELOAD_RETRY_TIMER_NAME, ReloadRetry.INSTANCE, LEASE_RETRY_INTERVAL);
+            return;
+        }
+        PatternsCS.pipe(
+                getRepository(ref).jobStarted(ref.getJobId(), ref.getOrganization(), scheduled)
+                        .handle((ignored, error) -> new JobStarted(scheduled, error)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
+
+    private void reloadRetry(final ReloadRetry message) {
+        if (_cachedJob.isPresent()) {
+            loadAndPipeToSelf(_cachedJob.get().getRef(), true);
+        } else {
+            _currentlyExecuting = false;
+        }
+    }
 
+    private void renewLease(final RenewLease message) {
+        if (!_cachedJob.isPresent() || !_executingMetricPrefix.isPresent()) {
+            timers().cancel(LEASE_RENEWAL_TIMER_NAME);
+            return;
+        }
+        final JobRef<T> ref = _cachedJob.get().getRef();
+        final Instant scheduled = message.getScheduled();
+        PatternsCS.pipe(
+                getRepository(ref).tryLeaseExecution(ref.getJobId(), ref.getOrganization(), scheduled, _leaseHolder, LEASE_DURATION)
+                        .handle((leased, error) -> new LeaseResult(scheduled, Boolean.TRUE.equals(leased), error, true)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
+
+    private void leaseRenewed(final LeaseResult message) {
+        if (message.isLeased()) {
+            return;
+        }
+        // There's no safe way to abort a running job, so all we can do is make some noise.
+        final Optional<JobRef<T>> ref = _cachedJob.map(CachedJob::getRef);
+        if (message.getError().isPresent()) {
+            LOGGER.warn()
+                    .setMessage("failed to renew job execution lease")
+                    .addData("ref", ref)
+                    .addData("scheduled", message.getScheduled())
+                    .setThrowable(unwrap(message.getError().get()))
+                    .log();
+        } else {
+            LOGGER.error()
+                    .setMessage("lost job execution lease while executing; the run may be duplicated")
+                    .addData("ref", ref)
+                    .addData("scheduled", message.getScheduled())
+                    .log();
+            _executingMetricPrefix.ifPresent(prefix -> _periodicMetrics.recordCounter(prefix + "lease_lost", 1));
+        }
+    }
+
+    private void jobStarted(final JobStarted message) {
+        if (!_cachedJob.isPresent()) {
+            releasePermit();
+            _currentlyExecuting = false;
+            LOGGER.warn()
+                    .setMessage("uninitialized, but got start message (perhaps from previous life?)")
+                    .addData("scheduled", message.getScheduled())
+                    .log();
+            return;
+        }
+        final CachedJob<T> cachedJob = _cachedJob.get();
+        final Instant scheduled = message.getScheduled();
+
+        if (message.getError().isPresent()) {
+            releasePermit();
+            _currentlyExecuting = false;
+            final Throwable error = unwrap(message.getError().get());
+            if (error instanceof NoSuchElementException) {
+                LOGGER.warn()
+                        .setMessage("attempted to start executing job, but job no longer exists in repository")
+                        .addData("ref", cachedJob.getRef())
+                        .addData("scheduled", scheduled)
+                        .log();
+                killSelf();
+            } else {
+                LOGGER.error()
+                        .setMessage("failed to mark job as started; will retry on next tick")
+                        .addData("ref", cachedJob.getRef())
+                        .addData("scheduled", scheduled)
+                        .setThrowable(error)
+                        .log();
+            }
+            return;
+        }
+
+        final Job<T> job = cachedJob.getJob();
+        final String metricPrefix = jobMetricPrefix(cachedJob.getRef());
+        recordSinceScheduled(metricPrefix + "start_lag", scheduled);
+        executionBegan(metricPrefix);
+        timers().startPeriodicTimer(LEASE_RENEWAL_TIMER_NAME, new RenewLease(scheduled), LEASE_RENEWAL_INTERVAL);
         final long startTime = System.nanoTime();
+        _executionStartNanos = startTime;
         PatternsCS.pipe(
-                job.execute(getSelf(), scheduled)
+                job.execute(_injector, scheduled)
                         .handle((result, error) -> {
                             _periodicMetrics.recordTimer(
-                                    "job_executor_job/"
-                                            + CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, job.getClass().getSimpleName())
-                                            + "execution_time",
+                                    metricPrefix + "execution_time",
                                     System.nanoTime() - startTime,
                                     Optional.of(Units.NANOSECOND));
 
@@ -203,7 +467,8 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
     /**
      * Wakes up the actor and causes it run the job or schedule another tick, as appropriate.
      *
-     * If the job's next scheduled execution is before ~now, execute it.
+     * If the job's next scheduled execution is before ~now, execute it (or, if several runs have been missed, whichever the
+     * schedule's {@link CatchUpPolicy} calls for).
      * Otherwise, schedule a tick for the next execution time.
      *
      * @param message A {@link Tick} message.
@@ -227,48 +492,152 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
             return;
         }
 
-        if (_clock.instant().isBefore(nextRun.get().minus(EXECUTION_SLOP))) {
-            scheduleTickFor(nextRun.get());
+        final Instant now = _clock.instant();
+        final Instant startAt = nextRun.get().plus(_governor.getJitter(cachedJob.getRef().getJobId(), cachedJob.getSchedule()));
+        if (now.isBefore(startAt.minus(EXECUTION_SLOP))) {
+            scheduleTickFor(startAt);
+        } else if (cachedJob.getSchedule().getCatchUpPolicy() != CatchUpPolicy.RUN_ALL) {
+            catchUp(cachedJob, nextRun.get(), now);
         } else {
-            try {
-                attemptExecuteAndUpdateRepository(nextRun.get());
-            } catch (final NoSuchJobException error) {
-                LOGGER.warn()
-                        .setMessage("attempted to start executing job, but job no longer exists in repository")
-                        .addData("ref", cachedJob.getRef())
-                        .addData("scheduled", nextRun.get())
-                        .log();
-                killSelf();
-            }
+            attemptExecuteAndUpdateRepository(nextRun.get());
         }
     }
 
+    /**
+     * Executes the latest of the job's missed runs, skipping (and, if the schedule's {@link CatchUpPolicy} says so,
+     * recording) any earlier ones. (Unless an execution is already in progress; then, noop.)
+     *
+     * @param cachedJob The job.
+     * @param firstMissed The earliest missed run.
+     * @param now The current time.
+     * @throws ActorNotInitializedException If the actor has never been given a {@link JobRef}, and therefore has nothing to execute.
+     */
+    private void catchUp(final CachedJob<T> cachedJob, final Instant firstMissed, final Instant now) throws ActorNotInitializedException {
+        if (_currentlyExecuting) {
+            return;
+        }
+        // Jump straight to the latest due run, rather than walking every missed run: after a long outage there can be
+        // arbitrarily many of them.
+        final Schedule schedule = cachedJob.getSchedule();
+        final Instant latest = schedule.latestRunAtOrBefore(firstMissed, now).orElse(firstMissed);
+        final long skippedCount = schedule.countRunsBefore(firstMissed, latest);
+        if (skippedCount == 0) {
+            attemptExecuteAndUpdateRepository(latest);
+            return;
+        }
+
+        final JobRef<T> ref = cachedJob.getRef();
+        LOGGER.info()
+                .setMessage("skipping missed runs")
+                .addData("ref", ref)
+                .addData("policy", schedule.getCatchUpPolicy())
+                .addData("skipped", skippedCount)
+                .addData("firstSkipped", firstMissed)
+                .addData("latest", latest)
+                .log();
+        _periodicMetrics.recordCounter(jobMetricPrefix(ref) + "skipped_runs", skippedCount);
+        if (schedule.getCatchUpPolicy() != CatchUpPolicy.RUN_LATEST_AND_SUMMARIZE) {
+            attemptExecuteAndUpdateRepository(latest);
+            return;
+        }
+
+        // Hold off any other execution until the skipped runs are recorded, so that they're recorded before the latest run.
+        _currentlyExecuting = true;
+        PatternsCS.pipe(
+                getRepository(ref).jobsSkipped(ref.getJobId(), ref.getOrganization(), firstMissed, latest, skippedCount)
+                        .handle((ignored, error) -> new SkipsRecorded(latest, error)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
+
+    private void skipsRecorded(final SkipsRecorded message) throws ActorNotInitializedException {
+        _currentlyExecuting = false;
+        if (message.getError().isPresent()) {
+            LOGGER.warn()
+                    .setMessage("failed to record skipped runs; executing latest run regardless")
+                    .addData("ref", _cachedJob.map(CachedJob::getRef))
+                    .addData("scheduled", message.getScheduled())
+                    .setThrowable(unwrap(message.getError().get()))
+                    .log();
+        }
+        if (!_cachedJob.isPresent()) {
+            return;
+        }
+        attemptExecuteAndUpdateRepository(message.getScheduled());
+    }
+
     private void reload(final Reload<T> message) {
+        final JobRef<T> ref = unsafeJobRefCast(message.getJobRef());
         final Optional<String> eTag = message.getETag();
-        final CachedJob<T> cachedJob;
         _periodicMetrics.recordCounter("job_executor_actor_reloads", 1);
-        try {
-            cachedJob = initializeOrEnsureRefMatch(unsafeJobRefCast(message.getJobRef()));
-            if (eTag.isPresent()) {
-                cachedJob.reloadIfOutdated(_injector, eTag.get());
-            } else {
-                cachedJob.reload(_injector);
+        ensureRefMatch(ref);
+
+        if (!_cachedJob.isPresent()) {
+            if (_currentlyLoading) {
+                return;
             }
-        } catch (final NoSuchJobException error) {
-            LOGGER.warn()
-                    .setMessage("tried to reload job, but job no longer exists in repository")
-                    .addData("ref", message.getJobRef())
+            LOGGER.info()
+                    .setMessage("initializing")
+                    .addData("ref", ref)
                     .log();
-            killSelf();
+        } else if (eTag.isPresent() && !_cachedJob.get().isOutdated(eTag.get(), _periodicMetrics)) {
+            startTicking();
             return;
         }
+        loadAndPipeToSelf(ref, false);
+    }
+
+    private void jobLoaded(final JobLoaded<T> message) {
+        _currentlyLoading = false;
+        if (message.getError().isPresent()) {
+            final Throwable error = unwrap(message.getError().get());
+            if (error instanceof NoSuchJobException || error instanceof NoSuchElementException) {
+                LOGGER.warn()
+                        .setMessage("tried to reload job, but job no longer exists in repository")
+                        .addData("ref", message.getJobRef())
+                        .log();
+                killSelf();
+                return;
+            }
+            LOGGER.error()
+                    .setMessage("failed to reload job")
+                    .addData("ref", message.getJobRef())
+                    .addData("afterExecution", message.isAfterExecution())
+                    .setThrowable(error)
+                    .log();
+            if (message.isAfterExecution()) {
+                if (_cachedJob.isPresent()) {
+                    // The cached last run predates the execution that just ended, so a tick now would execute it again;
+                    // stay "executing" until a reload succeeds.
+                    timers().startSingleTimer(RELOAD_RETRY_TIMER_NAME, ReloadRetry.INSTANCE, FAILED_RELOAD_RETRY_INTERVAL);
+                    return;
+                }
+                _currentlyExecuting = false;
+            }
+            if (!_cachedJob.isPresent()) {
+                // Nothing to fall back on; let the actor restart and the coordinator re-initialize it.
+                throw new IllegalStateException("failed to initialize job", error);
+            }
+        } else {
+            ensureRefMatch(message.getJobRef());
+            _cachedJob = message.getCachedJob();
+            if (message.isAfterExecution()) {
+                _currentlyExecuting = false;
+            }
+        }
+        startTicking();
+    }
+
+    private void startTicking() {
         timers().startPeriodicTimer(PERIODIC_TICK_TIMER_NAME, Tick.INSTANCE, TICK_INTERVAL);
         getSelf().tell(Tick.INSTANCE, getSelf());
     }
 
     private void jobCompleted(final JobCompleted<?> message) {
-        _currentlyExecuting = false;
+        releasePermit();
+        timers().cancel(LEASE_RENEWAL_TIMER_NAME);
         if (!_cachedJob.isPresent()) {
+            _currentlyExecuting = false;
             LOGGER.warn()
                     .setMessage("uninitialized, but got completion message (perhaps from previous life?)")
                     .addData("scheduled", message.getScheduled())
@@ -278,58 +647,87 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
         }
         final CachedJob<T> cachedJob = _cachedJob.get();
         final JobRef<T> ref = cachedJob.getRef();
+        if (_executingMetricPrefix.isPresent()) {
+            // Feeds the cost-weighted shard allocation. Cluster sharding names each entity's parent after its shard,
+            // which (unlike recomputing the shard here) holds whichever message extractor the region was started with.
+            getContext().getSystem().eventStream().publish(new JobShardLoad.ExecutionSample(
+                    getContext().getParent().path().name(),
+                    java.time.Duration.ofNanos(System.nanoTime() - _executionStartNanos)));
+        }
+        executionEnded();
 
         @SuppressWarnings("unchecked")
         final JobCompleted<T> typedMessage = (JobCompleted<T>) message;
-        final JobRepository<T> repo = ref.getRepository(_injector);
-        try {
-            final int successMetricValue = message.getError() == null ? 1 : 0;
-            _periodicMetrics.recordCounter(
-                    "job_executor_actor_execution_successes",
-                    successMetricValue);
-            _periodicMetrics.recordCounter(
-                    "job_executor_job/"
-                    + CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, cachedJob.getJob().getClass().getSimpleName())
-                    + "/success",
-                    successMetricValue);
-            if (message.getError() == null) {
-                if (typedMessage.getResult() == null) {
-                    throw new IllegalArgumentException(String.format("JobCompleted message for %s has null error *and* result", ref));
-                }
-                LOGGER.debug()
-                        .setMessage("marking job as successful")
-                        .addData("ref", ref)
-                        .addData("scheduled", message.getScheduled())
-                        .log();
-                repo.jobSucceeded(
-                        ref.getJobId(),
-                        ref.getOrganization(),
-                        message.getScheduled(),
-                        typedMessage.getResult());
-            } else {
-                LOGGER.debug()
-                        .setMessage("marking job as failed")
+        final AsyncJobRepository<T> repo = getRepository(ref);
+        final int successMetricValue = message.getError() == null ? 1 : 0;
+        _periodicMetrics.recordCounter(
+                "job_executor_actor_execution_successes",
+                successMetricValue);
+        _periodicMetrics.recordCounter(jobMetricPrefix(ref) + "success", successMetricValue);
+        final CompletionStage<Void> update;
+        if (message.getError() == null) {
+            if (typedMessage.getResult() == null) {
+                throw new IllegalArgumentException(String.format("JobCompleted message for %s has null error *and* result", ref));
+            }
+            LOGGER.debug()
+                    .setMessage("marking job as successful")
+                    .addData("ref", ref)
+                    .addData("scheduled", message.getScheduled())
+                    .log();
+            update = repo.jobSucceeded(
+                    ref.getJobId(),
+                    ref.getOrganization(),
+                    message.getScheduled(),
+                    typedMessage.getResult());
+        } else {
+            LOGGER.debug()
+                    .setMessage("marking job as failed")
+                    .addData("ref", ref)
+                    .addData("scheduled", message.getScheduled())
+                    .addData("error", message.getError())
+                    .log();
+            update = repo.jobFailed(
+                    ref.getJobId(),
+                    ref.getOrganization(),
+                    message.getScheduled(),
+                    typedMessage.getError());
+        }
+
+        PatternsCS.pipe(
+                update.handle((ignored, error) -> new CompletionRecorded(message.getScheduled(), error)),
+                getContext().dispatcher()
+        ).to(getSelf());
+    }
+
+    private void completionRecorded(final CompletionRecorded message) {
+        if (!_cachedJob.isPresent()) {
+            _currentlyExecuting = false;
+            return;
+        }
+        final JobRef<T> ref = _cachedJob.get().getRef();
+        recordSinceScheduled(jobMetricPrefix(ref) + "end_to_end_latency", message.getScheduled());
+        if (message.getError().isPresent()) {
+            final Throwable error = unwrap(message.getError().get());
+            if (error instanceof NoSuchElementException) {
+                _currentlyExecuting = false;
+                LOGGER.warn()
+                        .setMessage("tried to job as complete, but job no longer exists in repository")
                         .addData("ref", ref)
                         .addData("scheduled", message.getScheduled())
-                        .addData("error", message.getError())
                         .log();
-                repo.jobFailed(
-                        ref.getJobId(),
-                        ref.getOrganization(),
-                        message.getScheduled(),
-                        typedMessage.getError());
+                killSelf();
+                return;
             }
-        } catch (final NoSuchElementException error) {
-            LOGGER.warn()
-                    .setMessage("tried to job as complete, but job no longer exists in repository")
+            LOGGER.error()
+                    .setMessage("failed to mark job as complete")
                     .addData("ref", ref)
                     .addData("scheduled", message.getScheduled())
+                    .setThrowable(error)
                     .log();
-            killSelf();
-            return;
         }
 
-        getSelf().tell(new Reload.Builder<T>().setJobRef(ref).build(), getSelf());
+        // The execution only ends once a reload succeeds, so that no tick can act on the stale last-run time.
+        loadAndPipeToSelf(ref, true);
     }
 
     @Override
@@ -341,23 +739,59 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
                     final Reload<T> typedMessage = (Reload<T>) message;
                     this.reload(typedMessage);
                 })
+                .match(JobLoaded.class, message -> {
+                    @SuppressWarnings("unchecked")
+                    final JobLoaded<T> typedMessage = (JobLoaded<T>) message;
+                    this.jobLoaded(typedMessage);
+                })
+                .match(SkipsRecorded.class, this::skipsRecorded)
+                .match(PermitGranted.class, this::permitGranted)
+                .match(LeaseResult.class, this::leaseResult)
+                .match(ReloadRetry.class, this::reloadRetry)
+                .match(RenewLease.class, this::renewLease)
+                .match(JobStarted.class, this::jobStarted)
                 .match(JobCompleted.class, message -> {
                     @SuppressWarnings("unchecked")
                     final JobCompleted<T> typedMessage = (JobCompleted<T>) message;
                     this.jobCompleted(typedMessage);
                 })
+                .match(CompletionRecorded.class, this::completionRecorded)
                 .build();
     }
 
     private static final String EXTRA_TICK_TIMER_NAME = "EXTRA_TICK";
     private static final String PERIODIC_TICK_TIMER_NAME = "PERIODIC_TICK";
     private static final FiniteDuration TICK_INTERVAL = Duration.apply(1, TimeUnit.MINUTES);
+    private static final String RELOAD_RETRY_TIMER_NAME = "RELOAD_RETRY";
+    private static final String LEASE_RENEWAL_TIMER_NAME = "LEASE_RENEWAL";
+    /**
+     * How long an execution lease lasts without renewal; i.e. how long a run is fenced off after its executor disappears.
+     */
+    private static final java.time.Duration LEASE_DURATION = java.time.Duration.ofMinutes(3);
+    private static final FiniteDuration LEASE_RENEWAL_INTERVAL = Duration.apply(1, TimeUnit.MINUTES);
+    /**
+     * How long to wait, after finding a run leased elsewhere, before reloading the job to see whether that run finished.
+     */
+    private static final FiniteDuration LEASE_RETRY_INTERVAL = Duration.apply(1, TimeUnit.MINUTES);
+    /**
+     * How long to wait, after failing to reload the job at the end of an execution, before trying again.
+     */
+    private static final FiniteDuration FAILED_RELOAD_RETRY_INTERVAL = Duration.apply(10, TimeUnit.SECONDS);
     /**
      * If we wake up very slightly before we're supposed to execute, we should just execute,
      * rather than scheduling another wakeup in the very near future.
      */
     private static final java.time.Duration EXECUTION_SLOP = java.time.Duration.ofMillis(500);
+    /**
+     * Dispatcher that blocking {@link JobRepository} calls are run on, so that a slow repository can't starve the default dispatcher.
+     */
+    public static final String REPOSITORY_DISPATCHER_NAME = "job-repository-dispatcher";
     private static final Logger LOGGER = LoggerFactory.getLogger(JobExecutorActor.class);
+    /**
+     * Executions currently in progress on this node, keyed by job metric prefix.
+     */
+    private static final ConcurrentMap<String, AtomicInteger> EXECUTIONS_IN_PROGRESS = Maps.newConcurrentMap();
+    private static final AtomicInteger TOTAL_EXECUTIONS_IN_PROGRESS = new AtomicInteger();
 
     /**
      * Internal message, telling the scheduler to run any necessary jobs.
@@ -461,6 +895,197 @@ public final class JobExecutorActor<T> extends AbstractActorWithTimers {
         }
     }
 
+    /**
+     * Indicates that a job has been (re)loaded from its repository, or that loading it failed.
+     *
+     * @param <T> The type of the result computed by the referenced {@link Job}.
+     */
+    private static final class JobLoaded<T> {
+        private final JobRef<T> _jobRef;
+        @Nullable
+        private final CachedJob<T> _cachedJob;
+        @Nullable
+        private final Throwable _error;
+        private final boolean _afterExecution;
+
+        private JobLoaded(
+                final JobRef<T> jobRef,
+                @Nullable final CachedJob<T> cachedJob,
+                @Nullable final Throwable error,
+                final boolean afterExecution) {
+            _jobRef = jobRef;
+            _cachedJob = cachedJob;
+            _error = error;
+            _afterExecution = afterExecution;
+        }
+
+        public JobRef<T> getJobRef() {
+            return _jobRef;
+        }
+
+        public Optional<CachedJob<T>> getCachedJob() {
+            return Optional.ofNullable(_cachedJob);
+        }
+
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(_error);
+        }
+
+        public boolean isAfterExecution() {
+            return _afterExecution;
+        }
+    }
+
+    /**
+     * Indicates whether the repository granted (or renewed) this actor's lease on a job-run.
+     */
+    private static final class LeaseResult {
+        private final Instant _scheduled;
+        private final boolean _leased;
+        @Nullable
+        private final Throwable _error;
+        private final boolean _renewal;
+
+        private LeaseResult(final Instant scheduled, final boolean leased, @Nullable final Throwable error, final boolean renewal) {
+            _scheduled = scheduled;
+            _leased = leased;
+            _error = error;
+            _renewal = renewal;
+        }
+
+        public Instant getScheduled() {
+            return _scheduled;
+        }
+
+        public boolean isLeased() {
+            return _leased;
+        }
+
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(_error);
+        }
+
+        public boolean isRenewal() {
+            return _renewal;
+        }
+    }
+
+    /**
+     * Internal message, telling the actor to renew its lease on the run it's executing.
+     */
+    private static final class RenewLease {
+        private final Instant _scheduled;
+
+        private RenewLease(final Instant scheduled) {
+            _scheduled = scheduled;
+        }
+
+        public Instant getScheduled() {
+            return _scheduled;
+        }
+    }
+
+    /**
+     * Internal message, telling the actor to reload its job to end an execution: after having found a run leased elsewhere,
+     * or after a reload at the end of its own run failed.
+     */
+    private static final class ReloadRetry {
+        private static final ReloadRetry INSTANCE = new ReloadRetry();
+    }
+
+    /**
+     * Indicates that the repository has (or, if {@code getError()} is present, has not) recorded a job's skipped runs.
+     */
+    private static final class SkipsRecorded {
+        private final Instant _scheduled;
+        @Nullable
+        private final Throwable _error;
+
+        private SkipsRecorded(final Instant scheduled, @Nullable final Throwable error) {
+            _scheduled = scheduled;
+            _error = error;
+        }
+
+        /**
+         * The run to execute now that the skipped runs have been recorded.
+         *
+         * @return The time the run was scheduled for.
+         */
+        public Instant getScheduled() {
+            return _scheduled;
+        }
+
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(_error);
+        }
+    }
+
+    /**
+     * Indicates that the {@link JobExecutionGovernor} has (or, if {@code getError()} is present, has not) granted a permit to run.
+     */
+    private static final class PermitGranted {
+        private final Instant _scheduled;
+        @Nullable
+        private final Throwable _error;
+
+        private PermitGranted(final Instant scheduled, @Nullable final Throwable error) {
+            _scheduled = scheduled;
+            _error = error;
+        }
+
+        public Instant getScheduled() {
+            return _scheduled;
+        }
+
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(_error);
+        }
+    }
+
+    /**
+     * Indicates that the repository has (or, if {@code getError()} is present, has not) been notified that a job-run started.
+     */
+    private static final class JobStarted {
+        private final Instant _scheduled;
+        @Nullable
+        private final Throwable _error;
+
+        private JobStarted(final Instant scheduled, @Nullable final Throwable error) {
+            _scheduled = scheduled;
+            _error = error;
+        }
+
+        public Instant getScheduled() {
+            return _scheduled;
+        }
+
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(_error);
+        }
+    }
+
+    /**
+     * Indicates that the repository has (or, if {@code getError()} is present, has not) been notified that a job-run completed.
+     */
+    private static final class CompletionRecorded {
+        private final Instant _scheduled;
+        @Nullable
+        private final Throwable _error;
+
+        private CompletionRecorded(final Instant scheduled, @Nullable final Throwable error) {
+            _scheduled = scheduled;
+            _error = error;
+        }
+
+        public Instant getScheduled() {
+            return _scheduled;
+        }
+
+        public Optional<Throwable> getError() {
+            return Optional.ofNullable(_error);
+        }
+    }
+
     /**
      * Indicates that a job completed (either successfully, if {@code getError()==null}, or unsuccessfully, otherwise).
      *
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.sharding.ShardRegion;
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.google.common.collect.Maps;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically records how many {@link JobExecutorActor}s the local shard region hosts, per shard and per job type.
+ *
+ * The job type of an executor is the simple name of its {@link JobRepository}, recovered from its entity id; it matches the
+ * type that {@link JobExecutorActor} dimensions its own metrics by. Executors per shard are summarized per type (maximum
+ * and mean over the shards hosting that type) rather than named per shard, so the number of metrics stays bounded by the
+ * number of job types however many shards there are.
+ *
+ * @author agent (agent at local)
+ */
+public final class JobExecutorRegionMetricsCollector extends AbstractActorWithTimers {
+
+    private final ActorRef _jobExecutorRegion;
+    private final PeriodicMetrics _periodicMetrics;
+
+    /**
+     * Props factory.
+     *
+     * @param jobExecutorRegion The ref to the local Akka cluster-sharding region that hosts {@link JobExecutorActor}s.
+     * @param periodicMetrics The {@link PeriodicMetrics} that this actor will use to log its metrics.
+     * @return A new props to create this actor.
+     */
+    public static Props props(final ActorRef jobExecutorRegion, final PeriodicMetrics periodicMetrics) {
+        return Props.create(
+                JobExecutorRegionMetricsCollector.class,
+                () -> new JobExecutorRegionMetricsCollector(jobExecutorRegion, periodicMetrics));
+    }
+
+    private JobExecutorRegionMetricsCollector(final ActorRef jobExecutorRegion, final PeriodicMetrics periodicMetrics) {
+        _jobExecutorRegion = jobExecutorRegion;
+        _periodicMetrics = periodicMetrics;
+    }
+
+    @Override
+    public void preStart() throws Exception {
+        super.preStart();
+        timers().startPeriodicTimer(POLL_TIMER_NAME, Poll.INSTANCE, POLL_INTERVAL);
+    }
+
+    private void recordRegionState(final ShardRegion.CurrentShardRegionState state) {
+        _periodicMetrics.recordGauge("job_executor_region/shards", state.getShards().size());
+        final Map<String, Integer> executorsByType = Maps.newHashMap();
+        final Map<String, Integer> shardsByType = Maps.newHashMap();
+        final Map<String, Integer> maxShardExecutorsByType = Maps.newHashMap();
+        for (final ShardRegion.ShardState shard : state.getShards()) {
+            final Map<String, Integer> shardExecutorsByType = Maps.newHashMap();
+            for (final String entityId : shard.getEntityIds()) {
+                final String type = JobMessageExtractor.repositoryTypeName(entityId)
+                        .map(JobExecutorActor::jobTypeMetricName)
+                        .orElse("unknown");
+                shardExecutorsByType.merge(type, 1, Integer::sum);
+            }
+            shardExecutorsByType.forEach((type, count) -> {
+                executorsByType.merge(type, count, Integer::sum);
+                shardsByType.merge(type, 1, Integer::sum);
+                maxShardExecutorsByType.merge(type, count, Math::max);
+            });
+        }
+        executorsByType.forEach((type, count) -> {
+            _periodicMetrics.recordGauge("job_executor_region/" + type + "/executors", count);
+            _periodicMetrics.recordGauge("job_executor_region/" + type + "/shard_executors/max", maxShardExecutorsByType.get(type));
+            _periodicMetrics.recordGauge(
+                    "job_executor_region/" + type + "/shard_executors/mean",
+                    (double) count / shardsByType.get(type));
+        });
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(Poll.class, message -> _jobExecutorRegion.tell(ShardRegion.getShardRegionStateInstance(), getSelf()))
+                .match(ShardRegion.CurrentShardRegionState.class, this::recordRegionState)
+                .build();
+    }
+
+    private static final String POLL_TIMER_NAME = "POLL";
+    private static final FiniteDuration POLL_INTERVAL = Duration.apply(1, TimeUnit.MINUTES);
+
+    /**
+     * Internal message, telling the collector to sample the shard region.
+     */
+    private static final class Poll {
+        private static final Poll INSTANCE = new Poll();
+    }
+}
@@ -17,6 +17,7 @@ package com.arpnetworking.metrics.portal.scheduling;
 
 import akka.cluster.sharding.ShardRegion;
 
+import java.util.Optional;
 import javax.annotation.Nullable;
 
 /**
@@ -47,7 +48,13 @@ public final class JobMessageExtractor extends ShardRegion.HashCodeMessageExtrac
         return message;
     }
 
-    private static String jobRefToUId(final JobRef<?> ref) {
+    /**
+     * The entity id of the executor for a job.
+     *
+     * @param ref The job.
+     * @return The entity id.
+     */
+    /* package private */ static String jobRefToUId(final JobRef<?> ref) {
         return String.join(
                 "_",
                 ref.getRepositoryType().getCanonicalName(),
@@ -55,5 +62,23 @@ public final class JobMessageExtractor extends ShardRegion.HashCodeMessageExtrac
                 ref.getJobId().toString());
     }
 
-    private static final int NUM_SHARDS = 3000;
+    /**
+     * Recovers the repository type from an entity id produced by this extractor.
+     *
+     * @param entityId The entity id.
+     * @return The canonical name of the entity's repository type, if the id is well-formed.
+     */
+    /* package private */ static Optional<String> repositoryTypeName(final String entityId) {
+        final int jobIdSeparator = entityId.lastIndexOf('_');
+        if (jobIdSeparator <= 0) {
+            return Optional.empty();
+        }
+        final int organizationSeparator = entityId.lastIndexOf('_', jobIdSeparator - 1);
+        if (organizationSeparator <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(entityId.substring(0, organizationSeparator));
+    }
+
+    /* package private */ static final int NUM_SHARDS = 3000;
 }
@@ -19,6 +19,7 @@ import models.internal.Organization;
 import models.internal.QueryResult;
 import models.internal.scheduling.Job;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -91,6 +92,32 @@ public interface JobRepository<T> {
      */
     void jobFailed(UUID id, Organization organization, Instant scheduled, Throwable error);
 
+    /**
+     * Notify the repository that a range of a job's scheduled runs were skipped, and will never be executed.
+     * Implementations should record the range as a single summary, since it may contain arbitrarily many runs.
+     *
+     * @param id The UUID of the job.
+     * @param organization The organization owning the job.
+     * @param from The time that the first skipped job-run was scheduled for.
+     * @param until The end (exclusive) of the skipped job-runs; the time of the run that is executed instead.
+     * @param count The number of skipped job-runs.
+     */
+    void jobsSkipped(UUID id, Organization organization, Instant from, Instant until, long count);
+
+    /**
+     * Try to take, or extend, the lease on executing one run of a job. The lease is granted if nobody holds it, if
+     * {@code holder} already holds it, or if the previous holder's lease has expired; this must be a single atomic
+     * compare-and-set, so that at most one holder is ever granted an unexpired lease on a run.
+     *
+     * @param id The UUID of the job.
+     * @param organization The organization owning the job.
+     * @param scheduled The time that the job-run is scheduled for.
+     * @param holder Identifies the would-be executor.
+     * @param duration How long the lease should last from now.
+     * @return Whether {@code holder} now holds the lease.
+     */
+    boolean tryLeaseExecution(UUID id, Organization organization, Instant scheduled, String holder, Duration duration);
+
     /**
      * Create a job query against this repository.
      *
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
+
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks how expensive each {@link JobExecutorActor} shard is, from the executions its entities report.
+ *
+ * A shard's load is estimated as its executions per hour (exponentially decayed, so that old executions fade out over
+ * roughly an hour) times the mean execution time. Its weight, for shard allocation, is one unit for the shard itself
+ * plus one unit for every minute per hour it spends executing; so idle shards still balance by count.
+ *
+ * @author agent (agent at local)
+ */
+public final class JobShardLoad {
+
+    private final Clock _clock;
+    private final ConcurrentMap<String, ShardLoad> _loads = Maps.newConcurrentMap();
+
+    /**
+     * Public constructor.
+     *
+     * @param clock The clock used to decay old executions.
+     */
+    public JobShardLoad(final Clock clock) {
+        _clock = clock;
+    }
+
+    /**
+     * Record a completed execution.
+     *
+     * @param sample The execution.
+     */
+    public void record(final ExecutionSample sample) {
+        final Instant now = _clock.instant();
+        _loads.compute(
+                sample.getShardId(),
+                (shardId, load) -> (load == null ? ShardLoad.EMPTY : load).plus(sample.getExecutionTime(), now));
+    }
+
+    /**
+     * The allocation weight of a shard.
+     *
+     * @param shardId The shard.
+     * @return The weight; at least 1.
+     */
+    public double getWeight(final String shardId) {
+        final ShardLoad load = _loads.get(shardId);
+        if (load == null) {
+            return 1;
+        }
+        final double busySecondsPerHour = load.getExecutionsPerHour(_clock.instant()) * load.getMeanExecutionSeconds();
+        return 1 + busySecondsPerHour / SECONDS_PER_WEIGHT_UNIT;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shards", _loads.size())
+                .toString();
+    }
+
+    private static final double SECONDS_PER_WEIGHT_UNIT = 60;
+
+    private static final class ShardLoad {
+        private final double _executionsPerHour;
+        private final double _meanExecutionSeconds;
+        private final Instant _updatedAt;
+
+        private ShardLoad(final double executionsPerHour, final double meanExecutionSeconds, final Instant updatedAt) {
+            _executionsPerHour = executionsPerHour;
+            _meanExecutionSeconds = meanExecutionSeconds;
+            _updatedAt = updatedAt;
+        }
+
+        double getExecutionsPerHour(final Instant now) {
+            final double elapsedHours = Math.max(0, Duration.between(_updatedAt, now).toMillis()) / (double) MILLIS_PER_HOUR;
+            return _executionsPerHour * Math.exp(-elapsedHours);
+        }
+
+        double getMeanExecutionSeconds() {
+            return _meanExecutionSeconds;
+        }
+
+        ShardLoad plus(final Duration executionTime, final Instant now) {
+            final double executionSeconds = executionTime.toNanos() / 1e9;
+            final double meanExecutionSeconds = this == EMPTY
+                    ? executionSeconds
+                    : _meanExecutionSeconds + MEAN_SMOOTHING * (executionSeconds - _meanExecutionSeconds);
+            return new ShardLoad(getExecutionsPerHour(now) + 1, meanExecutionSeconds, now);
+        }
+
+        private static final ShardLoad EMPTY = new ShardLoad(0, 0, Instant.EPOCH);
+        private static final long MILLIS_PER_HOUR = Duration.ofHours(1).toMillis();
+        private static final double MEAN_SMOOTHING = 0.2;
+    }
+
+    /**
+     * Published (on the local event stream) by a {@link JobExecutorActor} whenever it finishes executing its job.
+     */
+    public static final class ExecutionSample implements Serializable {
+        private final String _shardId;
+        private final Duration _executionTime;
+
+        /**
+         * Public constructor.
+         *
+         * @param shardId The shard of the executor.
+         * @param executionTime How long the execution took.
+         */
+        public ExecutionSample(final String shardId, final Duration executionTime) {
+            _shardId = shardId;
+            _executionTime = executionTime;
+        }
+
+        public String getShardId() {
+            return _shardId;
+        }
+
+        public Duration getExecutionTime() {
+            return _executionTime;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("shardId", _shardId)
+                    .add("executionTime", _executionTime)
+                    .toString();
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
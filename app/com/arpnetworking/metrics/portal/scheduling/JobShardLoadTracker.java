@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+
+import java.io.Serializable;
+
+/**
+ * Shares {@link JobShardLoad.ExecutionSample}s across the cluster, so that every node's {@link JobShardLoad} (and in
+ * particular the one consulted by the shard coordinator's allocation strategy) sees the executions of every node.
+ *
+ * Samples published on the local event stream are republished on a cluster pub-sub topic; samples received from the
+ * topic are recorded.
+ *
+ * @author agent (agent at local)
+ */
+public final class JobShardLoadTracker extends AbstractActor {
+
+    private final JobShardLoad _load;
+    private final ActorRef _mediator;
+
+    /**
+     * Props factory.
+     *
+     * @param load The load to record samples into.
+     * @return A new props to create this actor.
+     */
+    public static Props props(final JobShardLoad load) {
+        return Props.create(JobShardLoadTracker.class, () -> new JobShardLoadTracker(load));
+    }
+
+    private JobShardLoadTracker(final JobShardLoad load) {
+        _load = load;
+        _mediator = DistributedPubSub.get(getContext().getSystem()).mediator();
+    }
+
+    @Override
+    public void preStart() throws Exception {
+        super.preStart();
+        getContext().getSystem().eventStream().subscribe(getSelf(), JobShardLoad.ExecutionSample.class);
+        _mediator.tell(new DistributedPubSubMediator.Subscribe(TOPIC, getSelf()), getSelf());
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        getContext().getSystem().eventStream().unsubscribe(getSelf());
+        super.postStop();
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(JobShardLoad.ExecutionSample.class, sample ->
+                        _mediator.tell(new DistributedPubSubMediator.Publish(TOPIC, new SharedSample(sample)), getSelf()))
+                .match(SharedSample.class, shared -> _load.record(shared.getSample()))
+                .match(DistributedPubSubMediator.SubscribeAck.class, ack -> { })
+                .build();
+    }
+
+    private static final String TOPIC = "job-shard-load";
+
+    /**
+     * A sample as shared on the cluster topic; distinct from a locally published one so that it isn't republished.
+     */
+    private static final class SharedSample implements Serializable {
+        private final JobShardLoad.ExecutionSample _sample;
+
+        SharedSample(final JobShardLoad.ExecutionSample sample) {
+            _sample = sample;
+        }
+
+        JobShardLoad.ExecutionSample getSample() {
+            return _sample;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
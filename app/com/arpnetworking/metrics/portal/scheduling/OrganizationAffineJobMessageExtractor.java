@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import akka.cluster.sharding.ShardRegion;
+import com.google.common.base.MoreObjects;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Extracts data from messages to setup job executors, keeping each organization's executors together.
+ *
+ * Entity ids are the same as {@link JobMessageExtractor}'s. But rather than hashing the whole entity id across all
+ * shards, each organization is assigned a small group of consecutive shards, and its jobs are spread (by job id)
+ * across that group. An organization's executors therefore live on at most {@code shardsPerOrganization} nodes, which
+ * keeps per-organization caches warm; a large organization still spans several shards, which the allocation strategy
+ * balances like any other.
+ *
+ * @author agent (agent at local)
+ */
+public final class OrganizationAffineJobMessageExtractor implements ShardRegion.MessageExtractor {
+
+    private final int _shardsPerOrganization;
+
+    /**
+     * Guice constructor.
+     *
+     * @param config The application configuration.
+     */
+    @Inject
+    public OrganizationAffineJobMessageExtractor(final Config config) {
+        this(config.getInt("jobExecutor.messageExtractor.shardsPerOrganization"));
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param shardsPerOrganization The number of shards that each organization's executors are spread across.
+     */
+    public OrganizationAffineJobMessageExtractor(final int shardsPerOrganization) {
+        if (shardsPerOrganization < 1 || shardsPerOrganization > JobMessageExtractor.NUM_SHARDS) {
+            throw new IllegalArgumentException(String.format(
+                    "shardsPerOrganization must be between 1 and %d; got %d",
+                    JobMessageExtractor.NUM_SHARDS,
+                    shardsPerOrganization));
+        }
+        _shardsPerOrganization = shardsPerOrganization;
+    }
+
+    @Override
+    @Nullable
+    public String entityId(final Object message) {
+        if (message instanceof JobExecutorActor.Reload) {
+            return JobMessageExtractor.jobRefToUId(((JobExecutorActor.Reload<?>) message).getJobRef());
+        }
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public Object entityMessage(final Object message) {
+        return message;
+    }
+
+    @Override
+    @Nullable
+    public String shardId(final Object message) {
+        if (message instanceof JobExecutorActor.Reload) {
+            final JobRef<?> ref = ((JobExecutorActor.Reload<?>) message).getJobRef();
+            return shardId(ref.getOrganization().getId(), ref.getJobId());
+        }
+        if (message instanceof ShardRegion.StartEntity) {
+            // Sent by the region itself to restart remembered entities; all we have is the entity id.
+            final String entityId = ((ShardRegion.StartEntity) message).entityId();
+            return parseIds(entityId)
+                    .map(ids -> shardId(ids[0], ids[1]))
+                    .orElseGet(() -> String.valueOf(Math.floorMod(entityId.hashCode(), JobMessageExtractor.NUM_SHARDS)));
+        }
+        return null;
+    }
+
+    private String shardId(final UUID organizationId, final UUID jobId) {
+        final int firstShard = Math.floorMod(organizationId.hashCode(), JobMessageExtractor.NUM_SHARDS);
+        final int offset = Math.floorMod(jobId.hashCode(), _shardsPerOrganization);
+        return String.valueOf((firstShard + offset) % JobMessageExtractor.NUM_SHARDS);
+    }
+
+    /**
+     * Recovers the organization and job ids from an entity id produced by {@link JobMessageExtractor}.
+     *
+     * @param entityId The entity id.
+     * @return The organization id and job id, in that order, if the id is well-formed.
+     */
+    private static Optional<UUID[]> parseIds(final String entityId) {
+        final int jobIdSeparator = entityId.lastIndexOf('_');
+        final int organizationSeparator = jobIdSeparator <= 0 ? -1 : entityId.lastIndexOf('_', jobIdSeparator - 1);
+        if (organizationSeparator <= 0) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new UUID[] {
+                    UUID.fromString(entityId.substring(organizationSeparator + 1, jobIdSeparator)),
+                    UUID.fromString(entityId.substring(jobIdSeparator + 1)),
+            });
+        } catch (final IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("shardsPerOrganization", _shardsPerOrganization)
+                .toString();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.arpnetworking.metrics.portal.scheduling;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
 
@@ -31,4 +32,62 @@ public interface Schedule {
      * @return The next time to run the job.
      */
     Optional<Instant> nextRun(Optional<Instant> lastRun);
+
+    /**
+     * Determines the latest of the runs from {@code run} onwards that is due by {@code time}.
+     *
+     * The default implementation walks the runs one at a time; schedules that can compute the result directly should
+     * override this, since {@code time} may be arbitrarily far after {@code run}.
+     *
+     * @param run A run of the schedule.
+     * @param time The time by which the result must be due.
+     * @return The latest run at or after {@code run} and at or before {@code time}; empty if {@code run} is after
+     *   {@code time}.
+     */
+    default Optional<Instant> latestRunAtOrBefore(final Instant run, final Instant time) {
+        if (run.isAfter(time)) {
+            return Optional.empty();
+        }
+        Instant latest = run;
+        for (Optional<Instant> next = nextRun(Optional.of(run)); next.isPresent() && !next.get().isAfter(time); next = nextRun(next)) {
+            latest = next.get();
+        }
+        return Optional.of(latest);
+    }
+
+    /**
+     * Counts the runs from {@code run} onwards that are before {@code until}.
+     *
+     * The default implementation walks the runs one at a time; schedules that can compute the result directly should
+     * override this.
+     *
+     * @param run A run of the schedule.
+     * @param until The end (exclusive) of the runs to count.
+     * @return The number of runs at or after {@code run} and before {@code until}.
+     */
+    default long countRunsBefore(final Instant run, final Instant until) {
+        long count = 0;
+        for (Optional<Instant> next = Optional.of(run); next.isPresent() && next.get().isBefore(until); next = nextRun(next)) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * How long a run may start after its scheduled time, e.g. to spread out load, without violating the schedule.
+     *
+     * @return The tolerance. Zero (the default) if runs must start on time.
+     */
+    default Duration getStartTolerance() {
+        return Duration.ZERO;
+    }
+
+    /**
+     * What to do when several runs have been missed.
+     *
+     * @return The policy. {@link CatchUpPolicy#RUN_ALL} by default.
+     */
+    default CatchUpPolicy getCatchUpPolicy() {
+        return CatchUpPolicy.RUN_ALL;
+    }
 }
@@ -16,6 +16,7 @@
 package com.arpnetworking.metrics.portal.scheduling.impl;
 
 import com.arpnetworking.commons.builder.OvalBuilder;
+import com.arpnetworking.metrics.portal.scheduling.CatchUpPolicy;
 import com.arpnetworking.metrics.portal.scheduling.Schedule;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import net.sf.oval.constraint.NotNull;
@@ -36,6 +37,7 @@ public abstract class BaseSchedule implements Schedule {
 
     private final Instant _runAtAndAfter;
     private final Optional<Instant> _runUntil;
+    private final CatchUpPolicy _catchUpPolicy;
 
     /**
      * Protected constructor.
@@ -45,6 +47,7 @@ public abstract class BaseSchedule implements Schedule {
     protected BaseSchedule(final Builder<?, ?> builder) {
         _runAtAndAfter = builder._runAtAndAfter;
         _runUntil = Optional.ofNullable(builder._runUntil);
+        _catchUpPolicy = builder._catchUpPolicy;
     }
 
     public Instant getRunAtAndAfter() {
@@ -55,11 +58,16 @@ public abstract class BaseSchedule implements Schedule {
         return _runUntil;
     }
 
+    @Override
+    public CatchUpPolicy getCatchUpPolicy() {
+        return _catchUpPolicy;
+    }
+
     @Override
     public Optional<Instant> nextRun(final Optional<Instant> lastRun) {
         Optional<Instant> result = unboundedNextRun(lastRun);
-        while (result.isPresent() && result.get().isBefore(_runAtAndAfter)) {
-            result = unboundedNextRun(result);
+        if (result.isPresent() && result.get().isBefore(_runAtAndAfter)) {
+            result = unboundedNextRunAtOrAfter(result.get(), _runAtAndAfter);
         }
         if (_runUntil.isPresent() && result.isPresent() && result.get().isAfter(_runUntil.get())) {
             return Optional.empty();
@@ -76,6 +84,25 @@ public abstract class BaseSchedule implements Schedule {
      */
     protected abstract Optional<Instant> unboundedNextRun(Optional<Instant> lastRun);
 
+    /**
+     * Return the first run at or after {@code earliest} in the sequence obtained by repeatedly applying
+     * {@link #unboundedNextRun} to {@code run}, without regard for {@code runUntil}.
+     *
+     * The default implementation walks the sequence one run at a time; subclasses that can compute the result
+     * directly should override this, since {@code earliest} may be arbitrarily far after {@code run}.
+     *
+     * @param run A run before {@code earliest}.
+     * @param earliest The earliest acceptable time for the result.
+     * @return The first run in the sequence at or after {@code earliest}.
+     */
+    protected Optional<Instant> unboundedNextRunAtOrAfter(final Instant run, final Instant earliest) {
+        Optional<Instant> result = Optional.of(run);
+        while (result.isPresent() && result.get().isBefore(earliest)) {
+            result = unboundedNextRun(result);
+        }
+        return result;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -86,12 +113,13 @@ public abstract class BaseSchedule implements Schedule {
         }
         final BaseSchedule that = (BaseSchedule) o;
         return Objects.equals(getRunAtAndAfter(), that.getRunAtAndAfter())
-                && Objects.equals(getRunUntil(), that.getRunUntil());
+                && Objects.equals(getRunUntil(), that.getRunUntil())
+                && getCatchUpPolicy() == that.getCatchUpPolicy();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getRunAtAndAfter(), getRunUntil());
+        return Objects.hash(getRunAtAndAfter(), getRunUntil(), getCatchUpPolicy());
     }
 
     /**
@@ -107,6 +135,8 @@ public abstract class BaseSchedule implements Schedule {
         @ValidateWithMethod(methodName = "validateRunAtAndAfter", parameterType = Instant.class)
         protected Instant _runAtAndAfter;
         protected Instant _runUntil;
+        @NotNull
+        protected CatchUpPolicy _catchUpPolicy = CatchUpPolicy.RUN_ALL;
 
         /**
          * Protected constructor for subclasses.
@@ -147,6 +177,17 @@ public abstract class BaseSchedule implements Schedule {
             return self();
         }
 
+        /**
+         * What to do when several runs have been missed. Optional. Defaults to {@link CatchUpPolicy#RUN_ALL}.
+         *
+         * @param catchUpPolicy The policy.
+         * @return This instance of {@code Builder}.
+         */
+        public B setCatchUpPolicy(final CatchUpPolicy catchUpPolicy) {
+            _catchUpPolicy = catchUpPolicy;
+            return self();
+        }
+
         @SuppressFBWarnings(value = "UPM_UNCALLED_PRIVATE_METHOD", justification = "invoked reflectively by @ValidateWithMethod")
         private boolean validateRunAtAndAfter(final Instant runAtAndAfter) {
             return (_runUntil == null) || !runAtAndAfter.isAfter(_runUntil);
@@ -64,6 +64,52 @@ public final class PeriodicSchedule extends BaseSchedule {
         return Optional.of(nextAlignedBoundary.plus(_offset).toInstant());
     }
 
+    @Override
+    protected Optional<Instant> unboundedNextRunAtOrAfter(final Instant run, final Instant earliest) {
+        if (!run.isBefore(earliest)) {
+            return Optional.of(run);
+        }
+        // Every run is an aligned boundary plus the offset, so the answer is the first aligned boundary at or
+        // after (earliest - offset). Truncating and stepping in the schedule's zone keeps DST handling identical
+        // to unboundedNextRun, without walking every period between run and earliest.
+        final ZonedDateTime zonedTarget = ZonedDateTime.ofInstant(earliest.minus(_offset), _zone);
+        final ZonedDateTime alignedTarget = zonedTarget.truncatedTo(_period);
+        final ZonedDateTime nextAlignedBoundary;
+        if (alignedTarget.toInstant().isBefore(zonedTarget.toInstant())) {
+            nextAlignedBoundary = _period.addTo(alignedTarget, 1);
+        } else {
+            nextAlignedBoundary = alignedTarget;
+        }
+        return Optional.of(nextAlignedBoundary.plus(_offset).toInstant());
+    }
+
+    @Override
+    public Optional<Instant> latestRunAtOrBefore(final Instant run, final Instant time) {
+        final Instant bound = getRunUntil().filter(until -> until.isBefore(time)).orElse(time);
+        if (run.isAfter(bound)) {
+            return Optional.empty();
+        }
+        // The latest run is the last aligned boundary at or before (bound - offset), plus the offset.
+        final Instant latest = ZonedDateTime.ofInstant(bound.minus(_offset), _zone).truncatedTo(_period).plus(_offset).toInstant();
+        return Optional.of(latest.isBefore(run) ? run : latest);
+    }
+
+    @Override
+    public long countRunsBefore(final Instant run, final Instant until) {
+        final Instant bound = getRunUntil()
+                .filter(runUntil -> runUntil.isBefore(until))
+                .map(runUntil -> runUntil.plusNanos(1))
+                .orElse(until);
+        if (!run.isBefore(bound)) {
+            return 0;
+        }
+        // Runs are one per period, so this is the number of periods from run's aligned boundary to the last aligned
+        // boundary before (bound - offset), plus one.
+        final ZonedDateTime first = ZonedDateTime.ofInstant(run.minus(_offset), _zone).truncatedTo(_period);
+        final ZonedDateTime last = ZonedDateTime.ofInstant(bound.minus(_offset).minusNanos(1), _zone).truncatedTo(_period);
+        return _period.between(first, last) + 1;
+    }
+
     public ChronoUnit getPeriod() {
         return _period;
     }
@@ -76,6 +122,16 @@ public final class PeriodicSchedule extends BaseSchedule {
         return _offset;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * A periodic run may start up to a sixtieth of a period late (e.g. one minute for hourly schedules).
+     */
+    @Override
+    public Duration getStartTolerance() {
+        return _period.getDuration().dividedBy(START_TOLERANCE_DIVISOR);
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -106,9 +162,12 @@ public final class PeriodicSchedule extends BaseSchedule {
                 .add("zone", _zone)
                 .add("start", getRunAtAndAfter())
                 .add("end", getRunUntil())
+                .add("catchUpPolicy", getCatchUpPolicy())
                 .toString();
     }
 
+    private static final int START_TOLERANCE_DIVISOR = 60;
+
     /**
      * Implementation of builder pattern for {@link OneOffSchedule}.
      *
@@ -21,18 +21,29 @@ import com.arpnetworking.metrics.portal.reports.ReportRepository;
 import com.arpnetworking.steno.Logger;
 import com.arpnetworking.steno.LoggerFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.typesafe.config.Config;
+import models.internal.Organization;
+import models.internal.impl.ReportExecutionRecord;
+import models.internal.impl.ReportExecutionRollup;
 import models.view.PagedContainer;
 import models.view.Pagination;
+import org.jboss.netty.handler.codec.http.QueryStringEncoder;
 import play.libs.Json;
 import play.mvc.Controller;
 import play.mvc.Result;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import javax.annotation.Nullable;
 import javax.inject.Singleton;
 
@@ -56,7 +67,13 @@ public class ReportController extends Controller {
             final Config configuration,
             final ReportRepository reportRepository,
             final OrganizationRepository organizationRepository) {
-        this(configuration.getInt("reports.limit"), reportRepository, organizationRepository);
+        this(
+                configuration.getInt("reports.limit"),
+                configuration.getInt("reports.executions.limit"),
+                configuration.getDuration("reports.executions.rollupWindow"),
+                configuration.getDuration("reports.executions.maxRollupWindow"),
+                reportRepository,
+                organizationRepository);
     }
 
     /**
@@ -114,20 +131,160 @@ public class ReportController extends Controller {
         return notFound();
     }
 
+    /**
+     * Get a page of the execution history of a report, most recently scheduled first.
+     *
+     * @param id The identifier of the report.
+     * @param before Only executions scheduled before this ISO-8601 instant are returned. Optional.
+     * @param limit The maximum number of executions to return. Optional.
+     * @return The executions, and a link to the next page if there may be one.
+     */
+    public Result executions(final String id, @Nullable final String before, @Nullable final Integer limit) {
+        final Optional<UUID> reportId = parseUuid(id);
+        if (!reportId.isPresent()) {
+            return badRequest("Invalid id; must be a UUID");
+        }
+        final Optional<Instant> argBefore;
+        try {
+            argBefore = Optional.ofNullable(before).map(Instant::parse);
+        } catch (final DateTimeParseException e) {
+            return badRequest("Invalid before; must be an ISO-8601 instant");
+        }
+        final int argLimit = Math.min(_maxExecutionsLimit, MoreObjects.firstNonNull(limit, _maxExecutionsLimit));
+        if (argLimit <= 0) {
+            return badRequest("Invalid limit; must be greater than 0");
+        }
+
+        final List<ReportExecutionRecord> executions;
+        try {
+            executions = _reportRepository.getExecutions(reportId.get(), _organizationRepository.get(request()), argBefore, argLimit);
+            // CHECKSTYLE.OFF: IllegalCatch - Convert any exception to 500
+        } catch (final Exception e) {
+            // CHECKSTYLE.ON: IllegalCatch
+            LOGGER.error()
+                    .setMessage("Report execution query failed")
+                    .addData("id", id)
+                    .setThrowable(e)
+                    .log();
+            return internalServerError();
+        }
+
+        final ObjectNode page = Json.newObject();
+        page.set("data", OBJECT_MAPPER.valueToTree(executions));
+        if (executions.size() == argLimit) {
+            final QueryStringEncoder next = new QueryStringEncoder(request().path());
+            next.addParam("before", executions.get(executions.size() - 1).getScheduled().toString());
+            next.addParam("limit", Integer.toString(argLimit));
+            page.put("next", next.toString());
+        }
+        return ok(page);
+    }
+
+    /**
+     * Get daily statistics of the executions of a report.
+     *
+     * @param id The identifier of the report.
+     * @param from The ISO-8601 instant to start from. Optional; defaults to the configured window before {@code until}.
+     * @param until The ISO-8601 instant to end at. Optional; defaults to now.
+     * @return The daily rollups.
+     */
+    public Result executionRollups(final String id, @Nullable final String from, @Nullable final String until) {
+        final Optional<UUID> reportId = parseUuid(id);
+        if (!reportId.isPresent()) {
+            return badRequest("Invalid id; must be a UUID");
+        }
+        return rollups(from, until, (organization, start, end) ->
+                _reportRepository.getExecutionRollups(reportId.get(), organization, start, end));
+    }
+
+    /**
+     * Get daily statistics of the executions of every report of the organization.
+     *
+     * @param from The ISO-8601 instant to start from. Optional; defaults to the configured window before {@code until}.
+     * @param until The ISO-8601 instant to end at. Optional; defaults to now.
+     * @return The daily rollups.
+     */
+    public Result organizationExecutionRollups(@Nullable final String from, @Nullable final String until) {
+        return rollups(from, until, _reportRepository::getExecutionRollups);
+    }
+
+    private Result rollups(
+            @Nullable final String from,
+            @Nullable final String until,
+            final RollupQuery query) {
+        final Instant argUntil;
+        final Instant argFrom;
+        try {
+            argUntil = until == null ? Instant.now() : Instant.parse(until);
+            argFrom = from == null ? argUntil.minus(_defaultRollupWindow) : Instant.parse(from);
+        } catch (final DateTimeParseException e) {
+            return badRequest("Invalid from or until; must be ISO-8601 instants");
+        }
+        if (argFrom.isAfter(argUntil)) {
+            return badRequest("Invalid window; from must not be after until");
+        }
+        // Bounding the window bounds the number of executions aggregated.
+        if (Duration.between(argFrom, argUntil).compareTo(_maxRollupWindow) > 0) {
+            return badRequest("Invalid window; must be at most " + _maxRollupWindow);
+        }
+
+        final List<ReportExecutionRollup> rollups;
+        try {
+            rollups = query.execute(_organizationRepository.get(request()), argFrom, argUntil);
+            // CHECKSTYLE.OFF: IllegalCatch - Convert any exception to 500
+        } catch (final Exception e) {
+            // CHECKSTYLE.ON: IllegalCatch
+            LOGGER.error()
+                    .setMessage("Report execution rollup query failed")
+                    .addData("from", argFrom)
+                    .addData("until", argUntil)
+                    .setThrowable(e)
+                    .log();
+            return internalServerError();
+        }
+        final ObjectNode result = Json.newObject();
+        result.put("from", argFrom.toString());
+        result.put("until", argUntil.toString());
+        result.set("data", OBJECT_MAPPER.valueToTree(rollups));
+        return ok(result);
+    }
+
+    private static Optional<UUID> parseUuid(final String id) {
+        try {
+            return Optional.of(UUID.fromString(id));
+        } catch (final IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
     private ReportController(
             final int maxLimit,
+            final int maxExecutionsLimit,
+            final Duration defaultRollupWindow,
+            final Duration maxRollupWindow,
             final ReportRepository reportRepository,
             final OrganizationRepository organizationRepository
     ) {
         _maxLimit = maxLimit;
+        _maxExecutionsLimit = maxExecutionsLimit;
+        _defaultRollupWindow = defaultRollupWindow;
+        _maxRollupWindow = maxRollupWindow;
         _reportRepository = reportRepository;
         _organizationRepository = organizationRepository;
     }
 
     private final int _maxLimit;
+    private final int _maxExecutionsLimit;
+    private final Duration _defaultRollupWindow;
+    private final Duration _maxRollupWindow;
     private final ReportRepository _reportRepository;
     private final OrganizationRepository _organizationRepository;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ReportController.class);
     private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getInstance();
+
+    @FunctionalInterface
+    private interface RollupQuery {
+        List<ReportExecutionRollup> execute(Organization organization, Instant from, Instant until);
+    }
 }
@@ -23,8 +23,10 @@ import akka.actor.Props;
 import akka.cluster.Cluster;
 import akka.cluster.sharding.ClusterSharding;
 import akka.cluster.sharding.ClusterShardingSettings;
+import akka.cluster.sharding.ShardRegion;
 import akka.cluster.singleton.ClusterSingletonManager;
 import akka.cluster.singleton.ClusterSingletonManagerSettings;
+import akka.dispatch.Dispatchers;
 import com.arpnetworking.commons.akka.GuiceActorCreator;
 import com.arpnetworking.commons.akka.ParallelLeastShardAllocationStrategy;
 import com.arpnetworking.commons.jackson.databind.ObjectMapperFactory;
@@ -42,10 +44,22 @@ import com.arpnetworking.metrics.portal.hosts.HostRepository;
 import com.arpnetworking.metrics.portal.hosts.impl.HostProviderFactory;
 import com.arpnetworking.metrics.portal.organizations.OrganizationRepository;
 import com.arpnetworking.metrics.portal.reports.ReportRepository;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryRepository;
+import com.arpnetworking.metrics.portal.reports.delivery.EmailDeliveryService;
 import com.arpnetworking.metrics.portal.reports.impl.DatabaseReportRepository;
+import com.arpnetworking.metrics.portal.reports.impl.ReportExecutionRetentionJobRepository;
+import com.arpnetworking.metrics.portal.reports.render.Browser;
+import com.arpnetworking.metrics.portal.reports.render.ChromeScreenshotRenderer;
+import com.arpnetworking.metrics.portal.reports.render.RenderCache;
+import com.arpnetworking.metrics.portal.reports.render.RenderPool;
+import com.arpnetworking.metrics.portal.reports.render.ReportRenderer;
 import com.arpnetworking.metrics.portal.scheduling.JobCoordinator;
+import com.arpnetworking.metrics.portal.scheduling.JobExecutionGovernor;
 import com.arpnetworking.metrics.portal.scheduling.JobExecutorActor;
-import com.arpnetworking.metrics.portal.scheduling.JobMessageExtractor;
+import com.arpnetworking.metrics.portal.scheduling.JobExecutorRegionMetricsCollector;
+import com.arpnetworking.metrics.portal.scheduling.JobShardLoad;
+import com.arpnetworking.metrics.portal.scheduling.JobShardLoadTracker;
 import com.arpnetworking.play.configuration.ConfigurationHelper;
 import com.arpnetworking.rollups.MetricsDiscovery;
 import com.arpnetworking.rollups.RollupGenerator;
@@ -77,6 +91,7 @@ import java.time.Clock;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -122,9 +137,28 @@ public class MainModule extends AbstractModule {
         bind(ReportRepository.class)
                 .toProvider(ReportRepositoryProvider.class)
                 .asEagerSingleton();
+        bind(DeliveryRepository.class)
+                .toProvider(DeliveryRepositoryProvider.class)
+                .asEagerSingleton();
+        bind(ReportExecutionRetentionJobRepository.class)
+                .toProvider(ReportExecutionRetentionJobRepositoryProvider.class)
+                .asEagerSingleton();
+        bind(ActorRef.class)
+                .annotatedWith(Names.named("report-execution-retention-job-coordinator"))
+                .toProvider(ReportExecutionRetentionJobCoordinatorProvider.class)
+                .asEagerSingleton();
         bind(DatabaseReportRepository.ReportQueryGenerator.class)
                 .toProvider(ConfigTypedProvider.provider("reportRepository.reportQueryGenerator.type"))
                 .in(Scopes.NO_SCOPE);
+        bind(ResultStore.class)
+                .toProvider(ConfigTypedProvider.provider("resultStore.type"))
+                .in(Scopes.SINGLETON);
+        bind(Browser.class)
+                .toProvider(ConfigTypedProvider.provider("renderer.browser.type"))
+                .in(Scopes.SINGLETON);
+        bind(ShardRegion.MessageExtractor.class)
+                .toProvider(ConfigTypedProvider.provider("jobExecutor.messageExtractor.type"))
+                .in(Scopes.SINGLETON);
         bind(ActorRef.class)
                 .annotatedWith(Names.named("RollupsMetricsDiscovery"))
                 .toProvider(RollupMetricsDiscoveryProvider.class)
@@ -214,6 +248,91 @@ public class MainModule extends AbstractModule {
         return Clock.systemUTC();
     }
 
+    @Provides
+    @Singleton
+    @SuppressFBWarnings("UPM_UNCALLED_PRIVATE_METHOD") // Invoked reflectively by Guice
+    private JobExecutionGovernor provideJobExecutionGovernor(
+            final Config config,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics) {
+        return new JobExecutionGovernor(
+                config.getInt("jobExecutionGovernor.permits"),
+                config.getDuration("jobExecutionGovernor.maxJitter"),
+                clock,
+                periodicMetrics);
+    }
+
+    @Provides
+    @Singleton
+    @SuppressFBWarnings("UPM_UNCALLED_PRIVATE_METHOD") // Invoked reflectively by Guice
+    private RenderPool provideRenderPool(
+            final Browser browser,
+            final Config config,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics,
+            final ApplicationLifecycle lifecycle) {
+        final RenderPool pool = new RenderPool(
+                browser,
+                config.getInt("renderer.poolSize"),
+                config.getDuration("renderer.timeout"),
+                clock,
+                periodicMetrics);
+        lifecycle.addStopHook(() -> {
+            pool.close();
+            browser.close();
+            return CompletableFuture.completedFuture(null);
+        });
+        return pool;
+    }
+
+    @Provides
+    @Singleton
+    @SuppressFBWarnings("UPM_UNCALLED_PRIVATE_METHOD") // Invoked reflectively by Guice
+    private RenderCache provideRenderCache(final Config config, final Clock clock, final PeriodicMetrics periodicMetrics) {
+        return new RenderCache(config.getDuration("renderer.cache.ttl"), clock, periodicMetrics);
+    }
+
+    @Provides
+    @Singleton
+    @SuppressFBWarnings("UPM_UNCALLED_PRIVATE_METHOD") // Invoked reflectively by Guice
+    private ReportRenderer provideReportRenderer(
+            final ChromeScreenshotRenderer chromeScreenshotRenderer,
+            final RenderPool pool,
+            final RenderCache cache,
+            final ResultStore resultStore,
+            final PeriodicMetrics periodicMetrics,
+            final ActorSystem system) {
+        // Storing PDFs is blocking file I/O, so it shares the job repository dispatcher when there is one.
+        final Dispatchers dispatchers = system.dispatchers();
+        final Executor executor = dispatchers.hasDispatcher(JobExecutorActor.REPOSITORY_DISPATCHER_NAME)
+                ? dispatchers.lookup(JobExecutorActor.REPOSITORY_DISPATCHER_NAME)
+                : system.dispatcher();
+        return new ReportRenderer(chromeScreenshotRenderer, pool, cache, resultStore, periodicMetrics, executor);
+    }
+
+    @Provides
+    @Singleton
+    @SuppressFBWarnings("UPM_UNCALLED_PRIVATE_METHOD") // Invoked reflectively by Guice
+    private EmailDeliveryService provideEmailDeliveryService(
+            final Config config,
+            final ResultStore resultStore,
+            final DeliveryRepository deliveryRepository,
+            final Clock clock,
+            final PeriodicMetrics periodicMetrics,
+            final ApplicationLifecycle lifecycle) {
+        final EmailDeliveryService service = new EmailDeliveryService(
+                config.getConfig("email"),
+                resultStore,
+                deliveryRepository,
+                clock,
+                periodicMetrics);
+        lifecycle.addStopHook(() -> {
+            service.close();
+            return CompletableFuture.completedFuture(null);
+        });
+        return service;
+    }
+
     @Provides
     @Singleton
     @Named("job-execution-shard-region")
@@ -221,20 +340,26 @@ public class MainModule extends AbstractModule {
     private ActorRef provideJobExecutorShardRegion(
             final ActorSystem system,
             final Injector injector,
-            final JobMessageExtractor extractor,
+            final ShardRegion.MessageExtractor extractor,
             final Clock clock,
-            final PeriodicMetrics periodicMetrics) {
+            final PeriodicMetrics periodicMetrics,
+            final JobExecutionGovernor governor) {
+        final JobShardLoad shardLoad = new JobShardLoad(clock);
+        system.actorOf(JobShardLoadTracker.props(shardLoad), "job-shard-load-tracker");
         final ClusterSharding clusterSharding = ClusterSharding.get(system);
-        return clusterSharding.start(
+        final ActorRef region = clusterSharding.start(
                 "JobExecutor",
-                JobExecutorActor.props(injector, clock, periodicMetrics),
+                JobExecutorActor.props(injector, clock, periodicMetrics, governor),
                 ClusterShardingSettings.create(system).withRememberEntities(true),
                 extractor,
                 new ParallelLeastShardAllocationStrategy(
                         100,
                         3,
-                        Optional.empty()),
+                        Optional.empty(),
+                        shardLoad::getWeight),
                 PoisonPill.getInstance());
+        system.actorOf(JobExecutorRegionMetricsCollector.props(region, periodicMetrics), "job-executor-region-metrics");
+        return region;
     }
 
     @Provides
@@ -413,6 +538,90 @@ public class MainModule extends AbstractModule {
         private final ApplicationLifecycle _lifecycle;
     }
 
+    private static final class DeliveryRepositoryProvider implements Provider<DeliveryRepository> {
+        @Inject
+        DeliveryRepositoryProvider(
+                final Injector injector,
+                final Environment environment,
+                final Config configuration,
+                final ApplicationLifecycle lifecycle) {
+            _injector = injector;
+            _environment = environment;
+            _configuration = configuration;
+            _lifecycle = lifecycle;
+        }
+
+        @Override
+        public DeliveryRepository get() {
+            final DeliveryRepository deliveryRepository = _injector.getInstance(
+                    ConfigurationHelper.<DeliveryRepository>getType(_environment, _configuration, "deliveryRepository.type"));
+            deliveryRepository.open();
+            _lifecycle.addStopHook(
+                    () -> {
+                        deliveryRepository.close();
+                        return CompletableFuture.completedFuture(null);
+                    });
+            return deliveryRepository;
+        }
+
+        private final Injector _injector;
+        private final Environment _environment;
+        private final Config _configuration;
+        private final ApplicationLifecycle _lifecycle;
+    }
+
+    private static final class ReportExecutionRetentionJobRepositoryProvider implements Provider<ReportExecutionRetentionJobRepository> {
+        @Inject
+        ReportExecutionRetentionJobRepositoryProvider(
+                final ReportRepository reportRepository,
+                final ResultStore resultStore,
+                final DeliveryRepository deliveryRepository,
+                final OrganizationRepository organizationRepository,
+                final Config configuration,
+                final ActorSystem system,
+                final ApplicationLifecycle lifecycle) {
+            _reportRepository = reportRepository;
+            _resultStore = resultStore;
+            _deliveryRepository = deliveryRepository;
+            _organizationRepository = organizationRepository;
+            _configuration = configuration;
+            _system = system;
+            _lifecycle = lifecycle;
+        }
+
+        @Override
+        public ReportExecutionRetentionJobRepository get() {
+            // Expiring executions runs blocking DDL and DML, so it shares the job repository dispatcher when there is one.
+            final Dispatchers dispatchers = _system.dispatchers();
+            final Executor executor = dispatchers.hasDispatcher(JobExecutorActor.REPOSITORY_DISPATCHER_NAME)
+                    ? dispatchers.lookup(JobExecutorActor.REPOSITORY_DISPATCHER_NAME)
+                    : _system.dispatcher();
+            final ReportExecutionRetentionJobRepository repository =
+                    new ReportExecutionRetentionJobRepository(
+                            _reportRepository,
+                            _resultStore,
+                            _deliveryRepository,
+                            _organizationRepository,
+                            _configuration,
+                            executor);
+            repository.open();
+            _lifecycle.addStopHook(
+                    () -> {
+                        repository.close();
+                        return CompletableFuture.completedFuture(null);
+                    });
+            return repository;
+        }
+
+        private final ReportRepository _reportRepository;
+        private final ResultStore _resultStore;
+        private final DeliveryRepository _deliveryRepository;
+        private final OrganizationRepository _organizationRepository;
+        private final Config _configuration;
+        private final ActorSystem _system;
+        private final ApplicationLifecycle _lifecycle;
+    }
+
     private static final class HostProviderProvider implements Provider<ActorRef> {
         @Inject
         HostProviderProvider(
@@ -481,6 +690,50 @@ public class MainModule extends AbstractModule {
         private static final String ANTI_ENTROPY_ROLE = "report_repository_anti_entropy";
     }
 
+    private static final class ReportExecutionRetentionJobCoordinatorProvider implements Provider<ActorRef> {
+        @Inject
+        ReportExecutionRetentionJobCoordinatorProvider(
+                final ActorSystem system,
+                final Injector injector,
+                final OrganizationRepository organizationRepository,
+                @Named("job-execution-shard-region")
+                final ActorRef executorRegion,
+                final PeriodicMetrics periodicMetrics) {
+            _system = system;
+            _injector = injector;
+            _organizationRepository = organizationRepository;
+            _executorRegion = executorRegion;
+            _periodicMetrics = periodicMetrics;
+        }
+
+        @Override
+        public ActorRef get() {
+            final Cluster cluster = Cluster.get(_system);
+            // Retention runs alongside the report jobs themselves, so it's coordinated from the same nodes.
+            if (cluster.selfRoles().contains(ANTI_ENTROPY_ROLE)) {
+                return _system.actorOf(ClusterSingletonManager.props(
+                        JobCoordinator.props(
+                                _injector,
+                                ReportExecutionRetentionJobRepository.class,
+                                _organizationRepository,
+                                _executorRegion,
+                                _periodicMetrics),
+                        PoisonPill.getInstance(),
+                        ClusterSingletonManagerSettings.create(_system).withRole(ANTI_ENTROPY_ROLE)),
+                        "report-execution-retention-job-coordinator");
+            }
+            return null;
+        }
+
+        private final ActorSystem _system;
+        private final Injector _injector;
+        private final OrganizationRepository _organizationRepository;
+        private final ActorRef _executorRegion;
+        private final PeriodicMetrics _periodicMetrics;
+
+        private static final String ANTI_ENTROPY_ROLE = "report_repository_anti_entropy";
+    }
+
     private static final class RollupGeneratorProvider implements Provider<ActorRef> {
         @Inject
         RollupGeneratorProvider(
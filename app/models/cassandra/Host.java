@@ -61,6 +61,9 @@ public class Host {
     @Column(name = "organization")
     private UUID organization;
 
+    @Column(name = "counted")
+    private Boolean counted;
+
     public Long getVersion() {
         return version;
     }
@@ -117,6 +120,19 @@ public class Host {
         metricsSoftwareState = value;
     }
 
+    /**
+     * Whether this host is included in the host counts; null for hosts written before the counts existed.
+     *
+     * @return Whether this host is counted.
+     */
+    public Boolean getCounted() {
+        return counted;
+    }
+
+    public void setCounted(final Boolean value) {
+        counted = value;
+    }
+
     /**
      * Converts this model into an {@link models.internal.Host}.
      *
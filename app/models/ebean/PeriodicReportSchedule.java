@@ -106,6 +106,7 @@ public class PeriodicReportSchedule extends ReportSchedule {
                 .setOffset(getOffset())
                 .setZone(zone)
                 .setPeriod(period.toChronoUnit())
+                .setCatchUpPolicy(getCatchUpPolicy())
                 .build();
     }
 
@@ -22,9 +22,15 @@ import io.ebean.annotation.UpdatedTimestamp;
 import models.internal.impl.DefaultEmailRecipient;
 
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -179,6 +185,27 @@ public final class Recipient {
                 .findOneOrEmpty();
     }
 
+    /**
+     * Find the {@code models.ebean.Recipient}s for several {@code models.internal.reports.Recipient}s in a single query.
+     *
+     * @param recipients The internal recipients to find
+     * @return The corresponding ebean recipients that exist, by uuid
+     */
+    public static Map<UUID, Recipient> findByRecipients(final Collection<? extends models.internal.reports.Recipient> recipients) {
+        if (recipients.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final Set<UUID> uuids = recipients.stream()
+                .map(models.internal.reports.Recipient::getId)
+                .collect(Collectors.toSet());
+        return FINDER.query()
+                .where()
+                .in("uuid", uuids)
+                .findList()
+                .stream()
+                .collect(Collectors.toMap(Recipient::getUuid, Function.identity()));
+    }
+
     private static final Finder<Long, Recipient> FINDER = new Finder<>(Recipient.class);
 }
 // CHECKSTYLE.ON: MemberNameCheck
@@ -24,12 +24,14 @@ import models.internal.impl.DefaultReport;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -94,6 +96,10 @@ public class Report {
     @Column(name = "organization_id")
     private Organization organization;
 
+    @Nullable
+    @Column(name = "last_completed_run")
+    private Instant lastCompletedRun;
+
     public UUID getUuid() {
         return uuid;
     }
@@ -177,6 +183,10 @@ public class Report {
         organization = value;
     }
 
+    @Nullable
+    public Instant getLastCompletedRun() {
+        return lastCompletedRun;
+    }
 
     /**
      * Transform this object into its internal representation.
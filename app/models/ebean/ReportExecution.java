@@ -18,6 +18,7 @@ package models.ebean;
 
 import com.google.common.base.Throwables;
 import io.ebean.annotation.DbJsonB;
+import models.internal.impl.StoredReportResult;
 
 import java.time.Instant;
 import java.util.Collections;
@@ -69,9 +70,21 @@ public final class ReportExecution {
     @Column(name = "result")
     private models.internal.reports.Report.Result result;
     @Nullable
+    @Column(name = "result_digest")
+    private String result_digest;
+    @Nullable
+    @Column(name = "result_size")
+    private Long result_size;
+    @Nullable
     @DbJsonB
     @Column(name = "error")
     private Map<String, String> error;
+    @Nullable
+    @Column(name = "skipped_until")
+    private Instant skipped_until;
+    @Nullable
+    @Column(name = "skipped_count")
+    private Long skipped_count;
 
     public Report getReport() {
         return report;
@@ -115,13 +128,67 @@ public final class ReportExecution {
         completed_at = value;
     }
 
+    /**
+     * Get the result of this execution, if any.
+     *
+     * @return The result.
+     */
     @Nullable
     public models.internal.reports.Report.Result getResult() {
+        if (result_digest != null && result_size != null) {
+            return new StoredReportResult(result_digest, result_size);
+        }
         return result;
     }
 
+    /**
+     * Set the result of this execution.
+     *
+     * A {@link StoredReportResult} is kept as just its digest and size, rather than as a serialized result.
+     *
+     * @param value the result
+     */
     public void setResult(@Nullable final models.internal.reports.Report.Result value) {
-        result = value;
+        if (value instanceof StoredReportResult) {
+            final StoredReportResult stored = (StoredReportResult) value;
+            result = null;
+            result_digest = stored.getDigest();
+            result_size = stored.getSize();
+        } else {
+            result = value;
+            result_digest = null;
+            result_size = null;
+        }
+    }
+
+    @Nullable
+    public String getResultDigest() {
+        return result_digest;
+    }
+
+    @Nullable
+    public Long getResultSize() {
+        return result_size;
+    }
+
+    /**
+     * For a skipped execution, the end (exclusive) of the range of skipped runs it stands for.
+     *
+     * @return The end of the range, or null if this execution stands for only itself.
+     */
+    @Nullable
+    public Instant getSkippedUntil() {
+        return skipped_until;
+    }
+
+    /**
+     * For a skipped execution, the number of skipped runs it stands for.
+     *
+     * @return The number of runs, or null if this execution stands for only itself.
+     */
+    @Nullable
+    public Long getSkippedCount() {
+        return skipped_count;
     }
 
     /**
@@ -163,6 +230,11 @@ public final class ReportExecution {
          * This report execution failed.
          */
         FAILURE,
+        /**
+         * This report execution was never run, because it was superseded by a later one while the report was not
+         * being executed (see {@link com.arpnetworking.metrics.portal.scheduling.CatchUpPolicy}).
+         */
+        SKIPPED,
     }
 
     /**
@@ -15,6 +15,7 @@
  */
 package models.ebean;
 
+import com.arpnetworking.metrics.portal.scheduling.CatchUpPolicy;
 import com.arpnetworking.metrics.portal.scheduling.Schedule;
 import com.arpnetworking.metrics.portal.scheduling.impl.OneOffSchedule;
 import com.google.common.base.MoreObjects;
@@ -25,6 +26,8 @@ import javax.persistence.Column;
 import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -56,6 +59,10 @@ public class ReportSchedule {
     @Column(name = "run_until")
     private Instant runUntil;
 
+    @Column(name = "catch_up_policy")
+    @Enumerated(EnumType.STRING)
+    private CatchUpPolicy catchUpPolicy = CatchUpPolicy.RUN_ALL;
+
     /* package */ Instant getRunAt() {
         return runAt;
     }
@@ -73,6 +80,14 @@ public class ReportSchedule {
         runUntil = value;
     }
 
+    /* package */ CatchUpPolicy getCatchUpPolicy() {
+        return catchUpPolicy;
+    }
+
+    public void setCatchUpPolicy(final CatchUpPolicy value) {
+        catchUpPolicy = value;
+    }
+
     public void setId(final Integer value) {
         id = value;
     }
@@ -91,7 +106,8 @@ public class ReportSchedule {
         return MoreObjects.toStringHelper(this)
                 .add("id", id)
                 .add("runAt", runAt)
-                .add("runUntil", runUntil);
+                .add("runUntil", runUntil)
+                .add("catchUpPolicy", catchUpPolicy);
     }
 
     @Override
@@ -108,6 +124,7 @@ public class ReportSchedule {
         return new OneOffSchedule.Builder()
                 .setRunAtAndAfter(runAt)
                 .setRunUntil(runUntil)
+                .setCatchUpPolicy(catchUpPolicy)
                 .build();
     }
 }
@@ -16,14 +16,15 @@
 
 package models.internal.impl;
 
-import akka.actor.ActorRef;
 import com.arpnetworking.commons.builder.OvalBuilder;
 import com.arpnetworking.logback.annotations.Loggable;
+import com.arpnetworking.metrics.portal.reports.delivery.EmailDeliveryService;
+import com.arpnetworking.metrics.portal.reports.render.ReportRenderer;
 import com.arpnetworking.metrics.portal.scheduling.Schedule;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import com.google.inject.Injector;
 import models.internal.reports.Recipient;
 import models.internal.reports.Report;
 import models.internal.reports.ReportFormat;
@@ -35,7 +36,6 @@ import java.time.Instant;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -85,12 +85,15 @@ public final class DefaultReport implements Report {
     }
 
     @Override
-    @SuppressFBWarnings(
-            value = "NP_NONNULL_PARAM_VIOLATION",
-            justification = "Known problem with FindBugs. See https://github.com/findbugsproject/findbugs/issues/79."
-    )
-    public CompletionStage<Result> execute(final ActorRef scheduler, final Instant scheduled) {
-        return CompletableFuture.completedFuture(null);
+    public CompletionStage<Result> execute(final Injector injector, final Instant scheduled) {
+        final EmailDeliveryService delivery = injector.getInstance(EmailDeliveryService.class);
+        return injector.getInstance(ReportRenderer.class)
+                .render(this, scheduled)
+                // The run succeeds once its outputs are stored and each recipient's delivery is recorded; the mail itself is
+                // sent and retried by the delivery service, so that one recipient's failure neither fails the run nor, by
+                // executing it again, re-sends everyone else's.
+                .thenCompose(delivery::deliver)
+                .thenApply(ignored -> new DefaultReportResult());
     }
 
     @Override
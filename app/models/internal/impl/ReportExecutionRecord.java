@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package models.internal.impl;
+
+import com.google.common.base.MoreObjects;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * One entry in the execution history of a report.
+ *
+ * Only the state and timing of the execution are included; results and errors are left out so that history can be
+ * paged through cheaply.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportExecutionRecord {
+
+    private final UUID _reportId;
+    private final Instant _scheduled;
+    private final String _state;
+    private final Optional<Instant> _startedAt;
+    private final Optional<Instant> _completedAt;
+
+    /**
+     * Public constructor.
+     *
+     * @param reportId The id of the executed report.
+     * @param scheduled The time the execution was scheduled for.
+     * @param state The state of the execution, e.g. {@code SUCCESS}.
+     * @param startedAt The time the execution started, if it has.
+     * @param completedAt The time the execution completed, if it has.
+     */
+    public ReportExecutionRecord(
+            final UUID reportId,
+            final Instant scheduled,
+            final String state,
+            final Optional<Instant> startedAt,
+            final Optional<Instant> completedAt) {
+        _reportId = reportId;
+        _scheduled = scheduled;
+        _state = state;
+        _startedAt = startedAt;
+        _completedAt = completedAt;
+    }
+
+    public UUID getReportId() {
+        return _reportId;
+    }
+
+    public Instant getScheduled() {
+        return _scheduled;
+    }
+
+    public String getState() {
+        return _state;
+    }
+
+    public Optional<Instant> getStartedAt() {
+        return _startedAt;
+    }
+
+    public Optional<Instant> getCompletedAt() {
+        return _completedAt;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ReportExecutionRecord that = (ReportExecutionRecord) o;
+        return Objects.equals(_reportId, that._reportId)
+                && Objects.equals(_scheduled, that._scheduled)
+                && Objects.equals(_state, that._state)
+                && Objects.equals(_startedAt, that._startedAt)
+                && Objects.equals(_completedAt, that._completedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_reportId, _scheduled, _state, _startedAt, _completedAt);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("reportId", _reportId)
+                .add("scheduled", _scheduled)
+                .add("state", _state)
+                .add("startedAt", _startedAt)
+                .add("completedAt", _completedAt)
+                .toString();
+    }
+}
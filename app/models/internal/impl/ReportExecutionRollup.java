@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package models.internal.impl;
+
+import com.google.common.base.MoreObjects;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Aggregate statistics of the report executions scheduled within one day.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportExecutionRollup {
+
+    private final Instant _day;
+    private final long _total;
+    private final long _succeeded;
+    private final long _failed;
+    private final long _skipped;
+    private final Optional<Duration> _p50Duration;
+    private final Optional<Duration> _p95Duration;
+
+    /**
+     * Public constructor.
+     *
+     * @param day The start of the day, in UTC.
+     * @param total The number of runs scheduled in the day, in any state; each run of a skipped range counts.
+     * @param succeeded The number of those runs that succeeded.
+     * @param failed The number of those runs that failed.
+     * @param skipped The number of those runs that were skipped.
+     * @param p50Duration The median time from start to completion of the completed executions, if any.
+     * @param p95Duration The 95th percentile time from start to completion of the completed executions, if any.
+     */
+    public ReportExecutionRollup(
+            final Instant day,
+            final long total,
+            final long succeeded,
+            final long failed,
+            final long skipped,
+            final Optional<Duration> p50Duration,
+            final Optional<Duration> p95Duration) {
+        _day = day;
+        _total = total;
+        _succeeded = succeeded;
+        _failed = failed;
+        _skipped = skipped;
+        _p50Duration = p50Duration;
+        _p95Duration = p95Duration;
+    }
+
+    public Instant getDay() {
+        return _day;
+    }
+
+    public long getTotal() {
+        return _total;
+    }
+
+    public long getSucceeded() {
+        return _succeeded;
+    }
+
+    public long getFailed() {
+        return _failed;
+    }
+
+    public long getSkipped() {
+        return _skipped;
+    }
+
+    /**
+     * The fraction of completed executions that succeeded.
+     *
+     * @return The success rate; empty if no execution completed.
+     */
+    public Optional<Double> getSuccessRate() {
+        final long completed = _succeeded + _failed;
+        return completed == 0 ? Optional.empty() : Optional.of(_succeeded / (double) completed);
+    }
+
+    public Optional<Duration> getP50Duration() {
+        return _p50Duration;
+    }
+
+    public Optional<Duration> getP95Duration() {
+        return _p95Duration;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ReportExecutionRollup that = (ReportExecutionRollup) o;
+        return _total == that._total
+                && _succeeded == that._succeeded
+                && _failed == that._failed
+                && _skipped == that._skipped
+                && Objects.equals(_day, that._day)
+                && Objects.equals(_p50Duration, that._p50Duration)
+                && Objects.equals(_p95Duration, that._p95Duration);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_day, _total, _succeeded, _failed, _skipped, _p50Duration, _p95Duration);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("day", _day)
+                .add("total", _total)
+                .add("succeeded", _succeeded)
+                .add("failed", _failed)
+                .add("skipped", _skipped)
+                .add("p50Duration", _p50Duration)
+                .add("p95Duration", _p95Duration)
+                .toString();
+    }
+}
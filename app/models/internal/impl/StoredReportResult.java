@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package models.internal.impl;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+import models.internal.reports.Report;
+
+import java.util.Objects;
+
+/**
+ * A {@code Report.Result} whose content lives in a {@link com.arpnetworking.metrics.portal.reports.ResultStore}.
+ *
+ * Only the content's digest and size are kept with the execution; the content itself is read back from the store.
+ *
+ * @author agent (agent at local)
+ */
+public final class StoredReportResult implements Report.Result {
+
+    private final String _digest;
+    private final long _size;
+
+    /**
+     * Public constructor.
+     *
+     * @param digest The hex-encoded SHA-256 digest of the content.
+     * @param size The size of the content, in bytes.
+     */
+    @JsonCreator
+    public StoredReportResult(
+            @JsonProperty("digest") final String digest,
+            @JsonProperty("size") final long size) {
+        _digest = digest;
+        _size = size;
+    }
+
+    public String getDigest() {
+        return _digest;
+    }
+
+    public long getSize() {
+        return _size;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final StoredReportResult that = (StoredReportResult) o;
+        return _size == that._size
+                && Objects.equals(_digest, that._digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_digest, _size);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("digest", _digest)
+                .add("size", _size)
+                .toString();
+    }
+}
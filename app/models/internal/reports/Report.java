@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.google.common.collect.ImmutableMap;
 import models.internal.impl.DefaultReportResult;
+import models.internal.impl.StoredReportResult;
 import models.internal.scheduling.Job;
 
 import java.util.Collection;
@@ -59,8 +60,9 @@ public interface Report extends Job<Report.Result> {
             use = JsonTypeInfo.Id.NAME,
             property = "type"
     )
-    @JsonSubTypes(
-            @JsonSubTypes.Type(value = DefaultReportResult.class, name = "DefaultReportResult")
-    )
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = DefaultReportResult.class, name = "DefaultReportResult"),
+            @JsonSubTypes.Type(value = StoredReportResult.class, name = "StoredReportResult")
+    })
     interface Result {}
 }
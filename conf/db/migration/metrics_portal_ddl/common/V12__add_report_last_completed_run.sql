@@ -0,0 +1,22 @@
+-- Copyright 2019 Dropbox, Inc.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Denormalized completion time of the most recent execution, maintained alongside report_executions.
+ALTER TABLE portal.reports ADD COLUMN last_completed_run TIMESTAMP;
+
+UPDATE portal.reports SET last_completed_run = (
+    SELECT MAX(e.completed_at)
+    FROM portal.report_executions e
+    WHERE e.report_id = portal.reports.id AND e.state IN ('SUCCESS', 'FAILURE')
+);
@@ -0,0 +1,17 @@
+-- Copyright 2019 Dropbox, Inc.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Fences executions of a report run, so that at most one executor runs it at a time; see JobRepository#tryLeaseExecution.
+ALTER TABLE portal.report_executions ADD COLUMN lease_holder VARCHAR(255);
+ALTER TABLE portal.report_executions ADD COLUMN lease_expires_at TIMESTAMP;
@@ -0,0 +1,17 @@
+-- Copyright 2019 Dropbox, Inc.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- References to results kept in a ResultStore; only the digest and size of the content are kept here.
+ALTER TABLE portal.report_executions ADD COLUMN result_digest VARCHAR(64);
+ALTER TABLE portal.report_executions ADD COLUMN result_size BIGINT;
@@ -0,0 +1,31 @@
+-- Copyright 2019 Dropbox, Inc.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- The delivery of each report run to each of its recipients, which the email delivery service sends and retries on its
+-- own, apart from the run. Attachments reference result store content, as comma-separated type:digest:size triples.
+CREATE TABLE portal.report_deliveries (
+    report_id UUID NOT NULL,
+    scheduled TIMESTAMP NOT NULL,
+    recipient VARCHAR NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    attachments TEXT NOT NULL,
+    state VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP,
+    error TEXT,
+    PRIMARY KEY (report_id, scheduled, recipient)
+);
+
+CREATE INDEX report_deliveries_state_next_attempt_at_idx ON portal.report_deliveries (state, next_attempt_at);
@@ -0,0 +1,63 @@
+-- Copyright 2019 Dropbox, Inc.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Range-partitions report_executions by month of scheduled, so that old executions can be expired by dropping whole
+-- partitions; see DatabaseReportRepository.PostgresqlQueryGenerator. Partitions for upcoming months are created ahead
+-- of time by the execution retention job, and anything outside of them lands in the default partition.
+--
+-- Requires PostgreSQL 11 or later, for the default partition and for primary keys and indexes on a partitioned table.
+-- The migration rewrites every execution while holding an ACCESS EXCLUSIVE lock on the table, and afterwards the
+-- retention job briefly takes the same lock on the parent table whenever it creates or drops a monthly partition.
+DO $$
+BEGIN
+    IF current_setting('server_version_num')::INTEGER < 110000 THEN
+        RAISE EXCEPTION 'Partitioning report_executions requires PostgreSQL 11 or later, found %', current_setting('server_version');
+    END IF;
+END $$;
+
+ALTER TABLE portal.report_executions RENAME TO report_executions_unpartitioned;
+ALTER INDEX portal.report_executions_pkey RENAME TO report_executions_unpartitioned_pkey;
+ALTER INDEX portal.report_executions_state_completed_at_idx RENAME TO report_executions_unpartitioned_state_completed_at_idx;
+
+CREATE TABLE portal.report_executions (
+    LIKE portal.report_executions_unpartitioned INCLUDING DEFAULTS,
+    PRIMARY KEY (report_id, scheduled),
+    FOREIGN KEY (report_id) REFERENCES portal.reports(id)
+) PARTITION BY RANGE (scheduled);
+
+CREATE INDEX report_executions_state_completed_at_idx ON portal.report_executions (report_id, completed_at desc, state);
+
+CREATE TABLE portal.report_executions_default PARTITION OF portal.report_executions DEFAULT;
+
+DO $$
+DECLARE
+    month TIMESTAMP;
+BEGIN
+    FOR month IN
+        SELECT generate_series(
+            date_trunc('month', LEAST(COALESCE((SELECT MIN(scheduled) FROM portal.report_executions_unpartitioned), now()), now())),
+            date_trunc('month', now()) + INTERVAL '3 months',
+            INTERVAL '1 month')
+    LOOP
+        EXECUTE format(
+            'CREATE TABLE portal.%I PARTITION OF portal.report_executions FOR VALUES FROM (%L) TO (%L)',
+            'report_executions_' || to_char(month, 'YYYY_MM'),
+            month,
+            month + INTERVAL '1 month');
+    END LOOP;
+END $$;
+
+INSERT INTO portal.report_executions SELECT * FROM portal.report_executions_unpartitioned;
+
+DROP TABLE portal.report_executions_unpartitioned;
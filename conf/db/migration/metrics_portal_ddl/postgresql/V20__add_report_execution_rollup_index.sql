@@ -0,0 +1,17 @@
+-- Copyright 2019 Dropbox, Inc.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- Covers the columns read by the execution rollups, so that they can be computed with index-only scans. INCLUDE columns
+-- require PostgreSQL 11 or later, as does the partitioning in V17.
+CREATE INDEX report_executions_rollup_idx ON portal.report_executions (report_id, scheduled) INCLUDE (state, started_at, completed_at);
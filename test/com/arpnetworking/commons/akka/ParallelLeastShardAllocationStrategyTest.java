@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.commons.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.collection.JavaConversions;
+import scala.collection.immutable.IndexedSeq;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ParallelLeastShardAllocationStrategy}.
+ *
+ * @author agent (agent at local)
+ */
+public final class ParallelLeastShardAllocationStrategyTest {
+
+    @Before
+    public void setUp() {
+        _system = ActorSystem.create();
+        _light = new TestKit(_system).getRef();
+        _heavy = new TestKit(_system).getRef();
+    }
+
+    @After
+    public void tearDown() {
+        TestKit.shutdownActorSystem(_system);
+    }
+
+    @Test
+    public void testAllocateShardToLeastWeightedRegion() throws Exception {
+        final ParallelLeastShardAllocationStrategy strategy = createStrategy(1, 1);
+        // The light region has more shards, but less weight.
+        final ActorRef region = await(strategy.allocateShard(
+                _heavy,
+                "new",
+                ImmutableMap.of(
+                        _heavy, shards("expensive"),
+                        _light, shards("cheap-1", "cheap-2", "cheap-3"))));
+        assertEquals(_light, region);
+    }
+
+    @Test
+    public void testRebalanceOnlyMovesShardsLighterThanTheGap() throws Exception {
+        final ParallelLeastShardAllocationStrategy strategy = createStrategy(10, 1);
+        // Weights 10 + 1 + 1 against 1 + 1: moving the expensive shard would only flip the imbalance, so the cheap ones move
+        // until the gap (6) is no wider than the expensive shard.
+        final Set<String> rebalanced = await(strategy.rebalance(
+                ImmutableMap.of(
+                        _heavy, shards("expensive", "cheap-1", "cheap-2"),
+                        _light, shards("cheap-3", "cheap-4")),
+                Collections.emptySet()));
+        assertEquals(ImmutableSet.of("cheap-1", "cheap-2"), rebalanced);
+    }
+
+    @Test
+    public void testRebalancePrefersHeaviestMovableShard() throws Exception {
+        final ParallelLeastShardAllocationStrategy strategy = createStrategy(10, 1);
+        // Weights 10 + 1 + 1 + 1 + 1 against nothing: the expensive shard narrows the gap from 14 to 6, then the balance is
+        // 4 against 10 with nothing left on the now heavier region to move back.
+        final Set<String> rebalanced = await(strategy.rebalance(
+                ImmutableMap.of(
+                        _heavy, shards("expensive", "cheap-1", "cheap-2", "cheap-3", "cheap-4"),
+                        _light, shards()),
+                Collections.emptySet()));
+        assertEquals(ImmutableSet.of("expensive"), rebalanced);
+    }
+
+    @Test
+    public void testRebalanceStopsWithinThreshold() throws Exception {
+        final ParallelLeastShardAllocationStrategy strategy = createStrategy(10, 3);
+        final Set<String> rebalanced = await(strategy.rebalance(
+                ImmutableMap.of(
+                        _heavy, shards("cheap-1", "cheap-2"),
+                        _light, shards()),
+                Collections.emptySet()));
+        assertEquals(Collections.emptySet(), rebalanced);
+    }
+
+    @Test
+    public void testRebalanceRespectsMaxParallel() throws Exception {
+        final ParallelLeastShardAllocationStrategy strategy = createStrategy(3, 1);
+        // One slot is taken by a rebalance already in flight, so only two more shards may move.
+        final Set<String> rebalanced = await(strategy.rebalance(
+                ImmutableMap.of(
+                        _heavy, shards("cheap-1", "cheap-2", "cheap-3", "cheap-4", "cheap-5", "cheap-6", "cheap-7", "cheap-8"),
+                        _light, shards("moving")),
+                ImmutableSet.of("moving")));
+        assertEquals(2, rebalanced.size());
+    }
+
+    @Test
+    public void testAllocateShardReturnsPendingRebalanceDestination() throws Exception {
+        final ParallelLeastShardAllocationStrategy strategy = createStrategy(10, 1);
+        final Set<String> rebalanced = await(strategy.rebalance(
+                ImmutableMap.of(
+                        _heavy, shards("expensive", "cheap-1"),
+                        _light, shards()),
+                Collections.emptySet()));
+        assertEquals(ImmutableSet.of("expensive"), rebalanced);
+
+        // The shard goes where the rebalance decided, even though the other region is now lighter.
+        final ActorRef region = await(strategy.allocateShard(
+                _heavy,
+                "expensive",
+                ImmutableMap.of(
+                        _heavy, shards("cheap-1"),
+                        _light, shards("other-expensive"))));
+        assertEquals(_light, region);
+    }
+
+    private static ParallelLeastShardAllocationStrategy createStrategy(final int maxParallel, final int rebalanceThreshold) {
+        return new ParallelLeastShardAllocationStrategy(
+                maxParallel,
+                rebalanceThreshold,
+                Optional.empty(),
+                shardId -> shardId.contains("expensive") ? EXPENSIVE_WEIGHT : 1);
+    }
+
+    private static IndexedSeq<String> shards(final String... shardIds) {
+        return JavaConversions.asScalaBuffer(Arrays.asList(shardIds)).toIndexedSeq();
+    }
+
+    private static <T> T await(final Future<T> future) throws Exception {
+        return Await.result(future, Duration.create(1, TimeUnit.SECONDS));
+    }
+
+    private ActorSystem _system;
+    private ActorRef _light;
+    private ActorRef _heavy;
+
+    private static final double EXPENSIVE_WEIGHT = 10;
+}
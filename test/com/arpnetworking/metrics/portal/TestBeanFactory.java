@@ -32,8 +32,10 @@ import models.internal.Context;
 import models.internal.MetricsSoftwareState;
 import models.internal.Operator;
 import models.internal.Organization;
+import models.internal.QueryResult;
 import models.internal.impl.DefaultAlert;
 import models.internal.impl.DefaultExpression;
+import models.internal.impl.DefaultHost;
 import models.internal.impl.DefaultOrganization;
 import models.internal.impl.DefaultQuantity;
 import models.internal.impl.DefaultReport;
@@ -47,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Builds valid beans with default content for tests.
@@ -394,4 +397,30 @@ public final class TestBeanFactory {
         host.setOrganization(getDefautOrganization().getId());
         return host;
     }
+
+    /**
+     * Factory method for creating a host.
+     *
+     * @param hostname the hostname
+     * @param cluster the cluster
+     * @param state the state of the metrics software
+     * @return a host
+     */
+    public static models.internal.Host createHost(final String hostname, final String cluster, final MetricsSoftwareState state) {
+        return new DefaultHost.Builder()
+                .setHostname(hostname)
+                .setCluster(cluster)
+                .setMetricsSoftwareState(state)
+                .build();
+    }
+
+    /**
+     * Extract the hostnames of the hosts in a query result.
+     *
+     * @param result the query result
+     * @return the hostnames, in result order
+     */
+    public static List<String> hostnames(final QueryResult<models.internal.Host> result) {
+        return result.values().stream().map(models.internal.Host::getHostname).collect(Collectors.toList());
+    }
 }
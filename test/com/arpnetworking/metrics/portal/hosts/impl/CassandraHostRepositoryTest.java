@@ -22,9 +22,11 @@ import com.arpnetworking.metrics.portal.TestBeanFactory;
 import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.MappingManager;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.collect.Lists;
 import com.typesafe.config.ConfigFactory;
 import models.internal.Host;
 import models.internal.HostQuery;
+import models.internal.MetricsSoftwareState;
 import models.internal.Organization;
 import models.internal.QueryResult;
 import models.internal.impl.DefaultOrganization;
@@ -41,6 +43,9 @@ import play.inject.guice.GuiceApplicationBuilder;
 import play.test.WithApplication;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -138,17 +143,110 @@ public class CassandraHostRepositoryTest extends WithApplication {
     public void testGetHostCountWithMultipleHost() throws JsonProcessingException {
         final Organization org = new DefaultOrganization.Builder().setId(UUID.randomUUID()).build();
         assertEquals(0, _hostRepo.getHostCount(org));
-        final Mapper<models.cassandra.Host> mapper = _mappingManager.mapper(models.cassandra.Host.class);
 
+        // Counts are kept as hosts are written through the repository
         final models.cassandra.Host cassandraHost1 = TestBeanFactory.createCassandraHost();
+        cassandraHost1.setName("host1.example.com");
         cassandraHost1.setOrganization(org.getId());
-        mapper.save(cassandraHost1);
+        _hostRepo.addOrUpdateHost(cassandraHost1.toInternal(), org);
 
         final models.cassandra.Host cassandraHost = TestBeanFactory.createCassandraHost();
+        cassandraHost.setName("host2.example.com");
         cassandraHost.setOrganization(org.getId());
-        mapper.save(cassandraHost);
+        _hostRepo.addOrUpdateHost(cassandraHost.toInternal(), org);
+        _hostRepo.addOrUpdateHost(cassandraHost.toInternal(), org);
+
+        assertEquals(2, _hostRepo.getHostCount(org));
+
+        _hostRepo.deleteHost(cassandraHost.getName(), org);
+        assertEquals(1, _hostRepo.getHostCount(org));
+    }
+
+    @Test
+    public void testQueryFiltersByMetricsSoftwareState() {
+        final Organization org = new DefaultOrganization.Builder().setId(UUID.randomUUID()).build();
+        addHost(org, "a.example.com", "web", MetricsSoftwareState.LATEST_VERSION_INSTALLED);
+        addHost(org, "b.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        addHost(org, "c.example.com", "db", MetricsSoftwareState.LATEST_VERSION_INSTALLED);
+
+        final QueryResult<Host> result = _hostRepo.query(_hostRepo.createQuery(org)
+                .metricsSoftwareState(Optional.of(MetricsSoftwareState.LATEST_VERSION_INSTALLED)));
+        assertEquals(2L, result.total());
+        assertEquals(Arrays.asList("a.example.com", "c.example.com"), TestBeanFactory.hostnames(result));
+
+        final QueryResult<Host> inCluster = _hostRepo.query(_hostRepo.createQuery(org)
+                .cluster(Optional.of("web"))
+                .metricsSoftwareState(Optional.of(MetricsSoftwareState.NOT_INSTALLED)));
+        assertEquals(1L, inCluster.total());
+        assertEquals(Collections.singletonList("b.example.com"), TestBeanFactory.hostnames(inCluster));
+        assertEquals(1, _hostRepo.getHostCount(MetricsSoftwareState.NOT_INSTALLED, org));
+    }
+
+    @Test
+    public void testAddOrUpdateHostsMaintainsCounts() {
+        final Organization org = new DefaultOrganization.Builder().setId(UUID.randomUUID()).build();
+        addHost(org, "a.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+
+        _hostRepo.addOrUpdateHosts(
+                Arrays.asList(
+                        TestBeanFactory.createHost("a.example.com", "web", MetricsSoftwareState.LATEST_VERSION_INSTALLED),
+                        TestBeanFactory.createHost("b.example.com", "db", MetricsSoftwareState.LATEST_VERSION_INSTALLED),
+                        TestBeanFactory.createHost("b.example.com", "web", MetricsSoftwareState.OLD_VERSION_INSTALLED)),
+                org);
 
         assertEquals(2, _hostRepo.getHostCount(org));
+        assertEquals(0, _hostRepo.getHostCount(MetricsSoftwareState.NOT_INSTALLED, org));
+        assertEquals(1, _hostRepo.getHostCount(MetricsSoftwareState.OLD_VERSION_INSTALLED, org));
+        final QueryResult<Host> result = _hostRepo.query(_hostRepo.createQuery(org).cluster(Optional.of("web")));
+        assertEquals(Arrays.asList("a.example.com", "b.example.com"), TestBeanFactory.hostnames(result));
+    }
+
+    @Test
+    public void testQueryPagesInSortOrder() {
+        final Organization org = new DefaultOrganization.Builder().setId(UUID.randomUUID()).build();
+        addHost(org, "a.example.com", "web", MetricsSoftwareState.OLD_VERSION_INSTALLED);
+        addHost(org, "b.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        addHost(org, "c.example.com", "db", MetricsSoftwareState.OLD_VERSION_INSTALLED);
+
+        final List<String> byName = Lists.newArrayList();
+        final List<String> byState = Lists.newArrayList();
+        for (int offset = 0; offset < 3; ++offset) {
+            final QueryResult<Host> page = _hostRepo.query(_hostRepo.createQuery(org).offset(Optional.of(offset)).limit(1));
+            assertEquals(3L, page.total());
+            byName.addAll(TestBeanFactory.hostnames(page));
+            byState.addAll(TestBeanFactory.hostnames(_hostRepo.query(_hostRepo.createQuery(org)
+                    .sortBy(Optional.of(HostQuery.Field.METRICS_SOFTWARE_STATE))
+                    .offset(Optional.of(offset))
+                    .limit(1))));
+        }
+        assertEquals(Arrays.asList("a.example.com", "b.example.com", "c.example.com"), byName);
+        assertEquals(Arrays.asList("b.example.com", "a.example.com", "c.example.com"), byState);
+
+        // Jumping straight to a later page works without a previous page to resume from
+        assertEquals(
+                Collections.singletonList("c.example.com"),
+                TestBeanFactory.hostnames(_hostRepo.query(_hostRepo.createQuery(org)
+                        .sortBy(Optional.of(HostQuery.Field.METRICS_SOFTWARE_STATE))
+                        .offset(Optional.of(2))
+                        .limit(5))));
+    }
+
+    @Test
+    public void testQueryResumesWithSmallerLimit() {
+        final Organization org = new DefaultOrganization.Builder().setId(UUID.randomUUID()).build();
+        final List<Host> hosts = Lists.newArrayList();
+        for (int i = 0; i < 350; ++i) {
+            hosts.add(TestBeanFactory.createHost(String.format("host-%03d.example.com", i), "web", MetricsSoftwareState.NOT_INSTALLED));
+        }
+        _hostRepo.addOrUpdateHosts(hosts, org);
+
+        // The first page is read as one large driver page; the second resumes from its cursor with a smaller fetch size
+        final QueryResult<Host> first = _hostRepo.query(_hostRepo.createQuery(org).limit(300));
+        assertEquals(300, first.values().size());
+        final QueryResult<Host> second = _hostRepo.query(_hostRepo.createQuery(org).offset(Optional.of(300)).limit(50));
+        assertEquals("host-300.example.com", TestBeanFactory.hostnames(second).get(0));
+        assertEquals("host-349.example.com", TestBeanFactory.hostnames(second).get(49));
+        assertEquals(50, second.values().size());
     }
 
 //    @Test
@@ -207,6 +305,10 @@ public class CassandraHostRepositoryTest extends WithApplication {
 //                Matchers.equalTo(alert3.getId())));
 //    }
 
+    private void addHost(final Organization org, final String name, final String cluster, final MetricsSoftwareState state) {
+        _hostRepo.addOrUpdateHost(TestBeanFactory.createHost(name, cluster, state), org);
+    }
+
     private void assertHostCassandraEquivalent(final Host host, final models.cassandra.Host cassandraHost) {
         assertEquals(host.getHostname(), cassandraHost.getName());
         assertEquals(host.getCluster().orElse(null), cassandraHost.getCluster());
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.hosts.impl;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.javadsl.TestKit;
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import com.arpnetworking.metrics.portal.organizations.OrganizationRepository;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.collect.ImmutableMap;
+import com.typesafe.config.ConfigFactory;
+import models.internal.Host;
+import models.internal.HostQuery;
+import models.internal.Organization;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import play.libs.ws.WSClient;
+import play.test.WSTestClient;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.moreThanOrExactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link ForemanHostProvider} against a stub Foreman server.
+ *
+ * @author agent (agent at local)
+ */
+public final class ForemanHostProviderTest {
+
+    @Rule
+    public WireMockRule _wireMock = new WireMockRule(wireMockConfig().dynamicPort());
+
+    @Before
+    public void setUp() {
+        _system = ActorSystem.create();
+        _wsClient = WSTestClient.newClient(_wireMock.port());
+        _repository = new LocalHostRepository();
+        _repository.open();
+        final OrganizationRepository organizationRepository = mock(OrganizationRepository.class);
+        doReturn(_organization).when(organizationRepository).get(_organization.getId());
+        _provider = _system.actorOf(Props.create(
+                ForemanHostProvider.class,
+                _repository,
+                organizationRepository,
+                _wsClient,
+                ConfigFactory.parseMap(ImmutableMap.<String, Object>builder()
+                        .put("targetOrganizationId", _organization.getId().toString())
+                        .put("baseUrl", "http://localhost:" + _wireMock.port())
+                        .put("initialDelay", "1 hour")
+                        .put("interval", "1 hour")
+                        .put("perPage", PER_PAGE)
+                        .put("maxConcurrentRequests", 2)
+                        .build())));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestKit.shutdownActorSystem(_system);
+        _wsClient.close();
+        _repository.close();
+    }
+
+    @Test
+    public void testFetchesRemainingPagesConcurrently() {
+        stubPage(1, 5, 0, "host1.example.com", "host2.example.com");
+        stubPage(2, 5, 2000, "host3.example.com", "host4.example.com");
+        stubPage(3, 5, 0, "host5.example.com");
+        _provider.tell(TICK, ActorRef.noSender());
+
+        // The last page is requested and written while the slow second page is still outstanding
+        final TestKit probe = new TestKit(_system);
+        probe.awaitAssert(() -> {
+            assertEquals(Arrays.asList("host1.example.com", "host2.example.com", "host5.example.com"), hostnames());
+            return null;
+        });
+        probe.awaitAssert(() -> {
+            assertEquals(5, _repository.getHostCount(_organization));
+            return null;
+        });
+        _wireMock.verify(1, getRequestedFor(urlEqualTo(pageUrl(2))));
+        _wireMock.verify(1, getRequestedFor(urlEqualTo(pageUrl(3))));
+    }
+
+    @Test
+    public void testDeletesHostsNoLongerReported() {
+        stubPage(1, 3, 0, "host1.example.com", "host2.example.com");
+        stubPage(2, 3, 0, "host3.example.com");
+        _provider.tell(TICK, ActorRef.noSender());
+
+        final TestKit probe = new TestKit(_system);
+        probe.awaitAssert(() -> {
+            assertEquals(3, _repository.getHostCount(_organization));
+            return null;
+        });
+
+        // A host is only deleted once two searches have missed it
+        stubPage(1, 2, 0, "host1.example.com", "host3.example.com");
+        probe.awaitAssert(() -> {
+            _provider.tell(TICK, ActorRef.noSender());
+            assertEquals(Arrays.asList("host1.example.com", "host3.example.com"), hostnames());
+            return null;
+        });
+        _wireMock.verify(1, getRequestedFor(urlEqualTo(pageUrl(2))));
+    }
+
+    @Test
+    public void testDoesNotDeleteWhenPagesMissHosts() {
+        stubPage(1, 3, 0, "host1.example.com", "host2.example.com");
+        stubPage(2, 3, 0, "host3.example.com");
+        _provider.tell(TICK, ActorRef.noSender());
+
+        final TestKit probe = new TestKit(_system);
+        probe.awaitAssert(() -> {
+            assertEquals(3, _repository.getHostCount(_organization));
+            return null;
+        });
+
+        // Host 3 shifted onto the already-read first page; the search sees fewer hosts than the total and deletes nothing
+        stubPage(2, 3, 0);
+        probe.awaitAssert(() -> {
+            _provider.tell(TICK, ActorRef.noSender());
+            _wireMock.verify(moreThanOrExactly(4), getRequestedFor(urlEqualTo(pageUrl(2))));
+            return null;
+        });
+        assertEquals(3, _repository.getHostCount(_organization));
+    }
+
+    private void stubPage(final int page, final int total, final int delayMillis, final String... hostnames) {
+        _wireMock.givenThat(
+                get(urlEqualTo(pageUrl(page)))
+                        .willReturn(aResponse()
+                                .withHeader("Content-Type", "application/json")
+                                .withFixedDelay(delayMillis)
+                                .withBody(String.format(
+                                        "{\"total\":%d,\"subtotal\":%d,\"page\":%d,\"per_page\":%d,\"results\":[%s]}",
+                                        total,
+                                        total,
+                                        page,
+                                        PER_PAGE,
+                                        Arrays.stream(hostnames)
+                                                .map(hostname -> "{\"name\":\"" + hostname + "\"}")
+                                                .collect(Collectors.joining(","))))));
+    }
+
+    private static String pageUrl(final int page) {
+        return String.format("/api/hosts?page=%d&per_page=%d", page, PER_PAGE);
+    }
+
+    private List<String> hostnames() {
+        return _repository.query(_repository.createQuery(_organization).sortBy(Optional.of(HostQuery.Field.HOSTNAME)))
+                .values()
+                .stream()
+                .map(Host::getHostname)
+                .collect(Collectors.toList());
+    }
+
+    private ActorSystem _system;
+    private WSClient _wsClient;
+    private LocalHostRepository _repository;
+    private ActorRef _provider;
+    private final Organization _organization = TestBeanFactory.organizationFrom(UUID.randomUUID());
+
+    private static final int PER_PAGE = 2;
+    private static final String TICK = "tick";
+}
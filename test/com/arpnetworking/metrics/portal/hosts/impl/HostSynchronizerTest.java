@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.hosts.impl;
+
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import com.arpnetworking.metrics.portal.hosts.HostRepository;
+import models.internal.Host;
+import models.internal.MetricsSoftwareState;
+import models.internal.Organization;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+/**
+ * Tests for {@link HostSynchronizer}.
+ *
+ * @author agent (agent at local)
+ */
+public final class HostSynchronizerTest {
+
+    @Before
+    public void setUp() {
+        _repository = mock(HostRepository.class);
+        _synchronizer = new HostSynchronizer(_repository, 0.5);
+    }
+
+    @Test
+    public void testWritesOnlyAddedAndChangedHosts() {
+        final Host a = TestBeanFactory.createHost("a.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        final Host b = TestBeanFactory.createHost("b.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        assertEquals(2, synchronize(a, b));
+        verify(_repository).addOrUpdateHosts(Arrays.asList(a, b), _organization);
+
+        reset(_repository);
+        assertEquals(0, synchronize(a, b));
+        verify(_repository, never()).addOrUpdateHosts(any(), any());
+
+        final Host updatedB = TestBeanFactory.createHost("b.example.com", "db", MetricsSoftwareState.NOT_INSTALLED);
+        final Host c = TestBeanFactory.createHost("c.example.com", null, MetricsSoftwareState.NOT_INSTALLED);
+        assertEquals(2, synchronize(a, updatedB, c));
+        verify(_repository).addOrUpdateHosts(Arrays.asList(updatedB, c), _organization);
+        verify(_repository, never()).deleteHost(anyString(), any());
+    }
+
+    @Test
+    public void testDeletesHostsMissingFromTwoSnapshots() {
+        final Host a = TestBeanFactory.createHost("a.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        final Host b = TestBeanFactory.createHost("b.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        synchronize(a, b);
+
+        reset(_repository);
+        _synchronizer.beginSnapshot(_organization);
+        _synchronizer.update(_organization, Collections.singletonList(a));
+        assertEquals(0, _synchronizer.endSnapshot(_organization));
+        _synchronizer.beginSnapshot(_organization);
+        _synchronizer.update(_organization, Collections.singletonList(a));
+        assertEquals(1, _synchronizer.endSnapshot(_organization));
+        verify(_repository).deleteHost("b.example.com", _organization);
+        verifyNoMoreInteractions(_repository);
+
+        // Hosts of other organizations are tracked separately
+        final Organization other = TestBeanFactory.organizationFrom(UUID.randomUUID());
+        _synchronizer.beginSnapshot(other);
+        assertEquals(0, _synchronizer.endSnapshot(other));
+        verifyNoMoreInteractions(_repository);
+    }
+
+    @Test
+    public void testKeepsHostsMissingFromOneSnapshot() {
+        final Host a = TestBeanFactory.createHost("a.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        final Host b = TestBeanFactory.createHost("b.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        synchronize(a, b);
+        synchronize(a);
+
+        // The host is back before a second snapshot misses it, so it is neither deleted nor written again
+        reset(_repository);
+        assertEquals(0, synchronize(a, b));
+        synchronize(a);
+        verify(_repository, never()).deleteHost(anyString(), any());
+    }
+
+    @Test
+    public void testRefusesToDeleteTooManyHosts() {
+        final Host a = TestBeanFactory.createHost("a.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        final Host b = TestBeanFactory.createHost("b.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        final Host c = TestBeanFactory.createHost("c.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        synchronize(a, b, c);
+
+        // An empty listing would remove every host
+        reset(_repository);
+        synchronize();
+        synchronize();
+        verify(_repository, never()).deleteHost(anyString(), any());
+
+        // Removing one host of three is within the limit
+        synchronize(a, b);
+        synchronize(a, b);
+        verify(_repository).deleteHost("c.example.com", _organization);
+    }
+
+    @Test
+    public void testRetriesFailedWrites() {
+        final Host a = TestBeanFactory.createHost("a.example.com", "web", MetricsSoftwareState.NOT_INSTALLED);
+        doThrow(new IllegalStateException()).when(_repository).addOrUpdateHosts(any(), any());
+        try {
+            synchronize(a);
+            fail("Expected exception");
+        } catch (final IllegalStateException e) {
+            // Expected
+        }
+
+        reset(_repository);
+        assertEquals(1, synchronize(a));
+        verify(_repository).addOrUpdateHosts(Collections.singletonList(a), _organization);
+    }
+
+    private int synchronize(final Host... hosts) {
+        _synchronizer.beginSnapshot(_organization);
+        final int written = _synchronizer.update(_organization, Arrays.asList(hosts));
+        _synchronizer.endSnapshot(_organization);
+        return written;
+    }
+
+    private HostRepository _repository;
+    private HostSynchronizer _synchronizer;
+    private final Organization _organization = TestBeanFactory.organizationFrom(UUID.randomUUID());
+}
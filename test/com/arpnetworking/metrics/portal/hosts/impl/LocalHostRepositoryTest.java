@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.hosts.impl;
+
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import models.internal.Host;
+import models.internal.HostQuery;
+import models.internal.MetricsSoftwareState;
+import models.internal.Organization;
+import models.internal.QueryResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link LocalHostRepository}.
+ *
+ * @author agent (agent at local)
+ */
+public final class LocalHostRepositoryTest {
+
+    @Before
+    public void setUp() {
+        _repository = new LocalHostRepository();
+        _repository.open();
+        addHost("web-2.prod", "web", MetricsSoftwareState.LATEST_VERSION_INSTALLED);
+        addHost("Web-1.prod", "web", MetricsSoftwareState.OLD_VERSION_INSTALLED);
+        addHost("db-1.prod", "db", MetricsSoftwareState.LATEST_VERSION_INSTALLED);
+        addHost("prod-web", "web", MetricsSoftwareState.NOT_INSTALLED);
+        addHost("web", "web", MetricsSoftwareState.LATEST_VERSION_INSTALLED);
+    }
+
+    @After
+    public void tearDown() {
+        _repository.close();
+    }
+
+    @Test
+    public void testQueryRanksExactThenPrefixThenSubstringMatches() {
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery().partialHostname(Optional.of("WEB")))),
+                contains("web", "Web-1.prod", "web-2.prod", "prod-web"));
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery().partialHostname(Optional.of("-1")))),
+                contains("db-1.prod", "Web-1.prod"));
+    }
+
+    @Test
+    public void testQueryFiltersByClusterAndState() {
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery()
+                        .cluster(Optional.of("web"))
+                        .metricsSoftwareState(Optional.of(MetricsSoftwareState.LATEST_VERSION_INSTALLED)))),
+                contains("web", "web-2.prod"));
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery().partialHostname(Optional.of("prod")).cluster(Optional.of("db")))),
+                contains("db-1.prod"));
+    }
+
+    @Test
+    public void testQueryPaginatesAndCountsAllMatches() {
+        final QueryResult<Host> result = _repository.query(createQuery()
+                .sortBy(Optional.of(HostQuery.Field.HOSTNAME))
+                .offset(Optional.of(1))
+                .limit(2));
+        assertThat(TestBeanFactory.hostnames(result), contains("prod-web", "web"));
+        assertEquals(5, result.total());
+
+        final QueryResult<Host> filtered = _repository.query(createQuery()
+                .partialHostname(Optional.of("prod"))
+                .offset(Optional.of(3))
+                .limit(2));
+        assertThat(TestBeanFactory.hostnames(filtered), contains("web-2.prod"));
+        assertEquals(4, filtered.total());
+    }
+
+    @Test
+    public void testQuerySortsByState() {
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery().sortBy(Optional.of(HostQuery.Field.METRICS_SOFTWARE_STATE)))),
+                contains("prod-web", "Web-1.prod", "db-1.prod", "web", "web-2.prod"));
+    }
+
+    @Test
+    public void testUpdateAndDeleteMaintainIndexes() {
+        addHost("web-2.prod", "db", MetricsSoftwareState.NOT_INSTALLED);
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery().cluster(Optional.of("db")))),
+                contains("db-1.prod", "web-2.prod"));
+        assertEquals(2, _repository.getHostCount(MetricsSoftwareState.NOT_INSTALLED, _organization));
+
+        _repository.deleteHost("web-2.prod", _organization);
+        assertThat(TestBeanFactory.hostnames(_repository.query(createQuery().partialHostname(Optional.of("web-2")))), empty());
+        assertEquals(4, _repository.getHostCount(_organization));
+        assertEquals(1, _repository.getHostCount(MetricsSoftwareState.NOT_INSTALLED, _organization));
+    }
+
+    @Test
+    public void testAddOrUpdateHosts() {
+        _repository.addOrUpdateHosts(
+                Arrays.asList(
+                        TestBeanFactory.createHost("web-3.prod", "web", MetricsSoftwareState.NOT_INSTALLED),
+                        TestBeanFactory.createHost("db-1.prod", "web", MetricsSoftwareState.OLD_VERSION_INSTALLED),
+                        TestBeanFactory.createHost("web-3.prod", "web", MetricsSoftwareState.LATEST_VERSION_INSTALLED)),
+                _organization);
+
+        assertEquals(6, _repository.getHostCount(_organization));
+        assertThat(TestBeanFactory.hostnames(_repository.query(createQuery().cluster(Optional.of("db")))), empty());
+        assertThat(
+                TestBeanFactory.hostnames(_repository.query(createQuery()
+                        .metricsSoftwareState(Optional.of(MetricsSoftwareState.LATEST_VERSION_INSTALLED))
+                        .partialHostname(Optional.of("web-3")))),
+                contains("web-3.prod"));
+        assertEquals(1, _repository.getHostCount(MetricsSoftwareState.NOT_INSTALLED, _organization));
+    }
+
+    private HostQuery createQuery() {
+        return _repository.createQuery(_organization);
+    }
+
+    private void addHost(final String hostname, final String cluster, final MetricsSoftwareState state) {
+        _repository.addOrUpdateHost(TestBeanFactory.createHost(hostname, cluster, state), _organization);
+    }
+
+    private LocalHostRepository _repository;
+    private final Organization _organization = TestBeanFactory.organizationFrom(UUID.randomUUID());
+}
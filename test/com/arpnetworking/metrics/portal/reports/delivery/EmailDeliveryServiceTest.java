@@ -0,0 +1,269 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.impl.LocalFileResultStore;
+import com.arpnetworking.metrics.portal.reports.render.RenderedOutput;
+import com.arpnetworking.metrics.portal.reports.render.RenderedReport;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import models.internal.impl.DefaultEmailRecipient;
+import models.internal.impl.HtmlReportFormat;
+import models.internal.impl.PdfReportFormat;
+import models.internal.reports.Recipient;
+import models.internal.reports.Report;
+import models.internal.reports.ReportFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link EmailDeliveryService}, against a {@link FakeSmtpServer}.
+ *
+ * @author agent (agent at local)
+ */
+public final class EmailDeliveryServiceTest {
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    private FakeSmtpServer _server;
+    private EmailDeliveryService _service;
+    private ResultStore _store;
+    private final MapDeliveryRepository _repository = new MapDeliveryRepository();
+
+    @Before
+    public void setUp() throws IOException {
+        _store = new LocalFileResultStore(_folder.newFolder().toPath(), 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (_service != null) {
+            _service.close();
+        }
+        if (_server != null) {
+            _server.close();
+        }
+    }
+
+    @Test
+    public void testEachRecipientGetsOneMessageOverASharedConnection() throws Exception {
+        _server = new FakeSmtpServer(true, 0);
+        _service = createService(1, 5);
+
+        _service.deliver(createRenderedReport()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        awaitDeliveries(ImmutableMap.of(
+                "a@example.com", MapDeliveryRepository.State.SENT,
+                "b@example.com", MapDeliveryRepository.State.SENT,
+                "c@example.com", MapDeliveryRepository.State.SENT));
+
+        final List<FakeSmtpServer.Message> messages = _server.getMessages();
+        assertThat(
+                messages.stream().map(FakeSmtpServer.Message::getTo).collect(Collectors.toList()),
+                containsInAnyOrder("<a@example.com>", "<b@example.com>", "<c@example.com>"));
+        assertEquals(1, _server.getConnections());
+        assertThat(_server.getPipelinedCommands(), greaterThan(0));
+
+        final String a = getData("<a@example.com>");
+        final String b = getData("<b@example.com>");
+        assertThat(a, containsString("report.html"));
+        assertThat(a, not(containsString("report.pdf")));
+        assertThat(b, containsString("report.html"));
+        assertThat(b, containsString("report.pdf"));
+        assertThat(b, containsString(Base64.getEncoder().encodeToString(PDF)));
+    }
+
+    @Test
+    public void testDeliversWithoutPipelining() throws Exception {
+        _server = new FakeSmtpServer(false, 0);
+        _service = createService(2, 5);
+
+        _service.deliver(createRenderedReport()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        awaitDeliveries(ImmutableMap.of(
+                "a@example.com", MapDeliveryRepository.State.SENT,
+                "b@example.com", MapDeliveryRepository.State.SENT,
+                "c@example.com", MapDeliveryRepository.State.SENT));
+
+        assertEquals(3, _server.getMessages().size());
+        assertEquals(0, _server.getPipelinedCommands());
+    }
+
+    @Test
+    public void testRetriesTransientFailures() throws Exception {
+        _server = new FakeSmtpServer(true, 2);
+        _service = createService(1, 5);
+
+        _service.deliver(createRenderedReport()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        awaitDeliveries(ImmutableMap.of(
+                "a@example.com", MapDeliveryRepository.State.SENT,
+                "b@example.com", MapDeliveryRepository.State.SENT,
+                "c@example.com", MapDeliveryRepository.State.SENT));
+
+        assertEquals(3, _server.getMessages().size());
+        assertEquals(5, _repository.getAttempts("a@example.com")
+                + _repository.getAttempts("b@example.com")
+                + _repository.getAttempts("c@example.com"));
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() throws Exception {
+        _server = new FakeSmtpServer(true, Integer.MAX_VALUE);
+        _service = createService(1, 2);
+
+        // The run is done once its deliveries are recorded, however they turn out.
+        _service.deliver(createRenderedReport()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        awaitDeliveries(ImmutableMap.of(
+                "a@example.com", MapDeliveryRepository.State.FAILED,
+                "b@example.com", MapDeliveryRepository.State.FAILED,
+                "c@example.com", MapDeliveryRepository.State.FAILED));
+
+        assertEquals(2, _repository.getAttempts("a@example.com"));
+        final Throwable error = _repository.getError("a@example.com").get();
+        assertThat(error, instanceOf(SmtpException.class));
+        assertEquals(451, ((SmtpException) error).getCode());
+        assertEquals(0, _server.getMessages().size());
+    }
+
+    @Test
+    public void testPermanentRejectionOnlyFailsItsRecipient() throws Exception {
+        _server = new FakeSmtpServer(true, 0);
+        _server.rejectRecipient("b@example.com");
+        _service = createService(1, 5);
+
+        _service.deliver(createRenderedReport()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        awaitDeliveries(ImmutableMap.of(
+                "a@example.com", MapDeliveryRepository.State.SENT,
+                "b@example.com", MapDeliveryRepository.State.FAILED,
+                "c@example.com", MapDeliveryRepository.State.SENT));
+
+        assertEquals(1, _repository.getAttempts("b@example.com"));
+        assertEquals(550, ((SmtpException) _repository.getError("b@example.com").get()).getCode());
+        assertThat(
+                _server.getMessages().stream().map(FakeSmtpServer.Message::getTo).collect(Collectors.toList()),
+                containsInAnyOrder("<a@example.com>", "<c@example.com>"));
+    }
+
+    @Test
+    public void testResumesRecordedDeliveries() throws Exception {
+        _server = new FakeSmtpServer(true, 0);
+        final DeliveryAttachment attachment = DeliveryAttachment.of(
+                new HtmlReportFormat.Builder().build(),
+                _store.put(new ByteArrayInputStream("<html>report</html>".getBytes(StandardCharsets.UTF_8))));
+        final UUID reportId = UUID.randomUUID();
+        final Instant scheduled = Instant.now();
+        _repository.addDeliveries(ImmutableList.of(
+                new ReportDelivery(reportId, scheduled, "a@example.com", "Report", ImmutableList.of(attachment), 0),
+                new ReportDelivery(reportId, scheduled, "b@example.com", "Report", ImmutableList.of(attachment), 0)));
+        // A node that crashed while holding a claim on one of them
+        assertEquals(1, _repository.claimDueDeliveries(Instant.now(), Instant.now().plusMillis(200), 1).size());
+
+        _service = createService(1, 5);
+        awaitDeliveries(ImmutableMap.of(
+                "a@example.com", MapDeliveryRepository.State.SENT,
+                "b@example.com", MapDeliveryRepository.State.SENT));
+        assertEquals(2, _server.getMessages().size());
+    }
+
+    private void awaitDeliveries(final Map<String, MapDeliveryRepository.State> expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!_repository.getStates().equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, _repository.getStates());
+    }
+
+    private String getData(final String to) {
+        return _server.getMessages().stream()
+                .filter(message -> message.getTo().equals(to))
+                .findFirst()
+                .map(FakeSmtpServer.Message::getData)
+                .orElseThrow(() -> new AssertionError("no message to " + to));
+    }
+
+    private EmailDeliveryService createService(final int connections, final int maxAttempts) {
+        final Config config = ConfigFactory.parseMap(ImmutableMap.<String, Object>builder()
+                .put("smtp.host", "127.0.0.1")
+                .put("smtp.port", _server.getPort())
+                .put("smtp.localName", "localhost")
+                .put("smtp.timeout", "5 seconds")
+                .put("from", "metrics-portal@example.com")
+                .put("connections", connections)
+                .put("batchSize", 10)
+                .put("idleTimeout", "1 minute")
+                .put("maxAttempts", maxAttempts)
+                .put("initialBackoff", "10 milliseconds")
+                .put("pollInterval", "20 milliseconds")
+                .put("claimTimeout", "1 minute")
+                .build());
+        return new EmailDeliveryService(config, _store, _repository, Clock.systemUTC(), Mockito.mock(PeriodicMetrics.class));
+    }
+
+    private static RenderedReport createRenderedReport() {
+        final ReportFormat html = new HtmlReportFormat.Builder().build();
+        final ReportFormat pdf = new PdfReportFormat.Builder().setWidthInches(8.5f).setHeightInches(11f).build();
+        final Report report = TestBeanFactory.createReportBuilder()
+                .setRecipients(ImmutableSetMultimap.<ReportFormat, Recipient>builder()
+                        .putAll(html, createRecipient("a@example.com"), createRecipient("b@example.com"))
+                        .putAll(pdf, createRecipient("b@example.com"), createRecipient("c@example.com"))
+                        .build())
+                .build();
+        return new RenderedReport(
+                report,
+                Instant.now(),
+                ImmutableMap.of(
+                        html, new RenderedOutput(html, "<html>report</html>".getBytes(StandardCharsets.UTF_8)),
+                        pdf, new RenderedOutput(pdf, PDF)));
+    }
+
+    private static Recipient createRecipient(final String address) {
+        return new DefaultEmailRecipient.Builder()
+                .setId(UUID.nameUUIDFromBytes(address.getBytes(StandardCharsets.UTF_8)))
+                .setAddress(address)
+                .build();
+    }
+
+    private static final byte[] PDF = "%PDF-1.4 report".getBytes(StandardCharsets.UTF_8);
+}
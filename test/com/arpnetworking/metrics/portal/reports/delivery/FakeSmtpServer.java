@@ -0,0 +1,212 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process stand-in for an SMTP relay, which records the messages it accepts.
+ *
+ * @author agent (agent at local)
+ */
+public final class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket _serverSocket;
+    private final ExecutorService _executor;
+    private final boolean _pipelining;
+    private final AtomicInteger _transientFailures;
+    private final AtomicInteger _connections = new AtomicInteger();
+    private final AtomicInteger _pipelinedCommands = new AtomicInteger();
+    private final List<Message> _messages = new CopyOnWriteArrayList<>();
+    private final Set<String> _rejectedRecipients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Public constructor. Starts listening on an ephemeral loopback port.
+     *
+     * @param pipelining Whether to advertise {@code PIPELINING}.
+     * @param transientFailures How many messages to reject, with a 451, before accepting any.
+     * @throws IOException If the server cannot listen.
+     */
+    public FakeSmtpServer(final boolean pipelining, final int transientFailures) throws IOException {
+        _pipelining = pipelining;
+        _transientFailures = new AtomicInteger(transientFailures);
+        _serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        _executor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("fake-smtp-server-%d").setDaemon(true).build());
+        _executor.execute(this::accept);
+    }
+
+    public int getPort() {
+        return _serverSocket.getLocalPort();
+    }
+
+    public int getConnections() {
+        return _connections.get();
+    }
+
+    /**
+     * The number of commands that arrived before the reply to the previous command was sent.
+     *
+     * @return The number of pipelined commands.
+     */
+    public int getPipelinedCommands() {
+        return _pipelinedCommands.get();
+    }
+
+    public List<Message> getMessages() {
+        return _messages;
+    }
+
+    /**
+     * Permanently reject, with a 550, every message to a recipient.
+     *
+     * @param address The recipient's address.
+     */
+    public void rejectRecipient(final String address) {
+        _rejectedRecipients.add("<" + address + ">");
+    }
+
+    @Override
+    public void close() throws IOException {
+        _serverSocket.close();
+        _executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!_serverSocket.isClosed()) {
+            try {
+                final Socket socket = _serverSocket.accept();
+                _connections.incrementAndGet();
+                _executor.execute(() -> serve(socket));
+            } catch (final IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(final Socket socket) {
+        try (Socket ignored = socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            reply(writer, "220 fake ESMTP");
+            String from = null;
+            String to = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (reader.ready()) {
+                    _pipelinedCommands.incrementAndGet();
+                }
+                final String command = line.toUpperCase();
+                if (command.startsWith("EHLO")) {
+                    reply(writer, _pipelining ? "250-fake\r\n250-PIPELINING\r\n250 8BITMIME" : "250-fake\r\n250 8BITMIME");
+                } else if (command.startsWith("MAIL FROM:")) {
+                    from = line.substring("MAIL FROM:".length());
+                    reply(writer, "250 OK");
+                } else if (command.startsWith("RCPT TO:")) {
+                    final String recipient = line.substring("RCPT TO:".length());
+                    if (_rejectedRecipients.contains(recipient)) {
+                        reply(writer, "550 no such user");
+                    } else {
+                        to = recipient;
+                        reply(writer, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    if (to == null) {
+                        reply(writer, "554 no valid recipients");
+                        continue;
+                    }
+                    reply(writer, "354 go ahead");
+                    final StringBuilder data = new StringBuilder();
+                    while (!".".equals(line = reader.readLine())) {
+                        if (line == null) {
+                            return;
+                        }
+                        data.append(line).append("\r\n");
+                    }
+                    if (_transientFailures.getAndUpdate(failures -> Math.max(0, failures - 1)) > 0) {
+                        reply(writer, "451 try again later");
+                    } else {
+                        _messages.add(new Message(from, to, data.toString()));
+                        reply(writer, "250 OK");
+                    }
+                    from = null;
+                    to = null;
+                } else if (command.equals("RSET")) {
+                    from = null;
+                    to = null;
+                    reply(writer, "250 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(writer, "221 bye");
+                    return;
+                } else {
+                    reply(writer, "500 unrecognized command");
+                }
+            }
+        } catch (final IOException e) {
+            // The client went away
+        }
+    }
+
+    private static void reply(final Writer writer, final String reply) throws IOException {
+        writer.write(reply);
+        writer.write("\r\n");
+        writer.flush();
+    }
+
+    /**
+     * A message accepted by the server.
+     */
+    public static final class Message {
+        private final String _from;
+        private final String _to;
+        private final String _data;
+
+        Message(final String from, final String to, final String data) {
+            _from = from;
+            _to = to;
+            _data = data;
+        }
+
+        public String getFrom() {
+            return _from;
+        }
+
+        public String getTo() {
+            return _to;
+        }
+
+        public String getData() {
+            return _data;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.delivery;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A simple in-memory {@link DeliveryRepository}. Not in any way persistent, probably not good for production usage.
+ *
+ * @author agent (agent at local)
+ */
+public final class MapDeliveryRepository implements DeliveryRepository {
+
+    private final Map<String, Entry> _deliveries = Maps.newLinkedHashMap();
+
+    @Override
+    public void open() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public synchronized void addDeliveries(final List<ReportDelivery> deliveries) {
+        final Instant now = Instant.now();
+        for (final ReportDelivery delivery : deliveries) {
+            _deliveries.putIfAbsent(key(delivery), new Entry(delivery, now));
+        }
+    }
+
+    @Override
+    public synchronized List<ReportDelivery> claimDueDeliveries(final Instant now, final Instant claimUntil, final int limit) {
+        return _deliveries.values().stream()
+                .filter(entry -> entry._state == State.PENDING && !entry._nextAttemptAt.isAfter(now))
+                .sorted(Comparator.comparing(entry -> entry._nextAttemptAt))
+                .limit(limit)
+                .map(entry -> {
+                    entry._delivery = new ReportDelivery(
+                            entry._delivery.getReportId(),
+                            entry._delivery.getScheduled(),
+                            entry._delivery.getRecipient(),
+                            entry._delivery.getSubject(),
+                            entry._delivery.getAttachments(),
+                            entry._delivery.getAttempts() + 1);
+                    entry._nextAttemptAt = claimUntil;
+                    return entry._delivery;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized void deliverySucceeded(final ReportDelivery delivery, final Instant completedAt) {
+        getClaimed(delivery).ifPresent(entry -> entry._state = State.SENT);
+    }
+
+    @Override
+    public synchronized void deliveryFailed(final ReportDelivery delivery, final Instant completedAt, final Throwable error) {
+        getClaimed(delivery).ifPresent(entry -> {
+            entry._state = State.FAILED;
+            entry._error = error;
+        });
+    }
+
+    @Override
+    public synchronized void deliveryRetrying(final ReportDelivery delivery, final Instant nextAttemptAt, final Throwable error) {
+        getClaimed(delivery).ifPresent(entry -> {
+            entry._nextAttemptAt = nextAttemptAt;
+            entry._error = error;
+        });
+    }
+
+    @Override
+    public synchronized Set<String> getAttachmentDigests() {
+        return _deliveries.values().stream()
+                .filter(entry -> entry._state == State.PENDING)
+                .flatMap(entry -> entry._delivery.getAttachments().stream())
+                .map(attachment -> attachment.getContent().getDigest())
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    @Override
+    public synchronized long expireDeliveries(final Instant cutoff) {
+        final int before = _deliveries.size();
+        _deliveries.values().removeIf(entry -> entry._state != State.PENDING && entry._delivery.getScheduled().isBefore(cutoff));
+        return before - _deliveries.size();
+    }
+
+    /**
+     * Get the state of each delivery.
+     *
+     * @return The states, by recipient.
+     */
+    public synchronized ImmutableMap<String, State> getStates() {
+        return _deliveries.values().stream()
+                .collect(ImmutableMap.toImmutableMap(entry -> entry._delivery.getRecipient(), entry -> entry._state));
+    }
+
+    /**
+     * Get the number of attempts made to deliver to a recipient.
+     *
+     * @param recipient The recipient's address.
+     * @return The number of attempts.
+     */
+    public synchronized int getAttempts(final String recipient) {
+        return _deliveries.values().stream()
+                .filter(entry -> entry._delivery.getRecipient().equals(recipient))
+                .mapToInt(entry -> entry._delivery.getAttempts())
+                .sum();
+    }
+
+    /**
+     * Get the error of the last failed attempt to deliver to a recipient.
+     *
+     * @param recipient The recipient's address.
+     * @return The error, if any attempt failed.
+     */
+    public synchronized Optional<Throwable> getError(final String recipient) {
+        return _deliveries.values().stream()
+                .filter(entry -> entry._delivery.getRecipient().equals(recipient))
+                .findFirst()
+                .flatMap(entry -> Optional.ofNullable(entry._error));
+    }
+
+    private Optional<Entry> getClaimed(final ReportDelivery delivery) {
+        return Optional.ofNullable(_deliveries.get(key(delivery)))
+                .filter(entry -> entry._state == State.PENDING && entry._delivery.getAttempts() == delivery.getAttempts());
+    }
+
+    private static String key(final ReportDelivery delivery) {
+        return delivery.getReportId() + "/" + delivery.getScheduled() + "/" + delivery.getRecipient();
+    }
+
+    /**
+     * The state of a delivery.
+     */
+    public enum State {
+        /**
+         * Not yet sent.
+         */
+        PENDING,
+        /**
+         * Accepted by the relay.
+         */
+        SENT,
+        /**
+         * Failed for good.
+         */
+        FAILED
+    }
+
+    private static final class Entry {
+        private ReportDelivery _delivery;
+        private State _state = State.PENDING;
+        private Instant _nextAttemptAt;
+        private Throwable _error;
+
+        Entry(final ReportDelivery delivery, final Instant nextAttemptAt) {
+            _delivery = delivery;
+            _nextAttemptAt = nextAttemptAt;
+        }
+    }
+}
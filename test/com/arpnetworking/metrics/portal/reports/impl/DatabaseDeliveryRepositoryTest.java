@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.AkkaClusteringConfigFactory;
+import com.arpnetworking.metrics.portal.H2ConnectionStringFactory;
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryAttachment;
+import com.arpnetworking.metrics.portal.reports.delivery.ReportDelivery;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.Ebean;
+import io.ebean.SqlRow;
+import models.internal.impl.StoredReportResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.test.WithApplication;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test suite for {@link DatabaseDeliveryRepository}.
+ *
+ * @author agent (agent at local)
+ */
+public class DatabaseDeliveryRepositoryTest extends WithApplication {
+
+    @Before
+    public void setUp() {
+        _repository = new DatabaseDeliveryRepository();
+        _repository.open();
+    }
+
+    @After
+    public void tearDown() {
+        _repository.close();
+    }
+
+    @Override
+    public Application provideApplication() {
+        return new GuiceApplicationBuilder()
+                .loadConfig(ConfigFactory.load("portal.application.conf"))
+                .configure(AkkaClusteringConfigFactory.generateConfiguration())
+                .configure(H2ConnectionStringFactory.generateConfiguration())
+                .build();
+    }
+
+    @Test
+    public void testAddDeliveriesIsIdempotent() {
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com"), createDelivery("b@example.com")));
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com")));
+
+        final List<ReportDelivery> claimed = _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 10);
+        assertEquals(2, claimed.size());
+        final ReportDelivery delivery = claimed.get(0);
+        assertEquals(_reportId, delivery.getReportId());
+        assertEquals(_now, delivery.getScheduled());
+        assertEquals(SUBJECT, delivery.getSubject());
+        assertEquals(ImmutableList.of(HTML, PDF), delivery.getAttachments());
+        assertEquals(1, delivery.getAttempts());
+    }
+
+    @Test
+    public void testClaimIsExclusiveUntilItExpires() {
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com")));
+
+        final ReportDelivery first = _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 10).get(0);
+        assertThat(_repository.claimDueDeliveries(_now.plusSeconds(30), _now.plusSeconds(90), 10), empty());
+
+        final ReportDelivery second = _repository.claimDueDeliveries(_now.plusSeconds(60), _now.plusSeconds(120), 10).get(0);
+        assertEquals(2, second.getAttempts());
+
+        // The abandoned claim no longer resolves the delivery
+        _repository.deliverySucceeded(first, _now.plusSeconds(61));
+        assertEquals("PENDING", getRow("a@example.com").getString("state"));
+
+        _repository.deliverySucceeded(second, _now.plusSeconds(62));
+        assertEquals("SENT", getRow("a@example.com").getString("state"));
+        assertThat(_repository.claimDueDeliveries(_now.plusSeconds(600), _now.plusSeconds(660), 10), empty());
+    }
+
+    @Test
+    public void testClaimRespectsLimitAndOrder() {
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com"), createDelivery("b@example.com")));
+        final ReportDelivery first = _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 1).get(0);
+        _repository.deliveryRetrying(first, _now.plusSeconds(10), new IllegalStateException("busy"));
+
+        final List<ReportDelivery> claimed = _repository.claimDueDeliveries(_now.plusSeconds(20), _now.plusSeconds(80), 10);
+        assertEquals(2, claimed.size());
+        assertEquals(first.getRecipient(), claimed.get(1).getRecipient());
+        assertEquals(2, claimed.get(1).getAttempts());
+    }
+
+    @Test
+    public void testRetryingDelaysTheNextAttempt() {
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com")));
+        final ReportDelivery claimed = _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 10).get(0);
+
+        _repository.deliveryRetrying(claimed, _now.plusSeconds(5), new IllegalStateException("busy"));
+        assertThat(_repository.claimDueDeliveries(_now.plusSeconds(4), _now.plusSeconds(64), 10), empty());
+        assertEquals(1, _repository.claimDueDeliveries(_now.plusSeconds(5), _now.plusSeconds(65), 10).size());
+        assertEquals("java.lang.IllegalStateException: busy", getRow("a@example.com").getString("error"));
+    }
+
+    @Test
+    public void testFailedDeliveriesAreNotClaimed() {
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com")));
+        final ReportDelivery claimed = _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 10).get(0);
+
+        _repository.deliveryFailed(claimed, _now.plusSeconds(1), new IllegalStateException("rejected"));
+        final SqlRow row = getRow("a@example.com");
+        assertEquals("FAILED", row.getString("state"));
+        assertEquals(_now.plusSeconds(1), row.getTimestamp("completed_at").toInstant());
+        assertThat(_repository.claimDueDeliveries(_now.plusSeconds(600), _now.plusSeconds(660), 10), empty());
+    }
+
+    @Test
+    public void testAttachmentDigestsAreOnlyThoseOfPendingDeliveries() {
+        final ReportDelivery pending = new ReportDelivery(_reportId, _now, "a@example.com", SUBJECT, ImmutableList.of(HTML), 0);
+        final ReportDelivery sent = new ReportDelivery(_reportId, _now, "b@example.com", SUBJECT, ImmutableList.of(PDF), 0);
+        _repository.addDeliveries(ImmutableList.of(pending, sent));
+        assertEquals(ImmutableSet.of("html-digest", "pdf-digest"), _repository.getAttachmentDigests());
+
+        _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 10).stream()
+                .filter(delivery -> delivery.getRecipient().equals("b@example.com"))
+                .forEach(delivery -> _repository.deliverySucceeded(delivery, _now));
+        assertEquals(ImmutableSet.of("html-digest"), _repository.getAttachmentDigests());
+    }
+
+    @Test
+    public void testExpireDeliveriesOnlyRemovesOldCompletedDeliveries() {
+        _repository.addDeliveries(ImmutableList.of(createDelivery("a@example.com"), createDelivery("b@example.com")));
+        _repository.claimDueDeliveries(_now, _now.plusSeconds(60), 10).stream()
+                .filter(delivery -> delivery.getRecipient().equals("a@example.com"))
+                .forEach(delivery -> _repository.deliverySucceeded(delivery, _now));
+
+        assertEquals(0, _repository.expireDeliveries(_now));
+        assertEquals(1, _repository.expireDeliveries(_now.plusSeconds(1)));
+        assertEquals(1, countRows());
+        assertEquals("PENDING", getRow("b@example.com").getString("state"));
+    }
+
+    private ReportDelivery createDelivery(final String recipient) {
+        return new ReportDelivery(_reportId, _now, recipient, SUBJECT, ImmutableList.of(HTML, PDF), 0);
+    }
+
+    private SqlRow getRow(final String recipient) {
+        return Ebean.createSqlQuery("SELECT * FROM portal.report_deliveries WHERE report_id = :report_id AND recipient = :recipient")
+                .setParameter("report_id", _reportId)
+                .setParameter("recipient", recipient)
+                .findOne();
+    }
+
+    private long countRows() {
+        return Ebean.createSqlQuery("SELECT COUNT(*) AS count FROM portal.report_deliveries WHERE report_id = :report_id")
+                .setParameter("report_id", _reportId)
+                .findOne()
+                .getLong("count");
+    }
+
+    private DatabaseDeliveryRepository _repository;
+    private final UUID _reportId = UUID.randomUUID();
+    private final Instant _now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    private static final String SUBJECT = "[Report] Daily";
+    private static final DeliveryAttachment HTML = new DeliveryAttachment(
+            DeliveryAttachment.Type.HTML,
+            new StoredReportResult("html-digest", 19));
+    private static final DeliveryAttachment PDF = new DeliveryAttachment(
+            DeliveryAttachment.Type.PDF,
+            new StoredReportResult("pdf-digest", 1024));
+}
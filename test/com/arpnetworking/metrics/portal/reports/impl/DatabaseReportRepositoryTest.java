@@ -23,15 +23,23 @@ import com.arpnetworking.metrics.portal.scheduling.JobQuery;
 import com.arpnetworking.metrics.portal.scheduling.Schedule;
 import com.arpnetworking.metrics.portal.scheduling.impl.OneOffSchedule;
 import com.arpnetworking.metrics.portal.scheduling.impl.PeriodicSchedule;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.typesafe.config.ConfigFactory;
+import io.ebean.Ebean;
+import io.ebean.SqlRow;
 import models.ebean.ReportExecution;
+import models.internal.Organization;
 import models.internal.QueryResult;
 import models.internal.impl.ChromeScreenshotReportSource;
 import models.internal.impl.DefaultReport;
 import models.internal.impl.DefaultReportResult;
 import models.internal.impl.HtmlReportFormat;
+import models.internal.impl.ReportExecutionRecord;
+import models.internal.impl.ReportExecutionRollup;
+import models.internal.impl.StoredReportResult;
 import models.internal.reports.Recipient;
 import models.internal.reports.Report;
 import models.internal.reports.ReportFormat;
@@ -40,11 +48,14 @@ import models.internal.scheduling.Job;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
 import play.Application;
 import play.inject.guice.GuiceApplicationBuilder;
 import play.test.WithApplication;
 
 import java.net.URI;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -55,6 +66,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import javax.persistence.PersistenceException;
 
@@ -64,11 +77,16 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit test suite for {@link DatabaseReportRepository}.
@@ -228,6 +246,24 @@ public class DatabaseReportRepositoryTest extends WithApplication {
         _repository.jobSucceeded(UUID.randomUUID(), TestBeanFactory.getDefautOrganization(), scheduled, result);
     }
 
+    @Test
+    public void testJobSucceededWithStoredResult() {
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+        final Instant scheduled = Instant.now();
+
+        final StoredReportResult result = new StoredReportResult(Strings.repeat("ab", 32), 1234);
+        _repository.jobSucceeded(report.getId(), TestBeanFactory.getDefautOrganization(), scheduled, result);
+
+        final ReportExecution execution = _repository.getExecution(
+                report.getId(),
+                TestBeanFactory.getDefautOrganization(), scheduled).get();
+        assertThat(execution.getState(), equalTo(ReportExecution.State.SUCCESS));
+        assertThat(execution.getResultDigest(), equalTo(result.getDigest()));
+        assertThat(execution.getResultSize(), equalTo(result.getSize()));
+        assertThat(execution.getResult(), equalTo(result));
+    }
+
     @Test
     public void testJobSucceeded() {
         final Report report = TestBeanFactory.createEbeanReport().toInternal();
@@ -328,6 +364,253 @@ public class DatabaseReportRepositoryTest extends WithApplication {
         assertThat(execution.getError(), notNullValue());
     }
 
+    @Test
+    public void testLastRunTracksLatestCompletion() {
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+        final Instant firstScheduled = Instant.now().minus(Duration.ofHours(1));
+        final Instant secondScheduled = Instant.now();
+
+        _repository.jobSucceeded(report.getId(), TestBeanFactory.getDefautOrganization(), firstScheduled, new DefaultReportResult());
+        _repository.jobFailed(
+                report.getId(),
+                TestBeanFactory.getDefautOrganization(),
+                secondScheduled,
+                new IllegalStateException("whoops!"));
+        _repository.jobStarted(report.getId(), TestBeanFactory.getDefautOrganization(), secondScheduled.plus(Duration.ofHours(1)));
+
+        final ReportExecution latest = _repository.getExecution(
+                report.getId(),
+                TestBeanFactory.getDefautOrganization(), secondScheduled).get();
+        final Optional<Instant> lastRun = _repository.getLastRun(report.getId(), TestBeanFactory.getDefautOrganization());
+        assertThat(lastRun, equalTo(Optional.ofNullable(latest.getCompletedAt())));
+
+        // Updating the report itself must not reset the last run
+        _repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+        assertThat(_repository.getLastRun(report.getId(), TestBeanFactory.getDefautOrganization()), equalTo(lastRun));
+    }
+
+    @Test
+    public void testJobsSkipped() {
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+        final Instant lastRun = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        _repository.jobSucceeded(report.getId(), TestBeanFactory.getDefautOrganization(), lastRun, new DefaultReportResult());
+        final Optional<Instant> expectedLastRun = _repository.getLastRun(report.getId(), TestBeanFactory.getDefautOrganization());
+
+        final Instant first = lastRun.plus(Duration.ofHours(1));
+        final Instant until = lastRun.plus(Duration.ofHours(3));
+        _repository.jobsSkipped(report.getId(), TestBeanFactory.getDefautOrganization(), first, until, 2);
+
+        // The range is recorded as a single execution at its first run
+        final ReportExecution execution = _repository.getExecution(
+                report.getId(),
+                TestBeanFactory.getDefautOrganization(),
+                first).get();
+        assertThat(execution.getState(), equalTo(ReportExecution.State.SKIPPED));
+        assertThat(execution.getStartedAt(), nullValue());
+        assertThat(execution.getCompletedAt(), nullValue());
+        assertThat(execution.getSkippedUntil(), equalTo(until));
+        assertThat(execution.getSkippedCount(), equalTo(2L));
+        assertThat(
+                _repository.getExecution(report.getId(), TestBeanFactory.getDefautOrganization(), lastRun.plus(Duration.ofHours(2))),
+                equalTo(Optional.empty()));
+        // Skipped runs never ran, so they must not count as the last run
+        assertThat(_repository.getLastRun(report.getId(), TestBeanFactory.getDefautOrganization()), equalTo(expectedLastRun));
+    }
+
+    @Test
+    public void testJobsSkippedKeepsExistingExecutions() throws InterruptedException {
+        final Organization organization = TestBeanFactory.getDefautOrganization();
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, organization);
+        final Instant started = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        final Instant leased = started.plus(Duration.ofHours(1));
+        final Instant abandoned = started.plus(Duration.ofHours(2));
+
+        // A run that an executor started (and then crashed during) keeps its state
+        _repository.jobStarted(report.getId(), organization, started);
+        _repository.jobsSkipped(report.getId(), organization, started, started.plus(Duration.ofHours(3)), 3);
+        final ReportExecution startedExecution = _repository.getExecution(report.getId(), organization, started).get();
+        assertThat(startedExecution.getState(), equalTo(ReportExecution.State.STARTED));
+        assertThat(startedExecution.getSkippedCount(), nullValue());
+
+        // So does a run that is still leased
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, leased, "a", Duration.ofHours(1)));
+        _repository.jobsSkipped(report.getId(), organization, leased, started.plus(Duration.ofHours(3)), 2);
+        assertThat(_repository.getExecution(report.getId(), organization, leased).get().getState(), nullValue());
+
+        // But a run whose lease expired before it started is taken over
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, abandoned, "a", Duration.ofMillis(1)));
+        Thread.sleep(10);
+        _repository.jobsSkipped(report.getId(), organization, abandoned, started.plus(Duration.ofHours(3)), 1);
+        final ReportExecution abandonedExecution = _repository.getExecution(report.getId(), organization, abandoned).get();
+        assertThat(abandonedExecution.getState(), equalTo(ReportExecution.State.SKIPPED));
+        assertThat(abandonedExecution.getSkippedCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testExpireExecutions() {
+        final Organization organization = TestBeanFactory.getDefautOrganization();
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, organization);
+        final Instant cutoff = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        final Instant expired = cutoff.minus(Duration.ofDays(100));
+        final Instant kept = cutoff.plus(Duration.ofMinutes(1));
+        _repository.jobSucceeded(report.getId(), organization, expired, new DefaultReportResult());
+        _repository.jobSucceeded(report.getId(), organization, kept, new DefaultReportResult());
+        final Optional<Instant> lastRun = _repository.getLastRun(report.getId(), organization);
+
+        assertEquals(1, _repository.expireExecutions(cutoff));
+        assertFalse(_repository.getExecution(report.getId(), organization, expired).isPresent());
+        assertTrue(_repository.getExecution(report.getId(), organization, kept).isPresent());
+        assertThat(_repository.getLastRun(report.getId(), organization), equalTo(lastRun));
+        assertEquals(0, _repository.expireExecutions(cutoff));
+    }
+
+    @Test
+    public void testGetResultDigestsAfterExpiry() {
+        final Organization organization = TestBeanFactory.getDefautOrganization();
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, organization);
+        final Instant cutoff = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        final StoredReportResult expired = new StoredReportResult(Strings.repeat("ab", 32), 1234);
+        final StoredReportResult kept = new StoredReportResult(Strings.repeat("cd", 32), 5678);
+        _repository.jobSucceeded(report.getId(), organization, cutoff.minus(Duration.ofDays(100)), expired);
+        _repository.jobSucceeded(report.getId(), organization, cutoff.minus(Duration.ofDays(99)), kept);
+        _repository.jobSucceeded(report.getId(), organization, cutoff.plus(Duration.ofMinutes(1)), kept);
+        _repository.jobSucceeded(report.getId(), organization, cutoff.plus(Duration.ofMinutes(2)), new DefaultReportResult());
+        assertThat(_repository.getResultDigests(), containsInAnyOrder(expired.getDigest(), kept.getDigest()));
+
+        _repository.expireExecutions(cutoff);
+        assertThat(_repository.getResultDigests(), contains(kept.getDigest()));
+    }
+
+    @Test
+    public void testExecutionLease() throws InterruptedException {
+        final Organization organization = TestBeanFactory.getDefautOrganization();
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, organization);
+        final Instant scheduled = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, scheduled, "a", Duration.ofHours(1)));
+        assertFalse(_repository.tryLeaseExecution(report.getId(), organization, scheduled, "b", Duration.ofHours(1)));
+        // The holder may renew (here, to almost immediately expire)
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, scheduled, "a", Duration.ofMillis(1)));
+        Thread.sleep(10);
+
+        // Recording the run's state must not disturb the lease, and an expired lease is up for grabs
+        _repository.jobStarted(report.getId(), organization, scheduled);
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, scheduled, "b", Duration.ofHours(1)));
+        assertFalse(_repository.tryLeaseExecution(report.getId(), organization, scheduled, "a", Duration.ofHours(1)));
+        assertThat(
+                _repository.getExecution(report.getId(), organization, scheduled).get().getState(),
+                equalTo(ReportExecution.State.STARTED));
+
+        // Completing the run releases the lease, and a completed run can't be leased again
+        _repository.jobSucceeded(report.getId(), organization, scheduled, new DefaultReportResult());
+        final SqlRow lease = Ebean.createSqlQuery(
+                "SELECT e.lease_holder, e.lease_expires_at FROM portal.report_executions e "
+                        + "JOIN portal.reports r ON r.id = e.report_id WHERE r.uuid = :report AND e.scheduled = :scheduled")
+                .setParameter("report", report.getId())
+                .setParameter("scheduled", Timestamp.from(scheduled))
+                .findOne();
+        assertThat(lease.getString("lease_holder"), nullValue());
+        assertThat(lease.getTimestamp("lease_expires_at"), nullValue());
+        assertFalse(_repository.tryLeaseExecution(report.getId(), organization, scheduled, "a", Duration.ofHours(1)));
+    }
+
+    @Test
+    public void testAsyncStateChangesAreCoalesced() {
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+        final Instant scheduled = Instant.now();
+
+        final CompletableFuture<Void> started =
+                _repository.jobStartedAsync(report.getId(), TestBeanFactory.getDefautOrganization(), scheduled).toCompletableFuture();
+        final CompletableFuture<Void> succeeded = _repository.jobSucceededAsync(
+                report.getId(),
+                TestBeanFactory.getDefautOrganization(),
+                scheduled,
+                new DefaultReportResult()).toCompletableFuture();
+        CompletableFuture.allOf(started, succeeded).join();
+
+        final ReportExecution execution = _repository.getExecution(
+                report.getId(),
+                TestBeanFactory.getDefautOrganization(), scheduled).get();
+        assertThat(execution.getState(), equalTo(ReportExecution.State.SUCCESS));
+        assertThat(execution.getStartedAt(), notNullValue());
+        assertThat(execution.getCompletedAt(), notNullValue());
+        assertThat(execution.getResult(), notNullValue());
+    }
+
+    @Test
+    public void testFailedExecutionFlushIsRetried() {
+        final DatabaseReportRepository.ReportQueryGenerator queryGenerator =
+                Mockito.spy(new DatabaseReportRepository.GenericQueryGenerator());
+        Mockito.doThrow(new PersistenceException("transient"))
+                .doCallRealMethod()
+                .when(queryGenerator)
+                .upsertExecutions(Matchers.any(), Matchers.any());
+        final DatabaseReportRepository repository = new DatabaseReportRepository(queryGenerator);
+        repository.open();
+        try {
+            final Report report = TestBeanFactory.createEbeanReport().toInternal();
+            repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+            final Instant scheduled = Instant.now();
+
+            repository.jobSucceeded(report.getId(), TestBeanFactory.getDefautOrganization(), scheduled, new DefaultReportResult());
+
+            Mockito.verify(queryGenerator, Mockito.times(2)).upsertExecutions(Matchers.any(), Matchers.any());
+            final ReportExecution execution = repository.getExecution(
+                    report.getId(),
+                    TestBeanFactory.getDefautOrganization(), scheduled).get();
+            assertThat(execution.getState(), equalTo(ReportExecution.State.SUCCESS));
+            assertThat(
+                    repository.getLastRun(report.getId(), TestBeanFactory.getDefautOrganization()),
+                    equalTo(Optional.ofNullable(execution.getCompletedAt())));
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void testExecutionFlushFailsAfterRetries() {
+        final DatabaseReportRepository.ReportQueryGenerator queryGenerator =
+                Mockito.spy(new DatabaseReportRepository.GenericQueryGenerator());
+        Mockito.doThrow(new PersistenceException("persistent"))
+                .when(queryGenerator)
+                .upsertExecutions(Matchers.any(), Matchers.any());
+        final DatabaseReportRepository repository = new DatabaseReportRepository(queryGenerator);
+        repository.open();
+        try {
+            final Report report = TestBeanFactory.createEbeanReport().toInternal();
+            repository.addOrUpdateReport(report, TestBeanFactory.getDefautOrganization());
+            try {
+                repository.jobSucceeded(report.getId(), TestBeanFactory.getDefautOrganization(), Instant.now(), new DefaultReportResult());
+                fail("Expected the update to fail");
+            } catch (final PersistenceException e) {
+                Mockito.verify(queryGenerator, Mockito.times(3)).upsertExecutions(Matchers.any(), Matchers.any());
+            }
+        } finally {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void testAsyncUnknownJobCompletesExceptionally() {
+        final CompletableFuture<Void> started = _repository.jobStartedAsync(
+                UUID.randomUUID(),
+                TestBeanFactory.getDefautOrganization(),
+                Instant.now()).toCompletableFuture();
+        try {
+            started.join();
+            fail("Expected the update to fail");
+        } catch (final CompletionException e) {
+            assertThat(e.getCause(), instanceOf(PersistenceException.class));
+        }
+    }
+
     @Test
     public void testReportQuery() {
         final int reportCount = 5;
@@ -448,4 +731,138 @@ public class DatabaseReportRepositoryTest extends WithApplication {
         final List<? extends Job<Report.Result>> results = query.execute().values();
         assertThat(results, empty());
     }
+
+    @Test
+    public void testQueryLoadsPageInConstantNumberOfStatements() {
+        addReportsWithRecipients(2, 3);
+        final long smallPageSelects = countSelects(() ->
+                _repository.createReportQuery(TestBeanFactory.getDefautOrganization()).limit(100).execute());
+
+        addReportsWithRecipients(18, 3);
+        final long largePageSelects = countSelects(() -> {
+            final QueryResult<Report> results = _repository.createReportQuery(TestBeanFactory.getDefautOrganization())
+                    .limit(100)
+                    .execute();
+            assertThat(results.values(), hasSize(20));
+            results.values().forEach(report ->
+                    assertThat(report.getRecipientsByFormat().get(new HtmlReportFormat.Builder().build()), hasSize(3)));
+        });
+
+        // The page, its total count, and the recipients of the whole page
+        assertThat(largePageSelects, lessThanOrEqualTo(3L));
+        assertEquals(smallPageSelects, largePageSelects);
+    }
+
+    @Test
+    public void testSaveResolvesRecipientsInConstantNumberOfStatements() {
+        final Report smallReport = createReportWithRecipients(2);
+        final long smallReportSelects = countSelects(() ->
+                _repository.addOrUpdateReport(smallReport, TestBeanFactory.getDefautOrganization()));
+
+        final Report largeReport = createReportWithRecipients(20);
+        final long largeReportSelects = countSelects(() ->
+                _repository.addOrUpdateReport(largeReport, TestBeanFactory.getDefautOrganization()));
+        assertEquals(smallReportSelects, largeReportSelects);
+
+        // Saving again reuses the existing recipients
+        final int recipientCount = Ebean.find(models.ebean.Recipient.class).findCount();
+        _repository.addOrUpdateReport(largeReport, TestBeanFactory.getDefautOrganization());
+        assertEquals(recipientCount, Ebean.find(models.ebean.Recipient.class).findCount());
+
+        final Report retrievedReport = _repository.getReport(largeReport.getId(), TestBeanFactory.getDefautOrganization()).get();
+        final ReportFormat format = new HtmlReportFormat.Builder().build();
+        assertEquals(
+                ImmutableSet.copyOf(largeReport.getRecipientsByFormat().get(format)),
+                ImmutableSet.copyOf(retrievedReport.getRecipientsByFormat().get(format)));
+    }
+
+    @Test
+    public void testExecutionsArePagedByScheduledTime() {
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        final Organization organization = TestBeanFactory.getDefautOrganization();
+        _repository.addOrUpdateReport(report, organization);
+        final Instant start = Instant.parse("2019-01-01T00:00:00Z");
+        for (int i = 0; i < 5; i++) {
+            _repository.jobSucceeded(report.getId(), organization, start.plus(Duration.ofHours(i)), new DefaultReportResult());
+        }
+        // A run that is only leased hasn't executed yet
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, start.plus(Duration.ofHours(5)), "a", Duration.ofHours(1)));
+
+        final List<ReportExecutionRecord> firstPage = _repository.getExecutions(report.getId(), organization, Optional.empty(), 3);
+        assertThat(
+                firstPage.stream().map(ReportExecutionRecord::getScheduled).collect(Collectors.toList()),
+                contains(start.plus(Duration.ofHours(4)), start.plus(Duration.ofHours(3)), start.plus(Duration.ofHours(2))));
+        assertEquals("SUCCESS", firstPage.get(0).getState());
+
+        final List<ReportExecutionRecord> secondPage =
+                _repository.getExecutions(report.getId(), organization, Optional.of(firstPage.get(2).getScheduled()), 3);
+        assertThat(
+                secondPage.stream().map(ReportExecutionRecord::getScheduled).collect(Collectors.toList()),
+                contains(start.plus(Duration.ofHours(1)), start));
+    }
+
+    @Test
+    public void testExecutionRollups() {
+        final Organization organization = TestBeanFactory.getDefautOrganization();
+        final Report report = TestBeanFactory.createEbeanReport().toInternal();
+        final Report otherReport = TestBeanFactory.createEbeanReport().toInternal();
+        _repository.addOrUpdateReport(report, organization);
+        _repository.addOrUpdateReport(otherReport, organization);
+        final Instant day = Instant.parse("2019-01-01T00:00:00Z");
+        final Instant nextDay = day.plus(Duration.ofDays(1));
+
+        _repository.jobSucceeded(report.getId(), organization, day, new DefaultReportResult());
+        _repository.jobSucceeded(report.getId(), organization, day.plus(Duration.ofHours(1)), new DefaultReportResult());
+        _repository.jobFailed(report.getId(), organization, day.plus(Duration.ofHours(2)), new IllegalStateException("whoops!"));
+        _repository.jobsSkipped(report.getId(), organization, day.plus(Duration.ofHours(3)), day.plus(Duration.ofHours(6)), 3);
+        assertTrue(_repository.tryLeaseExecution(report.getId(), organization, day.plus(Duration.ofHours(7)), "a", Duration.ofHours(1)));
+        _repository.jobStarted(report.getId(), organization, nextDay);
+        _repository.jobSucceeded(otherReport.getId(), organization, nextDay, new DefaultReportResult());
+
+        final List<ReportExecutionRollup> rollups =
+                _repository.getExecutionRollups(report.getId(), organization, day, day.plus(Duration.ofDays(2)));
+        assertThat(rollups, hasSize(2));
+        assertEquals(day, rollups.get(0).getDay());
+        assertEquals(6, rollups.get(0).getTotal());
+        assertEquals(2, rollups.get(0).getSucceeded());
+        assertEquals(1, rollups.get(0).getFailed());
+        assertEquals(3, rollups.get(0).getSkipped());
+        assertEquals(Optional.of(2 / 3.0), rollups.get(0).getSuccessRate());
+        assertEquals(nextDay, rollups.get(1).getDay());
+        assertEquals(1, rollups.get(1).getTotal());
+        assertEquals(0, rollups.get(1).getSkipped());
+        assertEquals(Optional.empty(), rollups.get(1).getSuccessRate());
+
+        final List<ReportExecutionRollup> organizationRollups =
+                _repository.getExecutionRollups(organization, nextDay, nextDay.plus(Duration.ofDays(1)));
+        assertThat(organizationRollups, hasSize(1));
+        assertEquals(2, organizationRollups.get(0).getTotal());
+        assertEquals(1, organizationRollups.get(0).getSucceeded());
+    }
+
+    private void addReportsWithRecipients(final int reportCount, final int recipientCount) {
+        for (int i = 0; i < reportCount; i++) {
+            _repository.addOrUpdateReport(createReportWithRecipients(recipientCount), TestBeanFactory.getDefautOrganization());
+        }
+    }
+
+    private static Report createReportWithRecipients(final int recipientCount) {
+        final ImmutableSetMultimap.Builder<ReportFormat, Recipient> recipients = ImmutableSetMultimap.builder();
+        for (int i = 0; i < recipientCount; i++) {
+            recipients.put(new HtmlReportFormat.Builder().build(), TestBeanFactory.createRecipient());
+        }
+        return TestBeanFactory.createReportBuilder().setRecipients(recipients.build()).build();
+    }
+
+    private static long countSelects(final Runnable runnable) {
+        // Toggling H2's query statistics resets them
+        Ebean.createSqlUpdate("SET QUERY_STATISTICS FALSE").execute();
+        Ebean.createSqlUpdate("SET QUERY_STATISTICS TRUE").execute();
+        runnable.run();
+        return Ebean.createSqlQuery(
+                "SELECT COALESCE(SUM(execution_count), 0) AS selects FROM information_schema.query_statistics "
+                        + "WHERE LOWER(sql_statement) LIKE 'select%' AND LOWER(sql_statement) NOT LIKE '%information_schema%'")
+                .findOne()
+                .getLong("selects");
+    }
 }
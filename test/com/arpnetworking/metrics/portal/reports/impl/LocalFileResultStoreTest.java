@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import models.internal.impl.StoredReportResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LocalFileResultStore}.
+ *
+ * @author agent (agent at local)
+ */
+public final class LocalFileResultStoreTest {
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    private Path _root;
+    private LocalFileResultStore _store;
+
+    @Before
+    public void setUp() throws IOException {
+        _root = _folder.newFolder().toPath();
+        _store = new LocalFileResultStore(_root, CHUNK_SIZE);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final byte[] content = "<html>report</html>".getBytes(StandardCharsets.UTF_8);
+        final StoredReportResult result = _store.put(new ByteArrayInputStream(content));
+
+        assertEquals(Hashing.sha256().hashBytes(content).toString(), result.getDigest());
+        assertEquals(content.length, result.getSize());
+        assertTrue(_store.contains(result.getDigest()));
+        assertArrayEquals(content, read(result.getDigest()));
+    }
+
+    @Test
+    public void testMultipleChunks() throws IOException {
+        final byte[] content = new byte[CHUNK_SIZE * 3 + 7];
+        new Random(0).nextBytes(content);
+        final StoredReportResult result = _store.put(new ByteArrayInputStream(content));
+
+        assertEquals(content.length, result.getSize());
+        assertEquals(4, countChunks());
+        assertArrayEquals(content, read(result.getDigest()));
+    }
+
+    @Test
+    public void testIdenticalContentIsStoredOnce() throws IOException {
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        new Random(0).nextBytes(chunk);
+        final byte[] content = new byte[CHUNK_SIZE * 2];
+        System.arraycopy(chunk, 0, content, 0, CHUNK_SIZE);
+        System.arraycopy(chunk, 0, content, CHUNK_SIZE, CHUNK_SIZE);
+
+        final StoredReportResult first = _store.put(new ByteArrayInputStream(content));
+        final StoredReportResult second = _store.put(new ByteArrayInputStream(content));
+        final StoredReportResult single = _store.put(new ByteArrayInputStream(chunk));
+
+        assertThat(second, equalTo(first));
+        assertEquals(1, countChunks());
+        assertArrayEquals(content, read(first.getDigest()));
+        assertArrayEquals(chunk, read(single.getDigest()));
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException {
+        final StoredReportResult result = _store.put(new ByteArrayInputStream(new byte[0]));
+        assertEquals(0, result.getSize());
+        assertArrayEquals(new byte[0], read(result.getDigest()));
+    }
+
+    @Test
+    public void testMissingContent() throws IOException {
+        final String digest = Hashing.sha256().hashBytes(new byte[] {1}).toString();
+        assertFalse(_store.contains(digest));
+        assertEquals(Optional.empty(), _store.open(digest));
+        assertFalse(_store.contains("../../etc/passwd"));
+    }
+
+    @Test
+    public void testCollectDeletesUnreferencedContentAndItsChunks() throws IOException {
+        final byte[] shared = new byte[CHUNK_SIZE];
+        new Random(0).nextBytes(shared);
+        final byte[] unique = new byte[CHUNK_SIZE];
+        new Random(1).nextBytes(unique);
+        final StoredReportResult referenced = _store.put(new ByteArrayInputStream(concat(shared, shared)));
+        final StoredReportResult unreferenced = _store.put(new ByteArrayInputStream(concat(shared, unique)));
+        assertEquals(2, countChunks());
+
+        assertEquals(1, _store.collect(ImmutableSet.of(referenced.getDigest()), Instant.now().plusSeconds(1)));
+        assertTrue(_store.contains(referenced.getDigest()));
+        assertFalse(_store.contains(unreferenced.getDigest()));
+        assertEquals(1, countChunks());
+        assertArrayEquals(concat(shared, shared), read(referenced.getDigest()));
+
+        assertEquals(1, _store.collect(ImmutableSet.of(), Instant.now().plusSeconds(1)));
+        assertEquals(0, countChunks());
+    }
+
+    @Test
+    public void testCollectKeepsRecentlyStoredContent() throws IOException {
+        final byte[] content = "<html>report</html>".getBytes(StandardCharsets.UTF_8);
+        final StoredReportResult result = _store.put(new ByteArrayInputStream(content));
+        final Instant storedBefore = Instant.now().minusSeconds(60);
+
+        assertEquals(0, _store.collect(ImmutableSet.of(), storedBefore));
+        assertArrayEquals(content, read(result.getDigest()));
+
+        // Storing existing content again counts as storing it, even though nothing is written.
+        age(storedBefore.minusSeconds(60));
+        _store.put(new ByteArrayInputStream(content));
+        assertEquals(0, _store.collect(ImmutableSet.of(), storedBefore));
+        assertArrayEquals(content, read(result.getDigest()));
+
+        age(storedBefore.minusSeconds(60));
+        assertEquals(1, _store.collect(ImmutableSet.of(), storedBefore));
+        assertFalse(_store.contains(result.getDigest()));
+        assertEquals(0, countChunks());
+    }
+
+    @Test
+    public void testCollectEmptyStore() throws IOException {
+        assertEquals(0, _store.collect(ImmutableSet.of(), Instant.now()));
+    }
+
+    private void age(final Instant modified) throws IOException {
+        try (Stream<Path> files = Files.walk(_root)) {
+            for (final Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                Files.setLastModifiedTime(file, FileTime.from(modified));
+            }
+        }
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] content = new byte[first.length + second.length];
+        System.arraycopy(first, 0, content, 0, first.length);
+        System.arraycopy(second, 0, content, first.length, second.length);
+        return content;
+    }
+
+    private byte[] read(final String digest) throws IOException {
+        try (InputStream stream = _store.open(digest).get()) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
+
+    private long countChunks() throws IOException {
+        try (Stream<Path> files = Files.walk(_root.resolve("chunks"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static final int CHUNK_SIZE = 1024;
+}
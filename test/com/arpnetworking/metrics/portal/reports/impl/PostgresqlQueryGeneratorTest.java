@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import io.ebean.Transaction;
+import models.ebean.ChromeScreenshotReportSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link DatabaseReportRepository.PostgresqlQueryGenerator}.
+ *
+ * H2 does not support {@code ON CONFLICT ... DO UPDATE}, so these check the statements sent to the driver.
+ *
+ * @author agent (agent at local)
+ */
+public final class PostgresqlQueryGeneratorTest {
+
+    @Mock
+    private Transaction _transaction;
+    @Mock
+    private Connection _connection;
+    @Mock
+    private PreparedStatement _statement;
+    @Mock
+    private ResultSet _resultSet;
+
+    private final DatabaseReportRepository.PostgresqlQueryGenerator _queryGenerator =
+            new DatabaseReportRepository.PostgresqlQueryGenerator();
+
+    @Before
+    public void setUp() throws SQLException {
+        MockitoAnnotations.initMocks(this);
+        Mockito.doReturn(_connection).when(_transaction).getConnection();
+        Mockito.doReturn(_statement).when(_connection).prepareStatement(Mockito.anyString());
+        Mockito.doReturn(_resultSet).when(_statement).executeQuery();
+        Mockito.doReturn(true).when(_resultSet).next();
+        Mockito.doReturn(SOURCE_ID).when(_resultSet).getLong(1);
+    }
+
+    @Test
+    public void testUpsertReportSourceBumpsVersion() throws SQLException {
+        final long id = _queryGenerator.upsertReportSource(TestBeanFactory.createEbeanReportSource(), _transaction);
+
+        assertEquals(SOURCE_ID, id);
+        final ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(_connection).prepareStatement(sql.capture());
+        assertThat(sql.getValue(), containsString("ON CONFLICT (uuid) DO UPDATE SET version = report_sources.version + 1,"));
+    }
+
+    @Test
+    public void testUpsertReportSourceWritesEntityDiscriminator() throws SQLException {
+        final ChromeScreenshotReportSource source = (ChromeScreenshotReportSource) TestBeanFactory.createEbeanReportSource();
+
+        _queryGenerator.upsertReportSource(source, _transaction);
+
+        Mockito.verify(_statement).setObject(1, source.getUuid());
+        Mockito.verify(_statement).setString(2, "CHROME_SCREENSHOT");
+        Mockito.verify(_statement).setString(3, source.getUri().toString());
+        Mockito.verify(_statement).setString(4, source.getTitle());
+    }
+
+    private static final long SOURCE_ID = 42L;
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.impl;
+
+import com.arpnetworking.metrics.portal.AkkaClusteringConfigFactory;
+import com.arpnetworking.metrics.portal.H2ConnectionStringFactory;
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import com.arpnetworking.metrics.portal.organizations.OrganizationRepository;
+import com.arpnetworking.metrics.portal.reports.ReportRepository;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.delivery.DeliveryRepository;
+import com.arpnetworking.metrics.portal.scheduling.Schedule;
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import io.ebean.Ebean;
+import io.ebean.SqlRow;
+import models.internal.Organization;
+import models.internal.OrganizationQuery;
+import models.internal.impl.DefaultQueryResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.test.WithApplication;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test suite for {@link ReportExecutionRetentionJobRepository}.
+ *
+ * @author agent (agent at local)
+ */
+public class ReportExecutionRetentionJobRepositoryTest extends WithApplication {
+
+    @Before
+    public void setUp() {
+        final OrganizationRepository organizationRepository = Mockito.mock(OrganizationRepository.class);
+        final OrganizationQuery query = Mockito.mock(OrganizationQuery.class);
+        Mockito.doReturn(query).when(organizationRepository).createQuery();
+        Mockito.doReturn(new DefaultQueryResult<>(ImmutableList.of(OTHER_ORGANIZATION, OWNER_ORGANIZATION), 2))
+                .when(organizationRepository)
+                .query(query);
+        _repository = new ReportExecutionRetentionJobRepository(
+                new ReportExecutionRetentionJob(
+                        Mockito.mock(ReportRepository.class),
+                        Mockito.mock(ResultStore.class),
+                        Mockito.mock(DeliveryRepository.class),
+                        Duration.ofDays(30),
+                        Duration.ofDays(1),
+                        Mockito.mock(Schedule.class),
+                        Runnable::run),
+                organizationRepository);
+        _repository.open();
+    }
+
+    @After
+    public void tearDown() {
+        _repository.close();
+    }
+
+    @Override
+    public Application provideApplication() {
+        return new GuiceApplicationBuilder()
+                .loadConfig(ConfigFactory.load("portal.application.conf"))
+                .configure(AkkaClusteringConfigFactory.generateConfiguration())
+                .configure(H2ConnectionStringFactory.generateConfiguration())
+                .build();
+    }
+
+    @Test
+    public void testJobIsOnlyInTheLowestOrganization() {
+        assertTrue(_repository.getJob(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION).isPresent());
+        assertEquals(1, _repository.query(_repository.createQuery(OWNER_ORGANIZATION)).values().size());
+
+        assertFalse(_repository.getJob(ReportExecutionRetentionJob.ID, OTHER_ORGANIZATION).isPresent());
+        assertEquals(0, _repository.query(_repository.createQuery(OTHER_ORGANIZATION)).values().size());
+        assertFalse(_repository.getJob(UUID.randomUUID(), OWNER_ORGANIZATION).isPresent());
+    }
+
+    @Test
+    public void testLeaseIsExclusiveUntilItExpires() {
+        assertTrue(tryLease(SCHEDULED, "holder-1", LEASE_DURATION));
+        assertTrue(tryLease(SCHEDULED, "holder-1", LEASE_DURATION));
+        assertFalse(tryLease(SCHEDULED, "holder-2", LEASE_DURATION));
+
+        // An expired lease can be taken over.
+        assertTrue(tryLease(SCHEDULED, "holder-1", Duration.ofSeconds(-1)));
+        assertTrue(tryLease(SCHEDULED, "holder-2", LEASE_DURATION));
+    }
+
+    @Test
+    public void testLeaseIsOnlyGrantedForPeriodsThatHaveNotRun() {
+        assertEquals(Optional.empty(), _repository.getLastRun(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION));
+        assertTrue(tryLease(SCHEDULED, "holder-1", LEASE_DURATION));
+        _repository.jobSucceeded(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION, SCHEDULED, 3L);
+        assertEquals(Optional.of(SCHEDULED), _repository.getLastRun(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION));
+
+        // Neither the same period nor an earlier one can be leased again, even by the previous holder.
+        assertFalse(tryLease(SCHEDULED, "holder-1", LEASE_DURATION));
+        assertFalse(tryLease(SCHEDULED, "holder-2", LEASE_DURATION));
+        assertFalse(tryLease(SCHEDULED.minus(1, ChronoUnit.DAYS), "holder-2", LEASE_DURATION));
+        assertTrue(tryLease(SCHEDULED.plus(1, ChronoUnit.DAYS), "holder-2", LEASE_DURATION));
+    }
+
+    @Test
+    public void testRecordingARunReleasesItsLease() {
+        assertTrue(tryLease(SCHEDULED, "holder-1", LEASE_DURATION));
+        _repository.jobFailed(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION, SCHEDULED, new IllegalStateException("whoops!"));
+
+        final SqlRow row = getRun();
+        assertEquals(SCHEDULED, row.getTimestamp("last_run").toInstant());
+        assertThat(row.getTimestamp("lease_scheduled"), nullValue());
+        assertThat(row.getString("lease_holder"), nullValue());
+        assertThat(row.getTimestamp("lease_expires_at"), nullValue());
+
+        // A late run of an earlier period neither moves the last run back nor releases the current lease.
+        final Instant next = SCHEDULED.plus(1, ChronoUnit.DAYS);
+        assertTrue(tryLease(next, "holder-2", LEASE_DURATION));
+        _repository.jobSucceeded(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION, SCHEDULED.minus(1, ChronoUnit.DAYS), 0L);
+        assertEquals(SCHEDULED, getRun().getTimestamp("last_run").toInstant());
+        assertEquals("holder-2", getRun().getString("lease_holder"));
+    }
+
+    @Test
+    public void testConcurrentFirstLeasesCreateOneRun() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(CONTENDERS);
+        try {
+            for (int round = 0; round < 10; ++round) {
+                Ebean.createSqlUpdate("DELETE FROM portal.cluster_job_runs").execute();
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<Boolean>> leases = new ArrayList<>();
+                for (int i = 0; i < CONTENDERS; ++i) {
+                    final String holder = "holder-" + i;
+                    leases.add(executor.submit(() -> {
+                        start.await();
+                        return tryLease(SCHEDULED, holder, LEASE_DURATION);
+                    }));
+                }
+                start.countDown();
+                int leased = 0;
+                for (final Future<Boolean> lease : leases) {
+                    // Losing the race to create the run is not an error; the loser just does not get the lease.
+                    if (lease.get()) {
+                        ++leased;
+                    }
+                }
+                assertEquals(1, leased);
+                final SqlRow runs = Ebean.createSqlQuery("SELECT COUNT(*) AS runs FROM portal.cluster_job_runs").findOne();
+                assertEquals(1L, runs.getLong("runs").longValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private boolean tryLease(final Instant scheduled, final String holder, final Duration duration) {
+        return _repository.tryLeaseExecution(ReportExecutionRetentionJob.ID, OWNER_ORGANIZATION, scheduled, holder, duration);
+    }
+
+    private SqlRow getRun() {
+        return Ebean.createSqlQuery("SELECT * FROM portal.cluster_job_runs WHERE job_id = :id")
+                .setParameter("id", ReportExecutionRetentionJob.ID)
+                .findOne();
+    }
+
+    private ReportExecutionRetentionJobRepository _repository;
+
+    private static final Organization OWNER_ORGANIZATION =
+            TestBeanFactory.organizationFrom(UUID.fromString("00000000-0000-0000-0000-000000000001"));
+    private static final Organization OTHER_ORGANIZATION =
+            TestBeanFactory.organizationFrom(UUID.fromString("00000000-0000-0000-0000-000000000002"));
+    private static final Instant SCHEDULED = Instant.parse("2019-01-01T00:00:00Z");
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(1);
+    private static final int CONTENDERS = 8;
+}
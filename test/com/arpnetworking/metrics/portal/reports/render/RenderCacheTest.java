@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import models.internal.impl.ChromeScreenshotReportSource;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RenderCache}.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderCacheTest {
+
+    @Test
+    public void testRendersAreSingleFlight() {
+        final RenderCache cache = createCache(Duration.ofMinutes(5));
+        final AtomicInteger renders = new AtomicInteger();
+        final CompletableFuture<RenderedPage> render = new CompletableFuture<>();
+
+        final CompletionStage<RenderedPage> first = cache.getPage(HASH, T_0, () -> {
+            renders.incrementAndGet();
+            return render;
+        });
+        final CompletionStage<RenderedPage> second = cache.getPage(HASH, T_0, () -> {
+            renders.incrementAndGet();
+            return render;
+        });
+        assertEquals(1, renders.get());
+        assertFalse(second.toCompletableFuture().isDone());
+
+        render.complete(PAGE);
+        assertEquals(PAGE, first.toCompletableFuture().join());
+        assertEquals(PAGE, second.toCompletableFuture().join());
+
+        cache.getPage(HASH, T_0.plus(Duration.ofHours(1)), () -> {
+            renders.incrementAndGet();
+            return CompletableFuture.completedFuture(PAGE);
+        });
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void testFailedRendersAreEvicted() {
+        final RenderCache cache = createCache(Duration.ofMinutes(5));
+        final CompletableFuture<RenderedPage> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("render failed"));
+
+        assertTrue(cache.getPage(HASH, T_0, () -> failed).toCompletableFuture().isCompletedExceptionally());
+        assertEquals(PAGE, cache.getPage(HASH, T_0, () -> CompletableFuture.completedFuture(PAGE)).toCompletableFuture().join());
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        final RenderCache cache = createCache(Duration.ZERO);
+        final AtomicInteger renders = new AtomicInteger();
+        for (int i = 0; i < 2; ++i) {
+            cache.getPage(HASH, T_0, () -> {
+                renders.incrementAndGet();
+                return CompletableFuture.completedFuture(PAGE);
+            });
+        }
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void testSourceHashIgnoresId() {
+        final ChromeScreenshotReportSource.Builder builder = new ChromeScreenshotReportSource.Builder()
+                .setUri(URI.create("https://example.com/dashboard"))
+                .setTitle("Dashboard")
+                .setTriggeringEventName("onload")
+                .setIgnoreCertificateErrors(false);
+        final String hash = RenderCache.hashSource(builder.setId(UUID.randomUUID()).build());
+        assertEquals(hash, RenderCache.hashSource(builder.setId(UUID.randomUUID()).build()));
+        assertNotEquals(hash, RenderCache.hashSource(builder.setTitle("Other dashboard").build()));
+    }
+
+    private static RenderCache createCache(final Duration ttl) {
+        return new RenderCache(ttl, Clock.systemUTC(), Mockito.mock(PeriodicMetrics.class));
+    }
+
+    private static final String HASH = "source";
+    private static final Instant T_0 = Instant.parse("2019-01-01T00:00:00Z");
+    private static final RenderedPage PAGE = new RenderedPage(
+            new ChromeScreenshotReportSource.Builder()
+                    .setId(UUID.randomUUID())
+                    .setUri(URI.create("https://example.com/dashboard"))
+                    .setTitle("Dashboard")
+                    .setTriggeringEventName("onload")
+                    .setIgnoreCertificateErrors(false)
+                    .build(),
+            "<html></html>");
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.metrics.portal.reports.render.impl.StubBrowser;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import models.internal.impl.ChromeScreenshotReportSource;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RenderPool}.
+ *
+ * @author agent (agent at local)
+ */
+public final class RenderPoolTest {
+
+    private StubBrowser _browser;
+    private RenderPool _pool;
+
+    @After
+    public void tearDown() {
+        _pool.close();
+        _browser.close();
+    }
+
+    @Test
+    public void testTabsAreReused() throws Exception {
+        createPool(Duration.ZERO, 2, Duration.ofSeconds(10));
+        for (int i = 0; i < 10; ++i) {
+            render(i).get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(1, _browser.getTabsOpened());
+        assertEquals(10, _browser.getLoads());
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        createPool(Duration.ofMillis(5), 3, Duration.ofSeconds(10));
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final List<CompletableFuture<String>> renders = IntStream.range(0, 30)
+                .mapToObj(i -> _pool.<String>render(tab -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return tab.load(URI.create("http://example.com/" + i), false, "ready")
+                            .thenCompose(ignored -> tab.getContent())
+                            .whenComplete((content, error) -> inFlight.decrementAndGet());
+                }).toCompletableFuture())
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(renders.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(3));
+        assertThat(_browser.getTabsOpened(), lessThanOrEqualTo(3));
+        assertEquals(30, _browser.getLoads());
+    }
+
+    @Test
+    public void testQueuedRendersStartInSubmissionOrder() throws Exception {
+        createPool(Duration.ofMillis(5), 1, Duration.ofSeconds(10));
+        final List<Integer> started = Collections.synchronizedList(Lists.newArrayList());
+        final List<CompletableFuture<String>> renders = Lists.newArrayList();
+        for (int i = 0; i < 10; ++i) {
+            final int index = i;
+            renders.add(_pool.<String>render(tab -> {
+                started.add(index);
+                return tab.load(URI.create("http://example.com/" + index), false, "ready")
+                        .thenCompose(ignored -> tab.getContent());
+            }).toCompletableFuture());
+        }
+        CompletableFuture.allOf(renders.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 10).boxed().collect(ImmutableList.toImmutableList()), started);
+    }
+
+    @Test
+    public void testTimedOutTabIsReplaced() throws Exception {
+        createPool(Duration.ZERO, 1, Duration.ofSeconds(10));
+        final CompletableFuture<String> wedged = _pool.<String>render(tab -> new CompletableFuture<>(), Duration.ofMillis(50))
+                .toCompletableFuture();
+        try {
+            wedged.get(10, TimeUnit.SECONDS);
+            fail("expected the render to time out");
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+
+        assertThat(render(0).get(10, TimeUnit.SECONDS), containsString("http://example.com/0"));
+        assertEquals(2, _browser.getTabsOpened());
+    }
+
+    @Test
+    public void testChromeScreenshotRenderer() throws Exception {
+        createPool(Duration.ZERO, 1, Duration.ofSeconds(10));
+        final ChromeScreenshotReportSource source = new ChromeScreenshotReportSource.Builder()
+                .setId(UUID.randomUUID())
+                .setUri(URI.create("https://example.com/dashboard"))
+                .setTitle("Dashboard")
+                .setTriggeringEventName("dashboardLoaded")
+                .setIgnoreCertificateErrors(false)
+                .build();
+        final RenderedPage page = new ChromeScreenshotRenderer(_pool).render(source).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(source, page.getSource());
+        assertThat(page.getContent(), containsString("https://example.com/dashboard"));
+    }
+
+    private void createPool(final Duration latency, final int size, final Duration timeout) {
+        _browser = new StubBrowser(latency);
+        _pool = new RenderPool(_browser, size, timeout, Clock.systemUTC(), Mockito.mock(PeriodicMetrics.class));
+    }
+
+    private CompletableFuture<String> render(final int index) {
+        return _pool.<String>render(tab -> tab.load(URI.create("http://example.com/" + index), false, "ready")
+                .thenCompose(ignored -> tab.getContent()))
+                .toCompletableFuture();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.reports.render;
+
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.metrics.portal.TestBeanFactory;
+import com.arpnetworking.metrics.portal.reports.ResultStore;
+import com.arpnetworking.metrics.portal.reports.impl.LocalFileResultStore;
+import com.arpnetworking.metrics.portal.reports.render.impl.StubBrowser;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.io.ByteStreams;
+import models.internal.impl.HtmlReportFormat;
+import models.internal.impl.PdfReportFormat;
+import models.internal.reports.Recipient;
+import models.internal.reports.Report;
+import models.internal.reports.ReportFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ReportRenderer}.
+ *
+ * @author agent (agent at local)
+ */
+public final class ReportRendererTest {
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    private StubBrowser _browser;
+    private RenderPool _pool;
+    private ResultStore _resultStore;
+    private ReportRenderer _renderer;
+    private ExecutorService _storeExecutor;
+    private final AtomicInteger _stores = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        _browser = new StubBrowser(Duration.ofMillis(5));
+        _pool = new RenderPool(_browser, 4, Duration.ofSeconds(10), Clock.systemUTC(), Mockito.mock(PeriodicMetrics.class));
+        _resultStore = new LocalFileResultStore(_folder.newFolder().toPath(), 1024);
+        _storeExecutor = Executors.newSingleThreadExecutor();
+        _renderer = new ReportRenderer(
+                new ChromeScreenshotRenderer(_pool),
+                _pool,
+                new RenderCache(Duration.ofMinutes(5), Clock.systemUTC(), Mockito.mock(PeriodicMetrics.class)),
+                _resultStore,
+                Mockito.mock(PeriodicMetrics.class),
+                command -> {
+                    _stores.incrementAndGet();
+                    _storeExecutor.execute(command);
+                });
+    }
+
+    @After
+    public void tearDown() {
+        _pool.close();
+        _browser.close();
+        _storeExecutor.shutdown();
+    }
+
+    @Test
+    public void testSourceIsRenderedOnce() throws Exception {
+        final ReportFormat html = new HtmlReportFormat.Builder().build();
+        final ReportFormat letter = new PdfReportFormat.Builder().setWidthInches(8.5f).setHeightInches(11f).build();
+        final ReportFormat a4 = new PdfReportFormat.Builder().setWidthInches(8.27f).setHeightInches(11.69f).build();
+        final Recipient first = TestBeanFactory.createRecipient();
+        final Recipient second = TestBeanFactory.createRecipient();
+        final Recipient third = TestBeanFactory.createRecipient();
+        final Report report = TestBeanFactory.createReportBuilder()
+                .setRecipients(ImmutableSetMultimap.<ReportFormat, Recipient>builder()
+                        .putAll(html, first, second)
+                        .putAll(letter, first, second, third)
+                        .put(a4, third)
+                        .build())
+                .build();
+
+        final RenderedReport rendered = _renderer.render(report, Instant.now()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, _browser.getLoads());
+        assertEquals(2, _browser.getPdfsPrinted());
+        assertEquals(3, rendered.getOutputs().size());
+        assertEquals(6, rendered.getOutputsByRecipient().size());
+        final RenderedOutput letterOutput = rendered.getOutputs().get(letter);
+        for (final Recipient recipient : Arrays.asList(first, second, third)) {
+            assertThat(rendered.getOutputsByRecipient().get(recipient), hasItem(sameInstance(letterOutput)));
+        }
+        assertEquals(html, rendered.getOutputs().get(html).getFormat());
+    }
+
+    @Test
+    public void testRendersAreSharedAcrossReports() throws Exception {
+        // Distinct reports, with distinct sources that have the same content
+        final Report first = TestBeanFactory.createReportBuilder().build();
+        final Report second = TestBeanFactory.createReportBuilder().build();
+        final Instant scheduled = Instant.parse("2019-01-01T00:00:00Z");
+
+        final CompletableFuture<RenderedReport> firstRendered = _renderer.render(first, scheduled).toCompletableFuture();
+        final CompletableFuture<RenderedReport> secondRendered = _renderer.render(second, scheduled).toCompletableFuture();
+        CompletableFuture.allOf(firstRendered, secondRendered).get(10, TimeUnit.SECONDS);
+        assertEquals(1, _browser.getLoads());
+        assertEquals(1, _browser.getPdfsPrinted());
+        assertThat(
+                secondRendered.join().getOutputs().values().iterator().next(),
+                sameInstance(firstRendered.join().getOutputs().values().iterator().next()));
+
+        _renderer.render(first, scheduled.plus(Duration.ofDays(1))).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(2, _browser.getLoads());
+    }
+
+    @Test
+    public void testPdfsAreStreamedToTheResultStore() throws Exception {
+        final Report report = TestBeanFactory.createReportBuilder().build();
+
+        final RenderedReport rendered = _renderer.render(report, Instant.now()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        final RenderedOutput pdf = rendered.getOutputs().values().iterator().next();
+        assertTrue(pdf.getStored().isPresent());
+        assertTrue(_resultStore.contains(pdf.getStored().get().getDigest()));
+        final String content;
+        try (InputStream stream = pdf.openStream()) {
+            content = new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+        }
+        assertThat(content, startsWith("%PDF-stub 8.5x11.0\n<html>"));
+        assertEquals(content.length(), pdf.getSize());
+        assertEquals(1, _stores.get());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import com.arpnetworking.metrics.incubator.PeriodicMetrics;
+import com.arpnetworking.metrics.portal.scheduling.impl.OneOffSchedule;
+import com.arpnetworking.metrics.portal.scheduling.impl.PeriodicSchedule;
+import com.arpnetworking.metrics.portal.scheduling.mocks.DummyJob;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link JobExecutionGovernor}.
+ *
+ * @author agent (agent at local)
+ */
+public final class JobExecutionGovernorTest {
+
+    @Test
+    public void testPermitsAreBounded() {
+        final JobExecutionGovernor governor = createGovernor(1, Duration.ZERO);
+        final CompletableFuture<JobExecutionGovernor.Permit> first = governor.acquire(JOB, T_0);
+        final CompletableFuture<JobExecutionGovernor.Permit> second = governor.acquire(JOB, T_0);
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        first.join().release();
+        assertTrue(second.isDone());
+    }
+
+    @Test
+    public void testReleaseIsIdempotent() {
+        final JobExecutionGovernor governor = createGovernor(1, Duration.ZERO);
+        final JobExecutionGovernor.Permit permit = governor.acquire(JOB, T_0).join();
+        final CompletableFuture<JobExecutionGovernor.Permit> second = governor.acquire(JOB, T_0);
+        final CompletableFuture<JobExecutionGovernor.Permit> third = governor.acquire(JOB, T_0);
+
+        permit.release();
+        permit.release();
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+    }
+
+    @Test
+    public void testWaitersAreGrantedInScheduledOrder() {
+        final JobExecutionGovernor governor = createGovernor(1, Duration.ZERO);
+        final JobExecutionGovernor.Permit permit = governor.acquire(JOB, T_0).join();
+        final CompletableFuture<JobExecutionGovernor.Permit> later = governor.acquire(JOB, T_0.plus(Duration.ofMinutes(1)));
+        final CompletableFuture<JobExecutionGovernor.Permit> earlier = governor.acquire(JOB, T_0);
+
+        permit.release();
+        assertTrue(earlier.isDone());
+        assertFalse(later.isDone());
+
+        earlier.join().release();
+        assertTrue(later.isDone());
+    }
+
+    @Test
+    public void testCancelledWaitersAreSkipped() {
+        final JobExecutionGovernor governor = createGovernor(1, Duration.ZERO);
+        final JobExecutionGovernor.Permit permit = governor.acquire(JOB, T_0).join();
+        final CompletableFuture<JobExecutionGovernor.Permit> cancelled = governor.acquire(JOB, T_0);
+        final CompletableFuture<JobExecutionGovernor.Permit> waiting = governor.acquire(JOB, T_0);
+
+        assertTrue(cancelled.cancel(false));
+        permit.release();
+        assertTrue(waiting.isDone());
+        assertFalse(waiting.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testCancelledWaitersLeaveTheQueue() {
+        final PeriodicMetrics periodicMetrics = Mockito.mock(PeriodicMetrics.class);
+        final JobExecutionGovernor governor = new JobExecutionGovernor(1, Duration.ZERO, CLOCK, periodicMetrics);
+        governor.acquire(JOB, T_0).join();
+        final CompletableFuture<JobExecutionGovernor.Permit> cancelled = governor.acquire(JOB, T_0);
+        Mockito.verify(periodicMetrics).recordGauge("job_execution_governor/queue_depth", 1);
+
+        assertTrue(cancelled.cancel(false));
+        Mockito.verify(periodicMetrics).recordGauge("job_execution_governor/queue_depth", 0);
+        assertThat(governor.toString(), containsString("waiting=0"));
+    }
+
+    @Test
+    public void testNoJitterForOneOffSchedules() {
+        final JobExecutionGovernor governor = createGovernor(1, Duration.ofHours(1));
+        final Schedule schedule = new OneOffSchedule.Builder().setRunAtAndAfter(T_0).build();
+        assertEquals(Duration.ZERO, governor.getJitter(UUID.randomUUID(), schedule));
+    }
+
+    @Test
+    public void testJitterIsDeterministicAndBounded() {
+        final Schedule schedule = new PeriodicSchedule.Builder()
+                .setZone(ZoneId.of("+00:00"))
+                .setPeriod(ChronoUnit.HOURS)
+                .setOffset(Duration.ZERO)
+                .setRunAtAndAfter(T_0)
+                .build();
+        final JobExecutionGovernor unbounded = createGovernor(1, Duration.ofDays(1));
+        final JobExecutionGovernor bounded = createGovernor(1, Duration.ofSeconds(5));
+        for (int i = 0; i < 100; ++i) {
+            final UUID jobId = UUID.randomUUID();
+            final Duration jitter = unbounded.getJitter(jobId, schedule);
+            assertEquals(jitter, unbounded.getJitter(jobId, schedule));
+            assertThat(jitter, greaterThanOrEqualTo(Duration.ZERO));
+            assertThat(jitter, lessThan(schedule.getStartTolerance()));
+            assertThat(bounded.getJitter(jobId, schedule), lessThan(Duration.ofSeconds(5)));
+        }
+        assertEquals(Duration.ZERO, createGovernor(1, Duration.ZERO).getJitter(UUID.randomUUID(), schedule));
+    }
+
+    private static JobExecutionGovernor createGovernor(final int permits, final Duration maxJitter) {
+        return new JobExecutionGovernor(permits, maxJitter, CLOCK, Mockito.mock(PeriodicMetrics.class));
+    }
+
+    private static final Instant T_0 = Instant.parse("2019-01-01T00:00:00Z");
+    private static final Clock CLOCK = Clock.fixed(T_0, ZoneOffset.UTC);
+    private static final DummyJob<Integer> JOB = new DummyJob.Builder<Integer>()
+            .setOneOffSchedule(T_0)
+            .setResult(0)
+            .build();
+}
@@ -28,6 +28,7 @@ import com.arpnetworking.metrics.portal.TestBeanFactory;
 import com.arpnetworking.metrics.portal.scheduling.impl.MapJobRepository;
 import com.arpnetworking.metrics.portal.scheduling.impl.PeriodicSchedule;
 import com.arpnetworking.metrics.portal.scheduling.mocks.DummyJob;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -44,11 +45,16 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Tests for {@link JobExecutorActor}.
  *
@@ -80,7 +86,11 @@ public final class JobExecutorActorTest {
 
         _system = ActorSystem.create(
                 "test-" + SYSTEM_NAME_NONCE.getAndIncrement(),
-                ConfigFactory.parseMap(AkkaClusteringConfigFactory.generateConfiguration()));
+                ConfigFactory.parseMap(ImmutableMap.<String, Object>builder()
+                        .putAll(AkkaClusteringConfigFactory.generateConfiguration())
+                        .put(JobExecutorActor.REPOSITORY_DISPATCHER_NAME + ".type", "Dispatcher")
+                        .put(JobExecutorActor.REPOSITORY_DISPATCHER_NAME + ".executor", "thread-pool-executor")
+                        .build()));
     }
 
     @After
@@ -94,7 +104,11 @@ public final class JobExecutorActorTest {
     }
 
     private Props makeExecutorActorProps() {
-        return JobExecutorActor.props(_injector, _clock, _periodicMetrics);
+        return JobExecutorActor.props(
+                _injector,
+                _clock,
+                _periodicMetrics,
+                new JobExecutionGovernor(100, Duration.ZERO, _clock, _periodicMetrics));
     }
 
     private ActorRef makeExecutorActor() {
@@ -137,6 +151,22 @@ public final class JobExecutorActorTest {
                 Mockito.any(CompletionException.class));
     }
 
+    @Test
+    public void testRepositoryCallsRunOnRepositoryDispatcher() {
+        final List<String> threadNames = new CopyOnWriteArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            return invocation.callRealMethod();
+        }).when(_repo).jobSucceeded(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+
+        final DummyJob<Integer> j = addJobToRepo(new DummyJob.Builder<Integer>().setOneOffSchedule(T_0).setResult(123).build());
+        makeAndInitializeExecutorActor(j);
+
+        Mockito.verify(_repo, Mockito.timeout(1000)).jobSucceeded(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        assertEquals(1, threadNames.size());
+        assertTrue(threadNames.get(0).contains(JobExecutorActor.REPOSITORY_DISPATCHER_NAME));
+    }
+
     @Test
     public void testJobInFutureNotRun() {
         final Job<Integer> j = addJobToRepo(
@@ -190,6 +220,74 @@ public final class JobExecutorActorTest {
                 .jobStarted(Mockito.eq(job.getId()), Mockito.eq(ORGANIZATION), Mockito.any());
     }
 
+    @Test
+    public void testRunLeasedElsewhereNotRun() {
+        final DummyJob<Integer> j = addJobToRepo(new DummyJob.Builder<Integer>().setOneOffSchedule(T_0).setResult(123).build());
+        assertTrue(_repo.tryLeaseExecution(j.getId(), ORGANIZATION, T_0, "previous-incarnation", Duration.ofHours(1)));
+        makeAndInitializeExecutorActor(j);
+
+        Mockito.verify(_repo, Mockito.timeout(1000).times(2))
+                .tryLeaseExecution(Mockito.eq(j.getId()), Mockito.eq(ORGANIZATION), Mockito.eq(T_0), Mockito.anyString(), Mockito.any());
+        Mockito.verify(_repo, Mockito.after(1000).never()).jobStarted(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testFailedReloadAfterExecutionDoesNotRerun() {
+        // The initial load succeeds, the reload after the run fails once, and every later load succeeds
+        Mockito.doCallRealMethod()
+                .doThrow(new IllegalStateException("database unavailable"))
+                .doCallRealMethod()
+                .when(_repo).getLastRun(Mockito.any(), Mockito.any());
+        final DummyJob<Integer> j = addJobToRepo(new DummyJob.Builder<Integer>().setOneOffSchedule(T_0).setResult(123).build());
+        final ActorRef executor = makeAndInitializeExecutorActor(j);
+
+        Mockito.verify(_repo, Mockito.timeout(1000).times(2)).getLastRun(j.getId(), ORGANIZATION);
+        executor.tell(JobExecutorActor.Tick.INSTANCE, null);
+        Mockito.verify(_repo, Mockito.after(1000).times(1)).jobStarted(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testCatchUpRunsLatestAndRecordsSkipped() {
+        final ChronoUnit period = ChronoUnit.MINUTES;
+        final Instant startAt = T_0.minus(period.getDuration().multipliedBy(3));
+        final DummyJob<Integer> job = addJobToRepo(new DummyJob.Builder<Integer>()
+                .setSchedule(new PeriodicSchedule.Builder()
+                        .setRunAtAndAfter(startAt)
+                        .setZone(ZoneId.of("UTC"))
+                        .setPeriod(period)
+                        .setCatchUpPolicy(CatchUpPolicy.RUN_LATEST_AND_SUMMARIZE)
+                        .build())
+                .setResult(123)
+                .build());
+
+        makeAndInitializeExecutorActor(job);
+
+        Mockito.verify(_repo, Mockito.timeout(1000)).jobSucceeded(job.getId(), ORGANIZATION, T_0, 123);
+        // The three missed runs before T_0 are recorded as one range
+        Mockito.verify(_repo, Mockito.times(1)).jobsSkipped(job.getId(), ORGANIZATION, startAt, T_0, 3L);
+        Mockito.verify(_repo, Mockito.times(1)).jobStarted(Mockito.eq(job.getId()), Mockito.eq(ORGANIZATION), Mockito.any());
+    }
+
+    @Test
+    public void testCatchUpAfterLongOutageJumpsToLatest() {
+        final ChronoUnit period = ChronoUnit.MINUTES;
+        final Instant startAt = T_0.minus(Duration.ofDays(366));
+        final DummyJob<Integer> job = addJobToRepo(new DummyJob.Builder<Integer>()
+                .setSchedule(new PeriodicSchedule.Builder()
+                        .setRunAtAndAfter(startAt)
+                        .setZone(ZoneId.of("UTC"))
+                        .setPeriod(period)
+                        .setCatchUpPolicy(CatchUpPolicy.RUN_LATEST_AND_SUMMARIZE)
+                        .build())
+                .setResult(123)
+                .build());
+
+        makeAndInitializeExecutorActor(job);
+
+        Mockito.verify(_repo, Mockito.timeout(1000)).jobSucceeded(job.getId(), ORGANIZATION, T_0, 123);
+        Mockito.verify(_repo, Mockito.times(1)).jobsSkipped(job.getId(), ORGANIZATION, startAt, T_0, Duration.ofDays(366).toMinutes());
+    }
+
     private Injector _injector;
     private MockableIntJobRepository _repo;
     private ManualClock _clock;
@@ -20,6 +20,7 @@ import models.internal.Organization;
 import models.internal.impl.DefaultOrganization;
 import org.junit.Test;
 
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
@@ -49,6 +50,36 @@ public final class JobMessageExtractorTest {
                 extractor.entityId(new JobExecutorActor.Reload.Builder<Integer>().setJobRef(ref).build()));
     }
 
+    @Test
+    public void testRepositoryTypeName() {
+        final JobMessageExtractor extractor = new JobMessageExtractor();
+        final JobRef<Integer> ref = new JobRef.Builder<Integer>()
+                .setId(UUID.randomUUID())
+                .setOrganization(ORGANIZATION)
+                .setRepositoryType(MockableIntJobRepository.class)
+                .build();
+        assertEquals(
+                Optional.of(MockableIntJobRepository.class.getCanonicalName()),
+                JobMessageExtractor.repositoryTypeName(
+                        extractor.entityId(new JobExecutorActor.Reload.Builder<Integer>().setJobRef(ref).build())));
+        assertEquals(Optional.empty(), JobMessageExtractor.repositoryTypeName("not-an-entity-id"));
+    }
+
+    @Test
+    public void testJobTypeMetricNameFromEntityIdMatchesRef() {
+        final JobMessageExtractor extractor = new JobMessageExtractor();
+        final JobRef<Integer> ref = new JobRef.Builder<Integer>()
+                .setId(UUID.randomUUID())
+                .setOrganization(ORGANIZATION)
+                .setRepositoryType(MockableIntJobRepository.class)
+                .build();
+        final String entityId = extractor.entityId(new JobExecutorActor.Reload.Builder<Integer>().setJobRef(ref).build());
+        assertEquals("mockable_int_job_repository", JobExecutorActor.jobTypeMetricName(ref.getRepositoryType().getCanonicalName()));
+        assertEquals(
+                Optional.of("mockable_int_job_repository"),
+                JobMessageExtractor.repositoryTypeName(entityId).map(JobExecutorActor::jobTypeMetricName));
+    }
+
     private static final Organization ORGANIZATION = new DefaultOrganization.Builder()
             .setId(UUID.fromString("00000000-0000-0000-0000-000000000000"))
             .build();
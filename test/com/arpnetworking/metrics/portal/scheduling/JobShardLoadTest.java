@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link JobShardLoad}.
+ *
+ * @author agent (agent at local)
+ */
+public final class JobShardLoadTest {
+
+    @Test
+    public void testUnknownShardHasUnitWeight() {
+        final JobShardLoad load = new JobShardLoad(CLOCK);
+        assertEquals(1, load.getWeight("0"), 0);
+    }
+
+    @Test
+    public void testWeightGrowsWithBusyTime() {
+        final JobShardLoad load = new JobShardLoad(CLOCK);
+        for (int i = 0; i < 10; ++i) {
+            load.record(new JobShardLoad.ExecutionSample("cheap", Duration.ofSeconds(1)));
+            load.record(new JobShardLoad.ExecutionSample("expensive", Duration.ofMinutes(1)));
+        }
+        // Ten one-minute executions per hour is ten busy minutes per hour
+        assertThat(load.getWeight("expensive"), closeTo(11, 1e-9));
+        assertThat(load.getWeight("expensive"), greaterThan(load.getWeight("cheap")));
+        assertThat(load.getWeight("cheap"), greaterThan(1.0));
+    }
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2019-01-01T00:00:00Z"), ZoneOffset.UTC);
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Dropbox, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.arpnetworking.metrics.portal.scheduling;
+
+import akka.cluster.sharding.ShardRegion;
+import com.arpnetworking.metrics.portal.scheduling.impl.MapJobRepository;
+import com.google.common.collect.Sets;
+import models.internal.Organization;
+import models.internal.impl.DefaultOrganization;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link OrganizationAffineJobMessageExtractor}.
+ *
+ * @author agent (agent at local)
+ */
+public final class OrganizationAffineJobMessageExtractorTest {
+
+    @Test
+    public void testEntityIdMatchesDefaultExtractor() {
+        final JobExecutorActor.Reload<Integer> reload = reload(ORGANIZATION, UUID.randomUUID());
+        assertEquals(new JobMessageExtractor().entityId(reload), new OrganizationAffineJobMessageExtractor(4).entityId(reload));
+    }
+
+    @Test
+    public void testOrganizationsJobsStayInGroup() {
+        final OrganizationAffineJobMessageExtractor extractor = new OrganizationAffineJobMessageExtractor(4);
+        final Set<String> shards = Sets.newHashSet();
+        for (int i = 0; i < 200; ++i) {
+            shards.add(extractor.shardId(reload(ORGANIZATION, UUID.randomUUID())));
+        }
+        assertThat(shards.size(), lessThanOrEqualTo(4));
+        assertThat(shards.size(), greaterThan(1));
+    }
+
+    @Test
+    public void testStartEntityMapsToSameShard() {
+        final OrganizationAffineJobMessageExtractor extractor = new OrganizationAffineJobMessageExtractor(4);
+        for (int i = 0; i < 100; ++i) {
+            final JobExecutorActor.Reload<Integer> reload = reload(ORGANIZATION, UUID.randomUUID());
+            assertEquals(
+                    extractor.shardId(reload),
+                    extractor.shardId(new ShardRegion.StartEntity(extractor.entityId(reload))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyGroups() {
+        new OrganizationAffineJobMessageExtractor(0);
+    }
+
+    private static JobExecutorActor.Reload<Integer> reload(final Organization organization, final UUID jobId) {
+        final JobRef<Integer> ref = new JobRef.Builder<Integer>()
+                .setId(jobId)
+                .setOrganization(organization)
+                .setRepositoryType(MockableIntJobRepository.class)
+                .build();
+        return new JobExecutorActor.Reload.Builder<Integer>().setJobRef(ref).build();
+    }
+
+    private static final Organization ORGANIZATION = new DefaultOrganization.Builder()
+            .setId(UUID.fromString("00000000-0000-0000-0000-000000000000"))
+            .build();
+
+    private static class MockableIntJobRepository extends MapJobRepository<Integer> {}
+
+}
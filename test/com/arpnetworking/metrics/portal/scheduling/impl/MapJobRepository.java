@@ -29,6 +29,7 @@ import models.internal.impl.DefaultJobQuery;
 import models.internal.impl.DefaultQueryResult;
 import models.internal.scheduling.Job;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -53,8 +54,9 @@ public class MapJobRepository<T> implements JobRepository<T> {
     public MapJobRepository() {}
 
     private final AtomicBoolean _open = new AtomicBoolean();
-    private final Map<Organization, Map<UUID, Job<T>>> _jobs = Maps.newHashMap();
-    private final Map<Organization, Map<UUID, Instant>> _lastRuns = Maps.newHashMap();
+    private final Map<Organization, Map<UUID, Job<T>>> _jobs = Maps.newConcurrentMap();
+    private final Map<Organization, Map<UUID, Instant>> _lastRuns = Maps.newConcurrentMap();
+    private final Map<Organization, Map<UUID, Map<Instant, Lease>>> _leases = Maps.newConcurrentMap();
 
     @Override
     public void open() {
@@ -77,7 +79,7 @@ public class MapJobRepository<T> implements JobRepository<T> {
      */
     public void addOrUpdateJob(final Job<T> job, final Organization organization) {
         assertIsOpen();
-        _jobs.computeIfAbsent(organization, o -> Maps.newHashMap()).put(job.getId(), job);
+        _jobs.computeIfAbsent(organization, o -> Maps.newConcurrentMap()).put(job.getId(), job);
     }
 
     @Override
@@ -95,24 +97,47 @@ public class MapJobRepository<T> implements JobRepository<T> {
     @Override
     public void jobStarted(final UUID id, final Organization organization, final Instant scheduled) {
         assertIsOpen();
-        _lastRuns.computeIfAbsent(organization, o -> Maps.newHashMap())
+        _lastRuns.computeIfAbsent(organization, o -> Maps.newConcurrentMap())
                 .compute(id, (id0, t1) -> (t1 == null) ? scheduled : t1.isAfter(scheduled) ? t1 : scheduled);
     }
 
     @Override
     public void jobSucceeded(final UUID id, final Organization organization, final Instant scheduled, final Object result) {
         assertIsOpen();
-        _lastRuns.computeIfAbsent(organization, o -> Maps.newHashMap())
+        _lastRuns.computeIfAbsent(organization, o -> Maps.newConcurrentMap())
                 .compute(id, (id0, t1) -> (t1 == null) ? scheduled : t1.isAfter(scheduled) ? t1 : scheduled);
     }
 
     @Override
     public void jobFailed(final UUID id, final Organization organization, final Instant scheduled, final Throwable error) {
         assertIsOpen();
-        _lastRuns.computeIfAbsent(organization, o -> Maps.newHashMap())
+        _lastRuns.computeIfAbsent(organization, o -> Maps.newConcurrentMap())
                 .compute(id, (id0, t1) -> (t1 == null) ? scheduled : t1.isAfter(scheduled) ? t1 : scheduled);
     }
 
+    @Override
+    public void jobsSkipped(final UUID id, final Organization organization, final Instant from, final Instant until, final long count) {
+        assertIsOpen();
+    }
+
+    @Override
+    public boolean tryLeaseExecution(
+            final UUID id,
+            final Organization organization,
+            final Instant scheduled,
+            final String holder,
+            final Duration duration) {
+        assertIsOpen();
+        final Instant now = Instant.now();
+        final Lease lease = _leases.computeIfAbsent(organization, o -> Maps.newConcurrentMap())
+                .computeIfAbsent(id, id0 -> Maps.newConcurrentMap())
+                .compute(scheduled, (scheduled0, current) ->
+                        current == null || current._holder.equals(holder) || current._expiresAt.isBefore(now)
+                                ? new Lease(holder, now.plus(duration))
+                                : current);
+        return lease._holder.equals(holder);
+    }
+
     @Override
     public JobQuery<T> createQuery(final Organization organization) {
         return new DefaultJobQuery<>(this, organization);
@@ -150,4 +175,14 @@ public class MapJobRepository<T> implements JobRepository<T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MapJobRepository.class);
 
+    private static final class Lease {
+        private final String _holder;
+        private final Instant _expiresAt;
+
+        Lease(final String holder, final Instant expiresAt) {
+            _holder = holder;
+            _expiresAt = expiresAt;
+        }
+    }
+
 }
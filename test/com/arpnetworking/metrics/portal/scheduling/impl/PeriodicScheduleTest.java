@@ -228,6 +228,64 @@ public final class PeriodicScheduleTest {
         assertEquals(Optional.empty(), schedule.nextRun(Optional.of(Instant.parse("2018-01-01T00:00:00Z"))));
     }
 
+    @Test
+    public void testNextRunWithDistantLastRun() {
+        final Schedule schedule = new PeriodicSchedule.Builder()
+                .setZone(ZoneId.of("+00:00"))
+                .setPeriod(ChronoUnit.MINUTES)
+                .setOffset(Duration.ofSeconds(30))
+                .setRunAtAndAfter(Instant.parse("2019-01-01T12:34:56Z"))
+                .build();
+
+        assertEquals(
+                Optional.of(Instant.parse("2019-01-01T12:35:30Z")),
+                schedule.nextRun(Optional.of(Instant.parse("1970-01-01T00:00:00Z"))));
+        assertEquals(
+                Optional.of(Instant.parse("2019-01-01T12:35:30Z")),
+                schedule.nextRun(Optional.empty()));
+    }
+
+    @Test
+    public void testNextRunWithDistantLastRunAcrossDST() {
+        final Duration offset = Duration.ofMinutes(2 * 60 + 30);
+        final ZoneId zone = ZoneId.of("America/Los_Angeles");
+        final Instant runAtAndAfter = ZonedDateTime.of(LocalDateTime.of(2018, 3, 11, 1, 0, 0), zone).toInstant();
+        final Instant expectedRun = ZonedDateTime.of(LocalDateTime.of(2018, 3, 11, 0, 0, 0), zone).toInstant().plus(offset);
+
+        final Schedule schedule = new PeriodicSchedule.Builder()
+                .setZone(zone)
+                .setPeriod(ChronoUnit.DAYS)
+                .setOffset(offset)
+                .setRunAtAndAfter(runAtAndAfter)
+                .build();
+
+        assertEquals(Optional.of(expectedRun), schedule.nextRun(Optional.of(Instant.parse("2000-01-01T00:00:00Z"))));
+    }
+
+    @Test
+    public void testLatestRunAndCountMatchWalkingEveryRun() {
+        final ZoneId zone = ZoneId.of("America/Los_Angeles");
+        final Instant runAtAndAfter = ZonedDateTime.of(LocalDateTime.of(2018, 3, 1, 0, 0, 0), zone).toInstant();
+        final Instant runUntil = ZonedDateTime.of(LocalDateTime.of(2018, 3, 20, 0, 0, 0), zone).toInstant();
+        for (final ChronoUnit period : new ChronoUnit[] {ChronoUnit.HOURS, ChronoUnit.DAYS}) {
+            final Schedule schedule = new PeriodicSchedule.Builder()
+                    .setZone(zone)
+                    .setPeriod(period)
+                    .setOffset(Duration.ofMinutes(30))
+                    .setRunAtAndAfter(runAtAndAfter)
+                    .setRunUntil(runUntil)
+                    .build();
+            // The interface's default implementations walk every run
+            final Schedule walking = schedule::nextRun;
+            final Instant first = schedule.nextRun(Optional.empty()).get();
+            for (int hours = 0; hours < 24 * 21; hours += 7) {
+                final Instant time = first.plus(Duration.ofHours(hours)).plus(Duration.ofMinutes(hours % 60));
+                assertEquals(walking.latestRunAtOrBefore(first, time), schedule.latestRunAtOrBefore(first, time));
+                assertEquals(walking.countRunsBefore(first, time), schedule.countRunsBefore(first, time));
+            }
+        }
+    }
+
     @Test(expected = net.sf.oval.exception.ConstraintsViolatedException.class)
     public void testBuilderOffsetMustBeSmallerThanPeriod() {
         new PeriodicSchedule.Builder()